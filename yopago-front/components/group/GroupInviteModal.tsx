@@ -3,7 +3,7 @@ import { IconSymbol } from '@/components/ui/icon-symbol';
 import { Colors, type AppPalette } from '@/constants/theme';
 import { useColorScheme } from '@/hooks/use-color-scheme';
 import * as Clipboard from 'expo-clipboard';
-import React, { useMemo } from 'react';
+import React, { useEffect, useMemo, useState } from 'react';
 import {
   Alert,
   Image,
@@ -17,6 +17,7 @@ import {
   View,
 } from 'react-native';
 import * as ExpoLinking from 'expo-linking';
+import { authenticatedApiService, GroupQrImageSource } from '../../services/authenticatedApiService';
 import { GroupDetailsResponse } from '../../services/types';
 
 const applyAlpha = (hexColor: string, alpha: number) => {
@@ -50,6 +51,39 @@ export default function GroupInviteModal({
   const colorScheme = useColorScheme() ?? 'light';
   const palette = Colors[colorScheme];
   const styles = useMemo(() => createStyles(palette), [palette]);
+  const [qrSource, setQrSource] = useState<GroupQrImageSource | null>(null);
+
+  useEffect(() => {
+    if (!visible) {
+      return;
+    }
+    if (groupData.qrCodeBase64) {
+      setQrSource({ uri: `data:image/png;base64,${groupData.qrCodeBase64}` });
+      return;
+    }
+
+    let cancelled = false;
+    let loaded: GroupQrImageSource | null = null;
+    authenticatedApiService
+      .getGroupQrImageSource(groupData.id)
+      .then((source) => {
+        if (cancelled) {
+          source?.revoke?.();
+          return;
+        }
+        loaded = source;
+        setQrSource(source);
+      })
+      .catch((error) => {
+        console.error('Error preparando el QR del grupo:', error);
+      });
+
+    return () => {
+      cancelled = true;
+      // En web el QR es un object URL que hay que liberar
+      loaded?.revoke?.();
+    };
+  }, [visible, groupData.id, groupData.qrCodeBase64]);
 
   const copyCodeToClipboard = async () => {
     try {
@@ -161,9 +195,9 @@ export default function GroupInviteModal({
           <View style={styles.qrCard}>
             <Text style={styles.qrTitle}>Código QR para unirse</Text>
             <View style={styles.qrContainer}>
-              {groupData.qrCodeBase64 ? (
+              {qrSource ? (
                 <Image
-                  source={{ uri: `data:image/png;base64,${groupData.qrCodeBase64}` }}
+                  source={{ uri: qrSource.uri, headers: qrSource.headers }}
                   style={styles.qrImage}
                   resizeMode="contain"
                 />
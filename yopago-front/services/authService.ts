@@ -36,10 +36,14 @@ export interface RegisterResponse {
   success: boolean;
   message: string;
   data?: {
-    keycloak_user_id: string;
+    registrationId?: string;
+    status?: 'PENDING' | 'PROCESSING' | 'COMPLETED' | 'FAILED';
+    statusUrl?: string;
+    keycloak_user_id?: string;
     username: string;
     email: string;
-    name: string;
+    name?: string;
+    error?: string;
   };
   error?: string;
 }
@@ -60,6 +64,7 @@ class AuthService {
     TOKEN_EXPIRY: '@yopago/token_expiry',
   };
   private readonly TOKEN_GRACE_PERIOD_MS = 5 * 60 * 1000;
+  private readonly REGISTRATION_TIMEOUT_MS = 60 * 1000;
 
   /**
    * Registra un nuevo usuario usando tu API backend
@@ -99,14 +104,46 @@ class AuthService {
         throw new Error(result.message || 'Error en el registro');
       }
 
-      console.log('✅ Usuario registrado exitosamente:', result.data?.username ?? credentials.username);
-      return result;
+      // El backend acepta el registro (202) y lo procesa en segundo plano
+      const registered = response.status === 202 && result.data?.registrationId
+        ? await this.waitForRegistration(result.data.registrationId)
+        : result;
+
+      console.log('✅ Usuario registrado exitosamente:', registered.data?.username ?? credentials.username);
+      return registered;
     } catch (error) {
       console.error('❌ Error en registro:', error);
       throw error;
     }
   }
 
+  /**
+   * Consulta el estado del registro hasta que termina
+   */
+  private async waitForRegistration(registrationId: string): Promise<RegisterResponse> {
+    const deadline = Date.now() + this.REGISTRATION_TIMEOUT_MS;
+    let delayMs = 250;
+
+    while (Date.now() < deadline) {
+      await new Promise((resolve) => setTimeout(resolve, delayMs));
+      delayMs = Math.min(delayMs * 2, 2000);
+
+      const response = await fetch(`${API_CONFIG.BASE_URL}/auth/register/${registrationId}`);
+      if (!response.ok && response.status !== 404) {
+        continue;
+      }
+      const status: RegisterResponse = await response.json();
+      if (status.data?.status === 'COMPLETED') {
+        return status;
+      }
+      if (!status.success || status.data?.status === 'FAILED') {
+        throw new Error(status.message || 'Error en el registro');
+      }
+    }
+
+    throw new Error('El registro está tardando más de lo normal. Intenta iniciar sesión en unos minutos.');
+  }
+
   /**
    * Realiza el login usando tu API backend
    */
@@ -1,9 +1,11 @@
 import { readAsStringAsync } from 'expo-file-system/legacy';
+import { Platform } from 'react-native';
 import { authService } from './authService';
 import { API_CONFIG } from './config';
 import {
     CreateGroupRequest,
     CreateGroupResponse,
+    GroupDeletionJob,
     GroupDetailsResponse,
     JoinGroupResponse,
     PaymentResponse,
@@ -11,6 +13,13 @@ import {
     ProcessReceiptResponse,
 } from './types';
 
+// Fuente para <Image> del QR del grupo; revoke libera el object URL en web
+export interface GroupQrImageSource {
+  uri: string;
+  headers?: Record<string, string>;
+  revoke?: () => void;
+}
+
 // Tipos para las respuestas del backend
 export interface ExpenseResponse {
   id: number;
@@ -142,6 +151,11 @@ export interface CurrentMemberResponse {
 }
 
 class AuthenticatedApiService {
+  private readonly GROUP_DELETION_WAIT_MS = 15000;
+  private readonly CONDITIONAL_CACHE_MAX_ENTRIES = 50;
+  // Últimas respuestas GET con ETag: si el grupo no cambió el backend responde 304
+  private readonly conditionalCache = new Map<string, { etag: string; data: unknown }>();
+
   private async makeAuthenticatedRequest<T>(
     endpoint: string,
     options: RequestInit = {}
@@ -158,12 +172,18 @@ class AuthenticatedApiService {
         throw new Error('No se pudo obtener el token de acceso. Por favor inicia sesión nuevamente.');
       }
 
-      const defaultHeaders = {
+      const defaultHeaders: Record<string, string> = {
         'Content-Type': 'application/json',
         'Accept': 'application/json',
         'Authorization': `Bearer ${accessToken}`,
       };
 
+      const isGet = !options.method || options.method.toUpperCase() === 'GET';
+      const cached = isGet ? this.conditionalCache.get(endpoint) : undefined;
+      if (cached) {
+        defaultHeaders['If-None-Match'] = cached.etag;
+      }
+
       // Crear un AbortController para manejar timeout
       const controller = new AbortController();
       const timeoutId = setTimeout(() => controller.abort(), API_CONFIG.TIMEOUT);
@@ -213,6 +233,11 @@ class AuthenticatedApiService {
         }
       }
 
+      if (response.status === 304 && cached) {
+        console.log('♻️ Sin cambios, usando respuesta en caché:', endpoint);
+        return cached.data as T;
+      }
+
       if (!response.ok) {
         const errorText = await response.text();
         console.error('❌ HTTP Error Response:', errorText);
@@ -220,6 +245,10 @@ class AuthenticatedApiService {
       }
 
       const data = await response.json();
+      const etag = isGet ? response.headers.get('ETag') : null;
+      if (etag) {
+        this.rememberConditional(endpoint, etag, data);
+      }
       return data;
     } catch (error) {
       console.error(`Authenticated API Error for ${endpoint}:`, error);
@@ -230,6 +259,17 @@ class AuthenticatedApiService {
     }
   }
 
+  private rememberConditional(endpoint: string, etag: string, data: unknown): void {
+    this.conditionalCache.delete(endpoint);
+    this.conditionalCache.set(endpoint, { etag, data });
+    if (this.conditionalCache.size > this.CONDITIONAL_CACHE_MAX_ENTRIES) {
+      const oldest = this.conditionalCache.keys().next().value;
+      if (oldest !== undefined) {
+        this.conditionalCache.delete(oldest);
+      }
+    }
+  }
+
   // Verificar si el usuario está autenticado
   private async ensureAuthenticated(): Promise<void> {
     const isAuth = await authService.isAuthenticated();
@@ -276,6 +316,43 @@ class AuthenticatedApiService {
     }
   }
 
+  /**
+   * Fuente de imagen del QR del grupo: el backend sirve el PNG con ETag y caché
+   * de larga duración, así que no hace falta pedirlo en base64 con los detalles.
+   *
+   * En nativo la Image envía las cabeceras de la fuente. react-native-web las
+   * ignora, así que en web se descarga el PNG con autenticación y se sirve como
+   * object URL (que hay que liberar con revoke); si eso falla se piden los
+   * detalles con includeQr y se usa el base64.
+   */
+  async getGroupQrImageSource(groupId: number): Promise<GroupQrImageSource | null> {
+    const accessToken = await authService.getAccessToken();
+    if (!accessToken) {
+      return null;
+    }
+
+    const uri = `${API_CONFIG.BASE_URL}/groups/${groupId}/qr.png`;
+    if (Platform.OS !== 'web') {
+      return { uri, headers: { Authorization: `Bearer ${accessToken}` } };
+    }
+
+    try {
+      const response = await fetch(uri, { headers: { Authorization: `Bearer ${accessToken}` } });
+      if (!response.ok) {
+        throw new Error(`Error ${response.status}`);
+      }
+      const objectUrl = URL.createObjectURL(await response.blob());
+      return { uri: objectUrl, revoke: () => URL.revokeObjectURL(objectUrl) };
+    } catch (error) {
+      console.warn('⚠️ No se pudo descargar el QR, se usa el base64 de los detalles:', error);
+      const details = await this.makeAuthenticatedRequest<GroupDetailsResponse>(
+        `/groups/${groupId}/details?includeQr=true`,
+        { method: 'GET' }
+      );
+      return details.qrCodeBase64 ? { uri: `data:image/png;base64,${details.qrCodeBase64}` } : null;
+    }
+  }
+
   /**
    * Obtener detalles de un grupo específico
    */
@@ -396,19 +473,48 @@ class AuthenticatedApiService {
     }
   }
 
+  /**
+   * Espera a que termine el borrado del grupo; si tarda más del límite se da
+   * por aceptado (el grupo ya está desactivado y el trabajo sigue en el servidor)
+   */
+  private async waitForGroupDeletion(jobId: string): Promise<void> {
+    const deadline = Date.now() + this.GROUP_DELETION_WAIT_MS;
+    let delayMs = 250;
+
+    while (Date.now() < deadline) {
+      await new Promise((resolve) => setTimeout(resolve, delayMs));
+      delayMs = Math.min(delayMs * 2, 2000);
+
+      const job = await this.makeAuthenticatedRequest<GroupDeletionJob>(`/groups/deletions/${jobId}`);
+      if (job.status === 'COMPLETED') {
+        return;
+      }
+      if (job.status === 'FAILED') {
+        throw new Error(job.error || 'Error al eliminar el grupo');
+      }
+    }
+
+    console.log('⏳ La eliminación del grupo continúa en segundo plano:', jobId);
+  }
+
   async deleteGroup(groupId: number): Promise<void> {
     await this.ensureAuthenticated();
 
     try {
       console.log('🗑️ Eliminando grupo:', groupId);
 
-      await this.makeAuthenticatedRequest<void>(
+      // El backend desactiva el grupo y lo borra en segundo plano (202 + trabajo)
+      const job = await this.makeAuthenticatedRequest<GroupDeletionJob>(
         `/groups/${groupId}`,
         {
           method: 'DELETE',
         }
       );
 
+      if (job?.jobId) {
+        await this.waitForGroupDeletion(job.jobId);
+      }
+
       console.log('✅ Grupo eliminado exitosamente');
     } catch (error) {
       console.error('❌ Error deleting group:', error);
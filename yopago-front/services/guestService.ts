@@ -1,4 +1,5 @@
 import { readAsStringAsync } from 'expo-file-system/legacy';
+import AsyncStorage from '@react-native-async-storage/async-storage';
 import { API_CONFIG } from './config';
 import {
   GuestAccessResponse,
@@ -14,16 +15,70 @@ import {
   ProcessReceiptResponse,
 } from './types';
 
-const buildHeaders = (): Record<string, string> => ({
-  'Content-Type': 'application/json',
-  Accept: 'application/json',
-});
+// Token firmado que devuelve el backend al acceder; sustituye a la cookie de sesión.
+// Se guarda en AsyncStorage para que sobreviva a recargas y reinicios de la app.
+const GUEST_TOKEN_KEYS = {
+  TOKEN: '@yopago/guest_token',
+  EXPIRES_AT: '@yopago/guest_token_expires_at',
+};
+
+const clearGuestToken = async (): Promise<void> => {
+  try {
+    await AsyncStorage.multiRemove([GUEST_TOKEN_KEYS.TOKEN, GUEST_TOKEN_KEYS.EXPIRES_AT]);
+  } catch (error) {
+    console.error('[guestService] error borrando el token de invitado', error);
+  }
+};
+
+const getGuestToken = async (): Promise<string | null> => {
+  try {
+    const [token, expiresAt] = await Promise.all([
+      AsyncStorage.getItem(GUEST_TOKEN_KEYS.TOKEN),
+      AsyncStorage.getItem(GUEST_TOKEN_KEYS.EXPIRES_AT),
+    ]);
+    if (token && expiresAt && Date.parse(expiresAt) <= Date.now()) {
+      await clearGuestToken();
+      return null;
+    }
+    return token;
+  } catch (error) {
+    console.error('[guestService] error leyendo el token de invitado', error);
+    return null;
+  }
+};
+
+const rememberGuestToken = async (response: GuestAccessResponse): Promise<GuestAccessResponse> => {
+  if (!response.guestToken) {
+    await clearGuestToken();
+    return response;
+  }
+  try {
+    await AsyncStorage.setItem(GUEST_TOKEN_KEYS.TOKEN, response.guestToken);
+    if (response.guestTokenExpiresAt) {
+      await AsyncStorage.setItem(GUEST_TOKEN_KEYS.EXPIRES_AT, response.guestTokenExpiresAt);
+    } else {
+      await AsyncStorage.removeItem(GUEST_TOKEN_KEYS.EXPIRES_AT);
+    }
+  } catch (error) {
+    console.error('[guestService] error guardando el token de invitado', error);
+  }
+  return response;
+};
+
+const buildHeaders = async (): Promise<Record<string, string>> => {
+  const guestToken = await getGuestToken();
+  return {
+    'Content-Type': 'application/json',
+    Accept: 'application/json',
+    ...(guestToken ? { 'X-Guest-Token': guestToken } : {}),
+  };
+};
 
-const withDefaults = (init: RequestInit = {}): RequestInit => ({
+const withDefaults = async (init: RequestInit = {}): Promise<RequestInit> => ({
   credentials: 'include',
   ...init,
   headers: {
-    ...buildHeaders(),
+    ...(await buildHeaders()),
     ...(init.headers || {}),
   },
 });
@@ -68,7 +123,7 @@ async function request<T>(endpoint: string, init: RequestInit = {}): Promise<T>
   console.log(`[guestService] request → ${url}`, init);
 
   try {
-    const response = await fetch(url, withDefaults(init));
+    const response = await fetch(url, await withDefaults(init));
 
     if (response.status === 204) {
       return {} as T;
@@ -94,13 +149,13 @@ export const guestService = {
     request<GuestAccessResponse>(`/guest/invitations/${token}/redeem`, {
       method: 'POST',
       body: JSON.stringify(payload),
-    }),
+    }).then(rememberGuestToken),
 
   accessWithCode: (payload: { groupCode: string; guestName: string; email: string; phoneNumber?: string }) =>
     request<GuestAccessResponse>('/guest/access', {
       method: 'POST',
       body: JSON.stringify(payload),
-    }),
+    }).then(rememberGuestToken),
 
   getSessionInfo: () => request<GuestSessionInfoResponse>('/guest/info'),
 
@@ -167,7 +222,8 @@ export const guestService = {
       method: 'PUT',
     }),
 
-  logout: () => request<{ success: boolean; message?: string }>('/guest/logout', { method: 'POST' }),
+  logout: () =>
+    request<{ success: boolean; message?: string }>('/guest/logout', { method: 'POST' }).finally(clearGuestToken),
 };
 
 export type GuestService = typeof guestService;
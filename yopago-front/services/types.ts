@@ -11,6 +11,7 @@ export interface CreateGroupResponse {
   groupId: number;
   joinCode: string;
   qrCodeBase64: string;
+  qrCodeUrl?: string;
   name: string;
   description?: string;
   createdAt: string;
@@ -32,6 +33,10 @@ export interface GroupSummary {
   memberCount: number;
   totalExpenses: number;
   totalAmount?: number;
+  // Balance neto del usuario en el grupo (lo que pagó menos lo que le toca, con pagos confirmados)
+  myBalance?: number;
+  myTotalPaid?: number;
+  myTotalOwed?: number;
   lastActivity?: string;
   userRole: 'admin' | 'member';
   canDelete?: boolean;
@@ -148,6 +153,19 @@ export enum ProcessingStatus {
   PROCESSING = 'processing'
 }
 
+// Trabajo de eliminación de un grupo (DELETE /groups/{id} responde 202)
+export interface GroupDeletionJob {
+  jobId: string;
+  groupId: number;
+  status: 'QUEUED' | 'RUNNING' | 'COMPLETED' | 'FAILED';
+  phase: string;
+  chunks: number;
+  deleted: Record<string, number>;
+  createdAt: string;
+  finishedAt?: string;
+  error?: string;
+}
+
 // Tipos para detalles del grupo
 export interface GroupDetailsResponse {
   id: number;
@@ -164,6 +182,7 @@ export interface GroupDetailsResponse {
   members: GroupMember[];
   expenses: GroupExpense[];
   aggregatedShares: AggregatedShare[];
+  qrCodeUrl?: string;
   qrCodeBase64?: string;
   balanceOriginal?: Record<string, number>;
   balanceAdjusted?: Record<string, number>;
@@ -296,6 +315,8 @@ export interface GuestAccessResponse {
   message?: string;
   group: GuestGroupSummary;
   member: GuestMemberSummary;
+  guestToken?: string;
+  guestTokenExpiresAt?: string;
 }
 
 export interface GuestSessionInfoResponse {
@@ -0,0 +1,281 @@
+package com.apachehub.deudacero.config;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.ParseException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.SecurityContext;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Fuente de claves JWKS con caché local para validar los JWT de Keycloak.
+ *
+ * Las claves se refrescan en segundo plano antes de caducar, así que la
+ * validación de una petición nunca espera a Keycloak salvo que llegue un kid
+ * desconocido (rotación de claves), y aun así con un intervalo mínimo entre
+ * descargas. Al arrancar se carga el último JWKS guardado en disco: si Keycloak
+ * está lento o caído la aplicación arranca igual y valida con esas claves.
+ *
+ * Ninguna clave se usa más allá de {@code cacheMaxAge} desde su última descarga
+ * correcta: un JWKS guardado más antiguo se descarta al arrancar y, si Keycloak
+ * sigue sin responder, las claves en memoria dejan de aceptarse al cumplir esa
+ * edad (así una clave retirada no sigue validando tokens indefinidamente).
+ */
+public class CachingJwkSource implements JWKSource<SecurityContext>, AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CachingJwkSource.class);
+
+    private final URI jwkSetUri;
+    private final Duration refreshInterval;
+    private final Duration minRefetchInterval;
+    private final Duration httpTimeout;
+    private final Path cacheFile;
+    private final Duration cacheMaxAge;
+    private final HttpClient httpClient;
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private final ScheduledExecutorService refresher;
+    private final Clock clock;
+
+    private final Timer fetchOk;
+    private final Timer fetchFailed;
+
+    // Claves y momento de su descarga, siempre juntos
+    private volatile CachedKeys cached;
+    private volatile Instant lastAttemptAt = Instant.EPOCH;
+
+    public CachingJwkSource(String jwkSetUri, Duration refreshInterval, Duration minRefetchInterval,
+            Duration httpTimeout, String cacheFile, Duration cacheMaxAge, MeterRegistry meterRegistry) {
+        this(jwkSetUri, refreshInterval, minRefetchInterval, httpTimeout, cacheFile, cacheMaxAge, meterRegistry,
+                Clock.systemUTC());
+    }
+
+    CachingJwkSource(String jwkSetUri, Duration refreshInterval, Duration minRefetchInterval,
+            Duration httpTimeout, String cacheFile, Duration cacheMaxAge, MeterRegistry meterRegistry,
+            Clock clock) {
+        this.clock = clock;
+        this.jwkSetUri = URI.create(jwkSetUri);
+        this.refreshInterval = refreshInterval;
+        this.minRefetchInterval = minRefetchInterval;
+        this.httpTimeout = httpTimeout;
+        this.cacheFile = cacheFile == null || cacheFile.isBlank() ? null : Path.of(cacheFile);
+        this.cacheMaxAge = cacheMaxAge;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(httpTimeout)
+                .build();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("jwks-refresher").factory());
+
+        this.fetchOk = fetchTimer(meterRegistry, "success");
+        this.fetchFailed = fetchTimer(meterRegistry, "failure");
+        Gauge.builder("yopago.security.jwks.staleness", this, CachingJwkSource::stalenessSeconds)
+                .description("Segundos desde la última descarga correcta del JWKS")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        Gauge.builder("yopago.security.jwks.keys", this,
+                source -> source.cached == null ? 0 : source.cached.keys().size())
+                .description("Claves JWKS en caché")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Carga el JWKS guardado, intenta una primera descarga sin fallar si Keycloak
+     * no responde y programa el refresco periódico
+     */
+    public void start() {
+        loadCachedKeys();
+        try {
+            refresh();
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo descargar el JWKS al arrancar ({}); se reintentará en segundo plano",
+                    e.getMessage());
+        }
+        // Se refresca antes de que el intervalo venza para no servir claves caducadas
+        long periodMillis = Math.max(1000, refreshInterval.toMillis() * 4 / 5);
+        refresher.scheduleWithFixedDelay(this::refreshQuietly, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public List<JWK> get(JWKSelector jwkSelector, SecurityContext context) throws KeySourceException {
+        CachedKeys seen = cached;
+        JWKSet current = valid(seen);
+        if (current != null) {
+            List<JWK> matches = jwkSelector.select(current);
+            if (!matches.isEmpty()) {
+                return matches;
+            }
+        }
+
+        // kid desconocido o sin claves todavía: se descarga en línea, limitado
+        JWKSet refreshed = refreshIfAllowed(seen);
+        if (refreshed == null) {
+            if (current == null) {
+                throw new KeySourceException("JWKS no disponible en " + jwkSetUri);
+            }
+            return List.of();
+        }
+        return jwkSelector.select(refreshed);
+    }
+
+    /**
+     * Descarga el JWKS salvo que otro hilo ya haya sustituido las claves que vio
+     * el llamante por otras vigentes. Las claves caducadas nunca se devuelven.
+     */
+    private JWKSet refreshIfAllowed(CachedKeys seen) throws KeySourceException {
+        fetchLock.lock();
+        try {
+            CachedKeys latest = cached;
+            if (latest != seen && valid(latest) != null) {
+                return latest.keys();
+            }
+            if (clock.instant().isBefore(lastAttemptAt.plus(minRefetchInterval))) {
+                return null;
+            }
+            return refresh();
+        } catch (IOException e) {
+            if (valid(seen) == null) {
+                throw new KeySourceException("No se pudo descargar el JWKS: " + e.getMessage(), e);
+            }
+            return null;
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private void refreshQuietly() {
+        fetchLock.lock();
+        try {
+            refresh();
+        } catch (IOException e) {
+            LOGGER.warn("Refresco del JWKS fallido, se mantienen las claves anteriores: {}", e.getMessage());
+        } finally {
+            fetchLock.unlock();
+        }
+    }
+
+    private JWKSet refresh() throws IOException {
+        lastAttemptAt = clock.instant();
+        long start = System.nanoTime();
+        try {
+            HttpRequest request = HttpRequest.newBuilder(jwkSetUri)
+                    .timeout(httpTimeout)
+                    .header("Accept", "application/json")
+                    .GET()
+                    .build();
+            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+            JWKSet fetched = JWKSet.parse(response.body());
+            if (fetched.isEmpty()) {
+                throw new IOException("JWKS vacío");
+            }
+            cached = new CachedKeys(fetched, clock.instant());
+            fetchOk.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            persist(fetched);
+            return fetched;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetchFailed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw new IOException("Descarga interrumpida", e);
+        } catch (IOException | ParseException e) {
+            fetchFailed.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e instanceof IOException io ? io : new IOException("JWKS inválido: " + e.getMessage(), e);
+        }
+    }
+
+    private void loadCachedKeys() {
+        if (cacheFile == null || !Files.isReadable(cacheFile)) {
+            return;
+        }
+        try {
+            Instant savedAt = Files.getLastModifiedTime(cacheFile).toInstant();
+            if (isExpired(savedAt)) {
+                LOGGER.warn("JWKS guardado en {} descartado: tiene más de {}", cacheFile, cacheMaxAge);
+                return;
+            }
+            JWKSet saved = JWKSet.parse(Files.readString(cacheFile, StandardCharsets.UTF_8));
+            cached = new CachedKeys(saved, savedAt);
+            LOGGER.info("JWKS cargado desde {} ({} claves)", cacheFile, saved.size());
+        } catch (IOException | ParseException e) {
+            LOGGER.warn("No se pudo leer el JWKS guardado: {}", e.getMessage());
+        }
+    }
+
+    private void persist(JWKSet fetched) {
+        if (cacheFile == null) {
+            return;
+        }
+        try {
+            Path parent = cacheFile.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            // Solo claves públicas; se escribe a un temporal y se mueve para no dejar ficheros a medias
+            Path temp = Files.createTempFile(parent, "jwks", ".tmp");
+            Files.writeString(temp, fetched.toString(true), StandardCharsets.UTF_8);
+            Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo guardar el JWKS en {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    private boolean isExpired(Instant at) {
+        return at != null && clock.instant().isAfter(at.plus(cacheMaxAge));
+    }
+
+    /**
+     * Claves utilizables: null si no hay o si superaron {@code cacheMaxAge}
+     */
+    private JWKSet valid(CachedKeys snapshot) {
+        return snapshot == null || isExpired(snapshot.fetchedAt()) ? null : snapshot.keys();
+    }
+
+    double stalenessSeconds() {
+        CachedKeys snapshot = cached;
+        return snapshot == null ? Double.NaN
+                : Duration.between(snapshot.fetchedAt(), clock.instant()).toMillis() / 1000.0;
+    }
+
+    private static Timer fetchTimer(MeterRegistry meterRegistry, String result) {
+        return Timer.builder("yopago.security.jwks.fetch")
+                .description("Descargas del JWKS de Keycloak")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private record CachedKeys(JWKSet keys, Instant fetchedAt) {
+    }
+
+    @Override
+    public void close() {
+        refresher.shutdownNow();
+        httpClient.close();
+    }
+}
@@ -5,6 +5,7 @@ import java.util.Arrays;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
@@ -29,6 +30,9 @@ public class CorsConfig {
         }
         configuration.addAllowedHeader("*");
         configuration.addAllowedMethod("*");
+        // Los clientes web necesitan leer el ETag para las peticiones condicionales
+        configuration.addExposedHeader(HttpHeaders.ETAG);
+        configuration.addExposedHeader(HttpHeaders.LAST_MODIFIED);
         configuration.setMaxAge(3600L);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
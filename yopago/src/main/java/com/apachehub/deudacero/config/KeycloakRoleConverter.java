@@ -0,0 +1,128 @@
+package com.apachehub.deudacero.config;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.convert.converter.Converter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+/**
+ * Convierte los roles de Keycloak (realm_access y resource_access) en
+ * authorities ROLE_*. El resultado se memoriza por token hasta que expira, así
+ * que un mismo JWT solo se recorre una vez aunque llegue en muchas peticiones.
+ *
+ * El log de depuración sale por SLF4J en nivel DEBUG, muestreado y sin volcar
+ * los claims completos.
+ */
+public class KeycloakRoleConverter implements Converter<Jwt, Collection<GrantedAuthority>> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(KeycloakRoleConverter.class);
+
+    private final Map<String, CachedAuthorities> cache = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final int debugSampleRate;
+    private final AtomicLong conversions = new AtomicLong();
+
+    public KeycloakRoleConverter(int maxEntries, int debugSampleRate) {
+        this.maxEntries = Math.max(0, maxEntries);
+        this.debugSampleRate = Math.max(1, debugSampleRate);
+    }
+
+    @Override
+    public Collection<GrantedAuthority> convert(Jwt jwt) {
+        if (maxEntries == 0) {
+            return extract(jwt);
+        }
+        // El token ya está validado por el decoder, así que el jti lo identifica
+        String key = jwt.getId() != null ? jwt.getId() : jwt.getTokenValue();
+        Instant now = Instant.now();
+        CachedAuthorities cached = cache.get(key);
+        if (cached != null && now.isBefore(cached.expiresAt())) {
+            return cached.authorities();
+        }
+
+        Collection<GrantedAuthority> authorities = extract(jwt);
+        if (cache.size() >= maxEntries) {
+            evict(now);
+        }
+        Instant expiresAt = jwt.getExpiresAt() != null ? jwt.getExpiresAt() : now.plusSeconds(60);
+        cache.put(key, new CachedAuthorities(authorities, expiresAt));
+        return authorities;
+    }
+
+    private void evict(Instant now) {
+        cache.values().removeIf(entry -> !now.isBefore(entry.expiresAt()));
+        if (cache.size() >= maxEntries) {
+            cache.clear();
+        }
+    }
+
+    private Collection<GrantedAuthority> extract(Jwt jwt) {
+        List<String> roles = new ArrayList<>();
+
+        // Método 1: realm_access.roles (más común)
+        addRoles(roles, jwt.getClaimAsMap("realm_access"));
+
+        // Método 2: resource_access (cliente) - preferir los roles del client (azp)
+        Map<String, Object> resourceAccess = jwt.getClaimAsMap("resource_access");
+        if (resourceAccess != null) {
+            String client = jwt.getClaimAsString("azp");
+            if (client != null && resourceAccess.get(client) instanceof Map<?, ?> clientAccess) {
+                addRoles(roles, clientAccess);
+            }
+
+            // Si aún no hay roles, recolectar cualquier rol disponible en resource_access
+            if (roles.isEmpty()) {
+                for (Object access : resourceAccess.values()) {
+                    if (access instanceof Map<?, ?> accessMap) {
+                        addRoles(roles, accessMap);
+                    }
+                }
+            }
+        }
+
+        // Normalizar roles: mapear roles por defecto de realm a roles de aplicación
+        List<GrantedAuthority> authorities = new ArrayList<>(roles.size());
+        for (String role : roles) {
+            // Ignorar roles técnicos
+            if (role == null || "offline_access".equals(role) || "uma_authorization".equals(role)) {
+                continue;
+            }
+            // Mapear default-roles-<realm> a 'user' (comportamiento común en Keycloak)
+            String normalized = role.startsWith("default-roles-") ? "user" : role;
+            authorities.add(new SimpleGrantedAuthority("ROLE_" + normalized.toLowerCase()));
+        }
+
+        if (LOGGER.isDebugEnabled() && conversions.getAndIncrement() % debugSampleRate == 0) {
+            LOGGER.debug("Roles JWT extraídos sub={} azp={} roles={} authorities={}",
+                    jwt.getSubject(), jwt.getClaimAsString("azp"), roles, authorities);
+        }
+        return List.copyOf(authorities);
+    }
+
+    private static void addRoles(List<String> roles, Map<?, ?> access) {
+        if (access != null && access.get("roles") instanceof List<?> list) {
+            for (Object role : list) {
+                if (role instanceof String name) {
+                    roles.add(name);
+                }
+            }
+        }
+    }
+
+    int cacheSize() {
+        return cache.size();
+    }
+
+    private record CachedAuthorities(Collection<GrantedAuthority> authorities, Instant expiresAt) {
+    }
+}
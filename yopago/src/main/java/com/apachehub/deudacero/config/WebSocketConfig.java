@@ -1,12 +1,16 @@
 package com.apachehub.deudacero.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.messaging.simp.config.ChannelRegistration;
 import org.springframework.messaging.simp.config.MessageBrokerRegistry;
 import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
 import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
 import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketTransportRegistration;
 
+import com.apachehub.deudacero.websocket.CompactEncodingInterceptor;
+import com.apachehub.deudacero.websocket.OutboundQueueMetrics;
 import com.apachehub.deudacero.websocket.WebSocketAuthChannelInterceptor;
 
 @Configuration
@@ -14,9 +18,42 @@ import com.apachehub.deudacero.websocket.WebSocketAuthChannelInterceptor;
 public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
 
     private final WebSocketAuthChannelInterceptor authChannelInterceptor;
+    private final OutboundQueueMetrics outboundQueueMetrics;
+    private final CompactEncodingInterceptor compactEncodingInterceptor;
 
-    public WebSocketConfig(WebSocketAuthChannelInterceptor authChannelInterceptor) {
+    // Pool del clientOutboundChannel (envío de mensajes a los clientes)
+    @Value("${app.websocket.outbound.core-pool-size:8}")
+    private int outboundCorePoolSize;
+
+    @Value("${app.websocket.outbound.max-pool-size:16}")
+    private int outboundMaxPoolSize;
+
+    @Value("${app.websocket.outbound.queue-capacity:10000}")
+    private int outboundQueueCapacity;
+
+    // Pool del brokerChannel (mensajes publicados por la aplicación)
+    @Value("${app.websocket.broker.core-pool-size:4}")
+    private int brokerCorePoolSize;
+
+    @Value("${app.websocket.broker.max-pool-size:8}")
+    private int brokerMaxPoolSize;
+
+    @Value("${app.websocket.broker.queue-capacity:10000}")
+    private int brokerQueueCapacity;
+
+    // Límites por sesión: al superarlos la sesión se cierra (consumidor lento)
+    @Value("${app.websocket.send-time-limit-ms:5000}")
+    private int sendTimeLimitMs;
+
+    @Value("${app.websocket.send-buffer-size-kb:256}")
+    private int sendBufferSizeKb;
+
+    public WebSocketConfig(WebSocketAuthChannelInterceptor authChannelInterceptor,
+            OutboundQueueMetrics outboundQueueMetrics,
+            CompactEncodingInterceptor compactEncodingInterceptor) {
         this.authChannelInterceptor = authChannelInterceptor;
+        this.outboundQueueMetrics = outboundQueueMetrics;
+        this.compactEncodingInterceptor = compactEncodingInterceptor;
     }
 
     @Override
@@ -28,10 +65,31 @@ public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
     public void configureMessageBroker(MessageBrokerRegistry registry) {
         registry.setApplicationDestinationPrefixes("/app");
         registry.enableSimpleBroker("/topic", "/queue");
+        registry.configureBrokerChannel().taskExecutor()
+                .corePoolSize(brokerCorePoolSize)
+                .maxPoolSize(Math.max(brokerCorePoolSize, brokerMaxPoolSize))
+                .queueCapacity(brokerQueueCapacity);
     }
 
     @Override
     public void configureClientInboundChannel(ChannelRegistration registration) {
-        registration.interceptors(authChannelInterceptor);
+        // Primero la autorización: una suscripción denegada no llega a registrarse como CBOR
+        registration.interceptors(authChannelInterceptor, compactEncodingInterceptor);
+    }
+
+    @Override
+    public void configureClientOutboundChannel(ChannelRegistration registration) {
+        registration.taskExecutor()
+                .corePoolSize(outboundCorePoolSize)
+                .maxPoolSize(Math.max(outboundCorePoolSize, outboundMaxPoolSize))
+                .queueCapacity(outboundQueueCapacity);
+        registration.interceptors(outboundQueueMetrics, compactEncodingInterceptor);
+    }
+
+    @Override
+    public void configureWebSocketTransport(WebSocketTransportRegistration registry) {
+        registry.setSendTimeLimit(sendTimeLimitMs)
+                .setSendBufferSizeLimit(sendBufferSizeKb * 1024)
+                .addDecoratorFactory(outboundQueueMetrics::decorate);
     }
 }
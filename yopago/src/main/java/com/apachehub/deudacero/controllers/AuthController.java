@@ -5,9 +5,12 @@ import com.apachehub.deudacero.dto.UserRegistrationDTO;
 import com.apachehub.deudacero.dto.LoginDto;
 import com.apachehub.deudacero.dto.ApiResponseDto;
 import com.apachehub.deudacero.services.AuthService;
+import com.apachehub.deudacero.services.RegistrationOutboxService;
 import com.apachehub.deudacero.services.UserSyncService;
 import com.apachehub.deudacero.entities.Group;
 import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.entities.RegistrationRequest;
+import com.apachehub.deudacero.entities.RegistrationStatus;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -20,6 +23,7 @@ import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.net.URI;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -33,10 +37,13 @@ public class AuthController {
 
     private final AuthService authService;
     private final UserSyncService userSyncService;
+    private final RegistrationOutboxService registrationOutboxService;
 
-    public AuthController(AuthService authService, UserSyncService userSyncService) {
+    public AuthController(AuthService authService, UserSyncService userSyncService,
+            RegistrationOutboxService registrationOutboxService) {
         this.authService = authService;
         this.userSyncService = userSyncService;
+        this.registrationOutboxService = registrationOutboxService;
     }
 
     @Operation(summary = "Obtener información del usuario autenticado con sincronización automática")
@@ -155,9 +162,9 @@ public class AuthController {
         return ResponseEntity.ok(rolesInfo);
     }
 
-    @Operation(summary = "Registrar nuevo usuario")
+    @Operation(summary = "Registrar nuevo usuario", description = "Guarda el registro y lo procesa en segundo plano; el estado se consulta en statusUrl")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Usuario registrado exitosamente"),
+            @ApiResponse(responseCode = "202", description = "Registro aceptado y en proceso"),
             @ApiResponse(responseCode = "400", description = "Datos de registro inválidos"),
             @ApiResponse(responseCode = "409", description = "Usuario ya existe")
     })
@@ -170,29 +177,43 @@ public class AuthController {
                         new ApiResponseDto(false, "Las contraseñas no coinciden", null));
             }
 
-            Map<String, Object> result = authService.registerUser(registrationDto);
-
-            if ((Boolean) result.get("success")) {
-                return ResponseEntity.ok(new ApiResponseDto(
-                        true,
-                        "Usuario registrado exitosamente",
-                        result.get("data")));
-            } else {
-                HttpStatus status = result.containsKey("userExists") && (Boolean) result.get("userExists")
-                        ? HttpStatus.CONFLICT
-                        : HttpStatus.BAD_REQUEST;
-
-                return ResponseEntity.status(status).body(new ApiResponseDto(
-                        false,
-                        (String) result.get("message"),
-                        null));
-            }
+            RegistrationRequest registration = registrationOutboxService.submit(registrationDto);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/auth/register/" + registration.getId()))
+                    .body(new ApiResponseDto(true, "Registro recibido, se está procesando",
+                            registrationOutboxService.toStatusMap(registration)));
+        } catch (RegistrationOutboxService.RegistrationConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(new ApiResponseDto(false, e.getMessage(), null));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(new ApiResponseDto(false, "Error interno del servidor: " + e.getMessage(), null));
         }
     }
 
+    @Operation(summary = "Consultar el estado de un registro")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado del registro (PENDING, PROCESSING, COMPLETED o FAILED)"),
+            @ApiResponse(responseCode = "404", description = "Registro no encontrado")
+    })
+    @GetMapping("/register/{registrationId}")
+    public ResponseEntity<ApiResponseDto> getRegistrationStatus(@PathVariable String registrationId) {
+        return registrationOutboxService.findById(registrationId)
+                .map(registration -> {
+                    String message = switch (registration.getStatus()) {
+                        case COMPLETED -> "Usuario registrado exitosamente. Ahora puede iniciar sesión.";
+                        case FAILED -> registration.getLastError() != null
+                                ? registration.getLastError()
+                                : "No se pudo completar el registro";
+                        default -> "Registro en proceso";
+                    };
+                    return ResponseEntity.ok(new ApiResponseDto(
+                            registration.getStatus() != RegistrationStatus.FAILED, message,
+                            registrationOutboxService.toStatusMap(registration)));
+                })
+                .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(new ApiResponseDto(false, "Registro no encontrado", null)));
+    }
+
     @Operation(summary = "Iniciar sesión y obtener token")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Login exitoso"),
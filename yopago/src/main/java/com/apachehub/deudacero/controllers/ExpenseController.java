@@ -4,14 +4,22 @@ import com.apachehub.deudacero.dto.ExpenseDTO;
 import com.apachehub.deudacero.dto.ExpenseResponseDTO;
 import com.apachehub.deudacero.entities.Expense;
 import com.apachehub.deudacero.services.ExpenseService;
-import com.apachehub.deudacero.services.OcrService;
+import com.apachehub.deudacero.services.GroupVersionService;
+import com.apachehub.deudacero.services.ReceiptImportService;
+import com.apachehub.deudacero.services.ReceiptJobService;
+import com.apachehub.deudacero.dto.ReceiptImportRequest;
 import com.apachehub.deudacero.dto.OcrExpenseRequest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -19,9 +27,12 @@ import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import io.swagger.v3.oas.annotations.tags.Tag;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/expenses")
@@ -30,11 +41,16 @@ import java.util.Optional;
 public class ExpenseController {
 
     private final ExpenseService expenseService;
-    private final OcrService ocrService;
+    private final ReceiptJobService receiptJobService;
+    private final ReceiptImportService receiptImportService;
+    private final GroupVersionService groupVersionService;
 
-    public ExpenseController(ExpenseService expenseService, OcrService ocrService) {
+    public ExpenseController(ExpenseService expenseService, ReceiptJobService receiptJobService,
+            ReceiptImportService receiptImportService, GroupVersionService groupVersionService) {
         this.expenseService = expenseService;
-        this.ocrService = ocrService;
+        this.receiptJobService = receiptJobService;
+        this.receiptImportService = receiptImportService;
+        this.groupVersionService = groupVersionService;
     }
 
     @Operation(summary = "Crear un nuevo gasto")
@@ -59,11 +75,101 @@ public class ExpenseController {
             @ApiResponse(responseCode = "201", description = "Gasto creado exitosamente a partir del OCR"),
             @ApiResponse(responseCode = "400", description = "Datos inválidos o OCR sin resultados"),
             @ApiResponse(responseCode = "401", description = "No autorizado"),
-            @ApiResponse(responseCode = "500", description = "Error al procesar el recibo")
+            @ApiResponse(responseCode = "500", description = "Error al procesar el recibo"),
+            @ApiResponse(responseCode = "503", description = "Demasiados recibos en proceso o servicio de OCR no disponible")
     })
     @PostMapping("/process-receipt")
     @PreAuthorize("hasRole('USER')")
-    public ResponseEntity<?> processReceipt(@RequestBody OcrExpenseRequest request) {
+    public CompletableFuture<ResponseEntity<?>> processReceipt(@RequestBody OcrExpenseRequest request,
+            @AuthenticationPrincipal Jwt jwt) {
+        ResponseEntity<?> invalid = validateReceiptRequest(request);
+        if (invalid != null) {
+            return CompletableFuture.completedFuture(invalid);
+        }
+
+        // El hilo del servidor se libera mientras el trabajo se procesa en el pool de recibos
+        ReceiptJobService.ReceiptJob job;
+        try {
+            job = receiptJobService.submit(request, jwt.getSubject());
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(receiptQueueFull());
+        }
+        return job.completion().thenApply(finished -> {
+            if (finished.getStatus() == ReceiptJobService.Status.FAILED) {
+                HttpStatus status = finished.isUnusable() ? HttpStatus.BAD_REQUEST
+                        : finished.isRetryable() ? HttpStatus.SERVICE_UNAVAILABLE
+                        : HttpStatus.INTERNAL_SERVER_ERROR;
+                return ResponseEntity.status(status)
+                        .body(Map.of("error", String.valueOf(finished.getError())));
+            }
+            Map<String, Object> body = new HashMap<>();
+            body.put("expense", finished.getExpense());
+            body.put("ocrText", finished.getOcrText());
+            return ResponseEntity.status(HttpStatus.CREATED).body(body);
+        });
+    }
+
+    @Operation(summary = "Enviar una factura a procesar en segundo plano", description = "Devuelve el id del trabajo; el resultado se consulta por el endpoint de estado o llega como evento group.receipt.completed en el topic del grupo")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Trabajo aceptado"),
+            @ApiResponse(responseCode = "400", description = "Datos inválidos"),
+            @ApiResponse(responseCode = "401", description = "No autorizado"),
+            @ApiResponse(responseCode = "503", description = "Demasiados recibos en proceso")
+    })
+    @PostMapping("/receipt-jobs")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> submitReceiptJob(@RequestBody OcrExpenseRequest request,
+            @AuthenticationPrincipal Jwt jwt) {
+        ResponseEntity<?> invalid = validateReceiptRequest(request);
+        if (invalid != null) {
+            return invalid;
+        }
+        try {
+            ReceiptJobService.ReceiptJob job = receiptJobService.submit(request, jwt.getSubject());
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job.toMap());
+        } catch (RejectedExecutionException e) {
+            return receiptQueueFull();
+        }
+    }
+
+    @Operation(summary = "Consultar el estado de un trabajo de factura")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado del trabajo"),
+            @ApiResponse(responseCode = "404", description = "Trabajo no encontrado o expirado")
+    })
+    @GetMapping("/receipt-jobs/{jobId}")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> getReceiptJob(@PathVariable String jobId, @AuthenticationPrincipal Jwt jwt) {
+        ReceiptJobService.ReceiptJob job = receiptJobService.findJob(jobId, jwt.getSubject());
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Trabajo no encontrado"));
+        }
+        return ResponseEntity.ok(job.toMap());
+    }
+
+    @Operation(summary = "Importar varios recibos a la vez", description = "Procesa los recibos con OCR en paralelo (con un límite de concurrencia), guarda los gastos por lotes y devuelve el progreso como stream SSE: receipt.processed, receipt.saved, receipt.failed e import.completed")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream de progreso abierto"),
+            @ApiResponse(responseCode = "400", description = "Faltan el grupo, el pagador o los recibos"),
+            @ApiResponse(responseCode = "401", description = "No autorizado"),
+            @ApiResponse(responseCode = "413", description = "Demasiados recibos o demasiados bytes en una sola importación")
+    })
+    @PostMapping(value = "/receipt-imports", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<SseEmitter> importReceipts(@RequestBody ReceiptImportRequest request) {
+        if (request.getGroupId() == null || request.getPayerId() == null
+                || request.getReceipts() == null || request.getReceipts().isEmpty()
+                || request.getReceipts().contains(null)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (request.getReceipts().size() > receiptImportService.getMaxReceipts()
+                || receiptImportService.exceedsMaxTotalBytes(request)) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build();
+        }
+        return ResponseEntity.ok(receiptImportService.startImport(request));
+    }
+
+    private ResponseEntity<?> validateReceiptRequest(OcrExpenseRequest request) {
         if (request.getFileBase64() == null || request.getFileBase64().isEmpty()) {
             return ResponseEntity.badRequest().body(Map.of("error", "Se requiere el archivo en Base64"));
         }
@@ -73,31 +179,12 @@ public class ExpenseController {
         if (request.getPayerId() == null) {
             return ResponseEntity.badRequest().body(Map.of("error", "Se requiere el identificador del pagador"));
         }
+        return null;
+    }
 
-        try {
-            OcrService.OcrResult ocrResult = ocrService.analyzeImageBase64(request.getFileBase64());
-            if (ocrResult == null || ocrResult.structured == null) {
-                return ResponseEntity.badRequest().body(Map.of("error", "El OCR no devolvió datos utilizables"));
-            }
-
-            ExpenseDTO expenseDTO = expenseService.createExpenseDTOFromOcr(
-                    ocrResult.structured,
-                    request.getPayerId(),
-                    request.getGroupId(),
-                    request.getNote(),
-                    request.getCurrency(),
-                    request.getShares());
-
-            Expense saved = expenseService.createExpense(expenseDTO);
-            ExpenseResponseDTO responseDTO = expenseService.convertToResponseDTO(saved);
-
-            return ResponseEntity.status(HttpStatus.CREATED).body(Map.of(
-                    "expense", responseDTO,
-                    "ocrText", ocrResult.text));
-        } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("error", e.getMessage()));
-        }
+    private ResponseEntity<?> receiptQueueFull() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(Map.of("error", "Hay demasiados recibos en proceso, intenta de nuevo en unos segundos"));
     }
 
     @Operation(summary = "Obtener todos los gastos con paginación")
@@ -143,14 +230,20 @@ public class ExpenseController {
     @Operation(summary = "Obtener todos los gastos de un grupo")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Gastos del grupo obtenidos exitosamente"),
+            @ApiResponse(responseCode = "304", description = "El grupo no ha cambiado (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Grupo no encontrado")
     })
     @GetMapping("/group/{groupId}")
     public ResponseEntity<List<ExpenseResponseDTO>> getExpensesByGroup(
-            @Parameter(description = "ID del grupo") @PathVariable Long groupId) {
+            @Parameter(description = "ID del grupo") @PathVariable Long groupId, WebRequest webRequest) {
         try {
+            if (groupVersionService.isNotModified(webRequest, groupId, "expenses")) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .cacheControl(GroupVersionService.REVALIDATE)
+                        .build();
+            }
             List<ExpenseResponseDTO> expenses = expenseService.getExpensesByGroupLight(groupId);
-            return ResponseEntity.ok(expenses);
+            return ResponseEntity.ok().cacheControl(GroupVersionService.REVALIDATE).body(expenses);
         } catch (Exception e) {
             return ResponseEntity.notFound().build();
         }
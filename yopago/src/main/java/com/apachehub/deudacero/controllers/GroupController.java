@@ -4,21 +4,29 @@ import com.apachehub.deudacero.entities.Group;
 import com.apachehub.deudacero.entities.Member;
 import com.apachehub.deudacero.entities.Expense;
 import com.apachehub.deudacero.dto.JoinGroupRequest;
+import com.apachehub.deudacero.services.GroupDeletionService;
 import com.apachehub.deudacero.services.GroupService;
+import com.apachehub.deudacero.services.GroupVersionService;
 import com.apachehub.deudacero.services.MemberService;
+import com.apachehub.deudacero.services.QrCodeService;
 import com.apachehub.deudacero.services.SettlementService;
 import com.apachehub.deudacero.services.UserSyncService;
 
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.access.AccessDeniedException;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
 
 import com.apachehub.deudacero.dto.CreateGroupRequest;
 import com.apachehub.deudacero.dto.GroupResponse;
+import com.apachehub.deudacero.dto.GroupVersion;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
@@ -28,6 +36,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
 import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 
 @CrossOrigin(origins = "*")
 @RestController
@@ -39,13 +49,18 @@ public class GroupController {
     private final SettlementService settlementService;
     private final MemberService memberService;
     private final UserSyncService userSyncService;
+    private final GroupDeletionService groupDeletionService;
+    private final GroupVersionService groupVersionService;
 
     public GroupController(GroupService groupService, SettlementService settlementService,
-            MemberService memberService, UserSyncService userSyncService) {
+            MemberService memberService, UserSyncService userSyncService,
+            GroupDeletionService groupDeletionService, GroupVersionService groupVersionService) {
         this.groupService = groupService;
         this.settlementService = settlementService;
         this.memberService = memberService;
         this.userSyncService = userSyncService;
+        this.groupDeletionService = groupDeletionService;
+        this.groupVersionService = groupVersionService;
     }
 
     @Operation(summary = "Crear un nuevo grupo")
@@ -80,23 +95,34 @@ public class GroupController {
     @Operation(summary = "Obtener detalles completos de un grupo")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Detalles del grupo obtenidos exitosamente"),
+            @ApiResponse(responseCode = "304", description = "El grupo no ha cambiado (If-None-Match)"),
             @ApiResponse(responseCode = "404", description = "Grupo no encontrado"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     @GetMapping("/{id}/details")
     @PreAuthorize("hasRole('USER')")
     public ResponseEntity<Map<String, Object>> getGroupDetails(@PathVariable Long id,
-            @AuthenticationPrincipal Jwt jwt) {
+            @RequestParam(defaultValue = "false") boolean includeQr,
+            @AuthenticationPrincipal Jwt jwt, WebRequest webRequest) {
         try {
             Member member = userSyncService.syncAuthenticatedUser(jwt);
-            Optional<Map<String, Object>> groupDetails = groupService.getGroupDetailsForViewer(id, member.getId());
+            Optional<GroupVersion> version = groupService.getGroupVersionForViewer(id, member.getId());
+            String resource = includeQr ? "details-qr" : "details";
+            if (version.isPresent() && groupVersionService.isNotModified(webRequest, version.get(), resource)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .cacheControl(GroupVersionService.REVALIDATE)
+                        .build();
+            }
+
+            Optional<Map<String, Object>> groupDetails = groupService.getGroupDetailsForViewer(id, member.getId(),
+                    includeQr);
 
             if (groupDetails.isEmpty()) {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body(Map.of("error", "Grupo no encontrado"));
             }
 
-            return ResponseEntity.ok(groupDetails.get());
+            return ResponseEntity.ok().cacheControl(GroupVersionService.REVALIDATE).body(groupDetails.get());
         } catch (AccessDeniedException e) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(Map.of("error", "No tienes acceso a este grupo"));
@@ -107,6 +133,44 @@ public class GroupController {
         }
     }
 
+    @Operation(summary = "Obtener el código QR del grupo como imagen PNG")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Imagen PNG del código QR"),
+            @ApiResponse(responseCode = "304", description = "La imagen no ha cambiado (If-None-Match)"),
+            @ApiResponse(responseCode = "403", description = "El usuario no pertenece al grupo"),
+            @ApiResponse(responseCode = "404", description = "Grupo no encontrado")
+    })
+    @GetMapping(value = "/{id}/qr.png", produces = MediaType.IMAGE_PNG_VALUE)
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<byte[]> getGroupQr(@PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @AuthenticationPrincipal Jwt jwt) {
+        try {
+            Member member = userSyncService.syncAuthenticatedUser(jwt);
+            Optional<QrCodeService.QrImage> qr = groupService.getGroupQrForViewer(id, member.getId());
+            if (qr.isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+
+            // El código del grupo no cambia: la imagen es inmutable para ese grupo
+            CacheControl cacheControl = CacheControl.maxAge(365, TimeUnit.DAYS).cachePrivate().immutable();
+            String etag = qr.get().etag();
+            if (ifNoneMatch != null && (ifNoneMatch.contains(etag) || ifNoneMatch.trim().equals("*"))) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).cacheControl(cacheControl).build();
+            }
+            return ResponseEntity.ok()
+                    .contentType(MediaType.IMAGE_PNG)
+                    .eTag(etag)
+                    .cacheControl(cacheControl)
+                    .body(qr.get().png());
+        } catch (AccessDeniedException e) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        } catch (Exception e) {
+            System.out.println("[GroupController] Error obteniendo QR del grupo " + id + ": " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @Operation(summary = "Obtener todos los grupos")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Grupos obtenidos exitosamente")
@@ -132,13 +196,13 @@ public class GroupController {
     public ResponseEntity<?> getGroupsForCurrentUser(@AuthenticationPrincipal Jwt jwt) {
         try {
             Member member = userSyncService.syncAuthenticatedUser(jwt);
-            List<Map<String, Object>> groups = groupService.getGroupsForMember(member.getId());
-            List<Map<String, Object>> createdGroups = groupService.getGroupsCreatedBy(member.getId());
+            Map<String, List<Map<String, Object>>> overview = groupService
+                    .getGroupsOverviewForMember(member.getId());
 
             Map<String, Object> response = new HashMap<>();
             response.put("memberId", member.getId());
-            response.put("groups", groups);
-            response.put("createdGroups", createdGroups);
+            response.put("groups", overview.get("groups"));
+            response.put("createdGroups", overview.get("createdGroups"));
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -337,9 +401,10 @@ public class GroupController {
         }
     }
 
-    @Operation(summary = "Eliminar un grupo")
+    @Operation(summary = "Eliminar un grupo", description = "Desactiva el grupo y encola su eliminación; "
+            + "el progreso se consulta en /api/groups/deletions/{jobId}")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "Grupo eliminado exitosamente"),
+            @ApiResponse(responseCode = "202", description = "Eliminación del grupo encolada"),
             @ApiResponse(responseCode = "403", description = "No tienes permisos para eliminar este grupo"),
             @ApiResponse(responseCode = "404", description = "Grupo no encontrado")
     })
@@ -358,7 +423,7 @@ public class GroupController {
             }
 
             Long requestingUserId = requestingMemberOpt.get().getId();
-            Map<String, Object> result = groupService.deleteGroup(groupId, requestingUserId);
+            Map<String, Object> result = groupDeletionService.submit(groupId, requestingUserId);
 
             if (result.containsKey("error")) {
                 Object reasonObj = result.get("reason");
@@ -372,11 +437,35 @@ public class GroupController {
                 return ResponseEntity.badRequest().body(result);
             }
 
-            return ResponseEntity.ok(result);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/groups/deletions/" + result.get("jobId"))
+                    .body(result);
 
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "No se pudo encolar la eliminación, intenta más tarde"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", "Error interno del servidor: " + e.getMessage()));
         }
     }
+
+    @Operation(summary = "Consultar el progreso de la eliminación de un grupo")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Estado del trabajo de eliminación"),
+            @ApiResponse(responseCode = "404", description = "Trabajo no encontrado")
+    })
+    @GetMapping("/deletions/{jobId}")
+    @PreAuthorize("hasRole('USER')")
+    public ResponseEntity<?> getDeletionJob(@PathVariable String jobId, @AuthenticationPrincipal Jwt jwt) {
+        Optional<Member> requestingMemberOpt = memberService.findByKeycloakUserId(jwt.getSubject());
+        GroupDeletionService.DeletionJob job = requestingMemberOpt
+                .map(member -> groupDeletionService.findJob(jobId, member.getId()))
+                .orElse(null);
+        if (job == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Trabajo de eliminación no encontrado"));
+        }
+        return ResponseEntity.ok(job.toMap());
+    }
 }
\ No newline at end of file
@@ -152,7 +152,7 @@ public class GroupInvitationController {
         payload.put("id", invitation.getId());
         payload.put("groupId", invitation.getGroup() != null ? invitation.getGroup().getId() : null);
         payload.put("token", invitation.getToken());
-        payload.put("status", invitation.getStatus());
+        payload.put("status", invitation.effectiveStatus());
         payload.put("email", invitation.getEmail());
         payload.put("createdAt", invitation.getCreatedAt());
         payload.put("expiresAt", invitation.getExpiresAt());
@@ -12,13 +12,31 @@ import com.apachehub.deudacero.repositories.MemberRepository;
 import com.apachehub.deudacero.entities.Expense;
 import com.apachehub.deudacero.entities.Member;
 import com.apachehub.deudacero.services.ExpenseService;
+import com.apachehub.deudacero.services.GuestEventStreamService;
+import com.apachehub.deudacero.services.GuestAccessRateLimiter;
+import com.apachehub.deudacero.services.GroupVersionService;
 import com.apachehub.deudacero.services.GuestService;
-import com.apachehub.deudacero.services.OcrService;
+import com.apachehub.deudacero.services.ReceiptJobService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseCookie;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.util.WebUtils;
 
+import com.apachehub.deudacero.services.GuestTokenService;
+import com.apachehub.deudacero.services.GuestTokenService.GuestClaims;
+import org.springframework.beans.factory.annotation.Value;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpSession;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
@@ -26,6 +44,8 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -63,29 +83,51 @@ public class GuestController {
     @Autowired
     private GroupRepository groupRepository;
     @Autowired
-    private OcrService ocrService;
+    private ReceiptJobService receiptJobService;
+    @Autowired
+    private GuestEventStreamService guestEventStreamService;
+    @Autowired
+    private GuestTokenService guestTokenService;
+    @Autowired
+    private GuestAccessRateLimiter guestAccessRateLimiter;
+    @Autowired
+    private GroupVersionService groupVersionService;
+
+    @Value("${app.guest.session.enabled:false}")
+    private boolean guestSessionEnabled;
+
+    static final String GUEST_TOKEN_HEADER = "X-Guest-Token";
+    static final String GUEST_STREAM_COOKIE = "yopago_guest_stream";
+    static final String GUEST_STREAM_PATH = "/api/guest/events";
+
     /**
      * 🔐 ACCEDER CON CÓDIGO DE GRUPO
      * 
      * Permite que un invitado "se autentique" usando el código del grupo.
-     * Guarda la información en sesión para requests posteriores.
+     * Devuelve un token firmado (guestToken) para requests posteriores.
      */
     @Operation(summary = "Acceder con código de grupo", description = "Permite que un invitado acceda usando el código del grupo")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Acceso concedido exitosamente"),
             @ApiResponse(responseCode = "400", description = "Código de grupo inválido o datos faltantes"),
+            @ApiResponse(responseCode = "429", description = "Demasiados intentos de acceso"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     @PostMapping("/access")
     public ResponseEntity<Map<String, Object>> accessWithGroupCode(
             @Parameter(description = "Datos de acceso del invitado") @RequestBody Map<String, String> request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
         String groupCode = request.get("groupCode");
         String guestName = request.get("guestName");
         String email = request.get("email");
         String phoneNumber = request.get("phoneNumber");
 
+        ResponseEntity<Map<String, Object>> throttled = throttle(httpRequest, groupCode);
+        if (throttled != null) {
+            return throttled;
+        }
+
         if (groupCode == null || guestName == null) {
             return ResponseEntity.badRequest()
                     .body(Map.of("success", false, "message", "groupCode y guestName son requeridos"));
@@ -98,7 +140,7 @@ public class GuestController {
         try {
             Map<String, Object> result = guestService.accessWithGroupCode(groupCode, guestName, email, phoneNumber);
 
-            storeGuestSession(session, result);
+            issueGuestToken(httpRequest, result);
 
             return ResponseEntity.ok(result);
 
@@ -112,18 +154,24 @@ public class GuestController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Acceso concedido exitosamente"),
             @ApiResponse(responseCode = "400", description = "Token inválido o datos faltantes"),
+            @ApiResponse(responseCode = "429", description = "Demasiados intentos de acceso"),
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     @PostMapping("/invitations/{token}/redeem")
     public ResponseEntity<Map<String, Object>> redeemInvitation(
             @Parameter(description = "Token de invitación") @PathVariable String token,
             @Parameter(description = "Datos del invitado") @RequestBody Map<String, String> request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
         String guestName = request.get("guestName");
         String email = request.get("email");
         String phoneNumber = request.get("phoneNumber");
 
+        ResponseEntity<Map<String, Object>> throttled = throttle(httpRequest, token);
+        if (throttled != null) {
+            return throttled;
+        }
+
         if (guestName == null || guestName.trim().isEmpty()) {
             return ResponseEntity.badRequest()
                     .body(Map.of("success", false, "message", "guestName es requerido"));
@@ -136,7 +184,7 @@ public class GuestController {
 
         try {
             Map<String, Object> result = guestService.accessWithInvitation(token, guestName, email, phoneNumber);
-            storeGuestSession(session, result);
+            issueGuestToken(httpRequest, result);
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -147,9 +195,10 @@ public class GuestController {
     @PostMapping("/profile/phone")
     public ResponseEntity<Map<String, Object>> updatePhoneNumber(
             @RequestBody Map<String, String> request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
@@ -160,19 +209,10 @@ public class GuestController {
                     .body(Map.of("success", false, "message", "phoneNumber es requerido"));
         }
 
-        Long memberId = (Long) session.getAttribute("guestMemberId");
+        Long memberId = guest.memberId();
 
         try {
             Map<String, Object> result = guestService.updateGuestPhone(memberId, phoneNumber);
-            Object memberObj = result.get("member");
-            if (memberObj instanceof Map) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> memberMap = (Map<String, Object>) memberObj;
-                Object phoneObj = memberMap.get("phoneNumber");
-                if (phoneObj != null) {
-                    session.setAttribute("guestPhone", phoneObj);
-                }
-            }
             return ResponseEntity.ok(result);
         } catch (Exception e) {
             return ResponseEntity.badRequest()
@@ -186,20 +226,27 @@ public class GuestController {
     @Operation(summary = "Obtener información del grupo", description = "Obtiene información detallada del grupo y sus miembros")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Información del grupo obtenida exitosamente"),
+            @ApiResponse(responseCode = "304", description = "El grupo no ha cambiado (If-None-Match)"),
             @ApiResponse(responseCode = "401", description = "Sesión de invitado inválida"),
             @ApiResponse(responseCode = "404", description = "Grupo no encontrado")
     })
     @GetMapping("/group")
-    public ResponseEntity<Map<String, Object>> getGroupInfo(HttpSession session) {
-        if (!isValidGuestSession(session)) {
+    public ResponseEntity<Map<String, Object>> getGroupInfo(HttpServletRequest httpRequest, WebRequest webRequest) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
+            Long groupId = guest.groupId();
+            if (groupVersionService.isNotModified(webRequest, groupId, "guest-group")) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .cacheControl(GroupVersionService.REVALIDATE)
+                        .build();
+            }
             Map<String, Object> result = guestService.getGroupInfo(groupId);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok().cacheControl(GroupVersionService.REVALIDATE).body(result);
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("success", false, "message", "Error: " + e.getMessage()));
@@ -212,19 +259,26 @@ public class GuestController {
     @Operation(summary = "Obtener gastos del grupo", description = "Obtiene todos los gastos del grupo")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Gastos obtenidos exitosamente"),
+            @ApiResponse(responseCode = "304", description = "El grupo no ha cambiado (If-None-Match)"),
             @ApiResponse(responseCode = "401", description = "Sesión de invitado inválida")
     })
     @GetMapping("/expenses")
-    public ResponseEntity<Map<String, Object>> getGroupExpenses(HttpSession session) {
-        if (!isValidGuestSession(session)) {
+    public ResponseEntity<Map<String, Object>> getGroupExpenses(HttpServletRequest httpRequest, WebRequest webRequest) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
+            Long groupId = guest.groupId();
+            if (groupVersionService.isNotModified(webRequest, groupId, "guest-expenses")) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .cacheControl(GroupVersionService.REVALIDATE)
+                        .build();
+            }
             Map<String, Object> result = guestService.getGroupExpenses(groupId);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok().cacheControl(GroupVersionService.REVALIDATE).body(result);
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("success", false, "message", "Error: " + e.getMessage()));
@@ -237,26 +291,88 @@ public class GuestController {
     @Operation(summary = "Obtener balances del grupo", description = "Calcula y obtiene los balances y liquidaciones del grupo")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Balances calculados exitosamente"),
+            @ApiResponse(responseCode = "304", description = "El grupo no ha cambiado (If-None-Match)"),
             @ApiResponse(responseCode = "401", description = "Sesión de invitado inválida"),
             @ApiResponse(responseCode = "404", description = "Grupo no encontrado")
     })
     @GetMapping("/settlement")
-    public ResponseEntity<Map<String, Object>> getSettlement(HttpSession session) {
-        if (!isValidGuestSession(session)) {
+    public ResponseEntity<Map<String, Object>> getSettlement(HttpServletRequest httpRequest, WebRequest webRequest) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
+            Long groupId = guest.groupId();
+            if (groupVersionService.isNotModified(webRequest, groupId, "guest-settlement")) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .cacheControl(GroupVersionService.REVALIDATE)
+                        .build();
+            }
             Map<String, Object> result = guestService.getSettlement(groupId);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok().cacheControl(GroupVersionService.REVALIDATE).body(result);
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body(Map.of("success", false, "message", "Error: " + e.getMessage()));
         }
     }
 
+    /**
+     * 📡 EVENTOS EN TIEMPO REAL (SSE)
+     * 
+     * Alternativa a STOMP para invitados: entrega los eventos del grupo sin JWT,
+     * evitando el polling de /expenses y /settlement.
+     */
+    @Operation(summary = "Suscribirse a eventos del grupo", description = "Stream SSE con los eventos en tiempo real del grupo del invitado")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Stream de eventos abierto"),
+            @ApiResponse(responseCode = "401", description = "Sesión de invitado inválida")
+    })
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamGroupEvents(HttpServletRequest httpRequest) {
+        GuestClaims guest = resolveStreamGuest(httpRequest);
+        if (guest == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        Long groupId = guest.groupId();
+        Long memberId = guest.memberId();
+        return ResponseEntity.ok(guestEventStreamService.subscribe(groupId, memberId));
+    }
+
+    /**
+     * 🎟️ TICKET PARA EL STREAM DE EVENTOS
+     * 
+     * EventSource no puede enviar la cabecera X-Guest-Token: este endpoint la
+     * canjea por una cookie HttpOnly limitada a /api/guest/events, que el
+     * navegador adjunta al abrir el stream (y al reconectar) sin que el token
+     * aparezca en la URL ni en los logs de acceso.
+     */
+    @Operation(summary = "Obtener ticket para el stream de eventos", description = "Canjea el token de invitado por una cookie HttpOnly válida solo para /api/guest/events")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "204", description = "Cookie del stream emitida"),
+            @ApiResponse(responseCode = "401", description = "Token de invitado inválido")
+    })
+    @PostMapping("/events/ticket")
+    public ResponseEntity<Void> issueStreamTicket(HttpServletRequest httpRequest) {
+        String token = httpRequest.getHeader(GUEST_TOKEN_HEADER);
+        GuestClaims guest = guestTokenService.verify(token).orElse(null);
+        if (guest == null) {
+            return ResponseEntity.status(401).build();
+        }
+
+        // La cookie caduca con el token: no amplía la validez del acceso
+        ResponseCookie cookie = ResponseCookie.from(GUEST_STREAM_COOKIE, token)
+                .httpOnly(true)
+                .secure(httpRequest.isSecure())
+                .sameSite("Strict")
+                .path(GUEST_STREAM_PATH)
+                .maxAge(Duration.between(Instant.now(), guest.expiresAt()))
+                .build();
+        return ResponseEntity.noContent().header(HttpHeaders.SET_COOKIE, cookie.toString()).build();
+    }
+
     /**
      * 💸 CREAR GASTO COMO INVITADO (con items y validación de email único)
      */
@@ -270,16 +386,17 @@ public class GuestController {
     @PostMapping("/expenses")
     public ResponseEntity<Map<String, Object>> createGuestExpense(
             @RequestBody GuestExpenseRequest request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
-            Long guestMemberId = (Long) session.getAttribute("guestMemberId");
+            Long groupId = guest.groupId();
+            Long guestMemberId = guest.memberId();
             
             // Validar que el miembro invitado existe
             Member guestMember = memberRepository.findById(guestMemberId)
@@ -407,72 +524,146 @@ public class GuestController {
     @Operation(summary = "Capturar recibo como invitado", description = "Permite a un invitado procesar un recibo y crear el gasto con OCR")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Recibo procesado y gasto creado"),
-            @ApiResponse(responseCode = "400", description = "Datos inválidos"),
+            @ApiResponse(responseCode = "400", description = "Datos inválidos o OCR sin resultados"),
             @ApiResponse(responseCode = "401", description = "Sesión de invitado inválida"),
-            @ApiResponse(responseCode = "500", description = "Error al procesar la factura")
+            @ApiResponse(responseCode = "500", description = "Error al procesar la factura"),
+            @ApiResponse(responseCode = "503", description = "Demasiados recibos en proceso o servicio de OCR no disponible")
     })
     @PostMapping("/expenses/process-receipt")
-    public ResponseEntity<Map<String, Object>> processReceipt(
+    public CompletableFuture<ResponseEntity<Map<String, Object>>> processReceipt(
             @RequestBody OcrExpenseRequest request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
-            return ResponseEntity.status(401)
-                    .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
+        GuestClaims guest = resolveGuest(httpRequest);
+        ResponseEntity<Map<String, Object>> rejected = prepareGuestReceipt(request, guest);
+        if (rejected != null) {
+            return CompletableFuture.completedFuture(rejected);
         }
 
-        if (request.getFileBase64() == null || request.getFileBase64().isEmpty()) {
-            return ResponseEntity.badRequest()
-                    .body(Map.of("success", false, "message", "Se requiere el archivo en Base64"));
+        // El hilo del servidor se libera mientras el trabajo se procesa en el pool de recibos
+        ReceiptJobService.ReceiptJob job;
+        try {
+            job = receiptJobService.submit(request, guestJobOwner(guest));
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.completedFuture(guestReceiptQueueFull());
         }
+        return job.completion().thenApply(finished -> {
+            if (finished.getStatus() == ReceiptJobService.Status.FAILED) {
+                if (finished.isUnusable()) {
+                    return ResponseEntity.badRequest()
+                            .body(Map.of("success", false, "message", String.valueOf(finished.getError())));
+                }
+                return ResponseEntity.status(finished.isRetryable() ? 503 : 500)
+                        .body(Map.of("success", false, "message",
+                                "Error al procesar la factura: " + finished.getError()));
+            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("expense", finished.getExpense());
+            response.put("ocrText", finished.getOcrText());
+            response.put("message", "Recibo procesado correctamente");
+            return ResponseEntity.ok(response);
+        });
+    }
 
-        try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
-            Long guestMemberId = (Long) session.getAttribute("guestMemberId");
+    /**
+     * 🧾 ENVIAR RECIBO EN SEGUNDO PLANO
+     */
+    @Operation(summary = "Enviar recibo a procesar en segundo plano como invitado", description = "Devuelve el id del trabajo; el resultado llega como evento group.receipt.completed")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "202", description = "Trabajo aceptado"),
+            @ApiResponse(responseCode = "400", description = "Datos inválidos"),
+            @ApiResponse(responseCode = "401", description = "Sesión de invitado inválida"),
+            @ApiResponse(responseCode = "503", description = "Demasiados recibos en proceso")
+    })
+    @PostMapping("/expenses/receipt-jobs")
+    public ResponseEntity<Map<String, Object>> submitReceiptJob(
+            @RequestBody OcrExpenseRequest request,
+            HttpServletRequest httpRequest) {
 
-            Long payerId = request.getPayerId() != null ? request.getPayerId() : guestMemberId;
-            if (payerId == null) {
-                throw new RuntimeException("No se pudo determinar el pagador del gasto");
-            }
+        GuestClaims guest = resolveGuest(httpRequest);
+        ResponseEntity<Map<String, Object>> rejected = prepareGuestReceipt(request, guest);
+        if (rejected != null) {
+            return rejected;
+        }
+        try {
+            ReceiptJobService.ReceiptJob job = receiptJobService.submit(request, guestJobOwner(guest));
+            Map<String, Object> response = new HashMap<>(job.toMap());
+            response.put("success", true);
+            return ResponseEntity.status(202).body(response);
+        } catch (RejectedExecutionException e) {
+            return guestReceiptQueueFull();
+        }
+    }
 
-            Member payer = memberRepository.findById(payerId)
-                    .orElseThrow(() -> new RuntimeException("Pagador no encontrado"));
+    /**
+     * 🔎 ESTADO DE UN TRABAJO DE RECIBO
+     */
+    @Operation(summary = "Consultar trabajo de recibo como invitado")
+    @ApiResponse(responseCode = "200", description = "Estado del trabajo")
+    @GetMapping("/expenses/receipt-jobs/{jobId}")
+    public ResponseEntity<Map<String, Object>> getReceiptJob(@PathVariable String jobId, HttpServletRequest httpRequest) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
+            return ResponseEntity.status(401)
+                    .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
+        }
+        ReceiptJobService.ReceiptJob job = receiptJobService.findJob(jobId, guestJobOwner(guest));
+        if (job == null) {
+            return ResponseEntity.status(404)
+                    .body(Map.of("success", false, "message", "Trabajo no encontrado"));
+        }
+        Map<String, Object> response = new HashMap<>(job.toMap());
+        response.put("success", true);
+        return ResponseEntity.ok(response);
+    }
 
-            if (!payer.belongsToGroup(groupId)) {
-                throw new RuntimeException("El pagador seleccionado no pertenece al grupo");
-            }
+    /**
+     * Valida la sesión y el pagador, y completa grupo/pagador en el request.
+     * Devuelve la respuesta de error o null si se puede procesar.
+     */
+    private ResponseEntity<Map<String, Object>> prepareGuestReceipt(OcrExpenseRequest request, GuestClaims guest) {
+        if (guest == null) {
+            return ResponseEntity.status(401)
+                    .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
+        }
 
-            request.setGroupId(groupId);
-            request.setPayerId(payerId);
+        if (request.getFileBase64() == null || request.getFileBase64().isEmpty()) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "Se requiere el archivo en Base64"));
+        }
 
-            OcrService.OcrResult ocrResult = ocrService.analyzeImageBase64(request.getFileBase64());
-            if (ocrResult == null || ocrResult.structured == null) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("success", false, "message", "El OCR no devolvió datos utilizables"));
-            }
+        Long groupId = guest.groupId();
+        Long guestMemberId = guest.memberId();
 
-            ExpenseDTO expenseDTO = expenseService.createExpenseDTOFromOcr(
-                    ocrResult.structured,
-                    payerId,
-                    groupId,
-                    request.getNote(),
-                    request.getCurrency(),
-                    request.getShares());
+        Long payerId = request.getPayerId() != null ? request.getPayerId() : guestMemberId;
+        if (payerId == null) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "Se requiere el identificador del pagador"));
+        }
+        Member payer = memberRepository.findById(payerId).orElse(null);
+        if (payer == null) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "Pagador no encontrado"));
+        }
+        if (!payer.belongsToGroup(groupId)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("success", false, "message", "El pagador seleccionado no pertenece al grupo"));
+        }
 
-            Expense saved = expenseService.createExpense(expenseDTO);
-            ExpenseResponseDTO responseDTO = expenseService.convertToResponseDTO(saved);
+        request.setGroupId(groupId);
+        request.setPayerId(payerId);
+        return null;
+    }
 
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("expense", responseDTO);
-            response.put("ocrText", ocrResult.text);
-            response.put("message", "Recibo procesado correctamente");
+    private String guestJobOwner(GuestClaims guest) {
+        return "guest:" + guest.memberId();
+    }
 
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
-            return ResponseEntity.internalServerError()
-                    .body(Map.of("success", false, "message", "Error al procesar la factura: " + e.getMessage()));
-        }
+    private ResponseEntity<Map<String, Object>> guestReceiptQueueFull() {
+        return ResponseEntity.status(503)
+                .body(Map.of("success", false, "message",
+                        "Hay demasiados recibos en proceso, intenta de nuevo en unos segundos"));
     }
 
     /**
@@ -481,8 +672,12 @@ public class GuestController {
     @Operation(summary = "Cerrar sesión de invitado", description = "Termina la sesión del invitado")
     @ApiResponse(responseCode = "200", description = "Sesión cerrada exitosamente")
     @PostMapping("/logout")
-    public ResponseEntity<Map<String, Object>> logout(HttpSession session) {
-        session.invalidate();
+    public ResponseEntity<Map<String, Object>> logout(HttpServletRequest httpRequest) {
+        // El token no tiene estado en el servidor: el cliente simplemente lo descarta
+        HttpSession session = httpRequest.getSession(false);
+        if (session != null) {
+            session.invalidate();
+        }
         return ResponseEntity.ok(Map.of("success", true, "message", "Sesión cerrada"));
     }
 
@@ -495,13 +690,14 @@ public class GuestController {
             @ApiResponse(responseCode = "401", description = "No hay sesión activa")
     })
     @GetMapping("/info")
-    public ResponseEntity<Map<String, Object>> getGuestInfo(HttpSession session) {
-        if (!isValidGuestSession(session)) {
+    public ResponseEntity<Map<String, Object>> getGuestInfo(HttpServletRequest httpRequest) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "No hay sesión de invitado activa"));
         }
 
-        Long memberId = (Long) session.getAttribute("guestMemberId");
+        Long memberId = guest.memberId();
 
         Map<String, Object> memberInfo;
         try {
@@ -519,8 +715,8 @@ public class GuestController {
         Map<String, Object> info = new HashMap<>();
         info.put("success", true);
         info.put("isGuest", true);
-        info.put("guestName", session.getAttribute("guestName"));
-        info.put("groupId", session.getAttribute("guestGroupId"));
+        info.put("guestName", memberInfo.get("name"));
+        info.put("groupId", guest.groupId());
         info.put("memberId", memberId);
         info.put("member", memberInfo);
         info.put("phoneNumber", memberInfo.get("phoneNumber"));
@@ -615,17 +811,18 @@ public class GuestController {
     public ResponseEntity<?> reassignExpense(
             @Parameter(description = "ID del gasto a reasignar") @PathVariable Long expenseId,
             @Parameter(description = "Datos de reasignación") @RequestBody Map<String, Long> request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401).body(Map.of(
                     "error", "No autorizado",
                     "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
-            Long memberId = (Long) session.getAttribute("guestMemberId");
+            Long groupId = guest.groupId();
+            Long memberId = guest.memberId();
             Long newPayerId = request.get("newPayerId");
 
             if (newPayerId == null) {
@@ -659,16 +856,17 @@ public class GuestController {
     public ResponseEntity<?> divideExpense(
             @Parameter(description = "ID del gasto a dividir") @PathVariable Long expenseId,
             @Parameter(description = "Datos de división del gasto") @RequestBody Map<String, Object> request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401).body(Map.of(
                     "error", "No autorizado",
                     "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
+            Long groupId = guest.groupId();
             @SuppressWarnings("unchecked")
             List<Long> memberIds = (List<Long>) request.get("memberIds");
             String divisionType = (String) request.get("divisionType");
@@ -702,15 +900,16 @@ public class GuestController {
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     @GetMapping("/permissions")
-    public ResponseEntity<Map<String, Object>> getPermissions(HttpSession session) {
-        if (!isValidGuestSession(session)) {
+    public ResponseEntity<Map<String, Object>> getPermissions(HttpServletRequest httpRequest) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
-            Long memberId = (Long) session.getAttribute("guestMemberId");
+            Long groupId = guest.groupId();
+            Long memberId = guest.memberId();
 
             Map<String, Object> result = guestService.getPermissions(memberId, groupId);
             return ResponseEntity.ok(result);
@@ -731,15 +930,16 @@ public class GuestController {
             @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     @GetMapping("/payments")
-    public ResponseEntity<Map<String, Object>> getGroupPayments(HttpSession session) {
+    public ResponseEntity<Map<String, Object>> getGroupPayments(HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
+            Long groupId = guest.groupId();
             Map<String, Object> paymentsInfo = guestService.getGroupPayments(groupId);
             
             return ResponseEntity.ok(paymentsInfo);
@@ -764,16 +964,17 @@ public class GuestController {
     @PostMapping("/payments")
     public ResponseEntity<Map<String, Object>> registerPayment(
             @RequestBody GuestPaymentRequest request,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long groupId = (Long) session.getAttribute("guestGroupId");
-            Long fromMemberId = (Long) session.getAttribute("guestMemberId");
+            Long groupId = guest.groupId();
+            Long fromMemberId = guest.memberId();
             Long toMemberId = request.getToMemberId();
             Double amount = request.getAmount();
             String note = request.getNote();
@@ -814,16 +1015,17 @@ public class GuestController {
     @PutMapping("/payments/{paymentId}/confirm")
     public ResponseEntity<Map<String, Object>> confirmPayment(
             @Parameter(description = "ID del pago a confirmar") @PathVariable Long paymentId,
-            HttpSession session) {
+            HttpServletRequest httpRequest) {
 
-        if (!isValidGuestSession(session)) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest == null) {
             return ResponseEntity.status(401)
                     .body(Map.of("success", false, "message", "Sesión de invitado inválida"));
         }
 
         try {
-            Long guestMemberId = (Long) session.getAttribute("guestMemberId");
-            Long groupId = (Long) session.getAttribute("guestGroupId");
+            Long guestMemberId = guest.memberId();
+            Long groupId = guest.groupId();
             
             Map<String, Object> result = guestService.confirmPayment(paymentId, guestMemberId, groupId);
             return ResponseEntity.ok(result);
@@ -836,55 +1038,78 @@ public class GuestController {
     }
 
     /**
-     * Validar si la sesión de invitado es válida
+     * Limita los intentos de acceso por IP y por código antes de consultar la
+     * base de datos. Devuelve la respuesta 429 o null si se puede continuar.
      */
-    private boolean isValidGuestSession(HttpSession session) {
-        return session.getAttribute("isGuest") != null &&
-                (Boolean) session.getAttribute("isGuest") &&
-                session.getAttribute("guestGroupId") != null &&
-                session.getAttribute("guestMemberId") != null;
+    private ResponseEntity<Map<String, Object>> throttle(HttpServletRequest httpRequest, String code) {
+        long retryAfterSeconds = guestAccessRateLimiter.tryAcquire(httpRequest.getRemoteAddr(), code);
+        if (retryAfterSeconds == 0) {
+            return null;
+        }
+        return ResponseEntity.status(429)
+                .header("Retry-After", String.valueOf(retryAfterSeconds))
+                .body(Map.of("success", false, "message",
+                        "Demasiados intentos de acceso, intenta de nuevo en unos segundos"));
     }
 
-    private void storeGuestSession(HttpSession session, Map<String, Object> result) {
-        if (session == null || result == null) {
-            return;
+    /**
+     * Identifica al invitado: primero por el token firmado (cabecera
+     * X-Guest-Token) y, si no hay token, por la sesión HTTP que hayan abierto clientes anteriores. Devuelve null si no es
+     * un invitado válido. El stream de eventos acepta además la cookie emitida
+     * por /events/ticket (ver {@link #resolveStreamGuest}).
+     */
+    private GuestClaims resolveGuest(HttpServletRequest httpRequest) {
+        // Solo por cabecera: en la query string acabaría en logs de acceso y proxies
+        String token = httpRequest.getHeader(GUEST_TOKEN_HEADER);
+        if (token != null && !token.isBlank()) {
+            return guestTokenService.verify(token).orElse(null);
         }
 
-        Object groupObj = result.get("group");
-        Object memberObj = result.get("member");
-
-        if (!(groupObj instanceof Map) || !(memberObj instanceof Map)) {
-            return;
+        HttpSession session = httpRequest.getSession(false);
+        if (session == null || !Boolean.TRUE.equals(session.getAttribute("isGuest"))
+                || !(session.getAttribute("guestGroupId") instanceof Long groupId)
+                || !(session.getAttribute("guestMemberId") instanceof Long memberId)) {
+            return null;
         }
+        return new GuestClaims(groupId, memberId, null);
+    }
 
-        Map<?, ?> group = (Map<?, ?>) groupObj;
-        Map<?, ?> member = (Map<?, ?>) memberObj;
-
-        Object groupId = group.get("id");
-        Object memberId = member.get("id");
-        Object name = member.get("name");
-
-        if (groupId instanceof Number) {
-            session.setAttribute("guestGroupId", ((Number) groupId).longValue());
-        } else if (groupId != null) {
-            session.setAttribute("guestGroupId", groupId);
+    /**
+     * Como {@link #resolveGuest}, pero para /events acepta también la cookie del
+     * stream, porque EventSource no puede enviar cabeceras. Solo se lee aquí:
+     * el resto de endpoints siguen exigiendo la cabecera.
+     */
+    private GuestClaims resolveStreamGuest(HttpServletRequest httpRequest) {
+        GuestClaims guest = resolveGuest(httpRequest);
+        if (guest != null) {
+            return guest;
         }
+        Cookie cookie = WebUtils.getCookie(httpRequest, GUEST_STREAM_COOKIE);
+        return cookie == null ? null : guestTokenService.verify(cookie.getValue()).orElse(null);
+    }
 
-        if (memberId instanceof Number) {
-            session.setAttribute("guestMemberId", ((Number) memberId).longValue());
-        } else if (memberId != null) {
-            session.setAttribute("guestMemberId", memberId);
+    /**
+     * Añade el token de invitado a la respuesta de acceso y, solo si está
+     * habilitado, guarda también la sesión HTTP
+     */
+    private void issueGuestToken(HttpServletRequest httpRequest, Map<String, Object> result) {
+        if (result == null || !(result.get("group") instanceof Map<?, ?> group)
+                || !(result.get("member") instanceof Map<?, ?> member)
+                || !(group.get("id") instanceof Number groupId)
+                || !(member.get("id") instanceof Number memberId)) {
+            return;
         }
 
-        if (name != null) {
-            session.setAttribute("guestName", name);
-        }
+        GuestTokenService.IssuedToken issued = guestTokenService.issue(groupId.longValue(), memberId.longValue());
+        result.put("guestToken", issued.token());
+        result.put("guestTokenExpiresAt", issued.expiresAt().toString());
 
-        Object phone = member.get("phoneNumber");
-        if (phone != null) {
-            session.setAttribute("guestPhone", phone);
+        if (guestSessionEnabled) {
+            HttpSession session = httpRequest.getSession(true);
+            session.setAttribute("guestGroupId", groupId.longValue());
+            session.setAttribute("guestMemberId", memberId.longValue());
+            session.setAttribute("guestName", member.get("name"));
+            session.setAttribute("isGuest", true);
         }
-
-        session.setAttribute("isGuest", true);
     }
-}
\ No newline at end of file
+}
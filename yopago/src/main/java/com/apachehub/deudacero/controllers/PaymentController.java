@@ -1,11 +1,14 @@
 package com.apachehub.deudacero.controllers;
 
+import com.apachehub.deudacero.services.GroupVersionService;
 import com.apachehub.deudacero.services.PaymentService;
 import com.apachehub.deudacero.entities.Payment;
 import com.apachehub.deudacero.dto.PaymentResponseDTO;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 import java.util.Map;
@@ -31,6 +34,9 @@ public class PaymentController {
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private GroupVersionService groupVersionService;
+
     /**
      * 💸 Registrar un pago entre miembros
      */
@@ -125,14 +131,20 @@ public class PaymentController {
      */
     @Operation(summary = "Balance actualizado", description = "Obtiene el balance del grupo considerando pagos realizados")
     @ApiResponse(responseCode = "200", description = "Balance calculado exitosamente")
+    @ApiResponse(responseCode = "304", description = "El grupo no ha cambiado (If-None-Match)")
     @GetMapping("/balance/{groupId}")
     public ResponseEntity<Map<String, Object>> getBalanceWithPayments(
-            @Parameter(description = "ID del grupo") @PathVariable Long groupId) {
+            @Parameter(description = "ID del grupo") @PathVariable Long groupId, WebRequest webRequest) {
 
         try {
+            if (groupVersionService.isNotModified(webRequest, groupId, "balance")) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                        .cacheControl(GroupVersionService.REVALIDATE)
+                        .build();
+            }
             Map<String, Object> balance = paymentService.getBalanceWithPayments(groupId);
 
-            return ResponseEntity.ok(Map.of(
+            return ResponseEntity.ok().cacheControl(GroupVersionService.REVALIDATE).body(Map.of(
                     "success", true,
                     "balance", balance));
 
@@ -0,0 +1,47 @@
+package com.apachehub.deudacero.dto;
+
+import java.time.LocalDateTime;
+
+import com.apachehub.deudacero.utils.MathUtils;
+
+/**
+ * Fila del listado "mis grupos": datos del grupo y agregados calculados en la
+ * misma consulta (miembros, gastos, total y los importes del miembro que
+ * consulta), sin cargar las colecciones del grupo.
+ */
+public record GroupDashboardRow(
+        Long id,
+        String name,
+        String description,
+        String code,
+        Boolean isActive,
+        LocalDateTime createdAt,
+        Long createdById,
+        String createdByName,
+        String createdByEmail,
+        Long memberCount,
+        Long expenseCount,
+        Double totalAmount,
+        Long viewerMembership,
+        Double viewerPaid,
+        Double viewerOwed,
+        Double viewerPaymentsSent,
+        Double viewerPaymentsReceived) {
+
+    public boolean viewerIsMember() {
+        return viewerMembership != null && viewerMembership > 0;
+    }
+
+    /**
+     * Balance neto del miembro: lo que pagó menos su parte de los gastos,
+     * ajustado con los pagos confirmados (mismo criterio que los detalles)
+     */
+    public double viewerBalance() {
+        return MathUtils.roundToTwoDecimals(value(viewerPaid) - value(viewerOwed)
+                + value(viewerPaymentsSent) - value(viewerPaymentsReceived));
+    }
+
+    private static double value(Double amount) {
+        return amount != null ? amount : 0.0;
+    }
+}
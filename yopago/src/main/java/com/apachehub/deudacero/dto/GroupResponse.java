@@ -6,6 +6,7 @@ public class GroupResponse {
     private Long groupId;
     private String joinCode;
     private String qrCodeBase64;
+    private String qrCodeUrl;
     private String name;
     private String description;
     private LocalDateTime createdAt;
@@ -35,6 +36,14 @@ public class GroupResponse {
         this.qrCodeBase64 = qrCodeBase64;
     }
 
+    public String getQrCodeUrl() {
+        return qrCodeUrl;
+    }
+
+    public void setQrCodeUrl(String qrCodeUrl) {
+        this.qrCodeUrl = qrCodeUrl;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,26 @@
+package com.apachehub.deudacero.dto;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * Versión de los datos de un grupo. Cambia con cada escritura de gastos, pagos
+ * o miembros, así que sirve como validador HTTP (ETag/Last-Modified) de las
+ * vistas calculadas del grupo.
+ */
+public record GroupVersion(Long groupId, Long version, LocalDateTime updatedAt) {
+
+    /**
+     * ETag débil por recurso: el JSON es equivalente, no idéntico byte a byte
+     */
+    public String etag(String resource) {
+        return "W/\"g" + groupId + "-v" + (version != null ? version : 0L) + "-" + resource + "\"";
+    }
+
+    /**
+     * Milisegundos de la última escritura, o -1 si no se conoce
+     */
+    public long lastModified() {
+        return updatedAt != null ? updatedAt.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1L;
+    }
+}
@@ -0,0 +1,26 @@
+package com.apachehub.deudacero.dto;
+
+import java.util.List;
+import lombok.Data;
+
+@Data
+public class ReceiptImportRequest {
+    private Long groupId;
+    private Long payerId;
+    private String currency;
+    private List<ExpenseDTO.ShareDTO> shares;
+    private List<Receipt> receipts;
+
+    /**
+     * Recibo individual; payerId, currency y note sobrescriben los valores
+     * generales de la importación
+     */
+    @Data
+    public static class Receipt {
+        private String fileBase64;
+        private String fileName;
+        private Long payerId;
+        private String currency;
+        private String note;
+    }
+}
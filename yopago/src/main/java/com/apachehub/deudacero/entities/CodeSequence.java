@@ -0,0 +1,26 @@
+package com.apachehub.deudacero.entities;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Secuencia por nombre de la que CodeAllocator reserva bloques de valores para
+ * generar códigos de grupo y tokens de invitación sin consultar si ya existen.
+ */
+@Entity
+@Table(name = "code_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CodeSequence {
+
+    @Id
+    @Column(name = "name", length = 50)
+    private String name;
+
+    /** Primer valor todavía no reservado por ninguna instancia */
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
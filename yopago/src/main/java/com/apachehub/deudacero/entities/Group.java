@@ -3,6 +3,7 @@ package com.apachehub.deudacero.entities;
 
 import jakarta.persistence.*;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
@@ -22,6 +23,7 @@ public class Group {
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     private String name;
+    @Column(unique = true)
     private String code;
     private String description;
 
@@ -36,9 +38,20 @@ public class Group {
     @JoinColumn(name = "created_by")
     private Member createdBy;
 
+    // 🔖 Versión de los datos del grupo (gastos, pagos y miembros). Solo la
+    // incrementa GroupRepository.bumpVersion, nunca el guardado de la entidad
+    @JsonIgnore
+    @Column(name = "data_version", updatable = false)
+    private Long dataVersion = 0L;
+
+    @JsonIgnore
+    @Column(name = "data_updated_at", updatable = false)
+    private LocalDateTime dataUpdatedAt;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
+        dataUpdatedAt = createdAt;
     }
 
     @ManyToMany(fetch = FetchType.EAGER)
@@ -96,4 +109,11 @@ public class Group {
 
         return this.members.stream().anyMatch(m -> m != null && memberId.equals(m.getId()));
     }
-}
\ No newline at end of file
+
+    // Un grupo desactivado está pendiente de eliminación: no admite cambios y
+    // no se muestra
+    @JsonIgnore
+    public boolean isPendingDeletion() {
+        return Boolean.FALSE.equals(isActive);
+    }
+}
@@ -6,7 +6,9 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 @Entity
-@Table(name = "group_invitations")
+@Table(name = "group_invitations", indexes = {
+        @Index(name = "idx_group_invitations_status_expires", columnList = "status, expires_at")
+})
 @Data
 @NoArgsConstructor
 public class GroupInvitation {
@@ -53,6 +55,14 @@ public class GroupInvitation {
         return expiresAt != null && expiresAt.isBefore(LocalDateTime.now());
     }
 
+    /**
+     * Estado a mostrar: una invitación pendiente ya vencida se presenta como
+     * expirada aunque el barrido todavía no la haya actualizado en la tabla
+     */
+    public GroupInvitationStatus effectiveStatus() {
+        return status == GroupInvitationStatus.PENDING && isExpired() ? GroupInvitationStatus.EXPIRED : status;
+    }
+
     public boolean isActive() {
         return status == GroupInvitationStatus.PENDING && !isExpired() && revokedAt == null;
     }
@@ -0,0 +1,40 @@
+package com.apachehub.deudacero.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Resultado de OCR ya calculado, indexado por el hash SHA-256 de los bytes de
+ * la imagen, para no volver a llamar a vision-ia con el mismo recibo.
+ */
+@Entity
+@Table(name = "ocr_result_cache")
+@Data
+@NoArgsConstructor
+public class OcrResultCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content_hash", nullable = false, unique = true, length = 64)
+    private String contentHash;
+
+    @Column(name = "text", columnDefinition = "TEXT")
+    private String text;
+
+    @Column(name = "structured_json", columnDefinition = "TEXT")
+    private String structuredJson;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.apachehub.deudacero.entities;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Registro pendiente en la outbox: el endpoint lo guarda y un worker en segundo
+ * plano crea el usuario en Keycloak y el Member. La contraseña se guarda
+ * cifrada y se borra en cuanto el registro termina.
+ */
+@Entity
+@Table(name = "registration_outbox", indexes = {
+        @Index(name = "idx_registration_outbox_due", columnList = "status, next_attempt_at")
+})
+@Data
+@NoArgsConstructor
+public class RegistrationRequest {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "username", nullable = false, unique = true, length = 50)
+    private String username;
+
+    @Column(name = "email", nullable = false)
+    private String email;
+
+    @Column(name = "first_name", length = 50)
+    private String firstName;
+
+    @Column(name = "last_name", length = 50)
+    private String lastName;
+
+    @Column(name = "password_ciphertext", length = 1024)
+    private String passwordCiphertext;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private RegistrationStatus status = RegistrationStatus.PENDING;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "keycloak_user_id", length = 64)
+    private String keycloakUserId;
+
+    // El usuario de Keycloak ya existía (409) y se adoptó: nunca se borra al compensar
+    @Column(name = "keycloak_user_adopted")
+    private Boolean keycloakUserAdopted;
+
+    @Column(name = "member_id")
+    private Long memberId;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "completed_at")
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (nextAttemptAt == null) {
+            nextAttemptAt = createdAt;
+        }
+    }
+}
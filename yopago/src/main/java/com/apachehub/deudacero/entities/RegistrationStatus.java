@@ -0,0 +1,8 @@
+package com.apachehub.deudacero.entities;
+
+public enum RegistrationStatus {
+    PENDING,
+    PROCESSING,
+    COMPLETED,
+    FAILED
+}
@@ -0,0 +1,20 @@
+package com.apachehub.deudacero.repositories;
+
+import com.apachehub.deudacero.entities.CodeSequence;
+import jakarta.persistence.LockModeType;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CodeSequenceRepository extends JpaRepository<CodeSequence, String> {
+
+    /**
+     * Lee la secuencia bloqueando la fila hasta el fin de la transacción, para
+     * que dos réplicas no reserven el mismo bloque
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM CodeSequence s WHERE s.name = :name")
+    Optional<CodeSequence> findForUpdate(@Param("name") String name);
+}
@@ -2,10 +2,17 @@ package com.apachehub.deudacero.repositories;
 
 import com.apachehub.deudacero.entities.ExpenseItem;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
 @Repository
 public interface ExpenseItemRepository extends JpaRepository<ExpenseItem, Long> {
     List<ExpenseItem> findByExpenseId(Long expenseId);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("DELETE FROM ExpenseItem i WHERE i.expense.id IN :expenseIds")
+    int bulkDeleteByExpenseIds(@Param("expenseIds") List<Long> expenseIds);
+}
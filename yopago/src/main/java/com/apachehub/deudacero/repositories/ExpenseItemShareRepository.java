@@ -2,6 +2,9 @@ package com.apachehub.deudacero.repositories;
 
 import com.apachehub.deudacero.entities.ExpenseItemShare;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
 
@@ -9,4 +12,9 @@ import java.util.List;
 public interface ExpenseItemShareRepository extends JpaRepository<ExpenseItemShare, Long> {
     List<ExpenseItemShare> findByExpenseItemId(Long expenseItemId);
     List<ExpenseItemShare> findByMemberId(Long memberId);
-}
\ No newline at end of file
+
+    @Modifying
+    @Query("DELETE FROM ExpenseItemShare s WHERE s.expenseItem.id IN "
+            + "(SELECT i.id FROM ExpenseItem i WHERE i.expense.id IN :expenseIds)")
+    int bulkDeleteByExpenseIds(@Param("expenseIds") List<Long> expenseIds);
+}
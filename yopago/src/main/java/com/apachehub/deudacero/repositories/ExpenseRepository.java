@@ -3,6 +3,8 @@ package com.apachehub.deudacero.repositories;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 
 import com.apachehub.deudacero.entities.Expense;
 
@@ -30,4 +32,12 @@ public interface ExpenseRepository extends JpaRepository<Expense, Long> {
       boolean existsShareByGroupIdAndMemberId(
                   @org.springframework.data.repository.query.Param("groupId") Long groupId,
                   @org.springframework.data.repository.query.Param("memberId") Long memberId);
+
+      @org.springframework.data.jpa.repository.Query("SELECT e.id FROM Expense e WHERE e.group.id = :groupId ORDER BY e.id")
+      List<Long> findIdsByGroupId(@org.springframework.data.repository.query.Param("groupId") Long groupId,
+                  Pageable pageable);
+
+      @Modifying
+      @org.springframework.data.jpa.repository.Query("DELETE FROM Expense e WHERE e.id IN :ids")
+      int bulkDeleteByIds(@org.springframework.data.repository.query.Param("ids") List<Long> ids);
 }
@@ -2,8 +2,16 @@ package com.apachehub.deudacero.repositories;
 
 import com.apachehub.deudacero.entities.ExpenseShare;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import java.util.List;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface ExpenseShareRepository extends JpaRepository<ExpenseShare, Long> {
+
+    @Modifying
+    @Query("DELETE FROM ExpenseShare s WHERE s.expense.id IN :expenseIds")
+    int bulkDeleteByExpenseIds(@Param("expenseIds") List<Long> expenseIds);
 }
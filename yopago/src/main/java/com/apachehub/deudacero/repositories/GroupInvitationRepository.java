@@ -4,16 +4,17 @@ import com.apachehub.deudacero.entities.GroupInvitation;
 import com.apachehub.deudacero.entities.GroupInvitationStatus;
 import java.util.List;
 import java.util.Optional;
+import java.time.LocalDateTime;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 public interface GroupInvitationRepository extends JpaRepository<GroupInvitation, Long> {
 
     Optional<GroupInvitation> findByToken(String token);
 
-    boolean existsByToken(String token);
-
     List<GroupInvitation> findByGroupIdOrderByCreatedAtDesc(Long groupId);
 
     @Query("SELECT gi FROM GroupInvitation gi WHERE gi.group.id = :groupId AND LOWER(gi.email) = LOWER(:email) "
@@ -21,4 +22,19 @@ public interface GroupInvitationRepository extends JpaRepository<GroupInvitation
     List<GroupInvitation> findActiveByGroupAndEmail(@Param("groupId") Long groupId,
             @Param("email") String email,
             @Param("statuses") List<GroupInvitationStatus> statuses);
+
+    /**
+     * Marca como expiradas en bloque las invitaciones pendientes vencidas; usa
+     * el índice (status, expires_at)
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE GroupInvitation gi SET gi.status = com.apachehub.deudacero.entities.GroupInvitationStatus.EXPIRED "
+            + "WHERE gi.status = com.apachehub.deudacero.entities.GroupInvitationStatus.PENDING "
+            + "AND gi.expiresAt < :now")
+    int expirePending(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("DELETE FROM GroupInvitation gi WHERE gi.group.id = :groupId")
+    int bulkDeleteByGroupId(@Param("groupId") Long groupId);
 }
@@ -1,11 +1,17 @@
 package com.apachehub.deudacero.repositories;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import com.apachehub.deudacero.dto.GroupDashboardRow;
+import com.apachehub.deudacero.dto.GroupVersion;
 import com.apachehub.deudacero.entities.Group;
 
 public interface GroupRepository extends JpaRepository<Group, Long> {
@@ -16,5 +22,85 @@ public interface GroupRepository extends JpaRepository<Group, Long> {
 
     List<Group> findByCreatedById(Long memberId);
 
+    @Query("SELECT DISTINCT g.id FROM Group g LEFT JOIN g.members m WHERE m.id = :memberId OR g.createdBy.id = :memberId")
+    List<Long> findGroupIdsForMember(@Param("memberId") Long memberId);
+
+    /**
+     * Pertenencia (o autoría) del miembro en el grupo sin cargar la entidad
+     */
+    @Query("SELECT COUNT(g) > 0 FROM Group g LEFT JOIN g.members m "
+            + "WHERE g.id = :groupId AND (g.createdBy.id = :memberId OR m.id = :memberId)")
+    boolean isMemberOrOwner(@Param("groupId") Long groupId, @Param("memberId") Long memberId);
+
     Group findByCodeIgnoreCase(String code);
+
+    /**
+     * Grupos en los que participa o que creó el miembro, con sus agregados y los
+     * importes del miembro en una sola consulta (sin cargar miembros ni gastos).
+     * Lo que le toca pagar sale de las partes de los gastos que siguen
+     * existiendo, igual que el balance de los detalles del grupo
+     */
+    @Query("""
+            SELECT new com.apachehub.deudacero.dto.GroupDashboardRow(
+                g.id, g.name, g.description, g.code, g.isActive, g.createdAt,
+                c.id, c.name, c.email,
+                (SELECT COUNT(m) FROM Group g2 JOIN g2.members m WHERE g2.id = g.id),
+                (SELECT COUNT(e) FROM Expense e WHERE e.group.id = g.id),
+                COALESCE((SELECT SUM(e.amount) FROM Expense e WHERE e.group.id = g.id), 0.0),
+                (SELECT COUNT(m) FROM Group g3 JOIN g3.members m WHERE g3.id = g.id AND m.id = :memberId),
+                COALESCE((SELECT SUM(e.amount) FROM Expense e WHERE e.group.id = g.id AND e.payer.id = :memberId), 0.0),
+                COALESCE((SELECT SUM(s.amount) FROM ExpenseShare s WHERE s.expense.group.id = g.id AND s.member.id = :memberId), 0.0),
+                COALESCE((SELECT SUM(p.amount) FROM Payment p WHERE p.group.id = g.id AND p.confirmed = true AND p.fromMember.id = :memberId), 0.0),
+                COALESCE((SELECT SUM(p.amount) FROM Payment p WHERE p.group.id = g.id AND p.confirmed = true AND p.toMember.id = :memberId), 0.0))
+            FROM Group g LEFT JOIN g.createdBy c
+            WHERE (g.isActive IS NULL OR g.isActive = true)
+              AND (c.id = :memberId
+               OR EXISTS (SELECT 1 FROM Group g4 JOIN g4.members m WHERE g4.id = g.id AND m.id = :memberId))
+            ORDER BY g.createdAt DESC, g.id DESC
+            """)
+    List<GroupDashboardRow> findDashboardForMember(@Param("memberId") Long memberId);
+
+    /**
+     * Versión de los datos del grupo sin cargar la entidad (ni sus miembros)
+     */
+    @Query("SELECT new com.apachehub.deudacero.dto.GroupVersion(g.id, g.dataVersion, g.dataUpdatedAt) "
+            + "FROM Group g WHERE g.id = :groupId")
+    Optional<GroupVersion> findVersion(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE Group g SET g.dataVersion = COALESCE(g.dataVersion, 0) + 1, g.dataUpdatedAt = :now "
+            + "WHERE g.id = :groupId")
+    int bumpVersion(@Param("groupId") Long groupId, @Param("now") LocalDateTime now);
+
+    @Query("SELECT m.id FROM Group g JOIN g.members m WHERE g.id = :groupId")
+    List<Long> findMemberIds(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Query("UPDATE Group g SET g.isActive = false WHERE g.id = :groupId")
+    int deactivate(@Param("groupId") Long groupId);
+
+    /**
+     * Grupos desactivados cuya eliminación no ha terminado
+     */
+    List<Group> findByIsActiveFalse();
+
+    /**
+     * Bloquea la fila del grupo hasta el fin de la transacción. FOR UPDATE
+     * choca con el FOR KEY SHARE que toma la inserción de un gasto o pago que
+     * referencia al grupo, así que nadie puede añadirle filas mientras se borra
+     */
+    @Query(value = "SELECT id FROM groups WHERE id = :groupId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockForDeletion(@Param("groupId") Long groupId);
+
+    /**
+     * Borra las filas de la tabla pivote group_members del grupo
+     */
+    @Modifying
+    @Query(value = "DELETE FROM group_members WHERE group_id = :groupId", nativeQuery = true)
+    int deleteMemberships(@Param("groupId") Long groupId);
+
+    @Modifying
+    @Query("DELETE FROM Group g WHERE g.id = :groupId")
+    int bulkDeleteById(@Param("groupId") Long groupId);
 }
@@ -2,6 +2,9 @@ package com.apachehub.deudacero.repositories;
 
 import com.apachehub.deudacero.entities.GroupShare;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,4 +14,8 @@ public interface GroupShareRepository extends JpaRepository<GroupShare, Long> {
     List<GroupShare> findByGroupId(Long groupId);
 
     GroupShare findByGroupIdAndMemberId(Long groupId, Long memberId);
+
+    @Modifying
+    @Query("DELETE FROM GroupShare s WHERE s.group.id = :groupId")
+    int bulkDeleteByGroupId(@Param("groupId") Long groupId);
 }
@@ -1,11 +1,15 @@
 package com.apachehub.deudacero.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.apachehub.deudacero.entities.Member;
 
@@ -41,4 +45,10 @@ public interface MemberRepository extends JpaRepository<Member, Long> {
 
        @Query("SELECT m FROM Member m JOIN m.groups g WHERE LOWER(m.email) = LOWER(:email) AND g.id = :groupId")
        Optional<Member> findByEmailAndGroupId(@Param("email") String email, @Param("groupId") Long groupId);
+
+       // Actualización en bloque del último login (nunca retrocede la fecha)
+       @Modifying
+       @Transactional
+       @Query("UPDATE Member m SET m.lastLogin = :lastLogin WHERE m.id IN :ids AND (m.lastLogin IS NULL OR m.lastLogin < :lastLogin)")
+       int updateLastLogin(@Param("ids") Collection<Long> ids, @Param("lastLogin") LocalDateTime lastLogin);
 }
@@ -0,0 +1,20 @@
+package com.apachehub.deudacero.repositories;
+
+import com.apachehub.deudacero.entities.OcrResultCacheEntry;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface OcrResultCacheRepository extends JpaRepository<OcrResultCacheEntry, Long> {
+
+    Optional<OcrResultCacheEntry> findByContentHash(String contentHash);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OcrResultCacheEntry e WHERE e.createdAt < :limit")
+    int deleteCreatedBefore(@Param("limit") LocalDateTime limit);
+}
@@ -2,6 +2,8 @@ package com.apachehub.deudacero.repositories;
 
 import com.apachehub.deudacero.entities.Payment;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -60,4 +62,14 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
          * Eliminar todos los pagos asociados a un grupo.
          */
         void deleteByGroupId(Long groupId);
-}
\ No newline at end of file
+
+        /**
+         * Ids de los pagos del grupo, por páginas, para borrarlos por lotes
+         */
+        @Query("SELECT p.id FROM Payment p WHERE p.group.id = :groupId ORDER BY p.id")
+        List<Long> findIdsByGroupId(@Param("groupId") Long groupId, Pageable pageable);
+
+        @Modifying
+        @Query("DELETE FROM Payment p WHERE p.id IN :ids")
+        int bulkDeleteByIds(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,41 @@
+package com.apachehub.deudacero.repositories;
+
+import com.apachehub.deudacero.entities.RegistrationRequest;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+public interface RegistrationRequestRepository extends JpaRepository<RegistrationRequest, String> {
+
+    Optional<RegistrationRequest> findByUsername(String username);
+
+    /**
+     * Registros listos para procesar: pendientes cuyo reintento ya venció o en
+     * proceso cuyo bloqueo caducó (el worker que lo tenía se cayó)
+     */
+    @Query("SELECT r.id FROM RegistrationRequest r WHERE "
+            + "(r.status = com.apachehub.deudacero.entities.RegistrationStatus.PENDING AND r.nextAttemptAt <= :now) "
+            + "OR (r.status = com.apachehub.deudacero.entities.RegistrationStatus.PROCESSING AND r.lockedUntil < :now) "
+            + "ORDER BY r.createdAt")
+    List<String> findDueIds(@Param("now") LocalDateTime now, Pageable pageable);
+
+    /**
+     * Reclama el registro de forma atómica; devuelve 0 si otro worker o réplica
+     * ya lo tiene
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE RegistrationRequest r SET "
+            + "r.status = com.apachehub.deudacero.entities.RegistrationStatus.PROCESSING, "
+            + "r.lockedUntil = :lockedUntil, r.attempts = r.attempts + 1 "
+            + "WHERE r.id = :id AND ("
+            + "(r.status = com.apachehub.deudacero.entities.RegistrationStatus.PENDING AND r.nextAttemptAt <= :now) "
+            + "OR (r.status = com.apachehub.deudacero.entities.RegistrationStatus.PROCESSING AND r.lockedUntil < :now))")
+    int claim(@Param("id") String id, @Param("now") LocalDateTime now, @Param("lockedUntil") LocalDateTime lockedUntil);
+}
@@ -8,14 +8,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
+import java.net.http.HttpClient;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 @Service
 public class AuthService {
@@ -46,6 +52,12 @@ public class AuthService {
     @Value("${app.frontend.base-url:http://localhost:8080}")
     private String frontendBaseUrl;
 
+    @Value("${keycloak.http.connect-timeout-ms:2000}")
+    private long connectTimeoutMillis;
+
+    @Value("${keycloak.http.read-timeout-ms:5000}")
+    private long readTimeoutMillis;
+
     private String normalizedAuthServerUrl;
     private String tokenUrl;
     private String keycloakAdminUrl;
@@ -54,6 +66,13 @@ public class AuthService {
     private String loginUrl;
     private String userInfoUrl;
 
+    // Cliente compartido: el HttpClient del JDK mantiene un pool de conexiones
+    // keep-alive, así que las llamadas a Keycloak no pagan TCP/TLS cada vez
+    private RestTemplate restTemplate;
+
+    private volatile AdminToken adminToken;
+    private final ReentrantLock adminTokenLock = new ReentrantLock();
+
     private final UserSyncService userSyncService;
 
     // Constructor
@@ -76,6 +95,14 @@ public class AuthService {
         logoutUrl = buildRealmEndpoint("protocol/openid-connect/logout");
         loginUrl = buildRealmEndpoint("protocol/openid-connect/auth");
         userInfoUrl = buildRealmEndpoint("protocol/openid-connect/userinfo");
+
+        HttpClient httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .build();
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(Duration.ofMillis(readTimeoutMillis));
+        restTemplate = new RestTemplate(requestFactory);
     }
 
     private String normalizeBaseUrl(String url) {
@@ -243,7 +270,9 @@ public class AuthService {
     }
 
     /**
-     * Registra un nuevo usuario en Keycloak y crea Member en la base de datos
+     * Registra un nuevo usuario en Keycloak y crea Member en la base de datos de
+     * forma síncrona. El endpoint de registro usa RegistrationOutboxService, que
+     * hace los mismos pasos en segundo plano con reintentos.
      */
     public Map<String, Object> registerUser(UserRegistrationDTO registrationDTO) {
         Map<String, Object> response = new HashMap<>();
@@ -256,19 +285,14 @@ public class AuthService {
                 return response;
             }
 
-            // 1. OBTENER TOKEN DE ADMIN para usar Keycloak Admin API
-            String adminToken = getKeycloakAdminToken();
-            if (adminToken == null) {
-                response.put("success", false);
-                response.put("message", "Error al obtener acceso administrativo a Keycloak");
-                return response;
-            }
-
-            // 2. CREAR USUARIO EN KEYCLOAK
-            String keycloakUserId = createUserInKeycloak(adminToken, registrationDTO);
-            if (keycloakUserId == null) {
+            // 1-2. CREAR USUARIO EN KEYCLOAK (con token de admin y rol user)
+            String keycloakUserId;
+            try {
+                // Sin registro de outbox: un usuario existente (409) nunca se adopta
+                keycloakUserId = provisionKeycloakUser(registrationDTO, null).id();
+            } catch (KeycloakProvisioningException e) {
                 response.put("success", false);
-                response.put("message", "Error al crear usuario en Keycloak - posiblemente ya existe");
+                response.put("message", e.getMessage());
                 return response;
             }
 
@@ -297,7 +321,7 @@ public class AuthService {
             } catch (Exception e) {
                 // Si falla la creación del Member, intentar eliminar el usuario de Keycloak
                 try {
-                    deleteUserInKeycloak(adminToken, keycloakUserId);
+                    deleteKeycloakUser(keycloakUserId);
                 } catch (Exception cleanupEx) {
                     System.err.println("Error al limpiar usuario de Keycloak: " + cleanupEx.getMessage());
                 }
@@ -317,12 +341,60 @@ public class AuthService {
     }
 
     /**
-     * Obtiene token de administrador para usar Keycloak Admin API
+     * Obtiene token de administrador para usar Keycloak Admin API. El token se
+     * reutiliza entre registros y se renueva al consumir el 75% de su vida: un
+     * solo hilo lo renueva mientras los demás siguen usando el vigente.
      */
     private String getKeycloakAdminToken() {
+        AdminToken current = adminToken;
+        Instant now = Instant.now();
+        if (current != null && now.isBefore(current.refreshAt())) {
+            return current.value();
+        }
+        if (current != null && now.isBefore(current.expiresAt())) {
+            if (adminTokenLock.tryLock()) {
+                try {
+                    refreshAdminToken(current);
+                } finally {
+                    adminTokenLock.unlock();
+                }
+            }
+            AdminToken refreshed = adminToken;
+            return refreshed != null ? refreshed.value() : current.value();
+        }
+
+        adminTokenLock.lock();
         try {
-            RestTemplate restTemplate = new RestTemplate();
+            refreshAdminToken(current);
+            AdminToken refreshed = adminToken;
+            return refreshed != null && Instant.now().isBefore(refreshed.expiresAt()) ? refreshed.value() : null;
+        } finally {
+            adminTokenLock.unlock();
+        }
+    }
 
+    /**
+     * Pide un token nuevo salvo que otro hilo ya lo haya renovado
+     */
+    private void refreshAdminToken(AdminToken stale) {
+        if (adminToken != stale) {
+            return;
+        }
+        AdminToken fetched = fetchKeycloakAdminToken();
+        if (fetched != null) {
+            adminToken = fetched;
+        }
+    }
+
+    private void invalidateAdminToken(String rejectedToken) {
+        AdminToken current = adminToken;
+        if (current != null && current.value().equals(rejectedToken)) {
+            adminToken = null;
+        }
+    }
+
+    private AdminToken fetchKeycloakAdminToken() {
+        try {
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
 
@@ -342,7 +414,13 @@ public class AuthService {
                     });
 
             if (response.getStatusCode() == HttpStatus.OK && response.getBody() != null) {
-                return (String) response.getBody().get("access_token");
+                Map<String, Object> body = response.getBody();
+                Object expiresIn = body.get("expires_in");
+                long lifetimeSeconds = expiresIn instanceof Number number ? number.longValue() : 60;
+                Instant now = Instant.now();
+                return new AdminToken((String) body.get("access_token"),
+                        now.plusSeconds(lifetimeSeconds * 3 / 4),
+                        now.plusSeconds(lifetimeSeconds));
             }
 
             LOGGER.error("Error obteniendo token admin. Status: {} Body: {}", response.getStatusCode(), response.getBody());
@@ -354,72 +432,205 @@ public class AuthService {
         return null;
     }
 
+    private record AdminToken(String value, Instant refreshAt, Instant expiresAt) {
+    }
+
+    /**
+     * Error al dar de alta un usuario en Keycloak; retryable indica si es transitorio
+     */
+    public static class KeycloakProvisioningException extends RuntimeException {
+
+        private final boolean retryable;
+
+        public KeycloakProvisioningException(String message, boolean retryable) {
+            super(message);
+            this.retryable = retryable;
+        }
+
+        public boolean isRetryable() {
+            return retryable;
+        }
+    }
+
     /**
-     * Crea usuario en Keycloak usando Admin API
+     * Usuario de Keycloak del registro; adopted indica que ya existía (lo creó
+     * un intento anterior del mismo registro) y no se acaba de crear
      */
-    private String createUserInKeycloak(String adminToken, UserRegistrationDTO registrationDTO) {
+    public record ProvisionedUser(String id, boolean adopted) {
+    }
+
+    static final String REGISTRATION_ATTRIBUTE = "yopago_registration_id";
+
+    /**
+     * Crea el usuario en Keycloak usando Admin API y le asigna el rol user.
+     *
+     * Con registrationId el usuario se marca con el atributo
+     * yopago_registration_id, y el alta es idempotente para poder reintentarse:
+     * ante un 409 solo se adopta el usuario existente si lleva el id de este
+     * mismo registro, y se le vuelve a poner la contraseña del registro. Un
+     * usuario que no creó la outbox sigue respondiendo "ya existe". Los errores
+     * indican si merece la pena reintentar.
+     */
+    public ProvisionedUser provisionKeycloakUser(UserRegistrationDTO registrationDTO, String registrationId) {
+        String adminToken = getKeycloakAdminToken();
+        if (adminToken == null) {
+            throw new KeycloakProvisioningException("Error al obtener acceso administrativo a Keycloak", true);
+        }
+
         try {
-            RestTemplate restTemplate = new RestTemplate();
+            String userId = createUserInKeycloak(adminToken, registrationDTO, registrationId);
+            boolean adopted = userId == null;
+            if (adopted) {
+                userId = registrationId != null ? findOwnUserId(adminToken, registrationDTO, registrationId) : null;
+                if (userId == null) {
+                    throw new KeycloakProvisioningException("Error al crear usuario en Keycloak - el usuario ya existe",
+                            false);
+                }
+                // Un intento anterior pudo crearlo con otra contraseña (registro reenviado)
+                resetPassword(adminToken, userId, registrationDTO.getPassword());
+            }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.setBearerAuth(adminToken);
+            // ✅ ASIGNAR ROL user AUTOMÁTICAMENTE
+            if (assignUserRole(adminToken, userId)) {
+                System.out.println("✅ Rol user asignado automáticamente al usuario: " + userId);
+            } else {
+                System.err.println("⚠️ No se pudo asignar rol user al usuario: " + userId);
+            }
+            return new ProvisionedUser(userId, adopted);
+        } catch (RestClientResponseException e) {
+            int status = e.getStatusCode().value();
+            if (status == HttpStatus.UNAUTHORIZED.value()) {
+                // Token revocado o expirado antes de tiempo: el siguiente intento pide otro
+                invalidateAdminToken(adminToken);
+            }
+            System.err.println("Error creando usuario en Keycloak: " + e.getMessage());
+            boolean retryable = status == 401 || status == 408 || status == 429 || status >= 500;
+            throw new KeycloakProvisioningException("Error al crear usuario en Keycloak: HTTP " + status, retryable);
+        } catch (RestClientException e) {
+            // Timeouts y errores de conexión
+            System.err.println("Error creando usuario en Keycloak: " + e.getMessage());
+            throw new KeycloakProvisioningException("Keycloak no disponible: " + e.getMessage(), true);
+        }
+    }
+
+    /**
+     * Elimina el usuario de Keycloak (compensación cuando el registro no se puede completar)
+     */
+    public void deleteKeycloakUser(String keycloakUserId) {
+        String adminToken = getKeycloakAdminToken();
+        if (adminToken != null && keycloakUserId != null) {
+            deleteUserInKeycloak(adminToken, keycloakUserId);
+        }
+    }
+
+    /**
+     * Crea usuario en Keycloak; devuelve null si ya existe (409)
+     */
+    private String createUserInKeycloak(String adminToken, UserRegistrationDTO registrationDTO,
+            String registrationId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(adminToken);
+
+        // Estructura del usuario para Keycloak
+        Map<String, Object> keycloakUser = new HashMap<>();
+        keycloakUser.put("username", registrationDTO.getUsername());
+        keycloakUser.put("email", registrationDTO.getEmail());
+        keycloakUser.put("emailVerified", true);
+        keycloakUser.put("firstName", registrationDTO.getFirstName());
+        keycloakUser.put("lastName", registrationDTO.getLastName());
+        keycloakUser.put("enabled", true);
+        if (registrationId != null) {
+            keycloakUser.put("attributes", Map.of(REGISTRATION_ATTRIBUTE, List.of(registrationId)));
+        }
 
-            // Estructura del usuario para Keycloak
-            Map<String, Object> keycloakUser = new HashMap<>();
-            keycloakUser.put("username", registrationDTO.getUsername());
-            keycloakUser.put("email", registrationDTO.getEmail());
-            keycloakUser.put("emailVerified", true);
-            keycloakUser.put("firstName", registrationDTO.getFirstName());
-            keycloakUser.put("lastName", registrationDTO.getLastName());
-            keycloakUser.put("enabled", true);
-
-            // Configurar credencial de contraseña
-            Map<String, Object> credential = new HashMap<>();
-            credential.put("type", "password");
-            credential.put("value", registrationDTO.getPassword());
-            credential.put("temporary", false);
-            keycloakUser.put("credentials", List.of(credential));
-
-            HttpEntity<Map<String, Object>> request = new HttpEntity<>(keycloakUser, headers);
-
-            // Crear usuario
+        // Configurar credencial de contraseña
+        Map<String, Object> credential = new HashMap<>();
+        credential.put("type", "password");
+        credential.put("value", registrationDTO.getPassword());
+        credential.put("temporary", false);
+        keycloakUser.put("credentials", List.of(credential));
+
+        HttpEntity<Map<String, Object>> request = new HttpEntity<>(keycloakUser, headers);
+
+        try {
             ResponseEntity<String> response = restTemplate.exchange(
                     keycloakAdminUrl + "/users",
                     HttpMethod.POST,
                     request,
                     String.class);
 
-            if (response.getStatusCode() == HttpStatus.CREATED) {
-                // Extraer el ID del usuario de la header Location
-                String location = response.getHeaders().getFirst("Location");
-                if (location != null) {
-                    String userId = location.substring(location.lastIndexOf("/") + 1);
-
-                    // ✅ ASIGNAR ROL user AUTOMÁTICAMENTE
-                    boolean roleAssigned = assignUserRole(adminToken, userId);
-                    if (roleAssigned) {
-                        System.out.println("✅ Rol user asignado automáticamente al usuario: " + userId);
-                    } else {
-                        System.err.println("⚠️ No se pudo asignar rol user al usuario: " + userId);
-                    }
-
-                    return userId;
-                }
+            // Extraer el ID del usuario de la header Location
+            String location = response.getHeaders().getFirst("Location");
+            if (response.getStatusCode() == HttpStatus.CREATED && location != null) {
+                return location.substring(location.lastIndexOf("/") + 1);
+            }
+            throw new KeycloakProvisioningException(
+                    "Respuesta inesperada de Keycloak al crear usuario: " + response.getStatusCode(), true);
+        } catch (RestClientResponseException e) {
+            if (e.getStatusCode().value() == HttpStatus.CONFLICT.value()) {
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Busca un usuario existente con el mismo username y email que haya creado
+     * este registro (atributo yopago_registration_id)
+     */
+    private String findOwnUserId(String adminToken, UserRegistrationDTO registrationDTO, String registrationId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setBearerAuth(adminToken);
+
+        ResponseEntity<List<Map<String, Object>>> response = restTemplate.exchange(
+                keycloakAdminUrl + "/users?exact=true&briefRepresentation=false&username={username}",
+                HttpMethod.GET,
+                new HttpEntity<>(headers),
+                new org.springframework.core.ParameterizedTypeReference<List<Map<String, Object>>>() {
+                },
+                registrationDTO.getUsername());
+
+        if (response.getBody() == null) {
+            return null;
+        }
+        for (Map<String, Object> user : response.getBody()) {
+            Object email = user.get("email");
+            if (email instanceof String value && value.equalsIgnoreCase(registrationDTO.getEmail())
+                    && user.get("attributes") instanceof Map<?, ?> attributes
+                    && attributes.get(REGISTRATION_ATTRIBUTE) instanceof List<?> values
+                    && values.contains(registrationId)) {
+                return (String) user.get("id");
             }
-        } catch (Exception e) {
-            System.err.println("Error creando usuario en Keycloak: " + e.getMessage());
         }
         return null;
     }
 
+    /**
+     * Fija la contraseña del usuario; si falla, el registro no se da por completado
+     */
+    private void resetPassword(String adminToken, String userId, String password) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setBearerAuth(adminToken);
+
+        Map<String, Object> credential = new HashMap<>();
+        credential.put("type", "password");
+        credential.put("value", password);
+        credential.put("temporary", false);
+
+        restTemplate.exchange(
+                keycloakAdminUrl + "/users/" + userId + "/reset-password",
+                HttpMethod.PUT,
+                new HttpEntity<>(credential, headers),
+                String.class);
+    }
+
     /**
      * Asigna el rol user al usuario en Keycloak
      */
     private boolean assignUserRole(String adminToken, String userId) {
         try {
-            RestTemplate restTemplate = new RestTemplate();
-
             // 1. Recuperar la representación completa del rol "user"
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -464,8 +675,6 @@ public class AuthService {
      */
     private void deleteUserInKeycloak(String adminToken, String keycloakUserId) {
         try {
-            RestTemplate restTemplate = new RestTemplate();
-
             HttpHeaders headers = new HttpHeaders();
             headers.setBearerAuth(adminToken);
 
@@ -497,8 +706,6 @@ public class AuthService {
         System.out.println("Token URL: " + tokenUrl);
             System.out.println("==============================");
 
-            RestTemplate restTemplate = new RestTemplate();
-
             // Configurar headers
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_FORM_URLENCODED);
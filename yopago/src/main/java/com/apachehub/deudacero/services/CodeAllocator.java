@@ -0,0 +1,210 @@
+package com.apachehub.deudacero.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.apachehub.deudacero.entities.CodeSequence;
+import com.apachehub.deudacero.repositories.CodeSequenceRepository;
+
+/**
+ * Genera códigos de grupo y tokens de invitación únicos sin consultar la base
+ * de datos por cada uno.
+ *
+ * Cada instancia reserva bloques de valores de una secuencia en la tabla
+ * code_sequences (una transacción por bloque) y los reparte en memoria. El
+ * código de grupo es una permutación con clave (red de Feistel) del valor de
+ * la secuencia más unos bits aleatorios, codificada en base32: dos valores
+ * distintos nunca dan el mismo código y los códigos no son consecutivos. El
+ * token de invitación lleva el valor permutado como prefijo y 128 bits
+ * aleatorios, así que sigue siendo imposible de adivinar.
+ */
+@Service
+public class CodeAllocator {
+
+    static final String JOIN_CODE_SEQUENCE = "group-join-code";
+    static final String INVITATION_TOKEN_SEQUENCE = "group-invitation-token";
+
+    // Base32 sin I, L, O ni U para que el código se pueda dictar y escribir a mano
+    private static final char[] ALPHABET = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+    private static final int JOIN_CODE_LENGTH = 8;
+    private static final int JOIN_CODE_BITS = JOIN_CODE_LENGTH * 5;
+    private static final int JOIN_CODE_RANDOM_BITS = 10;
+    private static final long MAX_JOIN_CODE_SEQUENCE = 1L << (JOIN_CODE_BITS - JOIN_CODE_RANDOM_BITS);
+    private static final int TOKEN_PREFIX_BITS = 48;
+    private static final int TOKEN_RANDOM_BYTES = 16;
+    private static final int ROUNDS = 4;
+
+    private final SequenceSource sequenceSource;
+    private final int blockSize;
+    private final long[] roundKeys;
+    private final SecureRandom random = new SecureRandom();
+    private final Map<String, Block> blocks = new HashMap<>();
+
+    @Autowired
+    public CodeAllocator(CodeSequenceRepository repository,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.codes.block-size:100}") int blockSize,
+            @Value("${app.codes.secret:}") String secret) {
+        this(new DatabaseSequenceSource(repository, transactionManager), blockSize, secret);
+    }
+
+    CodeAllocator(SequenceSource sequenceSource, int blockSize, String secret) {
+        this.sequenceSource = sequenceSource;
+        this.blockSize = Math.max(1, blockSize);
+        this.roundKeys = roundKeys(secret);
+    }
+
+    /**
+     * Código de 8 caracteres para unirse a un grupo
+     */
+    public String nextJoinCode() {
+        long sequence = nextValue(JOIN_CODE_SEQUENCE);
+        if (sequence >= MAX_JOIN_CODE_SEQUENCE) {
+            throw new IllegalStateException("Secuencia de códigos de grupo agotada");
+        }
+        long input = (sequence << JOIN_CODE_RANDOM_BITS) | random.nextInt(1 << JOIN_CODE_RANDOM_BITS);
+        long scrambled = permute(input, JOIN_CODE_BITS);
+
+        char[] code = new char[JOIN_CODE_LENGTH];
+        for (int i = JOIN_CODE_LENGTH - 1; i >= 0; i--) {
+            code[i] = ALPHABET[(int) (scrambled & 31)];
+            scrambled >>>= 5;
+        }
+        return new String(code);
+    }
+
+    /**
+     * Token hexadecimal de invitación: 12 caracteres únicos por secuencia y 32
+     * aleatorios
+     */
+    public String nextInvitationToken() {
+        long prefix = permute(nextValue(INVITATION_TOKEN_SEQUENCE), TOKEN_PREFIX_BITS);
+        byte[] suffix = new byte[TOKEN_RANDOM_BYTES];
+        random.nextBytes(suffix);
+        return String.format("%012x", prefix) + HexFormat.of().formatHex(suffix);
+    }
+
+    private long nextValue(String name) {
+        synchronized (blocks) {
+            Block block = blocks.get(name);
+            if (block == null || block.next >= block.end) {
+                long start = sequenceSource.reserve(name, blockSize);
+                block = new Block(start, start + blockSize);
+                blocks.put(name, block);
+            }
+            return block.next++;
+        }
+    }
+
+    /**
+     * Permutación de {@code bits} bits (par): distintos valores de entrada dan
+     * siempre distintas salidas
+     */
+    long permute(long value, int bits) {
+        int half = bits / 2;
+        long mask = (1L << half) - 1;
+        long left = (value >>> half) & mask;
+        long right = value & mask;
+        for (int round = 0; round < ROUNDS; round++) {
+            long next = left ^ (mix(right ^ roundKeys[round]) & mask);
+            left = right;
+            right = next;
+        }
+        return (left << half) | right;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long[] roundKeys(String secret) {
+        // La clave debe ser la misma en todas las réplicas y reinicios. Con una
+        // clave fija y pública la permutación se podría invertir y los códigos
+        // serían enumerables, así que no hay valor por defecto
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("Falta configurar app.codes.secret (APP_CODES_SECRET)");
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+            ByteBuffer buffer = ByteBuffer.wrap(digest);
+            long[] keys = new long[ROUNDS];
+            for (int i = 0; i < ROUNDS; i++) {
+                keys[i] = buffer.getLong();
+            }
+            return keys;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static final class Block {
+        private long next;
+        private final long end;
+
+        Block(long next, long end) {
+            this.next = next;
+            this.end = end;
+        }
+    }
+
+    /**
+     * Reserva bloques de la secuencia: devuelve el primer valor de un bloque de
+     * {@code size} valores que ninguna otra instancia va a usar
+     */
+    interface SequenceSource {
+        long reserve(String name, int size);
+    }
+
+    static final class DatabaseSequenceSource implements SequenceSource {
+
+        private final CodeSequenceRepository repository;
+        private final TransactionTemplate transactionTemplate;
+
+        DatabaseSequenceSource(CodeSequenceRepository repository, PlatformTransactionManager transactionManager) {
+            this.repository = repository;
+            // Transacción propia: el bloque queda reservado aunque falle la operación que lo pidió
+            this.transactionTemplate = new TransactionTemplate(transactionManager);
+            this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        }
+
+        @Override
+        public long reserve(String name, int size) {
+            for (int attempt = 0; ; attempt++) {
+                try {
+                    Long start = transactionTemplate.execute(status -> {
+                        CodeSequence sequence = repository.findForUpdate(name).orElse(null);
+                        if (sequence == null) {
+                            repository.saveAndFlush(new CodeSequence(name, 1L + size));
+                            return 1L;
+                        }
+                        long first = sequence.getNextValue();
+                        sequence.setNextValue(first + size);
+                        return first;
+                    });
+                    return start;
+                } catch (DataIntegrityViolationException e) {
+                    // Otra réplica creó la fila a la vez; la siguiente vuelta la bloquea
+                    if (attempt >= 2) {
+                        throw e;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -41,6 +41,8 @@ public class ExpenseService {
     private com.apachehub.deudacero.repositories.GroupShareRepository groupShareRepository;
     @Autowired
     private RealTimeEventPublisher realTimeEventPublisher;
+    @Autowired
+    private GroupVersionService groupVersionService;
 
     public Expense createExpense(ExpenseDTO expenseDTO) throws Exception {
         Member payer = memberRepository.findById(expenseDTO.getPayerId()).orElse(null);
@@ -50,7 +52,8 @@ public class ExpenseService {
         com.apachehub.deudacero.entities.Group group = null;
         if (expenseDTO.getGroupId() != null) {
             group = groupRepository.findById(expenseDTO.getGroupId()).orElse(null);
-            if (group == null) {
+            // Un grupo pendiente de eliminación ya no admite gastos
+            if (group == null || group.isPendingDeletion()) {
                 throw new Exception("Grupo no encontrado");
             }
         }
@@ -225,6 +228,8 @@ public class ExpenseService {
         }
 
         if (savedExpense.getGroup() != null && savedExpense.getGroup().getId() != null) {
+            groupVersionService.bump(savedExpense.getGroup().getId());
+
             java.util.Map<String, Object> payload = new java.util.HashMap<>();
             payload.put("expenseId", savedExpense.getId());
             payload.put("amount", savedExpense.getAmount());
@@ -304,6 +309,7 @@ public class ExpenseService {
             gs.setUpdatedAt(java.time.LocalDateTime.now());
             groupShareRepository.save(gs);
         }
+        groupVersionService.bump(groupId);
     }
 
     /**
@@ -359,6 +365,7 @@ public class ExpenseService {
             expense.setShares(newShares);
             expenseRepository.save(expense);
         }
+        groupVersionService.bump(groupId);
     }
 
     /**
@@ -443,6 +450,7 @@ public class ExpenseService {
         }
 
         Expense expense = expenseOpt.get();
+        Long previousGroupId = expense.getGroup() != null ? expense.getGroup().getId() : null;
 
         // Validar y actualizar el pagador si se proporciona
         if (expenseDTO.getPayerId() != null) {
@@ -457,7 +465,7 @@ public class ExpenseService {
         if (expenseDTO.getGroupId() != null) {
             com.apachehub.deudacero.entities.Group group = groupRepository.findById(expenseDTO.getGroupId())
                     .orElse(null);
-            if (group == null) {
+            if (group == null || group.isPendingDeletion()) {
                 throw new IllegalArgumentException("Grupo no encontrado");
             }
             expense.setGroup(group);
@@ -501,7 +509,13 @@ public class ExpenseService {
 
         Expense savedExpense = expenseRepository.save(expense);
 
+        Long groupId = savedExpense.getGroup() != null ? savedExpense.getGroup().getId() : null;
+        if (previousGroupId != null && !previousGroupId.equals(groupId)) {
+            groupVersionService.bump(previousGroupId);
+        }
         if (savedExpense.getGroup() != null && savedExpense.getGroup().getId() != null) {
+            groupVersionService.bump(groupId);
+
             java.util.Map<String, Object> payload = new java.util.HashMap<>();
             payload.put("expenseId", savedExpense.getId());
             payload.put("amount", savedExpense.getAmount());
@@ -536,10 +550,20 @@ public class ExpenseService {
                 .collect(java.util.stream.Collectors.toList());
         expenseShareRepository.deleteAll(sharesToDelete);
 
+        // Descontar las partes del gasto de los totales agregados (GroupShare)
+        for (ExpenseShare share : sharesToDelete) {
+            Double amount = share.getCalculatedAmount();
+            if (amount != null) {
+                updateGroupShare(expense.getGroup(), share.getMember(), -amount);
+            }
+        }
+
         // Eliminar el gasto
         expenseRepository.deleteById(id);
 
         if (groupId != null) {
+            groupVersionService.bump(groupId);
+
             java.util.Map<String, Object> payload = new java.util.HashMap<>();
             payload.put("expenseId", id);
             payload.put("note", expense.getNote());
@@ -0,0 +1,104 @@
+package com.apachehub.deudacero.services;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Agrupa cálculos concurrentes de la misma vista de un grupo (single-flight).
+ *
+ * Cuando llega un evento todos los miembros del grupo piden los detalles a la
+ * vez. La primera petición para (vista, grupo, versión) hace el cálculo y las
+ * que llegan mientras tanto esperan y reciben el mismo resultado. No es una
+ * caché: la entrada desaparece al terminar el cálculo, y como la clave lleva
+ * la versión del grupo, una petición posterior a una escritura nunca se une a
+ * un cálculo anterior a ella.
+ *
+ * El resultado se comparte entre las peticiones, así que no se debe modificar.
+ * La autorización de cada petición se comprueba fuera, antes de llamar aquí.
+ */
+@Service
+public class GroupComputationCoalescer {
+
+    private final Map<Key, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+
+    private final MeterRegistry meterRegistry;
+    private final AtomicLong computations = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    public GroupComputationCoalescer(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        Gauge.builder("yopago.group.coalescing.ratio", this, GroupComputationCoalescer::coalescingRatio)
+                .description("Fracción de peticiones que se unieron a un cálculo en curso")
+                .register(meterRegistry);
+        Gauge.builder("yopago.group.coalescing.in-flight", inFlight, Map::size)
+                .description("Cálculos de vistas de grupo en curso")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta {@code computation} o espera al cálculo en curso con la misma
+     * vista, grupo y versión. Las excepciones del cálculo llegan a todas las
+     * peticiones que lo compartieron.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T compute(String view, Long groupId, Long version, Supplier<T> computation) {
+        Key key = new Key(view, groupId, version);
+        CompletableFuture<Object> mine = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, mine);
+
+        if (existing != null) {
+            coalesced.incrementAndGet();
+            meterRegistry.counter("yopago.group.coalescing", "view", view, "role", "follower").increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+
+        computations.incrementAndGet();
+        meterRegistry.counter("yopago.group.coalescing", "view", view, "role", "leader").increment();
+        try {
+            T result = computation.get();
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, mine);
+        }
+    }
+
+    /**
+     * Peticiones que se unieron a un cálculo en curso sobre el total
+     */
+    double coalescingRatio() {
+        long joined = coalesced.get();
+        long total = computations.get() + joined;
+        return total == 0 ? 0.0 : (double) joined / total;
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return e;
+    }
+
+    private record Key(String view, Long groupId, Long version) {
+    }
+}
@@ -0,0 +1,440 @@
+package com.apachehub.deudacero.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.apachehub.deudacero.entities.Group;
+import com.apachehub.deudacero.repositories.ExpenseItemRepository;
+import com.apachehub.deudacero.repositories.ExpenseItemShareRepository;
+import com.apachehub.deudacero.repositories.ExpenseRepository;
+import com.apachehub.deudacero.repositories.ExpenseShareRepository;
+import com.apachehub.deudacero.repositories.GroupInvitationRepository;
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.GroupShareRepository;
+import com.apachehub.deudacero.repositories.PaymentRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Elimina grupos como trabajo en segundo plano. El endpoint solo valida,
+ * desactiva el grupo y encola el trabajo.
+ *
+ * El borrado usa DELETE en bloque en orden de dependencias (item shares →
+ * items → shares → gastos → pagos → balances → invitaciones → miembros →
+ * grupo). Los gastos y pagos se borran por lotes de ids, cada lote en su
+ * propia transacción, así que ninguna transacción mantiene bloqueos mucho
+ * tiempo. La última transacción bloquea la fila del grupo y vuelve a barrer
+ * gastos y pagos antes de borrarlo, por si alguna petición los insertó
+ * mientras se borraban los lotes.
+ *
+ * Los trabajos viven en memoria; el estado duradero es el propio grupo
+ * desactivado. Al arrancar se relanzan las eliminaciones de los grupos que
+ * siguen desactivados (cada paso es idempotente). El id del trabajo incluye el
+ * del grupo, así que otra réplica (o esta tras reiniciar) puede responder por
+ * él a partir del grupo: desactivado es que sigue en curso y borrado es que
+ * terminó. Los eventos a los miembros se publican cuando el trabajo termina.
+ */
+@Service
+public class GroupDeletionService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GroupDeletionService.class);
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, FAILED
+    }
+
+    private final GroupRepository groupRepository;
+    private final ExpenseRepository expenseRepository;
+    private final ExpenseShareRepository expenseShareRepository;
+    private final ExpenseItemRepository expenseItemRepository;
+    private final ExpenseItemShareRepository expenseItemShareRepository;
+    private final PaymentRepository paymentRepository;
+    private final GroupShareRepository groupShareRepository;
+    private final GroupInvitationRepository invitationRepository;
+    private final GroupMembershipIndex membershipIndex;
+    private final RealTimeEventPublisher realTimeEventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor;
+    private final int chunkSize;
+    private final Duration retention;
+    private final Map<String, DeletionJob> jobs = new ConcurrentHashMap<>();
+
+    private final Timer jobTimer;
+    private final Counter completed;
+    private final Counter failed;
+
+    public GroupDeletionService(GroupRepository groupRepository,
+            ExpenseRepository expenseRepository,
+            ExpenseShareRepository expenseShareRepository,
+            ExpenseItemRepository expenseItemRepository,
+            ExpenseItemShareRepository expenseItemShareRepository,
+            PaymentRepository paymentRepository,
+            GroupShareRepository groupShareRepository,
+            GroupInvitationRepository invitationRepository,
+            GroupMembershipIndex membershipIndex,
+            RealTimeEventPublisher realTimeEventPublisher,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.group-deletion.chunk-size:500}") int chunkSize,
+            @Value("${app.group-deletion.retention-minutes:30}") long retentionMinutes) {
+        this.groupRepository = groupRepository;
+        this.expenseRepository = expenseRepository;
+        this.expenseShareRepository = expenseShareRepository;
+        this.expenseItemRepository = expenseItemRepository;
+        this.expenseItemShareRepository = expenseItemShareRepository;
+        this.paymentRepository = paymentRepository;
+        this.groupShareRepository = groupShareRepository;
+        this.invitationRepository = invitationRepository;
+        this.membershipIndex = membershipIndex;
+        this.realTimeEventPublisher = realTimeEventPublisher;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("group-deletion-", 0).factory());
+        this.chunkSize = Math.max(1, chunkSize);
+        this.retention = Duration.ofMinutes(Math.max(1, retentionMinutes));
+
+        this.jobTimer = Timer.builder("yopago.group.deletion.duration")
+                .description("Duración de los trabajos de eliminación de grupos")
+                .register(meterRegistry);
+        this.completed = Counter.builder("yopago.group.deletion.jobs")
+                .tag("result", "completed")
+                .description("Trabajos de eliminación de grupos terminados")
+                .register(meterRegistry);
+        this.failed = Counter.builder("yopago.group.deletion.jobs")
+                .tag("result", "failed")
+                .description("Trabajos de eliminación de grupos terminados")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Valida permisos y encola la eliminación. Devuelve un mapa con "error" y
+     * "reason" (NOT_FOUND, FORBIDDEN) si no se puede eliminar, o con el estado
+     * del trabajo. Si ya hay un trabajo activo para el grupo se devuelve ese.
+     */
+    public Map<String, Object> submit(Long groupId, Long requestingUserId) {
+        Map<String, Object> result = new HashMap<>();
+        if (requestingUserId == null) {
+            result.put("error", "Usuario solicitante inválido");
+            result.put("reason", "FORBIDDEN");
+            return result;
+        }
+
+        Group group = groupRepository.findById(groupId).orElse(null);
+        if (group == null) {
+            result.put("error", "Grupo no encontrado");
+            result.put("reason", "NOT_FOUND");
+            return result;
+        }
+        if (group.getCreatedBy() == null || group.getCreatedBy().getId() == null
+                || !group.getCreatedBy().getId().equals(requestingUserId)) {
+            result.put("error", "Solo el creador del grupo puede eliminarlo");
+            result.put("reason", "FORBIDDEN");
+            return result;
+        }
+
+        return enqueue(group, requestingUserId).toMap();
+    }
+
+    /**
+     * Relanza la eliminación de los grupos que quedaron desactivados, por
+     * ejemplo porque la instancia se detuvo a mitad del trabajo
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        List<Group> pending = groupRepository.findByIsActiveFalse();
+        for (Group group : pending) {
+            Long requestedBy = group.getCreatedBy() != null ? group.getCreatedBy().getId() : null;
+            enqueue(group, requestedBy);
+        }
+        if (!pending.isEmpty()) {
+            LOGGER.info("Eliminaciones de grupos pendientes relanzadas: {}", pending.size());
+        }
+    }
+
+    /**
+     * Encola el trabajo del grupo, o devuelve el que ya está activo
+     */
+    private DeletionJob enqueue(Group group, Long requestedBy) {
+        Long groupId = group.getId();
+        purgeExpired();
+        DeletionJob job;
+        synchronized (jobs) {
+            DeletionJob active = jobs.values().stream()
+                    .filter(existing -> existing.groupId.equals(groupId) && existing.finishedAt == null)
+                    .findFirst()
+                    .orElse(null);
+            if (active != null) {
+                return active;
+            }
+            job = new DeletionJob(groupId + "-" + UUID.randomUUID(), groupId, requestedBy, group.getName());
+            jobs.put(job.id, job);
+        }
+
+        // Se oculta ya el grupo; el borrado real corre en segundo plano
+        transactionTemplate.executeWithoutResult(status -> groupRepository.deactivate(groupId));
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Devuelve el trabajo solo si lo solicitó el miembro indicado. Si no está
+     * en la memoria de esta réplica, el estado se deduce del grupo (sin el
+     * detalle de fases ni filas borradas).
+     */
+    public DeletionJob findJob(String jobId, Long requestingUserId) {
+        DeletionJob job = jobs.get(jobId);
+        if (job == null) {
+            return fromGroupState(jobId, requestingUserId);
+        }
+        if (job.requestedBy == null || !job.requestedBy.equals(requestingUserId)) {
+            return null;
+        }
+        return job;
+    }
+
+    /**
+     * Grupo desactivado del solicitante: RUNNING. Grupo inexistente:
+     * COMPLETED. Grupo activo o de otro creador: null.
+     */
+    private DeletionJob fromGroupState(String jobId, Long requestingUserId) {
+        Long groupId = groupIdOf(jobId);
+        if (groupId == null || requestingUserId == null) {
+            return null;
+        }
+        Group group = groupRepository.findById(groupId).orElse(null);
+        if (group == null) {
+            DeletionJob job = new DeletionJob(jobId, groupId, requestingUserId, null);
+            job.phase = "done";
+            job.finish(Status.COMPLETED, null);
+            return job;
+        }
+        if (!group.isPendingDeletion() || group.getCreatedBy() == null
+                || !requestingUserId.equals(group.getCreatedBy().getId())) {
+            return null;
+        }
+        DeletionJob job = new DeletionJob(jobId, groupId, requestingUserId, group.getName());
+        job.status = Status.RUNNING;
+        job.phase = "unknown";
+        return job;
+    }
+
+    /**
+     * Extrae el grupo de un id con formato {@code <groupId>-<uuid>}
+     */
+    private static Long groupIdOf(String jobId) {
+        int dash = jobId != null ? jobId.indexOf('-') : -1;
+        if (dash <= 0) {
+            return null;
+        }
+        try {
+            UUID.fromString(jobId.substring(dash + 1));
+            return Long.valueOf(jobId.substring(0, dash));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    void run(DeletionJob job) {
+        job.status = Status.RUNNING;
+        long start = System.nanoTime();
+        Long groupId = job.groupId;
+        List<Long> memberIds;
+        try {
+            // Gastos y todo lo que cuelga de ellos, por lotes de ids
+            job.phase = "expenses";
+            deleteInChunks(job, "expenses", () -> nextExpenseIds(groupId), ids -> deleteExpenses(job, ids));
+
+            job.phase = "payments";
+            deleteInChunks(job, "payments", () -> nextPaymentIds(groupId), paymentRepository::bulkDeleteByIds);
+
+            job.phase = "group";
+            memberIds = transactionTemplate.execute(status -> {
+                // Con la fila bloqueada ya no entran gastos ni pagos nuevos; se
+                // borra lo que se haya insertado durante los lotes
+                groupRepository.lockForDeletion(groupId);
+                sweep(job, "expenses", () -> nextExpenseIds(groupId), ids -> deleteExpenses(job, ids));
+                sweep(job, "payments", () -> nextPaymentIds(groupId), paymentRepository::bulkDeleteByIds);
+                job.count("groupShares", groupShareRepository.bulkDeleteByGroupId(groupId));
+                job.count("invitations", invitationRepository.bulkDeleteByGroupId(groupId));
+                List<Long> ids = groupRepository.findMemberIds(groupId);
+                job.count("memberships", groupRepository.deleteMemberships(groupId));
+                job.count("groups", groupRepository.bulkDeleteById(groupId));
+                return ids;
+            });
+
+            membershipIndex.groupDeleted(groupId);
+            job.phase = "done";
+            job.finish(Status.COMPLETED, null);
+            completed.increment();
+        } catch (RuntimeException e) {
+            LOGGER.error("Error eliminando el grupo {} (fase {}): {}", groupId, job.phase, e.getMessage(), e);
+            job.finish(Status.FAILED, e.getMessage());
+            failed.increment();
+            return;
+        } finally {
+            jobTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        publishDeleted(job, memberIds);
+    }
+
+    private List<Long> nextExpenseIds(Long groupId) {
+        return expenseRepository.findIdsByGroupId(groupId, PageRequest.of(0, chunkSize));
+    }
+
+    private List<Long> nextPaymentIds(Long groupId) {
+        return paymentRepository.findIdsByGroupId(groupId, PageRequest.of(0, chunkSize));
+    }
+
+    private int deleteExpenses(DeletionJob job, List<Long> ids) {
+        job.count("expenseItemShares", expenseItemShareRepository.bulkDeleteByExpenseIds(ids));
+        job.count("expenseItems", expenseItemRepository.bulkDeleteByExpenseIds(ids));
+        job.count("expenseShares", expenseShareRepository.bulkDeleteByExpenseIds(ids));
+        return expenseRepository.bulkDeleteByIds(ids);
+    }
+
+    /**
+     * Borra por lotes dentro de la transacción en curso lo que quede
+     */
+    private void sweep(DeletionJob job, String counter, Supplier<List<Long>> nextIds,
+            ToIntFunction<List<Long>> delete) {
+        for (List<Long> ids = nextIds.get(); !ids.isEmpty(); ids = nextIds.get()) {
+            job.count(counter, delete.applyAsInt(ids));
+        }
+    }
+
+    private void deleteInChunks(DeletionJob job, String counter, Supplier<List<Long>> nextIds,
+            ToIntFunction<List<Long>> delete) {
+        while (true) {
+            Integer deleted = transactionTemplate.execute(status -> {
+                List<Long> ids = nextIds.get();
+                return ids.isEmpty() ? null : delete.applyAsInt(ids);
+            });
+            if (deleted == null) {
+                return;
+            }
+            job.count(counter, deleted);
+            job.chunks++;
+        }
+    }
+
+    private void publishDeleted(DeletionJob job, List<Long> memberIds) {
+        try {
+            Map<String, Object> deletedPayload = new HashMap<>();
+            deletedPayload.put("groupId", job.groupId);
+            deletedPayload.put("deletedBy", job.requestedBy);
+            realTimeEventPublisher.publishGroupEvent(job.groupId, "group.deleted", deletedPayload);
+
+            for (Long memberId : memberIds) {
+                Map<String, Object> memberPayload = new HashMap<>();
+                memberPayload.put("groupId", job.groupId);
+                memberPayload.put("name", job.groupName);
+                memberPayload.put("reason", "deleted");
+                memberPayload.put("timestamp", Instant.now().toString());
+                realTimeEventPublisher.publishUserEvent(memberId, "user.group.deleted", memberPayload);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("No se pudieron publicar los eventos del grupo {}: {}", job.groupId, e.getMessage());
+        }
+    }
+
+    private void purgeExpired() {
+        Instant limit = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(limit));
+    }
+
+    public static final class DeletionJob {
+        private final String id;
+        private final Long groupId;
+        private final Long requestedBy;
+        private final String groupName;
+        private final Instant createdAt = Instant.now();
+        private final Map<String, Integer> deleted = new LinkedHashMap<>();
+        private volatile Status status = Status.QUEUED;
+        private volatile String phase = "queued";
+        private volatile int chunks;
+        private volatile String error;
+        private volatile Instant finishedAt;
+
+        private DeletionJob(String id, Long groupId, Long requestedBy, String groupName) {
+            this.id = id;
+            this.groupId = groupId;
+            this.requestedBy = requestedBy;
+            this.groupName = groupName;
+        }
+
+        private void count(String table, int rows) {
+            synchronized (deleted) {
+                deleted.merge(table, rows, Integer::sum);
+            }
+        }
+
+        private void finish(Status finalStatus, String errorMessage) {
+            this.error = errorMessage;
+            this.finishedAt = Instant.now();
+            this.status = finalStatus;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("jobId", id);
+            map.put("groupId", groupId);
+            map.put("status", status.name());
+            map.put("phase", phase);
+            map.put("chunks", chunks);
+            synchronized (deleted) {
+                map.put("deleted", new LinkedHashMap<>(deleted));
+            }
+            map.put("createdAt", createdAt.toString());
+            if (finishedAt != null) {
+                map.put("finishedAt", finishedAt.toString());
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+}
@@ -8,10 +8,9 @@ import com.apachehub.deudacero.repositories.GroupInvitationRepository;
 import com.apachehub.deudacero.repositories.GroupRepository;
 import com.apachehub.deudacero.repositories.MemberRepository;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -21,18 +20,22 @@ public class GroupInvitationService {
     private final GroupInvitationRepository invitationRepository;
     private final GroupRepository groupRepository;
     private final MemberRepository memberRepository;
+    private final CodeAllocator codeAllocator;
 
     public GroupInvitationService(GroupInvitationRepository invitationRepository,
             GroupRepository groupRepository,
-            MemberRepository memberRepository) {
+            MemberRepository memberRepository,
+            CodeAllocator codeAllocator) {
         this.invitationRepository = invitationRepository;
         this.groupRepository = groupRepository;
         this.memberRepository = memberRepository;
+        this.codeAllocator = codeAllocator;
     }
 
     public GroupInvitation createInvitation(Long groupId, Long requesterId, String email,
             Integer expiresInHours, Boolean singleUse) {
         Group group = groupRepository.findById(groupId)
+                .filter(existing -> !existing.isPendingDeletion())
                 .orElseThrow(() -> new RuntimeException("Grupo no encontrado"));
 
         Member requester = memberRepository.findById(requesterId)
@@ -45,33 +48,34 @@ public class GroupInvitationService {
         invitation.setGroup(group);
         invitation.setCreatedBy(requester);
         invitation.setEmail(normalizedEmail);
-        invitation.setToken(generateUniqueToken());
+        invitation.setToken(codeAllocator.nextInvitationToken());
         invitation.setExpiresAt(calculateExpiration(expiresInHours));
 
         if (Boolean.TRUE.equals(singleUse)) {
             invitation.setStatus(GroupInvitationStatus.PENDING);
         }
 
-        return invitationRepository.save(invitation);
+        try {
+            return invitationRepository.save(invitation);
+        } catch (DataIntegrityViolationException e) {
+            // El índice único de token es la única comprobación; un choque solo es posible con tokens antiguos
+            invitation.setId(null);
+            invitation.setToken(codeAllocator.nextInvitationToken());
+            return invitationRepository.save(invitation);
+        }
     }
 
+    /**
+     * Solo lectura: las pendientes vencidas las marca InvitationExpirySweeper;
+     * mientras tanto se muestran con {@link GroupInvitation#effectiveStatus()}
+     */
+    @Transactional(readOnly = true)
     public List<GroupInvitation> getInvitationsForGroup(Long groupId, Long requesterId) {
         Group group = groupRepository.findById(groupId)
                 .orElseThrow(() -> new RuntimeException("Grupo no encontrado"));
         ensureOwnerPermission(group, requesterId);
 
-        List<GroupInvitation> invitations = invitationRepository.findByGroupIdOrderByCreatedAtDesc(groupId);
-        List<GroupInvitation> updated = new ArrayList<>();
-        for (GroupInvitation invitation : invitations) {
-            if (invitation.getStatus() == GroupInvitationStatus.PENDING && invitation.isExpired()) {
-                invitation.setStatus(GroupInvitationStatus.EXPIRED);
-                updated.add(invitation);
-            }
-        }
-        if (!updated.isEmpty()) {
-            invitationRepository.saveAll(updated);
-        }
-        return invitations;
+        return invitationRepository.findByGroupIdOrderByCreatedAtDesc(groupId);
     }
 
     @Transactional
@@ -101,6 +105,11 @@ public class GroupInvitationService {
         GroupInvitation invitation = invitationRepository.findByToken(token)
                 .orElseThrow(() -> new RuntimeException("Invitación no encontrada"));
 
+        // Las invitaciones de un grupo pendiente de eliminación dejan de valer
+        if (invitation.getGroup() == null || invitation.getGroup().isPendingDeletion()) {
+            throw new RuntimeException("Invitación no encontrada");
+        }
+
         if (invitation.getStatus() == GroupInvitationStatus.REVOKED) {
             throw new RuntimeException("La invitación fue revocada");
         }
@@ -169,14 +178,6 @@ public class GroupInvitationService {
         }
     }
 
-    private String generateUniqueToken() {
-        String token;
-        do {
-            token = UUID.randomUUID().toString().replaceAll("-", "");
-        } while (invitationRepository.existsByToken(token));
-        return token;
-    }
-
     private LocalDateTime calculateExpiration(Integer expiresInHours) {
         if (expiresInHours == null || expiresInHours <= 0) {
             return LocalDateTime.now().plusDays(7);
@@ -0,0 +1,224 @@
+package com.apachehub.deudacero.services;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.MemberRepository;
+
+/**
+ * Índice en memoria miembro → grupos que acompaña a las comprobaciones de
+ * acceso a un grupo.
+ *
+ * El índice es local a cada réplica, así que no es fuente de autorización:
+ * {@link #canAccess} confirma un positivo con una consulta por clave y no se
+ * fía de un negativo guardado, porque un alta hecha en otra réplica no lo
+ * invalida; en ese caso vuelve a cargar los grupos del miembro. Cada miembro
+ * se carga de forma perezosa, caduca a los {@code ttl-seconds} y como mucho se
+ * guardan {@code max-members} miembros (LRU).
+ *
+ * Las altas, bajas y eliminaciones de grupos no modifican las entradas: las
+ * invalidan cuando la transacción confirma, y una carga que empezó antes de la
+ * invalidación no se guarda, para no dejar en el índice una lectura previa al
+ * cambio.
+ */
+@Service
+public class GroupMembershipIndex {
+
+    private final GroupRepository groupRepository;
+    private final MemberRepository memberRepository;
+    private final long ttlNanos;
+
+    private final Map<Long, Entry> groupsByMember;
+    private final Map<String, Long> memberIdBySubject;
+    private final Object lock = new Object();
+    // Cambia con cada invalidación; protegido por lock
+    private long generation;
+
+    public GroupMembershipIndex(GroupRepository groupRepository, MemberRepository memberRepository,
+            @Value("${app.membership-index.max-members:10000}") int maxMembers,
+            @Value("${app.membership-index.ttl-seconds:10}") long ttlSeconds) {
+        this.groupRepository = groupRepository;
+        this.memberRepository = memberRepository;
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(Math.max(1, ttlSeconds));
+        int capacity = Math.max(1, maxMembers);
+        this.groupsByMember = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.memberIdBySubject = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Indica si el índice tiene al miembro (o creador) en el grupo. Es solo una
+     * pista: para autorizar hay que usar {@link #canAccess}.
+     */
+    public boolean isMember(Long memberId, Long groupId) {
+        if (memberId == null || groupId == null) {
+            return false;
+        }
+        return groupsFor(memberId).contains(groupId);
+    }
+
+    /**
+     * Comprobación de acceso para autorizar, siempre con una sola consulta. Un
+     * positivo del índice se confirma por clave, porque otra réplica puede
+     * haber dado de baja al miembro o borrado el grupo. Un negativo no se
+     * guarda como definitivo: un miembro recién unido en otra réplica no
+     * aparece en el índice local, así que se recargan sus grupos y se decide
+     * con esa lectura.
+     */
+    public boolean canAccess(Long memberId, Long groupId) {
+        if (memberId == null || groupId == null) {
+            return false;
+        }
+        Set<Long> cached = cachedGroups(memberId);
+        if (cached != null && cached.contains(groupId)) {
+            return groupRepository.isMemberOrOwner(groupId, memberId);
+        }
+        return load(memberId).contains(groupId);
+    }
+
+    /**
+     * Resuelve el Member asociado a un usuario de Keycloak (claim sub)
+     */
+    public Long resolveMemberId(String keycloakUserId) {
+        if (keycloakUserId == null) {
+            return null;
+        }
+        synchronized (lock) {
+            Long cached = memberIdBySubject.get(keycloakUserId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        Long memberId = memberRepository.findByKeycloakUserId(keycloakUserId)
+                .map(member -> member.getId())
+                .orElse(null);
+        if (memberId != null) {
+            synchronized (lock) {
+                memberIdBySubject.put(keycloakUserId, memberId);
+            }
+        }
+        return memberId;
+    }
+
+    public void memberJoined(Long memberId, Long groupId) {
+        invalidateMember(memberId);
+    }
+
+    public void memberLeft(Long memberId, Long groupId) {
+        invalidateMember(memberId);
+    }
+
+    /**
+     * Invalida a todos los miembros indexados que tenían el grupo (incluido el
+     * creador, que puede no figurar en la lista de miembros)
+     */
+    public void groupDeleted(Long groupId) {
+        if (groupId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (lock) {
+                generation++;
+                groupsByMember.values().removeIf(entry -> entry.groups().contains(groupId));
+            }
+        });
+    }
+
+    public void evictMember(Long memberId) {
+        if (memberId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (lock) {
+                generation++;
+                groupsByMember.remove(memberId);
+                memberIdBySubject.values().removeIf(memberId::equals);
+            }
+        });
+    }
+
+    private void invalidateMember(Long memberId) {
+        if (memberId == null) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (lock) {
+                generation++;
+                groupsByMember.remove(memberId);
+            }
+        });
+    }
+
+    private Set<Long> groupsFor(Long memberId) {
+        Set<Long> cached = cachedGroups(memberId);
+        return cached != null ? cached : load(memberId);
+    }
+
+    /**
+     * Grupos guardados del miembro; null si no está en el índice o caducó
+     */
+    private Set<Long> cachedGroups(Long memberId) {
+        synchronized (lock) {
+            Entry entry = groupsByMember.get(memberId);
+            return entry != null && System.nanoTime() - entry.loadedAt() < ttlNanos ? entry.groups() : null;
+        }
+    }
+
+    /**
+     * Lee los grupos del miembro en la base de datos y los guarda en el índice
+     */
+    private Set<Long> load(Long memberId) {
+        long observedGeneration;
+        synchronized (lock) {
+            observedGeneration = generation;
+        }
+        long loadedAt = System.nanoTime();
+        Set<Long> loaded = Set.copyOf(groupRepository.findGroupIdsForMember(memberId));
+        synchronized (lock) {
+            // Si hubo una invalidación mientras se leía, la lectura puede ser
+            // anterior al cambio: se usa para esta petición pero no se guarda
+            if (generation == observedGeneration) {
+                groupsByMember.put(memberId, new Entry(loaded, loadedAt));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Dentro de una transacción la invalidación se aplica al confirmar, para
+     * que una carga concurrente no lea el estado anterior y lo vuelva a
+     * guardar. Fuera de una transacción se aplica de inmediato.
+     */
+    private void afterCommit(Runnable invalidation) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidation.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                invalidation.run();
+            }
+        });
+    }
+
+    private record Entry(Set<Long> groups, long loadedAt) {
+    }
+}
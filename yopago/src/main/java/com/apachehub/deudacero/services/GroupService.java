@@ -1,6 +1,8 @@
 package com.apachehub.deudacero.services;
 
 import com.apachehub.deudacero.dto.CreateGroupRequest;
+import com.apachehub.deudacero.dto.GroupDashboardRow;
+import com.apachehub.deudacero.dto.GroupVersion;
 import com.apachehub.deudacero.dto.GroupResponse;
 import com.apachehub.deudacero.dto.JoinGroupRequest;
 import com.apachehub.deudacero.entities.Expense;
@@ -12,24 +14,16 @@ import com.apachehub.deudacero.repositories.ExpenseRepository;
 import com.apachehub.deudacero.repositories.GroupRepository;
 import com.apachehub.deudacero.repositories.MemberRepository;
 import com.apachehub.deudacero.utils.MathUtils;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
 import java.util.Map;
-import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
-import javax.imageio.ImageIO;
-import java.util.Base64;
-import com.google.zxing.BarcodeFormat;
-import com.google.zxing.qrcode.QRCodeWriter;
-import com.google.zxing.common.BitMatrix;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.oauth2.jwt.Jwt;
-import org.springframework.transaction.annotation.Transactional;
 
 @Service
 public class GroupService {
@@ -41,11 +35,19 @@ public class GroupService {
     private final com.apachehub.deudacero.repositories.GroupShareRepository groupShareRepository;
     private final PaymentService paymentService;
     private final RealTimeEventPublisher realTimeEventPublisher;
+    private final GroupMembershipIndex membershipIndex;
+    private final QrCodeService qrCodeService;
+    private final CodeAllocator codeAllocator;
+    private final GroupVersionService groupVersionService;
+    private final GroupComputationCoalescer coalescer;
 
     public GroupService(GroupRepository groupRepository, MemberRepository memberRepository,
             ExpenseRepository expenseRepository, ExpenseService expenseService,
             com.apachehub.deudacero.repositories.GroupShareRepository groupShareRepository,
-            PaymentService paymentService, RealTimeEventPublisher realTimeEventPublisher) {
+            PaymentService paymentService, RealTimeEventPublisher realTimeEventPublisher,
+            GroupMembershipIndex membershipIndex, QrCodeService qrCodeService,
+            CodeAllocator codeAllocator, GroupVersionService groupVersionService,
+            GroupComputationCoalescer coalescer) {
         this.groupRepository = groupRepository;
         this.memberRepository = memberRepository;
         this.expenseRepository = expenseRepository;
@@ -53,6 +55,11 @@ public class GroupService {
         this.groupShareRepository = groupShareRepository;
         this.paymentService = paymentService;
         this.realTimeEventPublisher = realTimeEventPublisher;
+        this.membershipIndex = membershipIndex;
+        this.qrCodeService = qrCodeService;
+        this.codeAllocator = codeAllocator;
+        this.groupVersionService = groupVersionService;
+        this.coalescer = coalescer;
     }
 
     private Map<String, Object> buildGroupLight(Group group) {
@@ -105,8 +112,7 @@ public class GroupService {
         group.setName(request.getName().trim());
         group.setDescription(request.getDescription());
 
-        String joinCode = generateUniqueJoinCode();
-        group.setCode(joinCode);
+        group.setCode(codeAllocator.nextJoinCode());
 
         Member creator = null;
         if (jwt != null) {
@@ -121,9 +127,11 @@ public class GroupService {
             group.addMember(creator);
         }
 
-        Group savedGroup = groupRepository.save(group);
+        Group savedGroup = saveWithUniqueCode(group);
+        String joinCode = savedGroup.getCode();
         if (creator != null) {
             memberRepository.save(creator);
+            membershipIndex.memberJoined(creator.getId(), savedGroup.getId());
         }
 
         GroupResponse response = new GroupResponse();
@@ -133,7 +141,8 @@ public class GroupService {
         response.setCreatedAt(savedGroup.getCreatedAt());
         response.setIsActive(savedGroup.getIsActive());
         response.setJoinCode(joinCode);
-        response.setQrCodeBase64(generateQrCodeBase64(joinCode));
+        response.setQrCodeBase64(qrCodeService.base64(joinCode));
+        response.setQrCodeUrl(qrCodeUrl(savedGroup.getId()));
 
         java.util.Map<String, Object> createdPayload = new java.util.HashMap<>();
         createdPayload.put("groupId", savedGroup.getId());
@@ -151,19 +160,24 @@ public class GroupService {
         return response;
     }
 
+    /**
+     * Las búsquedas de grupos no devuelven los que están pendientes de
+     * eliminación, así que ni se muestran ni admiten altas, gastos o pagos
+     */
     public Optional<Group> getGroupById(Long id) {
-        return groupRepository.findById(id);
+        return groupRepository.findById(id).filter(group -> !group.isPendingDeletion());
     }
 
     public Optional<Group> findById(Long id) {
-        return groupRepository.findById(id);
+        return getGroupById(id);
     }
 
     public Optional<Group> findByShareCode(String shareCode) {
         if (shareCode == null) {
             return Optional.empty();
         }
-        return Optional.ofNullable(groupRepository.findByCodeIgnoreCase(shareCode.trim()));
+        return Optional.ofNullable(groupRepository.findByCodeIgnoreCase(shareCode.trim()))
+                .filter(group -> !group.isPendingDeletion());
     }
 
     public Optional<Group> findByCodeOrId(String codeOrId) {
@@ -174,12 +188,12 @@ public class GroupService {
         String normalized = codeOrId.trim();
         Group byCode = groupRepository.findByCodeIgnoreCase(normalized);
         if (byCode != null) {
-            return Optional.of(byCode);
+            return Optional.of(byCode).filter(group -> !group.isPendingDeletion());
         }
 
         try {
             Long numericId = Long.valueOf(normalized);
-            return groupRepository.findById(numericId);
+            return getGroupById(numericId);
         } catch (NumberFormatException ignored) {
             return Optional.empty();
         }
@@ -189,48 +203,82 @@ public class GroupService {
         List<Group> groups = groupRepository.findAll();
         List<Map<String, Object>> result = new ArrayList<>();
         for (Group group : groups) {
-            result.add(buildGroupLight(group));
+            if (!group.isPendingDeletion()) {
+                result.add(buildGroupLight(group));
+            }
         }
         return result;
     }
 
-    public List<Map<String, Object>> getGroupsForMember(Long memberId) {
+    /**
+     * Grupos del miembro para la pantalla de inicio, resueltos con una sola
+     * consulta de agregados: "groups" (donde es miembro) y "createdGroups"
+     * (los que creó), cada uno con el balance neto del miembro en el grupo
+     */
+    public Map<String, List<Map<String, Object>>> getGroupsOverviewForMember(Long memberId) {
+        List<Map<String, Object>> groups = new ArrayList<>();
+        List<Map<String, Object>> createdGroups = new ArrayList<>();
         if (memberId == null) {
-            return List.of();
+            return Map.of("groups", groups, "createdGroups", createdGroups);
         }
 
-        List<Group> groups = groupRepository.findByMemberId(memberId);
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (Group group : groups) {
-            result.add(buildGroupLight(group, memberId));
+        for (GroupDashboardRow row : groupRepository.findDashboardForMember(memberId)) {
+            Map<String, Object> groupInfo = buildGroupLight(row, memberId);
+            if (row.viewerIsMember()) {
+                groups.add(groupInfo);
+            }
+            if (memberId.equals(row.createdById())) {
+                createdGroups.add(groupInfo);
+            }
         }
-        return result;
+        return Map.of("groups", groups, "createdGroups", createdGroups);
     }
 
-    public List<Map<String, Object>> getGroupsCreatedBy(Long memberId) {
-        if (memberId == null) {
-            return List.of();
+    private Map<String, Object> buildGroupLight(GroupDashboardRow row, Long viewerMemberId) {
+        Map<String, Object> groupInfo = new HashMap<>();
+        groupInfo.put("id", row.id());
+        groupInfo.put("name", row.name());
+        groupInfo.put("description", row.description());
+        groupInfo.put("code", row.code());
+        groupInfo.put("isActive", row.isActive());
+        groupInfo.put("createdAt", row.createdAt());
+
+        if (row.createdById() != null) {
+            Map<String, Object> creatorInfo = new HashMap<>();
+            creatorInfo.put("id", row.createdById());
+            creatorInfo.put("name", row.createdByName());
+            creatorInfo.put("email", row.createdByEmail());
+            groupInfo.put("createdBy", creatorInfo);
         }
 
-        List<Group> groups = groupRepository.findByCreatedById(memberId);
-        List<Map<String, Object>> result = new ArrayList<>();
-        for (Group group : groups) {
-            result.add(buildGroupLight(group, memberId));
-        }
-        return result;
+        groupInfo.put("totalMembers", row.memberCount() != null ? row.memberCount().intValue() : 0);
+        groupInfo.put("totalExpenses", row.expenseCount() != null ? row.expenseCount().intValue() : 0);
+        groupInfo.put("totalAmount", row.totalAmount() != null ? row.totalAmount() : 0.0);
+
+        groupInfo.put("currentUserIsMember", row.viewerIsMember());
+        groupInfo.put("currentUserIsOwner", viewerMemberId.equals(row.createdById()));
+        groupInfo.put("myTotalPaid", MathUtils.roundToTwoDecimals(valueOrZero(row.viewerPaid())));
+        groupInfo.put("myTotalOwed", MathUtils.roundToTwoDecimals(valueOrZero(row.viewerOwed())));
+        groupInfo.put("myBalance", row.viewerBalance());
+        return groupInfo;
+    }
+
+    private static double valueOrZero(Double value) {
+        return value != null ? value : 0.0;
     }
 
     /**
      * Actualiza un grupo existente
      */
     public Group updateGroup(Long id, Group updatedGroup) throws Exception {
-        Group existing = groupRepository.findById(id)
+        Group existing = getGroupById(id)
                 .orElseThrow(() -> new Exception("Grupo no encontrado"));
 
         existing.setName(updatedGroup.getName());
         existing.setDescription(updatedGroup.getDescription());
 
         Group savedGroup = groupRepository.save(existing);
+        groupVersionService.bump(savedGroup.getId());
 
         java.util.Map<String, Object> updatedPayload = new java.util.HashMap<>();
         updatedPayload.put("groupId", savedGroup.getId());
@@ -240,77 +288,6 @@ public class GroupService {
         return savedGroup;
     }
 
-    /**
-     * Elimina un grupo por su ID
-     */
-    @Transactional
-    public Map<String, Object> deleteGroup(Long id, Long requestingUserId) {
-        Map<String, Object> result = new HashMap<>();
-
-        if (requestingUserId == null) {
-            result.put("error", "Usuario solicitante inválido");
-            result.put("reason", "FORBIDDEN");
-            return result;
-        }
-
-        Optional<Group> groupOpt = groupRepository.findById(id);
-        if (groupOpt.isEmpty()) {
-            result.put("error", "Grupo no encontrado");
-            result.put("reason", "NOT_FOUND");
-            return result;
-        }
-
-        Group group = groupOpt.get();
-
-        if (group.getCreatedBy() == null || group.getCreatedBy().getId() == null
-                || !group.getCreatedBy().getId().equals(requestingUserId)) {
-            result.put("error", "Solo el creador del grupo puede eliminarlo");
-            result.put("reason", "FORBIDDEN");
-            return result;
-        }
-
-        // Limpiar pagos y balances agregados antes de eliminar el grupo
-        paymentService.deletePaymentsByGroup(id);
-
-        List<com.apachehub.deudacero.entities.GroupShare> groupShares = groupShareRepository.findByGroupId(id);
-        if (!groupShares.isEmpty()) {
-            groupShareRepository.deleteAll(groupShares);
-        }
-
-        // Eliminar relaciones con miembros para limpiar la tabla pivote, conservar
-        // lista para eventos
-        List<Member> members = new ArrayList<>(group.getMembers());
-        for (Member member : members) {
-            group.removeMember(member);
-        }
-        if (!members.isEmpty()) {
-            memberRepository.saveAll(members);
-        }
-
-        groupRepository.delete(group);
-
-        result.put("success", true);
-        result.put("message", "Grupo eliminado exitosamente");
-        result.put("groupId", id);
-
-        java.util.Map<String, Object> deletedPayload = new java.util.HashMap<>();
-        deletedPayload.put("groupId", id);
-        deletedPayload.put("deletedBy", requestingUserId);
-        realTimeEventPublisher.publishGroupEvent(id, "group.deleted", deletedPayload);
-
-        for (Member member : members) {
-            if (member != null && member.getId() != null) {
-                java.util.Map<String, Object> memberPayload = new java.util.HashMap<>();
-                memberPayload.put("groupId", id);
-                memberPayload.put("name", group.getName());
-                memberPayload.put("reason", "deleted");
-                memberPayload.put("timestamp", java.time.Instant.now().toString());
-                realTimeEventPublisher.publishUserEvent(member.getId(), "user.group.deleted", memberPayload);
-            }
-        }
-        return result;
-    }
-
     /**
      * Permite a un miembro unirse a un grupo
      */
@@ -330,6 +307,7 @@ public class GroupService {
         group.addMember(member);
         groupRepository.save(group);
         Member saved = memberRepository.save(member);
+        membershipIndex.memberJoined(member.getId(), group.getId());
 
         // Si el cliente solicitó, re-split histórico automáticamente
         if (request.getApplyToHistory() != null && request.getApplyToHistory()) {
@@ -339,6 +317,7 @@ public class GroupService {
                 System.out.println("[GroupService] Error re-splitting expenses: " + e.getMessage());
             }
         }
+        groupVersionService.bump(group.getId());
 
         java.util.Map<String, Object> joinedPayload = new java.util.HashMap<>();
         joinedPayload.put("memberId", member.getId());
@@ -374,38 +353,21 @@ public class GroupService {
     }
 
     /**
-     * Genera un código de invitación único
+     * Guarda el grupo confiando en el índice único de code; solo si choca con un
+     * código antiguo se asigna otro y se reintenta
      */
-    private String generateUniqueJoinCode() {
-        String joinCode;
-        do {
-            joinCode = UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        } while (groupRepository.findByCodeIgnoreCase(joinCode) != null);
-
-        return joinCode;
-    }
-
-    /**
-     * Genera un código QR en formato base64
-     */
-    private String generateQrCodeBase64(String text) {
-        try {
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(text, BarcodeFormat.QR_CODE, 200, 200);
-
-            BufferedImage image = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
-            for (int x = 0; x < 200; x++) {
-                for (int y = 0; y < 200; y++) {
-                    image.setRGB(x, y, bitMatrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF);
+    private Group saveWithUniqueCode(Group group) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return groupRepository.save(group);
+            } catch (DataIntegrityViolationException e) {
+                if (attempt >= 3) {
+                    throw e;
                 }
+                System.out.println("[GroupService] Código de grupo " + group.getCode() + " ya en uso, se asigna otro");
+                group.setId(null);
+                group.setCode(codeAllocator.nextJoinCode());
             }
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(image, "png", baos);
-            return Base64.getEncoder().encodeToString(baos.toByteArray());
-        } catch (Exception e) {
-            System.out.println("[GroupService] Error generando QR: " + e.getMessage());
-            return null;
         }
     }
 
@@ -414,28 +376,90 @@ public class GroupService {
      * balances
      */
     public Optional<Map<String, Object>> getGroupDetails(Long id) {
-        return getGroupById(id).map(this::buildGroupDetailsMap);
+        return getGroupById(id).map(group -> buildGroupDetailsMap(group, false));
     }
 
     public Optional<Map<String, Object>> getGroupDetailsForViewer(Long id, Long viewerMemberId) {
-        Optional<Group> groupOpt = getGroupById(id);
-        if (groupOpt.isEmpty()) {
+        return getGroupDetailsForViewer(id, viewerMemberId, false);
+    }
+
+    /**
+     * Detalles del grupo para un miembro. El QR se sirve aparte en
+     * {@code qrCodeUrl}; {@code includeQr} añade además el PNG en base64 para
+     * clientes antiguos.
+     *
+     * El acceso se comprueba para cada petición; el cálculo de los detalles se
+     * comparte entre las peticiones simultáneas para la misma versión del
+     * grupo.
+     */
+    public Optional<Map<String, Object>> getGroupDetailsForViewer(Long id, Long viewerMemberId, boolean includeQr) {
+        Optional<GroupVersion> version = groupVersionService.current(id);
+        if (version.isEmpty()) {
             return Optional.empty();
         }
 
-        Group group = groupOpt.get();
+        // El caso habitual se confirma con una consulta por clave sin cargar el
+        // grupo; si no se confirma (p. ej. el índice aún no ve un alta hecha en
+        // otra réplica), la comprobación definitiva se hace sobre la entidad
+        if (!membershipIndex.canAccess(viewerMemberId, id)) {
+            Optional<Group> groupOpt = getGroupById(id);
+            if (groupOpt.isEmpty()) {
+                return Optional.empty();
+            }
+            if (!canView(groupOpt.get(), viewerMemberId)) {
+                throw new AccessDeniedException("El miembro no pertenece a este grupo");
+            }
+        }
+
+        Map<String, Object> details = coalescer.compute(includeQr ? "details-qr" : "details", id,
+                version.get().version(),
+                () -> getGroupById(id).map(group -> buildGroupDetailsMap(group, includeQr)).orElse(null));
+        return Optional.ofNullable(details);
+    }
+
+    private static boolean canView(Group group, Long viewerMemberId) {
         boolean isOwner = viewerMemberId != null && group.getCreatedBy() != null
                 && viewerMemberId.equals(group.getCreatedBy().getId());
         boolean isMember = viewerMemberId != null && group.hasMember(viewerMemberId);
+        return isOwner || isMember;
+    }
 
-        if (!isOwner && !isMember) {
+    /**
+     * Versión de los datos del grupo para peticiones condicionales. Vacío si no
+     * se confirma el acceso del miembro: entonces la petición sigue por la ruta
+     * completa, que responde 403 o 404. Un 304 nunca se da sin confirmar en la
+     * base de datos que el miembro sigue en el grupo.
+     */
+    public Optional<GroupVersion> getGroupVersionForViewer(Long id, Long viewerMemberId) {
+        if (!membershipIndex.canAccess(viewerMemberId, id)) {
+            return Optional.empty();
+        }
+        return groupVersionService.current(id);
+    }
+
+    /**
+     * PNG del QR del grupo si el miembro pertenece a él
+     */
+    public Optional<QrCodeService.QrImage> getGroupQrForViewer(Long id, Long viewerMemberId) {
+        Optional<Group> groupOpt = getGroupById(id);
+        if (groupOpt.isEmpty()) {
+            return Optional.empty();
+        }
+
+        // El índice descarta sin consulta a quien no es miembro; el positivo se
+        // confirma en la base de datos (incluye al creador)
+        if (!membershipIndex.canAccess(viewerMemberId, id)) {
             throw new AccessDeniedException("El miembro no pertenece a este grupo");
         }
 
-        return Optional.of(buildGroupDetailsMap(group));
+        return Optional.of(qrCodeService.image(groupOpt.get().getCode()));
     }
 
-    private Map<String, Object> buildGroupDetailsMap(Group group) {
+    public static String qrCodeUrl(Long groupId) {
+        return "/api/groups/" + groupId + "/qr.png";
+    }
+
+    private Map<String, Object> buildGroupDetailsMap(Group group, boolean includeQr) {
         Map<String, Object> groupDetails = new java.util.HashMap<>();
 
         // Información básica del grupo
@@ -666,9 +690,11 @@ public class GroupService {
             System.out.println("[GroupService] Error agregando shares agregados: " + e.getMessage());
         }
 
-        // Generar y agregar QR code
-        String qrCodeBase64 = generateQRCode(group.getCode());
-        groupDetails.put("qrCodeBase64", qrCodeBase64);
+        // El QR se descarga aparte (cacheable); el base64 solo si el cliente lo pide
+        groupDetails.put("qrCodeUrl", qrCodeUrl(group.getId()));
+        if (includeQr) {
+            groupDetails.put("qrCodeBase64", qrCodeService.base64(group.getCode()));
+        }
 
         return groupDetails;
     }
@@ -698,6 +724,8 @@ public class GroupService {
         group.addMember(member);
         groupRepository.save(group);
         memberRepository.save(member);
+        membershipIndex.memberJoined(member.getId(), group.getId());
+        groupVersionService.bump(group.getId());
 
         Map<String, Object> result = new java.util.HashMap<>();
         result.put("message", "Miembro agregado al grupo exitosamente");
@@ -730,7 +758,7 @@ public class GroupService {
      */
     public Member createGuestMemberAndAddToGroup(Long groupId, String memberName, String email) throws Exception {
         // Verificar que el grupo existe
-        Group group = groupRepository.findById(groupId)
+        Group group = getGroupById(groupId)
                 .orElseThrow(() -> new Exception("Grupo no encontrado"));
 
         // Validar nombre requerido
@@ -751,6 +779,8 @@ public class GroupService {
         // Asociar al miembro con el grupo
         group.addMember(savedMember);
         groupRepository.save(group);
+        membershipIndex.memberJoined(savedMember.getId(), group.getId());
+        groupVersionService.bump(group.getId());
 
         System.out.println("✅ Miembro invitado '" + memberName + "' (ID: " + savedMember.getId()
                 + ") creado y agregado al grupo '" + group.getName() + "' (ID: " + group.getId() + ")");
@@ -827,17 +857,20 @@ public class GroupService {
             // Eliminar el miembro del grupo
             group.removeMember(member);
             groupRepository.save(group);
+            membershipIndex.memberLeft(memberId, groupId);
 
             // Si es un miembro invitado (no registrado) y no pertenece a otros grupos,
             // eliminarlo completamente
             if (!member.getIsRegistered() && (member.getGroups() == null || member.getGroups().isEmpty())) {
                 memberRepository.delete(member);
+                membershipIndex.evictMember(memberId);
                 result.put("message", "Miembro invitado '" + memberName + "' eliminado del grupo exitosamente");
             } else {
                 // Si es un miembro registrado, solo removerlo del grupo
                 memberRepository.save(member);
                 result.put("message", "Miembro '" + memberName + "' removido del grupo exitosamente");
             }
+            groupVersionService.bump(groupId);
 
             result.put("success", true);
             result.put("removedMemberName", memberName);
@@ -858,32 +891,6 @@ public class GroupService {
         return result;
     }
 
-    /**
-     * Genera un código QR en formato Base64 para el código del grupo
-     */
-    private String generateQRCode(String groupCode) {
-        try {
-            QRCodeWriter qrCodeWriter = new QRCodeWriter();
-            BitMatrix bitMatrix = qrCodeWriter.encode(groupCode, BarcodeFormat.QR_CODE, 200, 200);
-
-            BufferedImage bufferedImage = new BufferedImage(200, 200, BufferedImage.TYPE_INT_RGB);
-            for (int x = 0; x < 200; x++) {
-                for (int y = 0; y < 200; y++) {
-                    bufferedImage.setRGB(x, y, bitMatrix.get(x, y) ? 0x000000 : 0xFFFFFF);
-                }
-            }
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            ImageIO.write(bufferedImage, "png", baos);
-            byte[] imageBytes = baos.toByteArray();
-
-            return Base64.getEncoder().encodeToString(imageBytes);
-        } catch (Exception e) {
-            System.err.println("Error generando QR code: " + e.getMessage());
-            return ""; // Retorna cadena vacía en caso de error
-        }
-    }
-
     private Map<Long, Double> castBalanceMap(Object balancesObj) {
         Map<Long, Double> result = new HashMap<>();
         if (balancesObj instanceof Map<?, ?> rawMap) {
@@ -0,0 +1,110 @@
+package com.apachehub.deudacero.services;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+import org.springframework.http.CacheControl;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+import com.apachehub.deudacero.dto.GroupVersion;
+import com.apachehub.deudacero.repositories.GroupRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Versión por grupo para las peticiones condicionales de los endpoints que los
+ * clientes consultan periódicamente (detalles, gastos, balances).
+ *
+ * Cada escritura de gastos, pagos o miembros llama a {@link #bump(Long)}
+ * después de guardar. Las lecturas consultan la versión (una fila por clave
+ * primaria, sin cargar la entidad) antes de calcular nada y responden 304 si el
+ * cliente ya tiene esa versión. La versión vive en la tabla groups, así que es
+ * la misma en todas las réplicas.
+ */
+@Service
+public class GroupVersionService {
+
+    // El cliente puede guardar la respuesta pero debe revalidarla en cada uso
+    public static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private final GroupRepository groupRepository;
+    private final Counter notModified;
+    private final Counter modified;
+    private final Counter bumps;
+
+    public GroupVersionService(GroupRepository groupRepository, MeterRegistry meterRegistry) {
+        this.groupRepository = groupRepository;
+        this.notModified = Counter.builder("yopago.group.version.checks")
+                .tag("result", "not_modified")
+                .description("Peticiones condicionales respondidas con 304")
+                .register(meterRegistry);
+        this.modified = Counter.builder("yopago.group.version.checks")
+                .tag("result", "modified")
+                .description("Peticiones que hubo que calcular")
+                .register(meterRegistry);
+        this.bumps = Counter.builder("yopago.group.version.bumps")
+                .description("Escrituras que cambiaron la versión de un grupo")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Versión actual del grupo; vacío si no existe
+     */
+    public Optional<GroupVersion> current(Long groupId) {
+        if (groupId == null) {
+            return Optional.empty();
+        }
+        return groupRepository.findVersion(groupId);
+    }
+
+    /**
+     * Compara la versión con If-None-Match / If-Modified-Since. En ambos casos
+     * deja ETag y Last-Modified en la respuesta; si devuelve true el controlador
+     * debe contestar 304 sin cuerpo.
+     */
+    public boolean isNotModified(WebRequest request, GroupVersion version, String resource) {
+        boolean unchanged = request.checkNotModified(version.etag(resource), version.lastModified());
+        (unchanged ? notModified : modified).increment();
+        return unchanged;
+    }
+
+    /**
+     * Consulta la versión y la compara con la petición. false si el grupo no
+     * existe o el cliente no tiene la versión actual.
+     */
+    public boolean isNotModified(WebRequest request, Long groupId, String resource) {
+        return current(groupId)
+                .map(version -> isNotModified(request, version, resource))
+                .orElse(false);
+    }
+
+    /**
+     * Marca los datos del grupo como modificados. Se llama después de la
+     * escritura: así una lectura concurrente nunca asocia la versión nueva a
+     * datos viejos.
+     */
+    public void bump(Long groupId) {
+        if (groupId == null) {
+            return;
+        }
+        if (groupRepository.bumpVersion(groupId, LocalDateTime.now()) > 0) {
+            bumps.increment();
+        }
+    }
+
+    /**
+     * Marca como modificados los grupos en los que participa o que creó el
+     * miembro. Se llama cuando cambian datos suyos que muestran los detalles
+     * del grupo (nombre, email, invitado o registrado).
+     */
+    public void bumpGroupsOf(Long memberId) {
+        if (memberId == null) {
+            return;
+        }
+        for (Long groupId : groupRepository.findGroupIdsForMember(memberId)) {
+            bump(groupId);
+        }
+    }
+}
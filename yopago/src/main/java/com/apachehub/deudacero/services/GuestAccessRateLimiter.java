@@ -0,0 +1,233 @@
+package com.apachehub.deudacero.services;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Limita los accesos públicos de invitados (código de grupo e invitaciones) con
+ * token buckets en memoria por IP del cliente y por código, antes de tocar la
+ * base de datos.
+ *
+ * Los buckets se reparten en varias franjas (mapas independientes) y se
+ * actualizan con CAS, sin locks. Cada franja tiene un tope de claves y las que
+ * llevan tiempo inactivas se eliminan: un bucket inactivo ya se habría
+ * rellenado, así que borrarlo no cambia el resultado. Si la franja está llena
+ * sin claves inactivas se elimina la de acceso más antiguo, nunca toda la
+ * franja: los buckets que se siguen usando (los que están limitando) se
+ * conservan.
+ */
+@Component
+public class GuestAccessRateLimiter {
+
+    private static final int STRIPES = 16;
+
+    private final boolean enabled;
+    private final Limit ipLimit;
+    private final Limit codeLimit;
+    private final int maxKeysPerStripe;
+    private final long idleNanos;
+    private final LongSupplier nanoClock;
+    @SuppressWarnings("unchecked")
+    private final Map<String, Bucket>[] stripes = new Map[STRIPES];
+
+    private final Counter allowed;
+    private final Counter rejectedByIp;
+    private final Counter rejectedByCode;
+    private final Counter evicted;
+
+    @Autowired
+    public GuestAccessRateLimiter(MeterRegistry meterRegistry,
+            @Value("${app.guest.rate-limit.enabled:true}") boolean enabled,
+            @Value("${app.guest.rate-limit.ip.capacity:20}") int ipCapacity,
+            @Value("${app.guest.rate-limit.ip.refill-per-minute:10}") int ipRefillPerMinute,
+            @Value("${app.guest.rate-limit.code.capacity:30}") int codeCapacity,
+            @Value("${app.guest.rate-limit.code.refill-per-minute:15}") int codeRefillPerMinute,
+            @Value("${app.guest.rate-limit.max-keys:50000}") int maxKeys,
+            @Value("${app.guest.rate-limit.idle-minutes:10}") long idleMinutes) {
+        this(meterRegistry, enabled, new Limit(ipCapacity, ipRefillPerMinute),
+                new Limit(codeCapacity, codeRefillPerMinute), maxKeys, idleMinutes, System::nanoTime);
+    }
+
+    GuestAccessRateLimiter(MeterRegistry meterRegistry, boolean enabled, Limit ipLimit, Limit codeLimit,
+            int maxKeys, long idleMinutes, LongSupplier nanoClock) {
+        this.enabled = enabled;
+        this.ipLimit = ipLimit;
+        this.codeLimit = codeLimit;
+        this.maxKeysPerStripe = Math.max(1, maxKeys / STRIPES);
+        this.idleNanos = TimeUnit.MINUTES.toNanos(Math.max(1, idleMinutes));
+        this.nanoClock = nanoClock;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ConcurrentHashMap<>();
+        }
+
+        this.allowed = counter(meterRegistry, "allowed", "none");
+        this.rejectedByIp = counter(meterRegistry, "rejected", "ip");
+        this.rejectedByCode = counter(meterRegistry, "rejected", "code");
+        this.evicted = Counter.builder("yopago.guest.rate-limit.evicted")
+                .description("Buckets de invitados eliminados por inactividad o por tope de memoria")
+                .register(meterRegistry);
+        Gauge.builder("yopago.guest.rate-limit.keys", this, GuestAccessRateLimiter::size)
+                .description("Claves con bucket activo en el limitador de invitados")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Consume un token del bucket de la IP y otro del código. Devuelve 0 si se
+     * permite el acceso o los segundos a esperar si se rechaza.
+     */
+    public long tryAcquire(String clientIp, String code) {
+        if (!enabled) {
+            return 0;
+        }
+        long now = nanoClock.getAsLong();
+
+        long waitNanos = bucket("ip:" + (clientIp != null ? clientIp : "desconocida"), ipLimit, now)
+                .tryConsume(ipLimit, now);
+        if (waitNanos > 0) {
+            rejectedByIp.increment();
+            return toRetryAfterSeconds(waitNanos);
+        }
+        if (code != null && !code.isBlank()) {
+            String key = "code:" + code.trim().toUpperCase(Locale.ROOT);
+            waitNanos = bucket(key, codeLimit, now).tryConsume(codeLimit, now);
+            if (waitNanos > 0) {
+                rejectedByCode.increment();
+                return toRetryAfterSeconds(waitNanos);
+            }
+        }
+        allowed.increment();
+        return 0;
+    }
+
+    @Scheduled(fixedDelayString = "${app.guest.rate-limit.sweep-interval-ms:60000}")
+    public void evictIdle() {
+        long now = nanoClock.getAsLong();
+        for (Map<String, Bucket> stripe : stripes) {
+            evictIdle(stripe, now);
+        }
+    }
+
+    private Bucket bucket(String key, Limit limit, long now) {
+        Map<String, Bucket> stripe = stripes[(key.hashCode() & 0x7fffffff) % STRIPES];
+        Bucket bucket = stripe.get(key);
+        if (bucket == null) {
+            if (stripe.size() >= maxKeysPerStripe) {
+                evictIdle(stripe, now);
+                // Sin claves inactivas: sale la de acceso más antiguo
+                while (stripe.size() >= maxKeysPerStripe) {
+                    if (!evictLeastRecentlyUsed(stripe)) {
+                        break;
+                    }
+                }
+            }
+            bucket = stripe.computeIfAbsent(key, ignored -> new Bucket(limit.capacity(), now));
+        }
+        bucket.lastAccessNanos = now;
+        return bucket;
+    }
+
+    private void evictIdle(Map<String, Bucket> stripe, long now) {
+        int before = stripe.size();
+        stripe.values().removeIf(bucket -> now - bucket.lastAccessNanos > idleNanos);
+        int removed = before - stripe.size();
+        if (removed > 0) {
+            evicted.increment(removed);
+        }
+    }
+
+    private boolean evictLeastRecentlyUsed(Map<String, Bucket> stripe) {
+        Map.Entry<String, Bucket> eldest = null;
+        for (Map.Entry<String, Bucket> entry : stripe.entrySet()) {
+            if (eldest == null || entry.getValue().lastAccessNanos < eldest.getValue().lastAccessNanos) {
+                eldest = entry;
+            }
+        }
+        if (eldest == null) {
+            return false;
+        }
+        if (stripe.remove(eldest.getKey(), eldest.getValue())) {
+            evicted.increment();
+        }
+        return true;
+    }
+
+    int size() {
+        int size = 0;
+        for (Map<String, Bucket> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private static long toRetryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result, String limitedBy) {
+        return Counter.builder("yopago.guest.rate-limit")
+                .description("Accesos públicos de invitados evaluados por el limitador")
+                .tag("result", result)
+                .tag("limited_by", limitedBy)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Capacidad del bucket (ráfaga máxima) y tokens que se reponen por minuto
+     */
+    record Limit(int capacity, int refillPerMinute) {
+
+        Limit {
+            capacity = Math.max(1, capacity);
+            refillPerMinute = Math.max(1, refillPerMinute);
+        }
+
+        double tokensPerNano() {
+            return refillPerMinute / (double) TimeUnit.MINUTES.toNanos(1);
+        }
+    }
+
+    private static final class Bucket {
+
+        private final AtomicReference<State> state;
+        private volatile long lastAccessNanos;
+
+        Bucket(int capacity, long now) {
+            this.state = new AtomicReference<>(new State(capacity, now));
+            this.lastAccessNanos = now;
+        }
+
+        /**
+         * Devuelve 0 si consumió un token o los nanosegundos hasta el siguiente
+         */
+        long tryConsume(Limit limit, long now) {
+            while (true) {
+                State current = state.get();
+                long updated = Math.max(now, current.updatedNanos());
+                double tokens = Math.min(limit.capacity(),
+                        current.tokens() + (updated - current.updatedNanos()) * limit.tokensPerNano());
+                if (tokens < 1) {
+                    return (long) Math.ceil((1 - tokens) / limit.tokensPerNano());
+                }
+                if (state.compareAndSet(current, new State(tokens - 1, updated))) {
+                    return 0;
+                }
+            }
+        }
+    }
+
+    private record State(double tokens, long updatedNanos) {
+    }
+}
@@ -0,0 +1,159 @@
+package com.apachehub.deudacero.services;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Streams SSE para invitados: entrega los mismos eventos de grupo que
+ * RealTimeEventPublisher envía por STOMP, pero autenticados con el token de
+ * invitado.
+ *
+ * Cada conexión tiene su propia cola y un hilo virtual que la consume, de modo
+ * que miles de streams inactivos apenas consumen recursos y un cliente lento no
+ * bloquea al resto.
+ */
+@Service
+public class GuestEventStreamService {
+
+    private static final Object HEARTBEAT = new Object();
+
+    private final Map<Long, Set<GuestStream>> streamsByGroup = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService heartbeatScheduler;
+    private final long timeoutMillis;
+    private final int queueCapacity;
+
+    public GuestEventStreamService(MeterRegistry meterRegistry,
+            @Value("${app.guest.sse.timeout-ms:1800000}") long timeoutMillis,
+            @Value("${app.guest.sse.queue-capacity:256}") int queueCapacity,
+            @Value("${app.guest.sse.heartbeat-seconds:25}") long heartbeatSeconds) {
+        this.timeoutMillis = timeoutMillis;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.heartbeatScheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofVirtual().name("guest-sse-heartbeat").factory());
+        long period = Math.max(1, heartbeatSeconds);
+        this.heartbeatScheduler.scheduleAtFixedRate(this::sendHeartbeats, period, period, TimeUnit.SECONDS);
+
+        Gauge.builder("yopago.guest.sse.connections", this, GuestEventStreamService::openStreams)
+                .description("Streams SSE de invitados abiertos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Abre un stream SSE para el invitado del grupo indicado
+     */
+    public SseEmitter subscribe(Long groupId, Long memberId) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        GuestStream stream = new GuestStream(groupId, emitter, new LinkedBlockingQueue<>(queueCapacity));
+
+        streamsByGroup.compute(groupId, (id, streams) -> {
+            Set<GuestStream> target = streams != null ? streams : ConcurrentHashMap.newKeySet();
+            target.add(stream);
+            return target;
+        });
+        emitter.onCompletion(() -> close(stream));
+        emitter.onTimeout(() -> close(stream));
+        emitter.onError(error -> close(stream));
+
+        stream.worker = Thread.ofVirtual()
+                .name("guest-sse-" + groupId + "-" + memberId)
+                .start(() -> deliver(stream));
+
+        stream.queue.offer(Map.of("type", "stream.opened", "groupId", groupId, "memberId", memberId));
+        return emitter;
+    }
+
+    /**
+     * Encola un evento de grupo para todos los invitados conectados al grupo
+     */
+    public void publish(Long groupId, Map<String, Object> event) {
+        Set<GuestStream> streams = streamsByGroup.get(groupId);
+        if (streams == null || streams.isEmpty()) {
+            return;
+        }
+        for (GuestStream stream : streams) {
+            if (!stream.queue.offer(event)) {
+                // Cola llena: el cliente no consume, cerrar para que reconecte
+                stream.emitter.complete();
+                close(stream);
+            }
+        }
+    }
+
+    public int openStreams() {
+        return streamsByGroup.values().stream().mapToInt(Set::size).sum();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        heartbeatScheduler.shutdownNow();
+        streamsByGroup.values().forEach(streams -> streams.forEach(stream -> {
+            stream.emitter.complete();
+            close(stream);
+        }));
+    }
+
+    private void deliver(GuestStream stream) {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                Object next = stream.queue.take();
+                if (next == HEARTBEAT) {
+                    stream.emitter.send(SseEmitter.event().comment("keep-alive"));
+                    continue;
+                }
+                SseEmitter.SseEventBuilder event = SseEmitter.event().data(next);
+                if (next instanceof Map<?, ?> map && map.get("type") != null) {
+                    event.name(map.get("type").toString());
+                }
+                stream.emitter.send(event);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException | IllegalStateException e) {
+            // Cliente desconectado o emitter ya completado
+            close(stream);
+        }
+    }
+
+    private void sendHeartbeats() {
+        streamsByGroup.values().forEach(streams -> streams.forEach(stream -> stream.queue.offer(HEARTBEAT)));
+    }
+
+    private void close(GuestStream stream) {
+        streamsByGroup.computeIfPresent(stream.groupId, (id, streams) -> {
+            streams.remove(stream);
+            return streams.isEmpty() ? null : streams;
+        });
+        Thread worker = stream.worker;
+        if (worker != null && worker != Thread.currentThread()) {
+            worker.interrupt();
+        }
+    }
+
+    private static final class GuestStream {
+        private final Long groupId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue;
+        private volatile Thread worker;
+
+        private GuestStream(Long groupId, SseEmitter emitter, BlockingQueue<Object> queue) {
+            this.groupId = groupId;
+            this.emitter = emitter;
+            this.queue = queue;
+        }
+    }
+}
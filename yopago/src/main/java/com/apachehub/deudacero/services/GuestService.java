@@ -43,6 +43,9 @@ public class GuestService {
     @Autowired
     private GroupInvitationService groupInvitationService;
 
+    @Autowired
+    private GroupVersionService groupVersionService;
+
     /**
      * 🔐 Permite el acceso de un invitado usando código de grupo
      */
@@ -261,6 +264,7 @@ public class GuestService {
         // Actualizar el pagador
         expense.setPayer(newPayer);
         expenseRepository.save(expense);
+        groupVersionService.bump(groupId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -286,6 +290,7 @@ public class GuestService {
                 memberIds.size(), divisionType);
         expense.setNote(expense.getNote() + " - " + divisionNote);
         expenseRepository.save(expense);
+        groupVersionService.bump(groupId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -582,6 +587,7 @@ public class GuestService {
         payment.setCurrency("USD");
 
         payment = paymentRepository.save(payment);
+        groupVersionService.bump(groupId);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
@@ -671,6 +677,7 @@ public class GuestService {
         // Confirmar el pago
         payment.setConfirmed(true);
         payment = paymentRepository.save(payment);
+        groupVersionService.bump(groupId);
 
         // Crear respuesta ligera
         Map<String, Object> response = new HashMap<>();
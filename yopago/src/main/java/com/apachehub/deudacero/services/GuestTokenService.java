@@ -0,0 +1,130 @@
+package com.apachehub.deudacero.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Optional;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+/**
+ * Tokens firmados para invitados: llevan grupo, miembro y expiración, y se
+ * verifican solo con la firma HMAC, sin sesión ni consulta a base de datos.
+ * Cualquier réplica que comparta el secreto puede atender a cualquier invitado.
+ *
+ * Formato: base64url(versión | groupId | memberId | exp) + "." + base64url(HMAC-SHA256)
+ */
+@Service
+public class GuestTokenService {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final byte VERSION = 1;
+    private static final int PAYLOAD_BYTES = 1 + Long.BYTES * 3;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    private final SecretKeySpec key;
+    private final Duration ttl;
+    private final Clock clock;
+
+    @Autowired
+    public GuestTokenService(@Value("${app.guest.token.secret:}") String secret,
+            @Value("${app.guest.token.ttl-hours:24}") long ttlHours) {
+        this(secret, Duration.ofHours(Math.max(1, ttlHours)), Clock.systemUTC());
+    }
+
+    public GuestTokenService(String secret, Duration ttl, Clock clock) {
+        this.key = new SecretKeySpec(resolveSecret(secret), ALGORITHM);
+        this.ttl = ttl;
+        this.clock = clock;
+    }
+
+    /**
+     * Emite un token para el invitado del grupo indicado
+     */
+    public IssuedToken issue(Long groupId, Long memberId) {
+        if (groupId == null || memberId == null) {
+            throw new IllegalArgumentException("groupId y memberId son requeridos");
+        }
+        Instant expiresAt = clock.instant().plus(ttl);
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .put(VERSION)
+                .putLong(groupId)
+                .putLong(memberId)
+                .putLong(expiresAt.getEpochSecond())
+                .array();
+        String token = ENCODER.encodeToString(payload) + "." + ENCODER.encodeToString(sign(payload));
+        return new IssuedToken(token, Instant.ofEpochSecond(expiresAt.getEpochSecond()));
+    }
+
+    /**
+     * Verifica firma y expiración; vacío si el token no es válido
+     */
+    public Optional<GuestClaims> verify(String token) {
+        if (token == null || token.isBlank()) {
+            return Optional.empty();
+        }
+        int dot = token.indexOf('.');
+        if (dot <= 0 || dot != token.lastIndexOf('.')) {
+            return Optional.empty();
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            payload = DECODER.decode(token.substring(0, dot));
+            signature = DECODER.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        if (payload.length != PAYLOAD_BYTES || payload[0] != VERSION
+                || !MessageDigest.isEqual(sign(payload), signature)) {
+            return Optional.empty();
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(payload, 1, PAYLOAD_BYTES - 1);
+        long groupId = buffer.getLong();
+        long memberId = buffer.getLong();
+        Instant expiresAt = Instant.ofEpochSecond(buffer.getLong());
+        if (!clock.instant().isBefore(expiresAt)) {
+            return Optional.empty();
+        }
+        return Optional.of(new GuestClaims(groupId, memberId, expiresAt));
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo firmar el token de invitado", e);
+        }
+    }
+
+    private static byte[] resolveSecret(String secret) {
+        // Un secreto aleatorio por réplica invalidaría los tokens entre réplicas y
+        // tras cada reinicio, así que se exige configurarlo
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException("Falta configurar app.guest.token.secret (APP_GUEST_TOKEN_SECRET)");
+        }
+        return secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public record IssuedToken(String token, Instant expiresAt) {
+    }
+
+    public record GuestClaims(Long groupId, Long memberId, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.apachehub.deudacero.services;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.apachehub.deudacero.repositories.GroupInvitationRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Marca como expiradas las invitaciones pendientes vencidas con un único
+ * UPDATE en bloque sobre (status, expires_at), en lugar de hacerlo al listar
+ * las invitaciones de un grupo. Así el listado es solo lectura y las
+ * invitaciones que nadie consulta también expiran en la tabla.
+ */
+@Component
+public class InvitationExpirySweeper {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InvitationExpirySweeper.class);
+
+    private final GroupInvitationRepository invitationRepository;
+    private final boolean enabled;
+    private final Clock clock;
+    private final Counter expired;
+    private final Counter failures;
+    private final Timer sweeps;
+
+    @Autowired
+    public InvitationExpirySweeper(GroupInvitationRepository invitationRepository, MeterRegistry meterRegistry,
+            @Value("${app.invitations.expiry-sweep.enabled:true}") boolean enabled) {
+        this(invitationRepository, meterRegistry, enabled, Clock.systemDefaultZone());
+    }
+
+    InvitationExpirySweeper(GroupInvitationRepository invitationRepository, MeterRegistry meterRegistry,
+            boolean enabled, Clock clock) {
+        this.invitationRepository = invitationRepository;
+        this.enabled = enabled;
+        this.clock = clock;
+        this.expired = Counter.builder("yopago.invitations.expired")
+                .description("Invitaciones pendientes marcadas como expiradas por el barrido")
+                .register(meterRegistry);
+        this.failures = Counter.builder("yopago.invitations.expiry-sweep.failures")
+                .description("Barridos de expiración de invitaciones fallidos")
+                .register(meterRegistry);
+        this.sweeps = Timer.builder("yopago.invitations.expiry-sweep")
+                .description("Duración del barrido de expiración de invitaciones")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${app.invitations.expiry-sweep.interval-ms:300000}",
+            initialDelayString = "${app.invitations.expiry-sweep.initial-delay-ms:60000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int updated = invitationRepository.expirePending(LocalDateTime.now(clock));
+            expired.increment(updated);
+            if (updated > 0) {
+                LOGGER.info("{} invitaciones marcadas como expiradas", updated);
+            }
+        } catch (RuntimeException e) {
+            failures.increment();
+            LOGGER.warn("Error expirando invitaciones: {}", e.getMessage(), e);
+        } finally {
+            sweeps.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.apachehub.deudacero.services;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.apachehub.deudacero.repositories.MemberRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Registra el último login de los miembros fuera del camino de la petición.
+ * Los accesos se acumulan en memoria (uno por miembro, el más reciente) y se
+ * escriben periódicamente con un UPDATE en bloque por minuto, en lugar de una
+ * escritura sobre la fila del miembro en cada petición autenticada.
+ */
+@Component
+public class LastLoginFlusher {
+
+    private static final int MAX_IDS_PER_UPDATE = 500;
+
+    private final MemberRepository memberRepository;
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final Counter flushedMembers;
+
+    public LastLoginFlusher(MemberRepository memberRepository, MeterRegistry meterRegistry) {
+        this.memberRepository = memberRepository;
+        this.flushedMembers = Counter.builder("yopago.members.last-login.flushed")
+                .description("Últimos logins escritos por el flusher en bloque")
+                .register(meterRegistry);
+        meterRegistry.gauge("yopago.members.last-login.pending", pending, Map::size);
+    }
+
+    /**
+     * Anota el acceso del miembro; varias peticiones seguidas se funden en una
+     */
+    public void record(Long memberId) {
+        if (memberId == null) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MINUTES);
+        pending.merge(memberId, now, (previous, current) -> current.isAfter(previous) ? current : previous);
+    }
+
+    @Scheduled(fixedDelayString = "${app.members.last-login.flush-interval-ms:30000}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Se agrupan por minuto para escribir todos los del mismo minuto con un único UPDATE
+        Map<LocalDateTime, List<Long>> membersByMinute = new TreeMap<>();
+        for (Long memberId : List.copyOf(pending.keySet())) {
+            LocalDateTime lastLogin = pending.remove(memberId);
+            if (lastLogin != null) {
+                membersByMinute.computeIfAbsent(lastLogin, minute -> new ArrayList<>()).add(memberId);
+            }
+        }
+
+        membersByMinute.forEach((lastLogin, memberIds) -> {
+            for (int from = 0; from < memberIds.size(); from += MAX_IDS_PER_UPDATE) {
+                List<Long> chunk = memberIds.subList(from, Math.min(memberIds.size(), from + MAX_IDS_PER_UPDATE));
+                try {
+                    memberRepository.updateLastLogin(chunk, lastLogin);
+                    flushedMembers.increment(chunk.size());
+                } catch (RuntimeException e) {
+                    System.out.println("[LastLoginFlusher] No se pudo guardar el último login de " + chunk.size()
+                            + " miembros: " + e.getMessage());
+                    chunk.forEach(memberId -> pending.merge(memberId, lastLogin,
+                            (previous, current) -> current.isAfter(previous) ? current : previous));
+                }
+            }
+        });
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+}
@@ -12,9 +12,14 @@ import java.util.Optional;
 public class MemberService {
 
     private final MemberRepository memberRepository;
+    private final GroupMembershipIndex membershipIndex;
+    private final GroupVersionService groupVersionService;
 
-    public MemberService(MemberRepository memberRepository) {
+    public MemberService(MemberRepository memberRepository, GroupMembershipIndex membershipIndex,
+            GroupVersionService groupVersionService) {
         this.memberRepository = memberRepository;
+        this.membershipIndex = membershipIndex;
+        this.groupVersionService = groupVersionService;
     }
 
     /**
@@ -48,7 +53,10 @@ public class MemberService {
         existing.setName(updatedMember.getName());
         // Si hay más campos en el futuro, agregar aquí
 
-        return memberRepository.save(existing);
+        Member saved = memberRepository.save(existing);
+        // El nombre aparece en los detalles de sus grupos
+        groupVersionService.bumpGroupsOf(saved.getId());
+        return saved;
     }
 
     /**
@@ -59,6 +67,7 @@ public class MemberService {
             return false;
         }
         memberRepository.deleteById(id);
+        membershipIndex.evictMember(id);
         return true;
     }
 
@@ -0,0 +1,226 @@
+package com.apachehub.deudacero.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.apachehub.deudacero.entities.OcrResultCacheEntry;
+import com.apachehub.deudacero.repositories.OcrResultCacheRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Caché de resultados de OCR por contenido: hash SHA-256 de los bytes de la
+ * imagen → OcrResult. Primero consulta una caché local LRU acotada y después
+ * la tabla ocr_result_cache, de modo que el mismo recibo subido dos veces (o
+ * por dos miembros) solo cuesta una llamada a vision-ia.
+ */
+@Service
+public class OcrResultCache {
+
+    private final OcrResultCacheRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Map<String, LocalEntry> localEntries;
+    private final Duration ttl;
+    private final boolean enabled;
+
+    private final Counter localHits;
+    private final Counter persistentHits;
+    private final Counter misses;
+    private final Counter savedSeconds;
+    private final Timer visionCalls;
+
+    public OcrResultCache(OcrResultCacheRepository repository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${app.ocr.cache.enabled:true}") boolean enabled,
+            @Value("${app.ocr.cache.max-entries:500}") int maxEntries,
+            @Value("${app.ocr.cache.ttl-hours:720}") long ttlHours) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.ttl = Duration.ofHours(Math.max(1, ttlHours));
+        int capacity = Math.max(1, maxEntries);
+        this.localEntries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, LocalEntry> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        this.localHits = Counter.builder("yopago.ocr.cache")
+                .tag("result", "hit").tag("level", "local")
+                .description("OCR resueltos desde la caché local")
+                .register(meterRegistry);
+        this.persistentHits = Counter.builder("yopago.ocr.cache")
+                .tag("result", "hit").tag("level", "persistent")
+                .description("OCR resueltos desde la tabla ocr_result_cache")
+                .register(meterRegistry);
+        this.misses = Counter.builder("yopago.ocr.cache")
+                .tag("result", "miss").tag("level", "none")
+                .description("OCR que requirieron llamar a vision-ia")
+                .register(meterRegistry);
+        this.savedSeconds = Counter.builder("yopago.ocr.cache.saved")
+                .baseUnit("seconds")
+                .description("Latencia de vision-ia evitada por la caché (estimada con la media observada)")
+                .register(meterRegistry);
+        this.visionCalls = Timer.builder("yopago.ocr.vision.duration")
+                .description("Latencia de las llamadas a vision-ia")
+                .register(meterRegistry);
+        meterRegistry.gauge("yopago.ocr.cache.size", localEntries, this::localSize);
+    }
+
+    /**
+     * Hash SHA-256 en hexadecimal de los bytes de la imagen
+     */
+    public static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Hash SHA-256 calculado por streaming, sin cargar todo el contenido
+     */
+    public static String hash(InputStream content) throws IOException {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = content.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    /**
+     * Devuelve el resultado cacheado para el hash o ejecuta el loader (llamada a
+     * vision-ia) y guarda el resultado si trae datos estructurados.
+     */
+    public OcrService.OcrResult resolve(String contentHash, OcrLoader loader) throws Exception {
+        if (!enabled) {
+            return loader.load();
+        }
+
+        Optional<OcrService.OcrResult> cached = lookup(contentHash);
+        if (cached.isPresent()) {
+            savedSeconds.increment(visionCalls.mean(TimeUnit.SECONDS));
+            return cached.get();
+        }
+
+        misses.increment();
+        long start = System.nanoTime();
+        OcrService.OcrResult result = loader.load();
+        visionCalls.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+
+        if (result != null && result.structured != null) {
+            store(contentHash, result);
+        }
+        return result;
+    }
+
+    /**
+     * Elimina de la tabla las entradas que superaron el TTL
+     */
+    @Scheduled(fixedDelayString = "${app.ocr.cache.purge-interval-ms:3600000}")
+    public void purgeExpired() {
+        if (!enabled) {
+            return;
+        }
+        int removed = repository.deleteCreatedBefore(LocalDateTime.now().minus(ttl));
+        if (removed > 0) {
+            System.out.println("[OcrResultCache] Entradas expiradas eliminadas: " + removed);
+        }
+    }
+
+    private Optional<OcrService.OcrResult> lookup(String contentHash) {
+        Instant now = Instant.now();
+        synchronized (localEntries) {
+            LocalEntry local = localEntries.get(contentHash);
+            if (local != null) {
+                if (local.expiresAt.isAfter(now)) {
+                    localHits.increment();
+                    return Optional.of(local.result);
+                }
+                localEntries.remove(contentHash);
+            }
+        }
+
+        Optional<OcrResultCacheEntry> persisted = repository.findByContentHash(contentHash);
+        if (persisted.isEmpty() || persisted.get().getCreatedAt().isBefore(LocalDateTime.now().minus(ttl))) {
+            return Optional.empty();
+        }
+        try {
+            OcrResultCacheEntry entry = persisted.get();
+            Object structured = entry.getStructuredJson() != null
+                    ? objectMapper.readValue(entry.getStructuredJson(), Object.class)
+                    : null;
+            OcrService.OcrResult result = new OcrService.OcrResult(entry.getText(), structured);
+            putLocal(contentHash, result);
+            persistentHits.increment();
+            return Optional.of(result);
+        } catch (JsonProcessingException e) {
+            System.out.println("[OcrResultCache] Entrada ilegible para " + contentHash + ": " + e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void store(String contentHash, OcrService.OcrResult result) {
+        putLocal(contentHash, result);
+        try {
+            OcrResultCacheEntry entry = repository.findByContentHash(contentHash).orElseGet(OcrResultCacheEntry::new);
+            entry.setContentHash(contentHash);
+            entry.setText(result.text);
+            entry.setStructuredJson(objectMapper.writeValueAsString(result.structured));
+            entry.setCreatedAt(LocalDateTime.now());
+            repository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Otra petición guardó el mismo recibo al mismo tiempo: nos sirve su resultado
+        } catch (Exception e) {
+            System.out.println("[OcrResultCache] No se pudo persistir el resultado: " + e.getMessage());
+        }
+    }
+
+    private void putLocal(String contentHash, OcrService.OcrResult result) {
+        synchronized (localEntries) {
+            localEntries.put(contentHash, new LocalEntry(result, Instant.now().plus(ttl)));
+        }
+    }
+
+    private int localSize(Map<String, LocalEntry> entries) {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @FunctionalInterface
+    public interface OcrLoader {
+        OcrService.OcrResult load() throws Exception;
+    }
+
+    private record LocalEntry(OcrService.OcrResult result, Instant expiresAt) {
+    }
+}
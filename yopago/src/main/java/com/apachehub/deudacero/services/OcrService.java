@@ -1,63 +1,110 @@
-
 package com.apachehub.deudacero.services;
 
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Base64;
+
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
-import org.springframework.web.reactive.function.BodyInserters;
-import org.springframework.http.client.MultipartBodyBuilder;
-import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Mono;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 @Service
 public class OcrService {
-    private final WebClient webClient;
+    private final VisionIaClient visionIaClient;
+    private final OcrResultCache ocrResultCache;
+    private final ReceiptImageNormalizer imageNormalizer;
 
-    public OcrService(WebClient.Builder webClientBuilder,
-            @Value("${vision-ia.service.base-url:http://vision-ia:8001}") String baseUrl) {
-        this.webClient = webClientBuilder.baseUrl(baseUrl).build();
-        System.out.println("[OcrService] Base URL: " + baseUrl);
+    public OcrService(VisionIaClient visionIaClient,
+            OcrResultCache ocrResultCache,
+            ReceiptImageNormalizer imageNormalizer) {
+        this.visionIaClient = visionIaClient;
+        this.ocrResultCache = ocrResultCache;
+        this.imageNormalizer = imageNormalizer;
     }
 
+    /**
+     * Decodifica el base64 una sola vez y envía los bytes como multipart a
+     * /vision-ia, sin reenviar el texto base64 (un 33% más grande) dentro de
+     * otro JSON. La caché usa el hash de la imagen original, así que los
+     * aciertos no pagan la normalización.
+     */
     public OcrResult analyzeImageBase64(String fileBase64) throws Exception {
-        // Enviar la imagen como base64 al microservicio OCR
-        Mono<String> responseMono = webClient.post()
-                .uri("/vision-ia/base64")
-                .contentType(MediaType.APPLICATION_JSON)
-                .body(BodyInserters.fromValue(java.util.Map.of("fileBase64", fileBase64)))
-                .retrieve()
-                .bodyToMono(String.class);
-        String response = responseMono.block();
-        if (response == null)
-            throw new Exception("No se obtuvo respuesta del OCR");
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode root = mapper.readTree(response);
-        String text = root.has("text") ? root.get("text").asText() : null;
-        Object structured = root.has("structured") ? mapper.convertValue(root.get("structured"), Object.class) : null;
-        return new OcrResult(text, structured);
+        byte[] image = decodeBase64(fileBase64);
+        return ocrResultCache.resolve(OcrResultCache.hash(image), () -> upload(imageNormalizer.normalize(image)));
     }
 
+    /**
+     * El hash se calcula leyendo el archivo por streaming; la imagen solo se
+     * carga completa si hay que llamar a vision-ia.
+     */
     public OcrResult analyzeImage(MultipartFile imageFile) throws Exception {
-        MultipartBodyBuilder builder = new MultipartBodyBuilder();
-        builder.part("file", imageFile.getResource());
-        Mono<String> responseMono = webClient.post()
-                .uri("/vision-ia")
-                .contentType(MediaType.MULTIPART_FORM_DATA)
-                .body(BodyInserters.fromMultipartData(builder.build()))
-                .retrieve()
-                .bodyToMono(String.class);
-        String response = responseMono.block();
-        if (response == null)
-            throw new Exception("No se obtuvo respuesta del OCR");
-        // Parsear el JSON y extraer los campos
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode root = mapper.readTree(response);
-        String text = root.has("text") ? root.get("text").asText() : null;
-        Object structured = root.has("structured") ? mapper.convertValue(root.get("structured"), Object.class) : null;
-        return new OcrResult(text, structured);
+        String contentHash;
+        try (InputStream input = imageFile.getInputStream()) {
+            contentHash = OcrResultCache.hash(input);
+        }
+        return ocrResultCache.resolve(contentHash, () -> upload(imageNormalizer.normalize(imageFile.getBytes())));
+    }
+
+    private OcrResult upload(ReceiptImageNormalizer.NormalizedImage image) throws Exception {
+        return visionIaClient.analyze(image.content(), image.filename());
+    }
+
+    /**
+     * Decodifica el base64 por bloques leyendo directamente del String, sin la
+     * copia completa a bytes que hace Base64.Decoder.decode(String). Acepta
+     * base64 con o sin relleno, con saltos de línea y con prefijo data:.
+     */
+    static byte[] decodeBase64(String fileBase64) {
+        int start = fileBase64.startsWith("data:") ? fileBase64.indexOf(',') + 1 : 0;
+        int padding = 0;
+        for (int i = fileBase64.length() - 1; i >= start && fileBase64.charAt(i) == '=' && padding < 2; i--) {
+            padding++;
+        }
+        // Cada carácter aporta 6 bits, así que sirve también sin relleno. Exacto
+        // si no hay saltos de línea; si los hay, es una cota superior
+        long dataChars = fileBase64.length() - start - padding;
+        int expected = (int) Math.max(0, dataChars * 3 / 4);
+
+        try (InputStream decoded = Base64.getMimeDecoder().wrap(new CharSequenceInputStream(fileBase64, start))) {
+            byte[] image = new byte[expected];
+            int read = decoded.readNBytes(image, 0, expected);
+            if (decoded.read() != -1) {
+                throw new IllegalArgumentException("longitud inesperada");
+            }
+            return read == expected ? image : Arrays.copyOf(image, read);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Base64 inválido: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * InputStream de solo lectura sobre los caracteres ASCII de un String
+     */
+    private static final class CharSequenceInputStream extends InputStream {
+        private final CharSequence chars;
+        private int position;
+
+        private CharSequenceInputStream(CharSequence chars, int start) {
+            this.chars = chars;
+            this.position = start;
+        }
+
+        @Override
+        public int read() {
+            return position < chars.length() ? chars.charAt(position++) & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position >= chars.length()) {
+                return -1;
+            }
+            int count = Math.min(length, chars.length() - position);
+            for (int i = 0; i < count; i++) {
+                buffer[offset + i] = (byte) chars.charAt(position++);
+            }
+            return count;
+        }
     }
 
     public static class OcrResult {
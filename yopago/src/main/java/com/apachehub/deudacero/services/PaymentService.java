@@ -7,6 +7,7 @@ import com.apachehub.deudacero.repositories.PaymentRepository;
 import com.apachehub.deudacero.repositories.MemberRepository;
 import com.apachehub.deudacero.repositories.GroupRepository;
 import com.apachehub.deudacero.utils.MathUtils;
+import com.apachehub.deudacero.dto.GroupVersion;
 import com.apachehub.deudacero.dto.PaymentResponseDTO;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
@@ -40,6 +41,12 @@ public class PaymentService {
         @Autowired
         private RealTimeEventPublisher realTimeEventPublisher;
 
+        @Autowired
+        private GroupVersionService groupVersionService;
+
+        @Autowired
+        private GroupComputationCoalescer coalescer;
+
         /**
          * 💸 Registrar un pago entre miembros
          */
@@ -62,7 +69,9 @@ public class PaymentService {
                 Member toMember = memberRepository.findById(toMemberId)
                                 .orElseThrow(() -> new RuntimeException("Miembro receptor no encontrado"));
 
+                // Un grupo pendiente de eliminación ya no admite pagos
                 Group group = groupRepository.findById(groupId)
+                                .filter(existing -> !existing.isPendingDeletion())
                                 .orElseThrow(() -> new RuntimeException("Grupo no encontrado"));
 
                 // Verificar que ambos miembros pertenecen al grupo
@@ -73,6 +82,7 @@ public class PaymentService {
                 // Crear el pago
                 Payment payment = new Payment(fromMember, toMember, group, amount, note);
                 Payment savedPayment = paymentRepository.save(payment);
+                groupVersionService.bump(groupId);
 
                 java.util.Map<String, Object> payload = new java.util.HashMap<>();
                 payload.put("paymentId", savedPayment.getId());
@@ -115,6 +125,7 @@ public class PaymentService {
 
                 payment.setConfirmed(true);
                 Payment savedPayment = paymentRepository.save(payment);
+                groupVersionService.bump(savedPayment.getGroup().getId());
 
                 java.util.Map<String, Object> payload = new java.util.HashMap<>();
                 payload.put("paymentId", savedPayment.getId());
@@ -136,9 +147,20 @@ public class PaymentService {
         }
 
         /**
-         * 📊 Obtener balance actualizado considerando pagos registrados
+         * 📊 Obtener balance actualizado considerando pagos registrados. Las
+         * peticiones simultáneas para la misma versión del grupo comparten un
+         * único cálculo.
          */
         public Map<String, Object> getBalanceWithPayments(Long groupId) {
+                Optional<GroupVersion> version = groupVersionService.current(groupId);
+                if (version.isEmpty()) {
+                        return computeBalanceWithPayments(groupId);
+                }
+                return coalescer.compute("balance", groupId, version.get().version(),
+                                () -> computeBalanceWithPayments(groupId));
+        }
+
+        private Map<String, Object> computeBalanceWithPayments(Long groupId) {
                 // Obtener balance base de gastos
                 Map<String, Object> settlement = settlementService.calculateSettlement(groupId);
                 @SuppressWarnings("unchecked")
@@ -229,6 +251,7 @@ public class PaymentService {
         @Transactional
         public void deletePaymentsByGroup(Long groupId) {
                 paymentRepository.deleteByGroupId(groupId);
+                groupVersionService.bump(groupId);
         }
 
         /**
@@ -254,6 +277,8 @@ public class PaymentService {
                 paymentRepository.delete(payment);
 
                 if (groupId != null) {
+                        groupVersionService.bump(groupId);
+
                         java.util.Map<String, Object> payload = new java.util.HashMap<>();
                         payload.put("paymentId", paymentId);
                         payload.put("fromMemberId", memberId);
@@ -0,0 +1,151 @@
+package com.apachehub.deudacero.services;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Genera los códigos QR de los grupos y guarda el PNG ya renderizado por código
+ * en una caché LRU acotada. El código de un grupo no cambia, así que el PNG y
+ * su ETag (hash de los bytes) tampoco: se pueden servir con caché HTTP de
+ * larga duración.
+ */
+@Service
+public class QrCodeService {
+
+    private final int size;
+    private final Map<String, QrImage> cache;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer renders;
+
+    public QrCodeService(MeterRegistry meterRegistry,
+            @Value("${app.qr.cache.max-entries:2000}") int maxEntries,
+            @Value("${app.qr.size:200}") int size) {
+        this.size = Math.max(50, size);
+        int capacity = Math.max(1, maxEntries);
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, QrImage> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        this.hits = Counter.builder("yopago.qr.cache")
+                .tag("result", "hit")
+                .description("Códigos QR servidos desde la caché")
+                .register(meterRegistry);
+        this.misses = Counter.builder("yopago.qr.cache")
+                .tag("result", "miss")
+                .description("Códigos QR que hubo que renderizar")
+                .register(meterRegistry);
+        this.renders = Timer.builder("yopago.qr.render")
+                .description("Tiempo de renderizado de un código QR a PNG")
+                .register(meterRegistry);
+        Gauge.builder("yopago.qr.cache.size", this, QrCodeService::cachedEntries)
+                .description("Códigos QR en caché")
+                .register(meterRegistry);
+    }
+
+    /**
+     * PNG del QR para el código indicado, desde la caché o recién renderizado
+     */
+    public QrImage image(String code) {
+        if (code == null || code.isBlank()) {
+            throw new IllegalArgumentException("El código es requerido");
+        }
+        QrImage cached;
+        synchronized (cache) {
+            cached = cache.get(code);
+        }
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        // Se renderiza fuera del lock; si dos hilos coinciden el resultado es idéntico
+        misses.increment();
+        QrImage rendered = render(code);
+        synchronized (cache) {
+            cache.putIfAbsent(code, rendered);
+        }
+        return rendered;
+    }
+
+    /**
+     * QR en base64 para los clientes que aún lo esperan dentro del JSON; null si
+     * no se pudo generar
+     */
+    public String base64(String code) {
+        try {
+            return Base64.getEncoder().encodeToString(image(code).png());
+        } catch (RuntimeException e) {
+            System.out.println("[QrCodeService] Error generando QR: " + e.getMessage());
+            return null;
+        }
+    }
+
+    QrImage render(String code) {
+        long start = System.nanoTime();
+        try {
+            BitMatrix bitMatrix = new QRCodeWriter().encode(code, BarcodeFormat.QR_CODE, size, size);
+
+            BufferedImage image = new BufferedImage(size, size, BufferedImage.TYPE_INT_RGB);
+            for (int x = 0; x < size; x++) {
+                for (int y = 0; y < size; y++) {
+                    image.setRGB(x, y, bitMatrix.get(x, y) ? 0x000000 : 0xFFFFFF);
+                }
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            ImageIO.write(image, "png", baos);
+            byte[] png = baos.toByteArray();
+            return new QrImage(png, etag(png));
+        } catch (WriterException | IOException e) {
+            throw new IllegalStateException("No se pudo generar el QR: " + e.getMessage(), e);
+        } finally {
+            renders.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    int cachedEntries() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private static String etag(byte[] png) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(png);
+            return "\"" + HexFormat.of().formatHex(digest, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    public record QrImage(byte[] png, String etag) {
+    }
+}
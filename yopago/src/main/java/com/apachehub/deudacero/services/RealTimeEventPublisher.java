@@ -3,16 +3,34 @@ package com.apachehub.deudacero.services;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.messaging.support.MessageBuilder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.MimeTypeUtils;
+
+import com.apachehub.deudacero.websocket.CompactEncodingInterceptor;
+import com.apachehub.deudacero.websocket.RealTimeEventCodec;
 
 @Service
 public class RealTimeEventPublisher {
 
     private final SimpMessagingTemplate messagingTemplate;
+    private final GuestEventStreamService guestEventStreamService;
+    private final RealTimeEventCodec eventCodec;
+    private final CompactEncodingInterceptor compactEncoding;
 
-    public RealTimeEventPublisher(SimpMessagingTemplate messagingTemplate) {
+    public RealTimeEventPublisher(SimpMessagingTemplate messagingTemplate,
+            GuestEventStreamService guestEventStreamService,
+            RealTimeEventCodec eventCodec,
+            CompactEncodingInterceptor compactEncoding) {
         this.messagingTemplate = messagingTemplate;
+        this.guestEventStreamService = guestEventStreamService;
+        this.eventCodec = eventCodec;
+        this.compactEncoding = compactEncoding;
     }
 
     public void publishGroupEvent(Long groupId, String eventType, Object payload) {
@@ -20,7 +38,10 @@ public class RealTimeEventPublisher {
             return;
         }
         Map<String, Object> event = buildEventPayload(eventType, payload, Map.of("groupId", groupId));
-        messagingTemplate.convertAndSend("/topic/groups/" + groupId, event);
+        afterCommit(() -> {
+            send("/topic/groups/" + groupId, event);
+            guestEventStreamService.publish(groupId, event);
+        });
     }
 
     public void publishUserEvent(Long memberId, String eventType, Object payload) {
@@ -28,7 +49,41 @@ public class RealTimeEventPublisher {
             return;
         }
         Map<String, Object> event = buildEventPayload(eventType, payload, Map.of("memberId", memberId));
-        messagingTemplate.convertAndSend("/topic/users/" + memberId + "/events", event);
+        afterCommit(() -> send("/topic/users/" + memberId + "/events", event));
+    }
+
+    /**
+     * Dentro de una transacción (p. ej. un lote de la importación de recibos) el
+     * evento se envía al confirmar, para no anunciar gastos que luego se
+     * deshacen. Fuera de una transacción se envía de inmediato.
+     */
+    private void afterCommit(Runnable publication) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publication.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                publication.run();
+            }
+        });
+    }
+
+    /**
+     * Serializa el evento una sola vez (y en CBOR solo si hay suscriptores que
+     * lo pidieron) y lo envía ya codificado, sin pasar por el conversor del
+     * template para cada publicación.
+     */
+    private void send(String destination, Map<String, Object> event) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        if (compactEncoding.hasCompactSubscribers()) {
+            accessor.setHeader(CompactEncodingInterceptor.CBOR_PAYLOAD_HEADER, eventCodec.toCbor(event));
+        }
+        accessor.setLeaveMutable(true);
+        messagingTemplate.send(destination, MessageBuilder.createMessage(eventCodec.toJson(event),
+                accessor.getMessageHeaders()));
     }
 
     private Map<String, Object> buildEventPayload(String eventType, Object payload, Map<String, Object> context) {
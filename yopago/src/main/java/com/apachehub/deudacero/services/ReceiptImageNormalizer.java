@@ -0,0 +1,273 @@
+package com.apachehub.deudacero.services;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Normaliza las fotos de recibos antes de enviarlas a vision-ia: reduce a una
+ * dimensión máxima, convierte a JPEG en escala de grises y descarta los
+ * metadatos (EXIF, GPS), aplicando antes la orientación EXIF para no perderla.
+ *
+ * Los PDF y los formatos que ImageIO no sabe leer se envían sin cambios.
+ */
+@Component
+public class ReceiptImageNormalizer {
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+    private final boolean grayscale;
+
+    private final DistributionSummary inputBytes;
+    private final DistributionSummary outputBytes;
+    private final Timer duration;
+
+    public ReceiptImageNormalizer(MeterRegistry meterRegistry,
+            @Value("${app.ocr.normalize.enabled:true}") boolean enabled,
+            @Value("${app.ocr.normalize.max-dimension:2000}") int maxDimension,
+            @Value("${app.ocr.normalize.jpeg-quality:0.85}") float jpegQuality,
+            @Value("${app.ocr.normalize.grayscale:true}") boolean grayscale) {
+        this.enabled = enabled;
+        this.maxDimension = Math.max(256, maxDimension);
+        this.jpegQuality = Math.min(1f, Math.max(0.1f, jpegQuality));
+        this.grayscale = grayscale;
+        this.inputBytes = DistributionSummary.builder("yopago.ocr.normalize.bytes")
+                .tag("stage", "input").baseUnit("bytes")
+                .description("Tamaño de la imagen recibida")
+                .register(meterRegistry);
+        this.outputBytes = DistributionSummary.builder("yopago.ocr.normalize.bytes")
+                .tag("stage", "output").baseUnit("bytes")
+                .description("Tamaño de la imagen enviada a vision-ia")
+                .register(meterRegistry);
+        this.duration = Timer.builder("yopago.ocr.normalize.duration")
+                .description("Tiempo de normalización de imágenes de recibos")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Devuelve la imagen normalizada, o la original si es un PDF, no se puede
+     * decodificar o el resultado no es más pequeño.
+     */
+    public NormalizedImage normalize(byte[] original) {
+        if (isPdf(original)) {
+            return new NormalizedImage(original, "receipt.pdf");
+        }
+        if (!enabled) {
+            return new NormalizedImage(original, "receipt.png");
+        }
+
+        long start = System.nanoTime();
+        inputBytes.record(original.length);
+        byte[] result = original;
+        String filename = "receipt.png";
+        try {
+            BufferedImage image = read(original);
+            if (image != null) {
+                image = applyOrientation(image, exifOrientation(original));
+                byte[] jpeg = writeJpeg(scaleAndConvert(image));
+                if (jpeg.length < original.length) {
+                    result = jpeg;
+                    filename = "receipt.jpg";
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            System.out.println("[ReceiptImageNormalizer] Se envía la imagen original: " + e.getMessage());
+        }
+        outputBytes.record(result.length);
+        duration.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return new NormalizedImage(result, filename);
+    }
+
+    /**
+     * Decodifica con submuestreo cuando la imagen es varias veces mayor que el
+     * máximo, para no cargar en memoria el raster completo de una foto de 12 MP.
+     * Se deja al menos el doble del tamaño final para que el reescalado posterior
+     * promedie píxeles y los trazos finos del texto no se pierdan.
+     */
+    private BufferedImage read(byte[] content) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(content))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int largest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = largest / (2 * maxDimension);
+                if (subsampling >= 2) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage scaleAndConvert(BufferedImage image) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(image.getWidth(), image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+
+        // Reducción por mitades: cada paso bilineal promedia 2x2 píxeles
+        BufferedImage current = image;
+        while (current.getWidth() / 2 >= width && current.getHeight() / 2 >= height) {
+            current = draw(current, current.getWidth() / 2, current.getHeight() / 2, BufferedImage.TYPE_INT_RGB);
+        }
+        return draw(current, width, height, grayscale ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+    }
+
+    private static BufferedImage draw(BufferedImage source, int width, int height, int type) {
+        BufferedImage target = new BufferedImage(width, height, type);
+        Graphics2D graphics = target.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Fondo blanco para imágenes con transparencia (PNG de capturas)
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return target;
+    }
+
+    /**
+     * Se escribe un BufferedImage nuevo sin metadatos, así que EXIF/GPS no se
+     * copian al resultado
+     */
+    private byte[] writeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    private static BufferedImage applyOrientation(BufferedImage image, int orientation) {
+        int quarterTurns = switch (orientation) {
+            case 3 -> 2;
+            case 6 -> 1;
+            case 8 -> 3;
+            default -> 0;
+        };
+        if (quarterTurns == 0) {
+            return image;
+        }
+        boolean swap = quarterTurns % 2 == 1;
+        int width = swap ? image.getHeight() : image.getWidth();
+        int height = swap ? image.getWidth() : image.getHeight();
+        int type = image.getType() == BufferedImage.TYPE_CUSTOM ? BufferedImage.TYPE_INT_RGB : image.getType();
+
+        BufferedImage rotated = new BufferedImage(width, height, type);
+        Graphics2D graphics = rotated.createGraphics();
+        try {
+            AffineTransform transform = new AffineTransform();
+            transform.translate(width / 2.0, height / 2.0);
+            transform.quadrantRotate(quarterTurns);
+            transform.translate(-image.getWidth() / 2.0, -image.getHeight() / 2.0);
+            graphics.drawImage(image, transform, null);
+        } finally {
+            graphics.dispose();
+        }
+        return rotated;
+    }
+
+    /**
+     * Lee la etiqueta Orientation (0x0112) del segmento APP1 Exif de un JPEG.
+     * Devuelve 1 (normal) si no existe o no se puede interpretar.
+     */
+    static int exifOrientation(byte[] jpeg) {
+        if (jpeg.length < 4 || (jpeg[0] & 0xFF) != 0xFF || (jpeg[1] & 0xFF) != 0xD8) {
+            return 1;
+        }
+        int offset = 2;
+        while (offset + 4 <= jpeg.length && (jpeg[offset] & 0xFF) == 0xFF) {
+            int marker = jpeg[offset + 1] & 0xFF;
+            int length = ((jpeg[offset + 2] & 0xFF) << 8) | (jpeg[offset + 3] & 0xFF);
+            if (marker == 0xDA || length < 2) {
+                break;
+            }
+            int data = offset + 4;
+            if (marker == 0xE1 && data + 14 <= jpeg.length && jpeg[data] == 'E' && jpeg[data + 1] == 'x'
+                    && jpeg[data + 2] == 'i' && jpeg[data + 3] == 'f') {
+                return readOrientation(jpeg, data + 6, Math.min(jpeg.length, offset + 2 + length));
+            }
+            offset += 2 + length;
+        }
+        return 1;
+    }
+
+    private static int readOrientation(byte[] bytes, int tiff, int end) {
+        boolean littleEndian = bytes[tiff] == 'I';
+        int ifd = tiff + readInt(bytes, tiff + 4, littleEndian);
+        if (ifd < tiff || ifd + 2 > end) {
+            return 1;
+        }
+        int entries = readShort(bytes, ifd, littleEndian);
+        for (int i = 0; i < entries; i++) {
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+            if (readShort(bytes, entry, littleEndian) == 0x0112) {
+                return readShort(bytes, entry + 8, littleEndian);
+            }
+        }
+        return 1;
+    }
+
+    private static int readShort(byte[] bytes, int offset, boolean littleEndian) {
+        int first = bytes[offset] & 0xFF;
+        int second = bytes[offset + 1] & 0xFF;
+        return littleEndian ? (second << 8) | first : (first << 8) | second;
+    }
+
+    private static int readInt(byte[] bytes, int offset, boolean littleEndian) {
+        int high = readShort(bytes, littleEndian ? offset + 2 : offset, littleEndian);
+        int low = readShort(bytes, littleEndian ? offset : offset + 2, littleEndian);
+        return (high << 16) | low;
+    }
+
+    static boolean isPdf(byte[] content) {
+        return content.length >= 4 && content[0] == '%' && content[1] == 'P' && content[2] == 'D'
+                && content[3] == 'F';
+    }
+
+    public record NormalizedImage(byte[] content, String filename) {
+    }
+}
@@ -0,0 +1,323 @@
+package com.apachehub.deudacero.services;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import com.apachehub.deudacero.dto.ExpenseDTO;
+import com.apachehub.deudacero.dto.ExpenseResponseDTO;
+import com.apachehub.deudacero.dto.ReceiptImportRequest;
+import com.apachehub.deudacero.entities.Expense;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Importación masiva de recibos: ejecuta el OCR de los recibos con unos pocos
+ * hilos por importación (el límite global de llamadas a vision-ia lo pone el
+ * bulkhead de VisionIaClient), persiste los gastos en transacciones por lotes
+ * y envía el progreso de cada recibo por SSE al cliente que lo solicitó.
+ *
+ * La importación continúa aunque el cliente se desconecte; los gastos creados
+ * también llegan como group.expense.created por el topic del grupo.
+ */
+@Service
+public class ReceiptImportService {
+
+    private final OcrService ocrService;
+    private final ExpenseService expenseService;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final int ocrConcurrency;
+    private final int batchSize;
+    private final int maxReceipts;
+    private final long maxTotalBytes;
+    private final long timeoutMillis;
+    private final Counter importedReceipts;
+    private final Counter failedReceipts;
+
+    public ReceiptImportService(OcrService ocrService,
+            ExpenseService expenseService,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${app.receipt-import.ocr-concurrency:4}") int ocrConcurrency,
+            @Value("${app.receipt-import.batch-size:10}") int batchSize,
+            @Value("${app.receipt-import.max-receipts:100}") int maxReceipts,
+            @Value("${app.receipt-import.max-total-bytes:67108864}") long maxTotalBytes,
+            @Value("${app.receipt-import.timeout-ms:900000}") long timeoutMillis) {
+        this.ocrService = ocrService;
+        this.expenseService = expenseService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.ocrConcurrency = Math.max(1, ocrConcurrency);
+        this.batchSize = Math.max(1, batchSize);
+        this.maxReceipts = Math.max(1, maxReceipts);
+        this.maxTotalBytes = Math.max(1, maxTotalBytes);
+        this.timeoutMillis = timeoutMillis;
+        this.importedReceipts = Counter.builder("yopago.receipt.import")
+                .tag("result", "imported")
+                .description("Recibos importados en bloque")
+                .register(meterRegistry);
+        this.failedReceipts = Counter.builder("yopago.receipt.import")
+                .tag("result", "failed")
+                .description("Recibos de importaciones en bloque que fallaron")
+                .register(meterRegistry);
+    }
+
+    public int getMaxReceipts() {
+        return maxReceipts;
+    }
+
+    /**
+     * Indica si los recibos (en base64) superan en conjunto el tamaño máximo
+     * de una importación
+     */
+    public boolean exceedsMaxTotalBytes(ReceiptImportRequest request) {
+        long total = 0;
+        for (ReceiptImportRequest.Receipt receipt : request.getReceipts()) {
+            if (receipt != null && receipt.getFileBase64() != null) {
+                total += receipt.getFileBase64().length();
+                if (total > maxTotalBytes) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Inicia la importación y devuelve el stream de progreso. Eventos:
+     * receipt.processed, receipt.saved, receipt.failed e import.completed.
+     */
+    public SseEmitter startImport(ReceiptImportRequest request) {
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        executor.execute(() -> runImport(request, new ProgressSink(emitter)));
+        return emitter;
+    }
+
+    void runImport(ReceiptImportRequest request, ProgressSink progress) {
+        List<ReceiptImportRequest.Receipt> receipts = request.getReceipts();
+        BlockingQueue<OcrOutcome> outcomes = new LinkedBlockingQueue<>();
+        AtomicInteger next = new AtomicInteger();
+        int workers = Math.min(ocrConcurrency, receipts.size());
+        for (int w = 0; w < workers; w++) {
+            executor.execute(() -> {
+                for (int index = next.getAndIncrement(); index < receipts.size(); index = next.getAndIncrement()) {
+                    OcrOutcome outcome = null;
+                    try {
+                        outcome = recognize(request, receipts.get(index), index);
+                    } finally {
+                        // Cada recibo publica un resultado; si no, runImport esperaría para siempre
+                        if (outcome == null) {
+                            outcome = new OcrOutcome(index, null);
+                            outcome.error = "Error inesperado al procesar el recibo";
+                        }
+                        outcomes.add(outcome);
+                    }
+                }
+            });
+        }
+
+        int saved = 0;
+        List<OcrOutcome> batch = new ArrayList<>(batchSize);
+        try {
+            for (int done = 0; done < receipts.size(); done++) {
+                OcrOutcome outcome = outcomes.take();
+                if (outcome.error != null) {
+                    progress.send("receipt.failed", outcome.toMap());
+                    continue;
+                }
+                progress.send("receipt.processed", outcome.toMap());
+                batch.add(outcome);
+                if (batch.size() >= batchSize) {
+                    saved += persist(batch, progress);
+                    batch.clear();
+                }
+            }
+            if (!batch.isEmpty()) {
+                saved += persist(batch, progress);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        int failed = receipts.size() - saved;
+        importedReceipts.increment(saved);
+        failedReceipts.increment(failed);
+
+        Map<String, Object> summary = new HashMap<>();
+        summary.put("groupId", request.getGroupId());
+        summary.put("total", receipts.size());
+        summary.put("saved", saved);
+        summary.put("failed", failed);
+        progress.send("import.completed", summary);
+        progress.complete();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * OCR + construcción del DTO
+     */
+    private OcrOutcome recognize(ReceiptImportRequest request, ReceiptImportRequest.Receipt receipt, int index) {
+        OcrOutcome outcome = new OcrOutcome(index, receipt != null ? receipt.getFileName() : null);
+        try {
+            if (receipt == null) {
+                throw new IllegalArgumentException("Se requiere el recibo");
+            }
+            if (receipt.getFileBase64() == null || receipt.getFileBase64().isEmpty()) {
+                throw new IllegalArgumentException("Se requiere el archivo en Base64");
+            }
+            OcrService.OcrResult ocrResult = ocrService.analyzeImageBase64(receipt.getFileBase64());
+            if (ocrResult == null || ocrResult.structured == null) {
+                throw new IllegalStateException("El OCR no devolvió datos utilizables");
+            }
+            outcome.expenseDTO = expenseService.createExpenseDTOFromOcr(
+                    ocrResult.structured,
+                    receipt.getPayerId() != null ? receipt.getPayerId() : request.getPayerId(),
+                    request.getGroupId(),
+                    receipt.getNote(),
+                    receipt.getCurrency() != null ? receipt.getCurrency() : request.getCurrency(),
+                    request.getShares());
+        } catch (Exception e) {
+            outcome.error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+        }
+        return outcome;
+    }
+
+    /**
+     * Persiste el lote en una sola transacción. Si falla (p. ej. un gasto
+     * duplicado), se reintenta cada recibo en su propia transacción para no
+     * perder los demás.
+     */
+    private int persist(List<OcrOutcome> batch, ProgressSink progress) {
+        List<ExpenseResponseDTO> created;
+        try {
+            created = transactionTemplate.execute(status -> {
+                List<ExpenseResponseDTO> results = new ArrayList<>(batch.size());
+                for (OcrOutcome outcome : batch) {
+                    results.add(save(outcome.expenseDTO));
+                }
+                return results;
+            });
+        } catch (RuntimeException e) {
+            return persistIndividually(batch, progress);
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).expense = created.get(i);
+            progress.send("receipt.saved", batch.get(i).toMap());
+        }
+        return batch.size();
+    }
+
+    private int persistIndividually(List<OcrOutcome> batch, ProgressSink progress) {
+        int saved = 0;
+        for (OcrOutcome outcome : batch) {
+            try {
+                outcome.expense = transactionTemplate.execute(status -> save(outcome.expenseDTO));
+                progress.send("receipt.saved", outcome.toMap());
+                saved++;
+            } catch (RuntimeException e) {
+                Throwable cause = e.getCause() != null ? e.getCause() : e;
+                outcome.error = cause.getMessage();
+                progress.send("receipt.failed", outcome.toMap());
+            }
+        }
+        return saved;
+    }
+
+    private ExpenseResponseDTO save(ExpenseDTO expenseDTO) {
+        try {
+            Expense expense = expenseService.createExpense(expenseDTO);
+            return expenseService.convertToResponseDTO(expense);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            // createExpense declara Exception; se envuelve para que la transacción haga rollback
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static final class OcrOutcome {
+        private final int index;
+        private final String fileName;
+        private ExpenseDTO expenseDTO;
+        private ExpenseResponseDTO expense;
+        private String error;
+
+        private OcrOutcome(int index, String fileName) {
+            this.index = index;
+            this.fileName = fileName;
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("index", index);
+            if (fileName != null) {
+                map.put("fileName", fileName);
+            }
+            if (expenseDTO != null) {
+                map.put("amount", expenseDTO.getAmount());
+            }
+            if (expense != null) {
+                map.put("expense", expense);
+            }
+            if (error != null) {
+                map.put("error", error);
+            }
+            return map;
+        }
+    }
+
+    /**
+     * Envoltorio del SseEmitter que deja de enviar (sin cortar la importación)
+     * cuando el cliente se desconecta
+     */
+    static class ProgressSink {
+        private final SseEmitter emitter;
+        private volatile boolean open = true;
+
+        ProgressSink(SseEmitter emitter) {
+            this.emitter = emitter;
+            if (emitter != null) {
+                emitter.onCompletion(() -> open = false);
+                emitter.onTimeout(() -> open = false);
+                emitter.onError(error -> open = false);
+            }
+        }
+
+        void send(String eventName, Map<String, Object> data) {
+            if (!open || emitter == null) {
+                return;
+            }
+            try {
+                emitter.send(SseEmitter.event().name(eventName).data(data));
+            } catch (IOException | IllegalStateException e) {
+                open = false;
+            }
+        }
+
+        void complete() {
+            if (open && emitter != null) {
+                emitter.complete();
+            }
+        }
+    }
+}
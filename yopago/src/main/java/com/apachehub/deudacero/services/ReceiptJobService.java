@@ -0,0 +1,268 @@
+package com.apachehub.deudacero.services;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.apachehub.deudacero.dto.ExpenseDTO;
+import com.apachehub.deudacero.dto.ExpenseResponseDTO;
+import com.apachehub.deudacero.dto.OcrExpenseRequest;
+import com.apachehub.deudacero.entities.Expense;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Procesa recibos (OCR + creación del gasto) como trabajos en segundo plano
+ * sobre un pool acotado, para no retener hilos del servidor durante la llamada
+ * a vision-ia. Al terminar se publica "group.receipt.completed" o
+ * "group.receipt.failed" en el topic del grupo.
+ */
+@Service
+public class ReceiptJobService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReceiptJobService.class);
+
+    public enum Status {
+        QUEUED, PROCESSING, COMPLETED, FAILED
+    }
+
+    private final OcrService ocrService;
+    private final ExpenseService expenseService;
+    private final RealTimeEventPublisher realTimeEventPublisher;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, ReceiptJob> jobs = new ConcurrentHashMap<>();
+    private final Duration retention;
+    private final Timer jobTimer;
+
+    public ReceiptJobService(OcrService ocrService,
+            ExpenseService expenseService,
+            RealTimeEventPublisher realTimeEventPublisher,
+            MeterRegistry meterRegistry,
+            @Value("${app.receipt-jobs.pool-size:4}") int poolSize,
+            @Value("${app.receipt-jobs.queue-capacity:100}") int queueCapacity,
+            @Value("${app.receipt-jobs.retention-minutes:30}") long retentionMinutes) {
+        this.ocrService = ocrService;
+        this.expenseService = expenseService;
+        this.realTimeEventPublisher = realTimeEventPublisher;
+        this.retention = Duration.ofMinutes(Math.max(1, retentionMinutes));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        int threads = Math.max(1, poolSize);
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "receipt-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.jobTimer = Timer.builder("yopago.receipt.jobs.duration")
+                .description("Duración de los trabajos de recibos (OCR + gasto)")
+                .register(meterRegistry);
+        Gauge.builder("yopago.receipt.jobs.queued", executor, pool -> pool.getQueue().size())
+                .description("Recibos en espera de procesamiento")
+                .register(meterRegistry);
+        Gauge.builder("yopago.receipt.jobs.active", executor, ThreadPoolExecutor::getActiveCount)
+                .description("Recibos procesándose en este momento")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Encola el procesamiento del recibo. El request ya debe venir validado
+     * (grupo y pagador resueltos). Lanza RejectedExecutionException si la cola
+     * está llena.
+     */
+    public ReceiptJob submit(OcrExpenseRequest request, String owner) {
+        purgeExpired();
+        ReceiptJob job = new ReceiptJob(UUID.randomUUID().toString(), owner, request.getGroupId());
+        jobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job, request));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.id);
+            throw e;
+        }
+        return job;
+    }
+
+    /**
+     * Devuelve el trabajo solo si pertenece al solicitante indicado
+     */
+    public ReceiptJob findJob(String jobId, String owner) {
+        ReceiptJob job = jobs.get(jobId);
+        if (job == null || !job.owner.equals(owner)) {
+            return null;
+        }
+        return job;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private void run(ReceiptJob job, OcrExpenseRequest request) {
+        job.status = Status.PROCESSING;
+        long start = System.nanoTime();
+        try {
+            OcrService.OcrResult ocrResult = ocrService.analyzeImageBase64(request.getFileBase64());
+            if (ocrResult == null || ocrResult.structured == null) {
+                throw new UnusableReceiptException();
+            }
+            job.ocrText = ocrResult.text;
+
+            ExpenseDTO expenseDTO = expenseService.createExpenseDTOFromOcr(
+                    ocrResult.structured,
+                    request.getPayerId(),
+                    request.getGroupId(),
+                    request.getNote(),
+                    request.getCurrency(),
+                    request.getShares());
+            Expense saved = expenseService.createExpense(expenseDTO);
+            job.expense = expenseService.convertToResponseDTO(saved);
+            job.finish(Status.COMPLETED, null);
+        } catch (Exception e) {
+            LOGGER.warn("Error procesando recibo {}: {}", job.id, e.getMessage());
+            job.retryable = e instanceof VisionIaClient.VisionIaUnavailableException;
+            job.unusable = e instanceof UnusableReceiptException;
+            job.finish(Status.FAILED, e.getMessage());
+        } finally {
+            jobTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        try {
+            String eventType = job.status == Status.COMPLETED ? "group.receipt.completed" : "group.receipt.failed";
+            realTimeEventPublisher.publishGroupEvent(job.groupId, eventType, job.toMap());
+        } catch (RuntimeException e) {
+            LOGGER.warn("No se pudo publicar el evento del recibo {}: {}", job.id, e.getMessage());
+        } finally {
+            // Se completa después de publicar para que ambos canales vean el mismo estado
+            job.completion.complete(job);
+        }
+    }
+
+    private void purgeExpired() {
+        Instant limit = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.finishedAt != null && job.finishedAt.isBefore(limit));
+    }
+
+    /**
+     * El OCR respondió pero sin datos con los que crear el gasto: es un problema
+     * del recibo, no del servidor
+     */
+    static final class UnusableReceiptException extends IllegalStateException {
+        UnusableReceiptException() {
+            super("El OCR no devolvió datos utilizables");
+        }
+    }
+
+    public static final class ReceiptJob {
+        private final String id;
+        private final String owner;
+        private final Long groupId;
+        private final Instant createdAt = Instant.now();
+        private final CompletableFuture<ReceiptJob> completion = new CompletableFuture<>();
+        private volatile Status status = Status.QUEUED;
+        private volatile ExpenseResponseDTO expense;
+        private volatile String ocrText;
+        private volatile String error;
+        private volatile boolean retryable;
+        private volatile boolean unusable;
+        private volatile Instant finishedAt;
+
+        private ReceiptJob(String id, String owner, Long groupId) {
+            this.id = id;
+            this.owner = owner;
+            this.groupId = groupId;
+        }
+
+        private void finish(Status finalStatus, String errorMessage) {
+            this.error = errorMessage;
+            this.finishedAt = Instant.now();
+            this.status = finalStatus;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public ExpenseResponseDTO getExpense() {
+            return expense;
+        }
+
+        public String getOcrText() {
+            return ocrText;
+        }
+
+        public String getError() {
+            return error;
+        }
+
+        /**
+         * El fallo fue de disponibilidad de vision-ia y el recibo se puede
+         * reenviar más tarde
+         */
+        public boolean isRetryable() {
+            return retryable;
+        }
+
+        /**
+         * El OCR no devolvió datos utilizables; se responde como petición
+         * inválida (400)
+         */
+        public boolean isUnusable() {
+            return unusable;
+        }
+
+        /**
+         * Se completa cuando el trabajo termina, con éxito o con error
+         */
+        public CompletableFuture<ReceiptJob> completion() {
+            return completion;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new HashMap<>();
+            map.put("jobId", id);
+            map.put("groupId", groupId);
+            map.put("status", status.name());
+            map.put("createdAt", createdAt.toString());
+            if (finishedAt != null) {
+                map.put("finishedAt", finishedAt.toString());
+            }
+            if (expense != null) {
+                map.put("expense", expense);
+            }
+            if (ocrText != null) {
+                map.put("ocrText", ocrText);
+            }
+            if (error != null) {
+                map.put("error", error);
+                map.put("retryable", retryable);
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,413 @@
+package com.apachehub.deudacero.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.apachehub.deudacero.dto.UserRegistrationDTO;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.entities.RegistrationRequest;
+import com.apachehub.deudacero.entities.RegistrationStatus;
+import com.apachehub.deudacero.repositories.MemberRepository;
+import com.apachehub.deudacero.repositories.RegistrationRequestRepository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Registro de usuarios asíncrono mediante una outbox: el endpoint guarda la
+ * solicitud y responde enseguida, y un worker en segundo plano crea el usuario
+ * en Keycloak y el Member con reintentos y backoff exponencial.
+ *
+ * Cada paso es idempotente: el id de Keycloak se guarda en cuanto se crea, un
+ * usuario que ya existe solo se reutiliza si lo creó este mismo registro
+ * (atributo yopago_registration_id) y el Member solo se crea si no existe. Los registros se reclaman con un UPDATE condicional, así
+ * que varias réplicas pueden compartir la misma tabla.
+ */
+@Service
+public class RegistrationOutboxService {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RegistrationOutboxService.class);
+
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
+
+    private final RegistrationRequestRepository registrationRepository;
+    private final MemberRepository memberRepository;
+    private final AuthService authService;
+    private final UserSyncService userSyncService;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final Semaphore workerPermits;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final SecureRandom random = new SecureRandom();
+    private final SecretKeySpec passwordKey;
+    private final int maxAttempts;
+    private final int batchSize;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Duration lockDuration;
+
+    private final Counter completed;
+    private final Counter retried;
+    private final Counter failed;
+    private final Timer processing;
+
+    public RegistrationOutboxService(RegistrationRequestRepository registrationRepository,
+            MemberRepository memberRepository,
+            AuthService authService,
+            UserSyncService userSyncService,
+            MeterRegistry meterRegistry,
+            @Value("${app.registration.outbox.secret:}") String secret,
+            @Value("${app.registration.outbox.concurrency:8}") int concurrency,
+            @Value("${app.registration.outbox.batch-size:50}") int batchSize,
+            @Value("${app.registration.outbox.max-attempts:8}") int maxAttempts,
+            @Value("${app.registration.outbox.backoff-ms:2000}") long backoffMillis,
+            @Value("${app.registration.outbox.max-backoff-ms:300000}") long maxBackoffMillis,
+            @Value("${app.registration.outbox.lock-seconds:120}") long lockSeconds) {
+        this.registrationRepository = registrationRepository;
+        this.memberRepository = memberRepository;
+        this.authService = authService;
+        this.userSyncService = userSyncService;
+        this.workerPermits = new Semaphore(Math.max(1, concurrency));
+        this.passwordKey = new SecretKeySpec(deriveKey(secret), "AES");
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.batchSize = Math.max(1, batchSize);
+        this.baseBackoff = Duration.ofMillis(Math.max(1, backoffMillis));
+        this.maxBackoff = Duration.ofMillis(Math.max(backoffMillis, maxBackoffMillis));
+        this.lockDuration = Duration.ofSeconds(Math.max(1, lockSeconds));
+
+        this.completed = counter(meterRegistry, "completed");
+        this.retried = counter(meterRegistry, "retried");
+        this.failed = counter(meterRegistry, "failed");
+        this.processing = Timer.builder("yopago.registration.outbox.processing")
+                .description("Duración de cada intento de registro en Keycloak y base de datos")
+                .register(meterRegistry);
+        Gauge.builder("yopago.registration.outbox.in-flight", inFlight, Set::size)
+                .description("Registros que se están procesando en esta réplica")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Guarda la solicitud en la outbox y lanza su procesamiento. Reenviar el
+     * mismo registro (mismo usuario y email) devuelve la solicitud existente.
+     */
+    public RegistrationRequest submit(UserRegistrationDTO registrationDTO) {
+        String username = registrationDTO.getUsername().trim().toLowerCase(Locale.ROOT);
+        RegistrationRequest registration;
+        try {
+            registration = registrationRepository.findByUsername(username)
+                    .map(existing -> resubmit(existing, registrationDTO))
+                    .orElseGet(() -> registrationRepository.save(newRequest(username, registrationDTO)));
+        } catch (DataIntegrityViolationException e) {
+            // Dos envíos simultáneos del mismo usuario: gana el primero
+            registration = registrationRepository.findByUsername(username)
+                    .map(existing -> resubmit(existing, registrationDTO))
+                    .orElseThrow(() -> e);
+        }
+
+        if (registration.getStatus() == RegistrationStatus.PENDING) {
+            dispatch(registration.getId());
+        }
+        return registration;
+    }
+
+    public Optional<RegistrationRequest> findById(String registrationId) {
+        return registrationRepository.findById(registrationId);
+    }
+
+    /**
+     * Recoge los registros pendientes cuyo reintento ya toca
+     */
+    @Scheduled(fixedDelayString = "${app.registration.outbox.poll-interval-ms:1000}")
+    public void pollDue() {
+        int free = workerPermits.availablePermits();
+        if (free == 0) {
+            return;
+        }
+        for (String id : registrationRepository.findDueIds(LocalDateTime.now(),
+                PageRequest.of(0, Math.min(batchSize, free)))) {
+            dispatch(id);
+        }
+    }
+
+    public Map<String, Object> toStatusMap(RegistrationRequest registration) {
+        Map<String, Object> status = new HashMap<>();
+        status.put("registrationId", registration.getId());
+        status.put("status", registration.getStatus().name());
+        status.put("username", registration.getUsername());
+        status.put("email", registration.getEmail());
+        status.put("attempts", registration.getAttempts());
+        status.put("statusUrl", "/api/auth/register/" + registration.getId());
+        if (registration.getStatus() == RegistrationStatus.COMPLETED) {
+            status.put("keycloak_user_id", registration.getKeycloakUserId());
+            status.put("memberId", registration.getMemberId());
+        }
+        if (registration.getLastError() != null) {
+            status.put("error", registration.getLastError());
+        }
+        return status;
+    }
+
+    private RegistrationRequest resubmit(RegistrationRequest existing, UserRegistrationDTO registrationDTO) {
+        if (!existing.getEmail().equalsIgnoreCase(registrationDTO.getEmail().trim())) {
+            throw new RegistrationConflictException("El nombre de usuario ya está en uso");
+        }
+        if (existing.getStatus() != RegistrationStatus.FAILED) {
+            return existing;
+        }
+        // Un registro fallido se puede volver a intentar con los datos nuevos
+        existing.setFirstName(registrationDTO.getFirstName());
+        existing.setLastName(registrationDTO.getLastName());
+        existing.setPasswordCiphertext(encrypt(registrationDTO.getPassword()));
+        existing.setStatus(RegistrationStatus.PENDING);
+        existing.setAttempts(0);
+        existing.setNextAttemptAt(LocalDateTime.now());
+        existing.setLockedUntil(null);
+        existing.setLastError(null);
+        existing.setCompletedAt(null);
+        // Si quedó un usuario de Keycloak del intento anterior se vuelve a
+        // adoptar en el alta, que le pone la contraseña nueva
+        existing.setKeycloakUserId(null);
+        existing.setKeycloakUserAdopted(null);
+        return registrationRepository.save(existing);
+    }
+
+    private RegistrationRequest newRequest(String username, UserRegistrationDTO registrationDTO) {
+        RegistrationRequest registration = new RegistrationRequest();
+        registration.setId(UUID.randomUUID().toString());
+        registration.setUsername(username);
+        registration.setEmail(registrationDTO.getEmail().trim());
+        registration.setFirstName(registrationDTO.getFirstName());
+        registration.setLastName(registrationDTO.getLastName());
+        registration.setPasswordCiphertext(encrypt(registrationDTO.getPassword()));
+        registration.setStatus(RegistrationStatus.PENDING);
+        return registration;
+    }
+
+    private void dispatch(String registrationId) {
+        if (!inFlight.add(registrationId)) {
+            return;
+        }
+        if (!workerPermits.tryAcquire()) {
+            // Sin hueco ahora: el siguiente sondeo lo recoge
+            inFlight.remove(registrationId);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    process(registrationId);
+                } catch (RuntimeException e) {
+                    LOGGER.error("Error procesando el registro {}: {}", registrationId, e.getMessage(), e);
+                } finally {
+                    workerPermits.release();
+                    inFlight.remove(registrationId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Apagándose: queda pendiente en la outbox para la siguiente réplica o arranque
+            workerPermits.release();
+            inFlight.remove(registrationId);
+        }
+    }
+
+    void process(String registrationId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (registrationRepository.claim(registrationId, now, now.plus(lockDuration)) == 0) {
+            return;
+        }
+        RegistrationRequest registration = registrationRepository.findById(registrationId).orElse(null);
+        if (registration == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            if (registration.getKeycloakUserId() == null) {
+                AuthService.ProvisionedUser user = authService.provisionKeycloakUser(toRegistration(registration),
+                        registration.getId());
+                registration.setKeycloakUserId(user.id());
+                registration.setKeycloakUserAdopted(user.adopted());
+                // Punto de control: los reintentos ya no vuelven a crear el usuario
+                registration = registrationRepository.save(registration);
+            }
+
+            String keycloakUserId = registration.getKeycloakUserId();
+            RegistrationRequest current = registration;
+            Member member = memberRepository.findByKeycloakUserId(keycloakUserId)
+                    .orElseGet(() -> userSyncService.createRegisteredMember(keycloakUserId,
+                            current.getUsername(), current.getEmail(), fullName(current)));
+            complete(registration, member.getId());
+        } catch (AuthService.KeycloakProvisioningException e) {
+            fail(registration, e.getMessage(), e.isRetryable());
+        } catch (PasswordUnavailableException e) {
+            fail(registration, e.getMessage(), false);
+        } catch (RuntimeException e) {
+            fail(registration, "Error al sincronizar datos: " + e.getMessage(), true);
+        } finally {
+            processing.record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private void complete(RegistrationRequest registration, Long memberId) {
+        registration.setStatus(RegistrationStatus.COMPLETED);
+        registration.setMemberId(memberId);
+        registration.setPasswordCiphertext(null);
+        registration.setLockedUntil(null);
+        registration.setLastError(null);
+        registration.setCompletedAt(LocalDateTime.now());
+        registrationRepository.save(registration);
+        completed.increment();
+    }
+
+    private void fail(RegistrationRequest registration, String error, boolean retryable) {
+        registration.setLockedUntil(null);
+        registration.setLastError(error != null && error.length() > 500 ? error.substring(0, 500) : error);
+
+        if (retryable && registration.getAttempts() < maxAttempts) {
+            registration.setStatus(RegistrationStatus.PENDING);
+            registration.setNextAttemptAt(LocalDateTime.now().plus(backoff(registration.getAttempts())));
+            registrationRepository.save(registration);
+            retried.increment();
+            return;
+        }
+
+        // Fallo definitivo: se deshace el usuario de Keycloak para poder registrarse
+        // de nuevo, salvo si se adoptó (no lo creó este intento)
+        if (registration.getKeycloakUserId() != null && !Boolean.TRUE.equals(registration.getKeycloakUserAdopted())) {
+            try {
+                authService.deleteKeycloakUser(registration.getKeycloakUserId());
+                registration.setKeycloakUserId(null);
+            } catch (RuntimeException cleanupEx) {
+                LOGGER.warn("Error al limpiar el usuario {} de Keycloak: {}", registration.getKeycloakUserId(),
+                        cleanupEx.getMessage());
+            }
+        }
+        registration.setStatus(RegistrationStatus.FAILED);
+        registration.setPasswordCiphertext(null);
+        registration.setCompletedAt(LocalDateTime.now());
+        registrationRepository.save(registration);
+        failed.increment();
+    }
+
+    private Duration backoff(int attempts) {
+        Duration delay = baseBackoff.multipliedBy(1L << Math.min(20, Math.max(0, attempts - 1)));
+        return delay.compareTo(maxBackoff) > 0 ? maxBackoff : delay;
+    }
+
+    private UserRegistrationDTO toRegistration(RegistrationRequest registration) {
+        UserRegistrationDTO registrationDTO = new UserRegistrationDTO(registration.getUsername(),
+                registration.getEmail(), decrypt(registration.getPasswordCiphertext()),
+                registration.getFirstName(), registration.getLastName());
+        registrationDTO.setConfirmPassword(registrationDTO.getPassword());
+        return registrationDTO;
+    }
+
+    private static String fullName(RegistrationRequest registration) {
+        String firstName = registration.getFirstName() != null ? registration.getFirstName() : "";
+        String lastName = registration.getLastName() != null ? registration.getLastName() : "";
+        String fullName = (firstName + " " + lastName).trim();
+        return fullName.isEmpty() ? registration.getUsername() : fullName;
+    }
+
+    private String encrypt(String password) {
+        try {
+            byte[] iv = new byte[GCM_IV_BYTES];
+            random.nextBytes(iv);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, passwordKey, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            byte[] ciphertext = cipher.doFinal(password.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(
+                    ByteBuffer.allocate(iv.length + ciphertext.length).put(iv).put(ciphertext).array());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("No se pudo cifrar la contraseña del registro", e);
+        }
+    }
+
+    private String decrypt(String stored) {
+        if (stored == null) {
+            throw new PasswordUnavailableException("La contraseña del registro ya no está disponible");
+        }
+        try {
+            byte[] data = Base64.getDecoder().decode(stored);
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, passwordKey, new GCMParameterSpec(GCM_TAG_BITS, data, 0, GCM_IV_BYTES));
+            return new String(cipher.doFinal(data, GCM_IV_BYTES, data.length - GCM_IV_BYTES), StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            // Secreto cambiado desde que se guardó: hay que registrarse de nuevo
+            throw new PasswordUnavailableException("No se pudo descifrar la contraseña del registro");
+        }
+    }
+
+    private static byte[] deriveKey(String secret) {
+        // Con un secreto aleatorio los registros pendientes no sobrevivirían a un
+        // reinicio ni se podrían procesar en otra réplica
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalStateException(
+                    "Falta configurar app.registration.outbox.secret (APP_REGISTRATION_OUTBOX_SECRET)");
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(secret.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter counter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("yopago.registration.outbox")
+                .description("Registros procesados por la outbox")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * El usuario ya está reservado por otro registro con un email distinto
+     */
+    public static class RegistrationConflictException extends RuntimeException {
+        public RegistrationConflictException(String message) {
+            super(message);
+        }
+    }
+
+    private static class PasswordUnavailableException extends RuntimeException {
+        PasswordUnavailableException(String message) {
+            super(message);
+        }
+    }
+}
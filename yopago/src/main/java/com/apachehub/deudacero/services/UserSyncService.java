@@ -2,11 +2,17 @@ package com.apachehub.deudacero.services;
 
 import com.apachehub.deudacero.entities.Member;
 import com.apachehub.deudacero.repositories.MemberRepository;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 /**
@@ -17,9 +23,27 @@ import java.util.Optional;
 public class UserSyncService {
 
     private final MemberRepository memberRepository;
-
-    public UserSyncService(MemberRepository memberRepository) {
+    private final LastLoginFlusher lastLoginFlusher;
+    private final GroupVersionService groupVersionService;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, ResolvedIdentity> identities;
+
+    public UserSyncService(MemberRepository memberRepository,
+            LastLoginFlusher lastLoginFlusher,
+            GroupVersionService groupVersionService,
+            PlatformTransactionManager transactionManager,
+            @Value("${app.members.identity-cache.max-entries:10000}") int maxEntries) {
         this.memberRepository = memberRepository;
+        this.lastLoginFlusher = lastLoginFlusher;
+        this.groupVersionService = groupVersionService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        int capacity = Math.max(1, maxEntries);
+        this.identities = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ResolvedIdentity> eldest) {
+                return size() > capacity;
+            }
+        };
     }
 
     /**
@@ -27,8 +51,12 @@ public class UserSyncService {
      * - Si el usuario ya existe como Member registrado, actualiza su último login
      * - Si no existe, crea un nuevo Member registrado
      * - Si existe como invitado con el mismo email, lo convierte a registrado
+     *
+     * Se llama en cada petición autenticada, así que el caso habitual (mismo
+     * sub y mismos claims que la última vez) solo lee el Member por id: no abre
+     * una transacción de escritura y el último login se anota en
+     * LastLoginFlusher, que lo guarda en bloque.
      */
-    @Transactional
     public Member syncAuthenticatedUser(Jwt jwt) {
         String keycloakUserId = jwt.getSubject();
         String username = jwt.getClaimAsString("preferred_username");
@@ -40,20 +68,50 @@ public class UserSyncService {
             fullName = username;
         }
 
+        String claims = claimsFingerprint(username, email, fullName);
+        ResolvedIdentity cached;
+        synchronized (identities) {
+            cached = identities.get(keycloakUserId);
+        }
+        if (cached != null && cached.claims().equals(claims)) {
+            Optional<Member> member = memberRepository.findById(cached.memberId());
+            if (member.isPresent()) {
+                lastLoginFlusher.record(cached.memberId());
+                return member.get();
+            }
+        }
+
+        String name = fullName;
+        Member member = transactionTemplate.execute(status -> synchronize(keycloakUserId, username, email, name));
+        synchronized (identities) {
+            identities.put(keycloakUserId, new ResolvedIdentity(member.getId(), claims));
+        }
+        return member;
+    }
+
+    private Member synchronize(String keycloakUserId, String username, String email, String fullName) {
         // 1. Buscar por Keycloak User ID (más confiable)
         Optional<Member> existingMember = memberRepository.findByKeycloakUserId(keycloakUserId);
 
         if (existingMember.isPresent()) {
-            // Usuario ya existe como registrado, actualizar último login
             Member member = existingMember.get();
-            member.setLastLogin(LocalDateTime.now());
 
-            // Actualizar información por si cambió en Keycloak
-            member.setUsername(username);
-            member.setEmail(email);
-            member.setName(fullName);
-
-            return memberRepository.save(member);
+            // Actualizar información solo si cambió en Keycloak
+            if (!Objects.equals(member.getUsername(), username) || !Objects.equals(member.getEmail(), email)
+                    || !Objects.equals(member.getName(), fullName)) {
+                // Nombre y email aparecen en los detalles de sus grupos
+                boolean shownChanged = !Objects.equals(member.getEmail(), email)
+                        || !Objects.equals(member.getName(), fullName);
+                member.setUsername(username);
+                member.setEmail(email);
+                member.setName(fullName);
+                member = memberRepository.save(member);
+                if (shownChanged) {
+                    groupVersionService.bumpGroupsOf(member.getId());
+                }
+            }
+            lastLoginFlusher.record(member.getId());
+            return member;
         }
 
         // 2. Buscar por email si existe como invitado
@@ -70,7 +128,9 @@ public class UserSyncService {
                 member.setIsRegistered(true);
                 member.setLastLogin(LocalDateTime.now());
 
-                return memberRepository.save(member);
+                Member converted = memberRepository.save(member);
+                groupVersionService.bumpGroupsOf(converted.getId());
+                return converted;
             }
         }
 
@@ -81,6 +141,13 @@ public class UserSyncService {
         return memberRepository.save(newMember);
     }
 
+    private static String claimsFingerprint(String username, String email, String fullName) {
+        return username + '\u0000' + email + '\u0000' + fullName;
+    }
+
+    private record ResolvedIdentity(Long memberId, String claims) {
+    }
+
     /**
      * Obtiene el Member asociado al usuario autenticado
      */
@@ -131,7 +198,9 @@ public class UserSyncService {
                 member.setIsRegistered(true);
                 member.setLastLogin(LocalDateTime.now());
 
-                return memberRepository.save(member);
+                Member converted = memberRepository.save(member);
+                groupVersionService.bumpGroupsOf(converted.getId());
+                return converted;
             }
         }
 
@@ -0,0 +1,318 @@
+package com.apachehub.deudacero.services;
+
+import java.time.Duration;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.netty.channel.ChannelOption;
+import reactor.netty.http.client.HttpClient;
+import reactor.util.retry.Retry;
+
+/**
+ * Cliente HTTP de vision-ia con aislamiento de fallos: timeouts de conexión y
+ * de respuesta, un bulkhead que limita las llamadas en curso, un circuit
+ * breaker que responde de inmediato mientras el servicio está caído y
+ * reintentos con backoff exponencial y jitter para los errores transitorios.
+ * Todos los intentos comparten un presupuesto de tiempo (retry-budget-ms) que
+ * debe quedar por debajo del timeout de las peticiones asíncronas
+ * (spring.mvc.async.request-timeout).
+ *
+ * Solo los errores transitorios y los 5xx cuentan como fallos para el circuito
+ * y solo una respuesta utilizable como éxito; un 4xx o una respuesta que no se
+ * puede leer no cambian su estado.
+ *
+ * Reintentar es seguro porque el análisis de una imagen no tiene efectos
+ * secundarios en vision-ia.
+ */
+@Component
+public class VisionIaClient {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(VisionIaClient.class);
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final Duration readTimeout;
+    private final Semaphore bulkhead;
+    private final long bulkheadWaitMillis;
+    private final int maxRetries;
+    private final Duration retryBackoff;
+    private final Duration retryBudget;
+    private final CircuitBreaker circuitBreaker;
+
+    private final Counter bulkheadRejections;
+    private final Counter circuitRejections;
+    private final Counter retries;
+
+    public VisionIaClient(WebClient.Builder webClientBuilder,
+            @Value("${vision-ia.service.base-url:http://vision-ia:8001}") String baseUrl,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${vision-ia.service.connect-timeout-ms:2000}") int connectTimeoutMillis,
+            @Value("${vision-ia.service.read-timeout-ms:30000}") long readTimeoutMillis,
+            @Value("${vision-ia.service.max-concurrent-calls:8}") int maxConcurrentCalls,
+            @Value("${vision-ia.service.bulkhead-wait-ms:500}") long bulkheadWaitMillis,
+            @Value("${vision-ia.service.max-retries:2}") int maxRetries,
+            @Value("${vision-ia.service.retry-backoff-ms:300}") long retryBackoffMillis,
+            @Value("${vision-ia.service.retry-budget-ms:90000}") long retryBudgetMillis,
+            @Value("${vision-ia.service.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${vision-ia.service.circuit.open-ms:30000}") long openMillis) {
+        this.retryBudget = Duration.ofMillis(Math.max(1, retryBudgetMillis));
+        // Un solo intento nunca puede durar más que el presupuesto completo
+        this.readTimeout = Duration.ofMillis(Math.min(readTimeoutMillis, retryBudget.toMillis()));
+        HttpClient httpClient = HttpClient.create()
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(readTimeout);
+        this.webClient = webClientBuilder
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.objectMapper = objectMapper;
+        this.bulkhead = new Semaphore(Math.max(1, maxConcurrentCalls));
+        this.bulkheadWaitMillis = Math.max(0, bulkheadWaitMillis);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.retryBackoff = Duration.ofMillis(Math.max(1, retryBackoffMillis));
+        this.circuitBreaker = new CircuitBreaker(Math.max(1, failureThreshold), Duration.ofMillis(openMillis));
+
+        this.bulkheadRejections = Counter.builder("yopago.ocr.vision.rejected")
+                .tag("reason", "bulkhead_full")
+                .description("Llamadas a vision-ia rechazadas por exceso de concurrencia")
+                .register(meterRegistry);
+        this.circuitRejections = Counter.builder("yopago.ocr.vision.rejected")
+                .tag("reason", "circuit_open")
+                .description("Llamadas a vision-ia rechazadas con el circuito abierto")
+                .register(meterRegistry);
+        this.retries = Counter.builder("yopago.ocr.vision.retries")
+                .description("Reintentos de llamadas a vision-ia")
+                .register(meterRegistry);
+        Gauge.builder("yopago.ocr.vision.circuit", circuitBreaker, breaker -> breaker.state().ordinal())
+                .description("Estado del circuito de vision-ia (0 cerrado, 1 abierto, 2 semiabierto)")
+                .register(meterRegistry);
+        Gauge.builder("yopago.ocr.vision.in-flight", bulkhead,
+                semaphore -> Math.max(1, maxConcurrentCalls) - semaphore.availablePermits())
+                .description("Llamadas a vision-ia en curso")
+                .register(meterRegistry);
+
+        LOGGER.info("Base URL de vision-ia: {}", baseUrl);
+    }
+
+    /**
+     * Envía la imagen como multipart a /vision-ia. Lanza
+     * {@link VisionIaUnavailableException} sin llamar al servicio si el
+     * circuito está abierto o no hay hueco en el bulkhead.
+     */
+    public OcrService.OcrResult analyze(byte[] content, String filename) throws Exception {
+        if (!circuitBreaker.tryAcquire()) {
+            circuitRejections.increment();
+            throw new VisionIaUnavailableException("El servicio de OCR no está disponible, intenta más tarde");
+        }
+        if (!bulkhead.tryAcquire(bulkheadWaitMillis, TimeUnit.MILLISECONDS)) {
+            circuitBreaker.release();
+            bulkheadRejections.increment();
+            throw new VisionIaUnavailableException("El servicio de OCR está saturado, intenta más tarde");
+        }
+        try {
+            JsonNode root;
+            try {
+                root = post(content, filename);
+            } catch (RuntimeException e) {
+                Throwable cause = unwrap(e);
+                if (isTransient(cause)) {
+                    circuitBreaker.onFailure();
+                    throw new VisionIaUnavailableException("El servicio de OCR no respondió: " + describe(cause),
+                            cause);
+                }
+                if (cause instanceof WebClientResponseException response
+                        && response.getStatusCode().is5xxServerError()) {
+                    circuitBreaker.onFailure();
+                } else {
+                    // Un 4xx es un problema de la imagen: ni éxito ni fallo del servicio
+                    circuitBreaker.release();
+                }
+                throw e;
+            }
+
+            OcrService.OcrResult result;
+            try {
+                result = parse(root);
+            } catch (Exception e) {
+                circuitBreaker.release();
+                throw e;
+            }
+            circuitBreaker.onSuccess();
+            return result;
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    private OcrService.OcrResult parse(JsonNode root) throws Exception {
+        if (root == null)
+            throw new Exception("No se obtuvo respuesta del OCR");
+        String text = root.hasNonNull("text") ? root.get("text").asText() : null;
+        Object structured = root.hasNonNull("structured")
+                ? objectMapper.treeToValue(root.get("structured"), Object.class)
+                : null;
+        return new OcrService.OcrResult(text, structured);
+    }
+
+    private JsonNode post(byte[] content, String filename) {
+        MultipartBodyBuilder builder = new MultipartBodyBuilder();
+        builder.part("file", new ByteArrayResource(content) {
+            @Override
+            public String getFilename() {
+                return filename;
+            }
+        });
+        // El Resource se escribe por bloques y la respuesta se decodifica con el
+        // parser de Jackson directamente sobre los buffers recibidos
+        return webClient.post()
+                .uri("/vision-ia")
+                .contentType(MediaType.MULTIPART_FORM_DATA)
+                .body(BodyInserters.fromMultipartData(builder.build()))
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .timeout(readTimeout)
+                .retryWhen(Retry.backoff(maxRetries, retryBackoff)
+                        .maxBackoff(retryBackoff.multipliedBy(8))
+                        .jitter(0.5)
+                        .filter(VisionIaClient::isTransient)
+                        .doBeforeRetry(signal -> retries.increment())
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                // Cota del total de intentos y esperas entre ellos
+                .timeout(retryBudget)
+                .block();
+    }
+
+    CircuitBreaker.State circuitState() {
+        return circuitBreaker.state();
+    }
+
+    /**
+     * Errores de red, timeouts y respuestas 5xx de pasarela o sobrecarga
+     */
+    static boolean isTransient(Throwable error) {
+        if (error instanceof WebClientRequestException || error instanceof TimeoutException) {
+            return true;
+        }
+        if (error instanceof WebClientResponseException response) {
+            int status = response.getStatusCode().value();
+            return status == 429 || status == 502 || status == 503 || status == 504;
+        }
+        return false;
+    }
+
+    private static Throwable unwrap(RuntimeException e) {
+        // block() envuelve las excepciones comprobadas (p. ej. TimeoutException)
+        if (e.getCause() instanceof TimeoutException) {
+            return e.getCause();
+        }
+        return e;
+    }
+
+    private static String describe(Throwable cause) {
+        if (cause instanceof TimeoutException) {
+            return "tiempo de espera agotado";
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    /**
+     * Circuit breaker por fallos consecutivos. Abierto: rechaza todo durante
+     * openDuration. Semiabierto: deja pasar una sola llamada de prueba; si
+     * funciona se cierra y si falla vuelve a abrirse.
+     */
+    static final class CircuitBreaker {
+
+        enum State {
+            CLOSED, OPEN, HALF_OPEN
+        }
+
+        private final int failureThreshold;
+        private final Duration openDuration;
+        private final AtomicInteger consecutiveFailures = new AtomicInteger();
+        private final AtomicBoolean probeInFlight = new AtomicBoolean();
+        private volatile long openedAt;
+        private volatile boolean open;
+
+        CircuitBreaker(int failureThreshold, Duration openDuration) {
+            this.failureThreshold = failureThreshold;
+            this.openDuration = openDuration;
+        }
+
+        State state() {
+            if (!open) {
+                return State.CLOSED;
+            }
+            return System.nanoTime() - openedAt >= openDuration.toNanos() ? State.HALF_OPEN : State.OPEN;
+        }
+
+        boolean tryAcquire() {
+            return switch (state()) {
+                case CLOSED -> true;
+                case OPEN -> false;
+                case HALF_OPEN -> probeInFlight.compareAndSet(false, true);
+            };
+        }
+
+        /**
+         * Devuelve el permiso de prueba sin cambiar el estado: la llamada no
+         * llegó a hacerse o su resultado no dice nada de la salud del servicio
+         */
+        void release() {
+            probeInFlight.set(false);
+        }
+
+        void onSuccess() {
+            consecutiveFailures.set(0);
+            open = false;
+            probeInFlight.set(false);
+        }
+
+        void onFailure() {
+            if (open || consecutiveFailures.incrementAndGet() >= failureThreshold) {
+                if (!open) {
+                    LOGGER.warn("Circuito de vision-ia abierto tras {} fallos consecutivos", failureThreshold);
+                }
+                openedAt = System.nanoTime();
+                open = true;
+            }
+            probeInFlight.set(false);
+        }
+    }
+
+    /**
+     * vision-ia no está disponible (circuito abierto, saturado o sin respuesta).
+     * Los controladores la traducen a 503.
+     */
+    public static class VisionIaUnavailableException extends RuntimeException {
+        public VisionIaUnavailableException(String message) {
+            super(message);
+        }
+
+        public VisionIaUnavailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
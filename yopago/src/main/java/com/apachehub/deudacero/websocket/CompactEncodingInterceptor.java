@@ -0,0 +1,111 @@
+package com.apachehub.deudacero.websocket;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+
+/**
+ * Negociación de codificación compacta (CBOR) por suscripción.
+ *
+ * El cliente la solicita enviando "content-type: application/cbor" (o
+ * "accept: application/cbor") en el frame SUBSCRIBE. En el canal de entrada se
+ * registran esas suscripciones; en el de salida, los MESSAGE destinados a ellas
+ * se sustituyen por la versión CBOR ya serializada por RealTimeEventPublisher,
+ * sin volver a serializar por suscriptor.
+ *
+ * El frame se envía como application/octet-stream (Spring solo usa frames
+ * binarios de WebSocket para ese tipo) con la cabecera "encoding: cbor".
+ */
+@Component
+public class CompactEncodingInterceptor implements ChannelInterceptor {
+
+    public static final String CBOR_MIME_TYPE = "application/cbor";
+
+    /** Cabecera interna (no se envía al cliente) con el payload CBOR del evento */
+    public static final String CBOR_PAYLOAD_HEADER = "yopagoCborPayload";
+
+    private static final String ENCODING_HEADER = "encoding";
+
+    private final Map<String, Set<String>> compactSubscriptionsBySession = new ConcurrentHashMap<>();
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor stompAccessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (stompAccessor != null && stompAccessor.getCommand() != null) {
+            trackSubscription(stompAccessor);
+            return message;
+        }
+        return encodeOutbound(message);
+    }
+
+    /**
+     * Indica si hay alguna suscripción CBOR activa, para no serializar en CBOR
+     * cuando nadie lo va a recibir.
+     */
+    public boolean hasCompactSubscribers() {
+        return !compactSubscriptionsBySession.isEmpty();
+    }
+
+    public boolean isCompact(String sessionId, String subscriptionId) {
+        if (sessionId == null || subscriptionId == null) {
+            return false;
+        }
+        Set<String> subscriptions = compactSubscriptionsBySession.get(sessionId);
+        return subscriptions != null && subscriptions.contains(subscriptionId);
+    }
+
+    private void trackSubscription(StompHeaderAccessor accessor) {
+        String sessionId = accessor.getSessionId();
+        if (sessionId == null) {
+            return;
+        }
+        StompCommand command = accessor.getCommand();
+        if (StompCommand.SUBSCRIBE.equals(command) && wantsCompact(accessor) && accessor.getSubscriptionId() != null) {
+            compactSubscriptionsBySession.computeIfAbsent(sessionId, id -> ConcurrentHashMap.newKeySet())
+                    .add(accessor.getSubscriptionId());
+        } else if (StompCommand.UNSUBSCRIBE.equals(command) && accessor.getSubscriptionId() != null) {
+            compactSubscriptionsBySession.computeIfPresent(sessionId, (id, subscriptions) -> {
+                subscriptions.remove(accessor.getSubscriptionId());
+                return subscriptions.isEmpty() ? null : subscriptions;
+            });
+        } else if (StompCommand.DISCONNECT.equals(command)) {
+            compactSubscriptionsBySession.remove(sessionId);
+        }
+    }
+
+    private Message<?> encodeOutbound(Message<?> message) {
+        if (!(message.getHeaders().get(CBOR_PAYLOAD_HEADER) instanceof byte[] cbor)) {
+            return message;
+        }
+        if (SimpMessageHeaderAccessor.getMessageType(message.getHeaders()) != SimpMessageType.MESSAGE
+                || !isCompact(SimpMessageHeaderAccessor.getSessionId(message.getHeaders()),
+                        SimpMessageHeaderAccessor.getSubscriptionId(message.getHeaders()))) {
+            return message;
+        }
+
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(message);
+        accessor.removeHeader(CBOR_PAYLOAD_HEADER);
+        accessor.setContentType(MimeTypeUtils.APPLICATION_OCTET_STREAM);
+        accessor.setNativeHeader(ENCODING_HEADER, RealTimeEventCodec.CBOR);
+        return MessageBuilder.createMessage(cbor, accessor.getMessageHeaders());
+    }
+
+    private static boolean wantsCompact(StompHeaderAccessor accessor) {
+        String contentType = accessor.getFirstNativeHeader("content-type");
+        String accept = accessor.getFirstNativeHeader("accept");
+        return (contentType != null && contentType.contains(CBOR_MIME_TYPE))
+                || (accept != null && accept.contains(CBOR_MIME_TYPE));
+    }
+}
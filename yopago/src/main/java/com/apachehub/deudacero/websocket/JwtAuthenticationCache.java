@@ -0,0 +1,129 @@
+package com.apachehub.deudacero.websocket;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Caché acotada de autenticaciones JWT ya validadas, indexada por el hash
+ * SHA-256 del token. Evita decodificar y verificar la firma del mismo token en
+ * cada CONNECT (p. ej. durante tormentas de reconexión tras un despliegue).
+ * Cada entrada caduca con el claim exp del token o con el TTL configurado, lo
+ * que ocurra primero.
+ */
+@Component
+public class JwtAuthenticationCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int maxEntries;
+    private final Duration ttl;
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Timer decodeTimer;
+
+    public JwtAuthenticationCache(MeterRegistry meterRegistry,
+            @Value("${app.websocket.auth-cache.max-entries:10000}") int maxEntries,
+            @Value("${app.websocket.auth-cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttl = Duration.ofSeconds(Math.max(1, ttlSeconds));
+        this.hits = Counter.builder("yopago.websocket.auth.cache")
+                .tag("result", "hit")
+                .description("CONNECT resueltos desde la caché de JWT")
+                .register(meterRegistry);
+        this.misses = Counter.builder("yopago.websocket.auth.cache")
+                .tag("result", "miss")
+                .description("CONNECT que requirieron decodificar el JWT")
+                .register(meterRegistry);
+        this.decodeTimer = Timer.builder("yopago.websocket.auth.decode")
+                .description("Latencia de decodificación y conversión del JWT")
+                .register(meterRegistry);
+        meterRegistry.gauge("yopago.websocket.auth.cache.size", entries, Map::size);
+    }
+
+    /**
+     * Devuelve la autenticación cacheada para el token o la calcula con el
+     * loader indicado si no existe o ya expiró.
+     */
+    public AbstractAuthenticationToken resolve(String token,
+            Function<String, AbstractAuthenticationToken> loader) {
+        String key = hash(token);
+        Instant now = Instant.now();
+
+        Entry cached = entries.get(key);
+        if (cached != null) {
+            if (cached.expiresAt.isAfter(now)) {
+                hits.increment();
+                return cached.authentication;
+            }
+            entries.remove(key, cached);
+        }
+
+        misses.increment();
+        AbstractAuthenticationToken authentication = decodeTimer.record(() -> loader.apply(token));
+        if (authentication == null) {
+            return null;
+        }
+
+        Instant expiresAt = now.plus(ttl);
+        if (authentication.getPrincipal() instanceof Jwt jwt && jwt.getExpiresAt() != null
+                && jwt.getExpiresAt().isBefore(expiresAt)) {
+            expiresAt = jwt.getExpiresAt();
+        }
+
+        if (expiresAt.isAfter(now)) {
+            if (entries.size() >= maxEntries) {
+                evict(now);
+            }
+            entries.put(key, new Entry(authentication, expiresAt));
+        }
+        return authentication;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    private void evict(Instant now) {
+        entries.values().removeIf(entry -> !entry.expiresAt.isAfter(now));
+
+        Iterator<String> keys = entries.keySet().iterator();
+        while (entries.size() >= maxEntries && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    private static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hashed = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(hashed);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private record Entry(AbstractAuthenticationToken authentication, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.apachehub.deudacero.websocket;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageHandler;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorChannelInterceptor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketHandler;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketHandlerDecorator;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Mide los mensajes encolados por sesión en el clientOutboundChannel y cuenta
+ * las sesiones expulsadas por ser consumidores lentos (cierre
+ * SESSION_NOT_RELIABLE al superar los límites de envío).
+ */
+@Component
+public class OutboundQueueMetrics implements ExecutorChannelInterceptor {
+
+    private final Map<String, AtomicInteger> queuedBySession = new ConcurrentHashMap<>();
+    private final Counter evictedSessions;
+
+    public OutboundQueueMetrics(MeterRegistry meterRegistry) {
+        Gauge.builder("yopago.websocket.outbound.queued", this, OutboundQueueMetrics::totalQueued)
+                .description("Mensajes pendientes de envío en todas las sesiones")
+                .register(meterRegistry);
+        Gauge.builder("yopago.websocket.outbound.queued.max", this, OutboundQueueMetrics::maxQueuedPerSession)
+                .description("Mensajes pendientes de envío en la sesión más atrasada")
+                .register(meterRegistry);
+        Gauge.builder("yopago.websocket.outbound.sessions", queuedBySession, Map::size)
+                .description("Sesiones con mensajes salientes registrados")
+                .register(meterRegistry);
+        this.evictedSessions = Counter.builder("yopago.websocket.sessions.evicted")
+                .description("Sesiones cerradas por consumir demasiado lento")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId != null) {
+            queuedBySession.compute(sessionId, (id, queued) -> {
+                AtomicInteger counter = queued != null ? queued : new AtomicInteger();
+                counter.incrementAndGet();
+                return counter;
+            });
+        }
+        return message;
+    }
+
+    @Override
+    public void afterSendCompletion(Message<?> message, MessageChannel channel, boolean sent, Exception ex) {
+        // Si el executor rechazó el mensaje nunca llegará afterMessageHandled
+        if (ex != null || !sent) {
+            release(message);
+        }
+    }
+
+    @Override
+    public void afterMessageHandled(Message<?> message, MessageChannel channel, MessageHandler handler,
+            Exception ex) {
+        release(message);
+    }
+
+    public int queuedFor(String sessionId) {
+        AtomicInteger queued = queuedBySession.get(sessionId);
+        return queued != null ? queued.get() : 0;
+    }
+
+    public double totalQueued() {
+        return queuedBySession.values().stream().mapToInt(AtomicInteger::get).sum();
+    }
+
+    public double maxQueuedPerSession() {
+        return queuedBySession.values().stream().mapToInt(AtomicInteger::get).max().orElse(0);
+    }
+
+    /**
+     * Decorador del handler WebSocket para limpiar el contador de la sesión al
+     * cerrarse y registrar las expulsiones por consumidor lento.
+     */
+    public WebSocketHandler decorate(WebSocketHandler handler) {
+        return new WebSocketHandlerDecorator(handler) {
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus closeStatus) throws Exception {
+                queuedBySession.remove(session.getId());
+                if (CloseStatus.SESSION_NOT_RELIABLE.equals(closeStatus)) {
+                    evictedSessions.increment();
+                }
+                super.afterConnectionClosed(session, closeStatus);
+            }
+        };
+    }
+
+    private void release(Message<?> message) {
+        String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+        if (sessionId == null) {
+            return;
+        }
+        queuedBySession.computeIfPresent(sessionId, (id, queued) -> queued.decrementAndGet() <= 0 ? null : queued);
+    }
+}
@@ -0,0 +1,83 @@
+package com.apachehub.deudacero.websocket;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Serializa los eventos en tiempo real una sola vez por evento, en JSON y
+ * opcionalmente en CBOR, reutilizando los writers de Jackson (thread-safe) en
+ * lugar de pasar por el conversor de SimpMessagingTemplate en cada envío.
+ *
+ * Registra bytes y tiempo de serialización por formato para poder comparar
+ * ambos en producción.
+ */
+@Component
+public class RealTimeEventCodec {
+
+    public static final String JSON = "json";
+    public static final String CBOR = "cbor";
+
+    private final ObjectWriter jsonWriter;
+    private final ObjectWriter cborWriter;
+    private final Timer jsonTimer;
+    private final Timer cborTimer;
+    private final DistributionSummary jsonBytes;
+    private final DistributionSummary cborBytes;
+
+    public RealTimeEventCodec(ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.jsonWriter = objectMapper.writer();
+        // Misma configuración y módulos (fechas, etc.) que el mapper JSON
+        this.cborWriter = objectMapper.copyWith(new CBORFactory()).writer();
+        this.jsonTimer = encodeTimer(meterRegistry, JSON);
+        this.cborTimer = encodeTimer(meterRegistry, CBOR);
+        this.jsonBytes = payloadSize(meterRegistry, JSON);
+        this.cborBytes = payloadSize(meterRegistry, CBOR);
+    }
+
+    public byte[] toJson(Map<String, Object> event) {
+        return encode(jsonWriter, jsonTimer, jsonBytes, event);
+    }
+
+    public byte[] toCbor(Map<String, Object> event) {
+        return encode(cborWriter, cborTimer, cborBytes, event);
+    }
+
+    private byte[] encode(ObjectWriter writer, Timer timer, DistributionSummary sizes, Map<String, Object> event) {
+        long start = System.nanoTime();
+        byte[] bytes;
+        try {
+            bytes = writer.writeValueAsBytes(event);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("No se pudo serializar el evento " + event.get("type"), e);
+        }
+        timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        sizes.record(bytes.length);
+        return bytes;
+    }
+
+    private static Timer encodeTimer(MeterRegistry meterRegistry, String format) {
+        return Timer.builder("yopago.realtime.encode")
+                .tag("format", format)
+                .description("Tiempo de serialización de eventos en tiempo real")
+                .register(meterRegistry);
+    }
+
+    private static DistributionSummary payloadSize(MeterRegistry meterRegistry, String format) {
+        return DistributionSummary.builder("yopago.realtime.event.bytes")
+                .tag("format", format)
+                .baseUnit("bytes")
+                .description("Tamaño del payload de eventos en tiempo real")
+                .register(meterRegistry);
+    }
+}
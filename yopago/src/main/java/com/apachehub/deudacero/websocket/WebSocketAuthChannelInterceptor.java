@@ -19,11 +19,17 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
 
     private final JwtDecoder jwtDecoder;
     private final JwtAuthenticationConverter jwtAuthenticationConverter;
+    private final JwtAuthenticationCache authenticationCache;
+    private final WebSocketSubscriptionAuthorizer subscriptionAuthorizer;
 
     public WebSocketAuthChannelInterceptor(JwtDecoder jwtDecoder,
-            JwtAuthenticationConverter jwtAuthenticationConverter) {
+            JwtAuthenticationConverter jwtAuthenticationConverter,
+            JwtAuthenticationCache authenticationCache,
+            WebSocketSubscriptionAuthorizer subscriptionAuthorizer) {
         this.jwtDecoder = jwtDecoder;
         this.jwtAuthenticationConverter = jwtAuthenticationConverter;
+        this.authenticationCache = authenticationCache;
+        this.subscriptionAuthorizer = subscriptionAuthorizer;
     }
 
     @Override
@@ -40,17 +46,21 @@ public class WebSocketAuthChannelInterceptor implements ChannelInterceptor {
             }
 
             String token = authHeader.substring(7);
-            Jwt jwt = jwtDecoder.decode(token);
-
-            AbstractAuthenticationToken authentication = (AbstractAuthenticationToken) jwtAuthenticationConverter
-                    .convert(jwt);
+            AbstractAuthenticationToken authentication = authenticationCache.resolve(token, this::authenticate);
             if (authentication == null) {
                 throw new IllegalArgumentException("Token inválido");
             }
 
             accessor.setUser(authentication);
+        } else if (StompCommand.SUBSCRIBE.equals(accessor.getCommand())) {
+            subscriptionAuthorizer.authorize(accessor.getUser(), accessor.getDestination());
         }
 
         return message;
     }
+
+    private AbstractAuthenticationToken authenticate(String token) {
+        Jwt jwt = jwtDecoder.decode(token);
+        return (AbstractAuthenticationToken) jwtAuthenticationConverter.convert(jwt);
+    }
 }
@@ -0,0 +1,75 @@
+package com.apachehub.deudacero.websocket;
+
+import java.security.Principal;
+
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.stereotype.Component;
+
+import com.apachehub.deudacero.services.GroupMembershipIndex;
+
+/**
+ * Autoriza los SUBSCRIBE a tópicos de grupo y de usuario. El índice de
+ * membresía descarta sin consulta a quien no pertenece al grupo; la pertenencia
+ * se confirma en la base de datos.
+ */
+@Component
+public class WebSocketSubscriptionAuthorizer {
+
+    private static final String GROUP_TOPIC_PREFIX = "/topic/groups/";
+    private static final String USER_TOPIC_PREFIX = "/topic/users/";
+
+    private final GroupMembershipIndex membershipIndex;
+
+    public WebSocketSubscriptionAuthorizer(GroupMembershipIndex membershipIndex) {
+        this.membershipIndex = membershipIndex;
+    }
+
+    public void authorize(Principal principal, String destination) {
+        if (destination == null) {
+            return;
+        }
+
+        if (destination.startsWith(GROUP_TOPIC_PREFIX)) {
+            Long groupId = parseId(destination, GROUP_TOPIC_PREFIX);
+            if (!canAccessGroup(principal, groupId)) {
+                throw new AccessDeniedException("No tienes acceso a los eventos de este grupo");
+            }
+        } else if (destination.startsWith(USER_TOPIC_PREFIX)) {
+            Long memberId = parseId(destination, USER_TOPIC_PREFIX);
+            if (memberId == null || !memberId.equals(resolveMemberId(principal))) {
+                throw new AccessDeniedException("No puedes suscribirte a eventos de otro usuario");
+            }
+        }
+    }
+
+    private boolean canAccessGroup(Principal principal, Long groupId) {
+        if (groupId == null) {
+            return false;
+        }
+        if (principal instanceof GuestWebSocketPrincipal guest) {
+            return groupId.equals(guest.getGroupId());
+        }
+        return membershipIndex.canAccess(resolveMemberId(principal), groupId);
+    }
+
+    private Long resolveMemberId(Principal principal) {
+        if (principal == null) {
+            return null;
+        }
+        if (principal instanceof GuestWebSocketPrincipal guest) {
+            return guest.getMemberId();
+        }
+        return membershipIndex.resolveMemberId(principal.getName());
+    }
+
+    private Long parseId(String destination, String prefix) {
+        String rest = destination.substring(prefix.length());
+        int slash = rest.indexOf('/');
+        String id = slash >= 0 ? rest.substring(0, slash) : rest;
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
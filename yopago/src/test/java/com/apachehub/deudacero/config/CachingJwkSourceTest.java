@@ -0,0 +1,210 @@
+package com.apachehub.deudacero.config;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Validación de JWT contra un JWKS simulado: caché local, arranque con
+ * Keycloak caído a partir del JWKS guardado (si no es demasiado antiguo),
+ * caducidad de las claves en memoria y rotación de claves.
+ */
+class CachingJwkSourceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private HttpServer jwksServer;
+    private final AtomicReference<RSAKey> servedKey = new AtomicReference<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RSAKey key1;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        key1 = new RSAKeyGenerator(2048).keyID("k1").generate();
+        servedKey.set(key1);
+        jwksServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        jwksServer.createContext("/certs", this::serveJwks);
+        jwksServer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jwksServer.stop(0);
+    }
+
+    @Test
+    void decode_shouldUseCachedKeysWithoutFetchingPerRequest() throws Exception {
+        try (CachingJwkSource source = source(Duration.ofSeconds(30))) {
+            JwtDecoder decoder = new SecurityConfig().jwtDecoder(source);
+            for (int i = 0; i < 50; i++) {
+                assertEquals("kc-1", decoder.decode(token(key1)).getSubject());
+            }
+            assertEquals(1, fetches.get());
+
+            jwksServer.stop(0);
+            assertEquals("kc-1", decoder.decode(token(key1)).getSubject(), "Keycloak caído: se usan las claves en caché");
+        }
+        assertEquals(1, meterRegistry.get("yopago.security.jwks.fetch").tag("result", "success").timer().count());
+        assertTrue(meterRegistry.get("yopago.security.jwks.staleness").gauge().value() >= 0);
+    }
+
+    @Test
+    void start_shouldBootFromPersistedKeysWhenKeycloakIsDown() throws Exception {
+        try (CachingJwkSource warm = source(Duration.ofSeconds(30))) {
+            new SecurityConfig().jwtDecoder(warm).decode(token(key1));
+        }
+        jwksServer.stop(0);
+
+        try (CachingJwkSource cold = source(Duration.ofSeconds(30))) {
+            assertEquals("kc-1", new SecurityConfig().jwtDecoder(cold).decode(token(key1)).getSubject());
+        }
+        assertEquals(1, meterRegistry.get("yopago.security.jwks.fetch").tag("result", "failure").timer().count());
+    }
+
+    @Test
+    void start_shouldDiscardPersistedKeysOlderThanMaxAge() throws Exception {
+        try (CachingJwkSource warm = source(Duration.ofSeconds(30))) {
+            new SecurityConfig().jwtDecoder(warm).decode(token(key1));
+        }
+        jwksServer.stop(0);
+        Files.setLastModifiedTime(tempDir.resolve("jwks.json"),
+                FileTime.from(Instant.now().minus(Duration.ofHours(25))));
+
+        try (CachingJwkSource cold = source(Duration.ofSeconds(30))) {
+            JwtDecoder decoder = new SecurityConfig().jwtDecoder(cold);
+            assertThrows(JwtException.class, () -> decoder.decode(token(key1)));
+        }
+    }
+
+    @Test
+    void get_shouldRejectKeysInMemoryOlderThanMaxAgeWhenKeycloakIsDown() throws Exception {
+        MutableClock clock = new MutableClock(Instant.now());
+        try (CachingJwkSource source = source(Duration.ofSeconds(30), clock)) {
+            JwtDecoder decoder = new SecurityConfig().jwtDecoder(source);
+            decoder.decode(token(key1));
+            jwksServer.stop(0);
+
+            clock.advance(Duration.ofHours(25));
+            JWKSelector selector = new JWKSelector(new JWKMatcher.Builder().keyID("k1").build());
+            assertThrows(KeySourceException.class, () -> source.get(selector, null));
+            // Dentro del intervalo mínimo entre descargas tampoco se recuperan
+            assertThrows(KeySourceException.class, () -> source.get(selector, null));
+            assertThrows(JwtException.class, () -> decoder.decode(token(key1)));
+        }
+    }
+
+    @Test
+    void unknownKid_shouldRefreshOnceForKeyRotation() throws Exception {
+        try (CachingJwkSource source = source(Duration.ZERO)) {
+            JwtDecoder decoder = new SecurityConfig().jwtDecoder(source);
+            decoder.decode(token(key1));
+
+            RSAKey key2 = new RSAKeyGenerator(2048).keyID("k2").generate();
+            servedKey.set(key2);
+            for (int i = 0; i < 10; i++) {
+                assertEquals("kc-1", decoder.decode(token(key2)).getSubject());
+            }
+            assertEquals(2, fetches.get(), "La rotación provoca una única descarga adicional");
+        }
+    }
+
+    private CachingJwkSource source(Duration minRefetch) {
+        return source(minRefetch, Clock.systemUTC());
+    }
+
+    private CachingJwkSource source(Duration minRefetch, Clock clock) {
+        CachingJwkSource source = new CachingJwkSource(
+                "http://127.0.0.1:" + jwksServer.getAddress().getPort() + "/certs",
+                Duration.ofMinutes(5), minRefetch, Duration.ofMillis(500),
+                tempDir.resolve("jwks.json").toString(), Duration.ofHours(24), meterRegistry, clock);
+        source.start();
+        return source;
+    }
+
+    private static String token(RSAKey key) throws JOSEException {
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .subject("kc-1")
+                .issueTime(new Date())
+                .expirationTime(Date.from(Instant.now().plusSeconds(300)))
+                .build();
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    private void serveJwks(HttpExchange exchange) throws IOException {
+        fetches.incrementAndGet();
+        byte[] body = new JWKSet(servedKey.get().toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private final AtomicReference<Instant> now;
+
+        MutableClock(Instant start) {
+            this.now = new AtomicReference<>(start);
+        }
+
+        void advance(Duration duration) {
+            now.updateAndGet(instant -> instant.plus(duration));
+        }
+
+        @Override
+        public Instant instant() {
+            return now.get();
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.apachehub.deudacero.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.oauth2.jwt.Jwt;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeycloakRoleConverterTest {
+
+    @Test
+    void convert_shouldNormalizeKeycloakRoles() {
+        KeycloakRoleConverter converter = new KeycloakRoleConverter(100, 1);
+
+        Collection<GrantedAuthority> authorities = converter.convert(jwt(Instant.now().plusSeconds(300)));
+
+        assertEquals(List.of("ROLE_user", "ROLE_group_manager", "ROLE_admin"),
+                authorities.stream().map(GrantedAuthority::getAuthority).toList());
+    }
+
+    @Test
+    void convert_shouldMemoizePerTokenUntilItExpires() {
+        KeycloakRoleConverter converter = new KeycloakRoleConverter(100, 1);
+        Jwt valid = jwt(Instant.now().plusSeconds(300));
+        Jwt expired = jwt(Instant.now().minusSeconds(1));
+
+        assertSame(converter.convert(valid), converter.convert(valid));
+        assertNotSame(converter.convert(expired), converter.convert(expired),
+                "Un token expirado no debe servirse desde la caché");
+    }
+
+    @Test
+    void convert_shouldKeepCacheWithinMaxEntriesAndSkipItWhenDisabled() {
+        KeycloakRoleConverter converter = new KeycloakRoleConverter(3, 1);
+        for (int i = 0; i < 10; i++) {
+            converter.convert(jwt(Instant.now().plusSeconds(300)));
+            assertTrue(converter.cacheSize() <= 3, "Entradas en caché: " + converter.cacheSize());
+        }
+
+        KeycloakRoleConverter uncached = new KeycloakRoleConverter(0, 1);
+        Jwt token = jwt(Instant.now().plusSeconds(300));
+        assertEquals(uncached.convert(token), uncached.convert(token));
+        assertEquals(0, uncached.cacheSize());
+    }
+
+    private static Jwt jwt(Instant expiresAt) {
+        return Jwt.withTokenValue("token-" + UUID.randomUUID())
+                .header("alg", "RS256")
+                .jti(UUID.randomUUID().toString())
+                .subject("kc-1")
+                .claim("azp", "yopago-api")
+                .claim("preferred_username", "ana")
+                .claim("realm_access", Map.of("roles",
+                        List.of("default-roles-yopago", "offline_access", "uma_authorization", "group_manager")))
+                .claim("resource_access", Map.of("yopago-api", Map.of("roles", List.of("ADMIN"))))
+                .issuedAt(expiresAt.minusSeconds(600))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -0,0 +1,193 @@
+package com.apachehub.deudacero.controllers;
+
+import com.apachehub.deudacero.services.GuestAccessRateLimiter;
+import com.apachehub.deudacero.services.GuestEventStreamService;
+import com.apachehub.deudacero.services.GuestService;
+import com.apachehub.deudacero.services.GuestTokenService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.apache.catalina.filters.RemoteIpFilter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Dos réplicas independientes (controlador, servicio de tokens y sin sesión
+ * compartida) que solo comparten el secreto: el invitado entra por una y
+ * cualquiera de las dos atiende sus peticiones.
+ */
+class GuestControllerReplicaTest {
+
+    private static final String SECRET = "secreto-compartido-entre-replicas";
+
+    private GuestService guestService;
+    private GuestEventStreamService guestEventStreamService;
+    private MockMvc replicaA;
+    private MockMvc replicaB;
+
+    @BeforeEach
+    void setUp() {
+        guestService = mock(GuestService.class);
+        when(guestService.accessWithGroupCode(any(), any(), any(), any())).thenAnswer(invocation -> accessResponse());
+        when(guestService.getMemberSummary(7L)).thenReturn(Map.of("id", 7L, "name", "Ana", "phoneNumber", "099"));
+        guestEventStreamService = mock(GuestEventStreamService.class);
+        when(guestEventStreamService.subscribe(3L, 7L)).thenReturn(new SseEmitter());
+
+        replicaA = replica(new GuestTokenService(SECRET, 24));
+        replicaB = replica(new GuestTokenService(SECRET, 24));
+    }
+
+    @Test
+    void tokenIssuedByOneReplica_shouldBeAcceptedByAnother() throws Exception {
+        MvcResult access = replicaA.perform(post("/api/guest/access")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"groupCode\":\"ABC123\",\"guestName\":\"Ana\",\"email\":\"ana@mail.com\"}"))
+                .andExpect(status().isOk())
+                .andReturn();
+        assertNull(access.getRequest().getSession(false), "El acceso no debe abrir sesión HTTP");
+
+        String token = (String) new ObjectMapper()
+                .readValue(access.getResponse().getContentAsString(), Map.class)
+                .get("guestToken");
+        assertNotNull(token);
+
+        for (MockMvc replica : new MockMvc[] { replicaA, replicaB, replicaB }) {
+            replica.perform(get("/api/guest/info").header(GuestController.GUEST_TOKEN_HEADER, token))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.groupId").value(3))
+                    .andExpect(jsonPath("$.memberId").value(7))
+                    .andExpect(jsonPath("$.guestName").value("Ana"));
+        }
+    }
+
+    @Test
+    void tamperedOrExpiredTokens_shouldBeRejected() throws Exception {
+        String token = new GuestTokenService(SECRET, 24).issue(3L, 7L).token();
+        String otherMember = new GuestTokenService(SECRET, 24).issue(3L, 8L).token();
+        String forged = otherMember.substring(0, otherMember.indexOf('.')) + token.substring(token.indexOf('.'));
+        String foreign = new GuestTokenService("otro-secreto", 24).issue(3L, 7L).token();
+
+        Clock yesterday = Clock.fixed(Instant.now().minus(Duration.ofDays(2)), ZoneOffset.UTC);
+        String expired = new GuestTokenService(SECRET, Duration.ofHours(24), yesterday).issue(3L, 7L).token();
+
+        for (String invalid : new String[] { forged, foreign, expired, "basura", token + "x" }) {
+            replicaB.perform(get("/api/guest/info").header(GuestController.GUEST_TOKEN_HEADER, invalid))
+                    .andExpect(status().isUnauthorized());
+        }
+        replicaB.perform(get("/api/guest/info")).andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void tokenInQueryString_shouldBeIgnored() throws Exception {
+        String token = new GuestTokenService(SECRET, 24).issue(3L, 7L).token();
+
+        replicaA.perform(get("/api/guest/info").param("guestToken", token))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void streamTicket_shouldOpenEventsWithCookieOnlyOnTheStreamPath() throws Exception {
+        String token = new GuestTokenService(SECRET, 24).issue(3L, 7L).token();
+
+        replicaA.perform(post("/api/guest/events/ticket")).andExpect(status().isUnauthorized());
+        String setCookie = replicaA.perform(post("/api/guest/events/ticket")
+                        .header(GuestController.GUEST_TOKEN_HEADER, token))
+                .andExpect(status().isNoContent())
+                .andReturn().getResponse().getHeader("Set-Cookie");
+        assertNotNull(setCookie);
+        assertTrue(setCookie.startsWith(GuestController.GUEST_STREAM_COOKIE + "="));
+        assertTrue(setCookie.contains("Path=/api/guest/events"));
+        assertTrue(setCookie.contains("HttpOnly"));
+        assertTrue(setCookie.contains("SameSite=Strict"));
+
+        Cookie cookie = new Cookie(GuestController.GUEST_STREAM_COOKIE, token);
+        replicaB.perform(get("/api/guest/events").cookie(cookie))
+                .andExpect(status().isOk());
+        verify(guestEventStreamService).subscribe(3L, 7L);
+
+        replicaB.perform(get("/api/guest/events")).andExpect(status().isUnauthorized());
+        replicaB.perform(get("/api/guest/events")
+                        .cookie(new Cookie(GuestController.GUEST_STREAM_COOKIE, token + "x")))
+                .andExpect(status().isUnauthorized());
+        replicaB.perform(get("/api/guest/info").cookie(cookie)).andExpect(status().isUnauthorized());
+    }
+
+    /**
+     * RemoteIpFilter aplica la misma lógica que la válvula de Tomcat que activa
+     * server.forward-headers-strategy=native detrás del ingress
+     */
+    @Test
+    void accessThroughProxy_shouldLimitEachForwardedClientSeparately() throws Exception {
+        GuestController controller = new GuestController();
+        ReflectionTestUtils.setField(controller, "guestService", guestService);
+        ReflectionTestUtils.setField(controller, "guestTokenService", new GuestTokenService(SECRET, 24));
+        ReflectionTestUtils.setField(controller, "guestAccessRateLimiter",
+                new GuestAccessRateLimiter(new SimpleMeterRegistry(), true, 2, 1, 30, 15, 1000, 10));
+        MockMvc behindProxy = MockMvcBuilders.standaloneSetup(controller).addFilters(new RemoteIpFilter()).build();
+
+        for (int i = 0; i < 2; i++) {
+            behindProxy.perform(accessFrom("203.0.113.10")).andExpect(status().isOk());
+        }
+        behindProxy.perform(accessFrom("203.0.113.10")).andExpect(status().isTooManyRequests());
+        behindProxy.perform(accessFrom("203.0.113.20")).andExpect(status().isOk());
+    }
+
+    @Test
+    void missingSecret_shouldFailAtStartup() {
+        assertThrows(IllegalStateException.class, () -> new GuestTokenService("", 24));
+        assertThrows(IllegalStateException.class, () -> new GuestTokenService(null, 24));
+    }
+
+    private MockMvc replica(GuestTokenService tokenService) {
+        GuestController controller = new GuestController();
+        ReflectionTestUtils.setField(controller, "guestService", guestService);
+        ReflectionTestUtils.setField(controller, "guestTokenService", tokenService);
+        ReflectionTestUtils.setField(controller, "guestEventStreamService", guestEventStreamService);
+        ReflectionTestUtils.setField(controller, "guestAccessRateLimiter",
+                new GuestAccessRateLimiter(new SimpleMeterRegistry(), true, 20, 10, 30, 15, 1000, 10));
+        return MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    private static MockHttpServletRequestBuilder accessFrom(String clientIp) {
+        return post("/api/guest/access")
+                .with(request -> {
+                    request.setRemoteAddr("10.0.0.5");
+                    return request;
+                })
+                .header("X-Forwarded-For", clientIp)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"groupCode\":\"ABC123\",\"guestName\":\"Ana\",\"email\":\"ana@mail.com\"}");
+    }
+
+    private static Map<String, Object> accessResponse() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("group", Map.of("id", 3L, "name", "Viaje"));
+        response.put("member", Map.of("id", 7L, "name", "Ana"));
+        return response;
+    }
+}
@@ -0,0 +1,127 @@
+package com.apachehub.deudacero.services;
+
+import com.apachehub.deudacero.dto.LoginDto;
+import com.apachehub.deudacero.dto.UserRegistrationDTO;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Login y registro contra un Keycloak simulado: verifica que las conexiones se
+ * reutilizan y que el token de admin se pide una sola vez.
+ */
+class AuthServiceKeycloakTest {
+
+    private static final int CALLS = 20;
+
+    private HttpServer keycloak;
+    private final AtomicInteger adminTokenRequests = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private AuthService authService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keycloak = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        keycloak.setExecutor(Executors.newFixedThreadPool(4));
+        keycloak.createContext("/", this::handle);
+        keycloak.start();
+
+        authService = new AuthService(mock(UserSyncService.class));
+        ReflectionTestUtils.setField(authService, "keycloakAuthServerUrl",
+                "http://127.0.0.1:" + keycloak.getAddress().getPort() + "/");
+        ReflectionTestUtils.setField(authService, "realm", "yopago");
+        ReflectionTestUtils.setField(authService, "adminRealm", "master");
+        ReflectionTestUtils.setField(authService, "clientId", "yopago-api");
+        ReflectionTestUtils.setField(authService, "clientSecret", "secret");
+        ReflectionTestUtils.setField(authService, "adminUsername", "admin");
+        ReflectionTestUtils.setField(authService, "adminPassword", "admin");
+        ReflectionTestUtils.setField(authService, "connectTimeoutMillis", 2000L);
+        ReflectionTestUtils.setField(authService, "readTimeoutMillis", 5000L);
+        ReflectionTestUtils.invokeMethod(authService, "init");
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloak.stop(0);
+    }
+
+    @Test
+    void registrations_shouldReuseAdminTokenAndConnections() {
+        for (int i = 0; i < CALLS; i++) {
+            UserRegistrationDTO registration = new UserRegistrationDTO("user" + i, "user" + i + "@mail.com",
+                    "secreta", "Ana", "Pérez");
+            registration.setConfirmPassword("secreta");
+            Map<String, Object> response = authService.registerUser(registration);
+            assertEquals(true, response.get("success"), String.valueOf(response.get("message")));
+        }
+        assertEquals(1, adminTokenRequests.get(), "El token de admin debe reutilizarse entre registros");
+        assertEquals(1, clientPorts.size(), "Todas las llamadas deben ir por la misma conexión keep-alive");
+    }
+
+    @Test
+    void logins_shouldReuseConnections() {
+        for (int i = 0; i < CALLS; i++) {
+            Map<String, Object> response = authService.loginUser(new LoginDto("ana", "secreta"));
+            assertEquals(true, response.get("success"));
+            assertEquals("user-token", response.get("access_token"));
+        }
+        assertEquals(1, clientPorts.size(), "Todas las llamadas deben ir por la misma conexión keep-alive");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        try (InputStream body = exchange.getRequestBody()) {
+            body.readAllBytes();
+        }
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+
+        if (path.equals("/realms/master/protocol/openid-connect/token")) {
+            int number = adminTokenRequests.incrementAndGet();
+            json(exchange, 200, "{\"access_token\":\"admin-" + number + "\",\"expires_in\":60}");
+        } else if (path.equals("/realms/yopago/protocol/openid-connect/token")) {
+            json(exchange, 200, "{\"access_token\":\"user-token\",\"refresh_token\":\"refresh\","
+                    + "\"token_type\":\"Bearer\",\"expires_in\":300,\"scope\":\"openid\"}");
+        } else if (path.equals("/admin/realms/yopago/users") && method.equals("POST")) {
+            exchange.getResponseHeaders().add("Location",
+                    "http://keycloak/admin/realms/yopago/users/" + UUID.randomUUID());
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+        } else if (path.equals("/admin/realms/yopago/roles/user")) {
+            json(exchange, 200, "{\"id\":\"role-user\",\"name\":\"user\"}");
+        } else if (path.endsWith("/role-mappings/realm")) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        }
+    }
+
+    private static void json(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
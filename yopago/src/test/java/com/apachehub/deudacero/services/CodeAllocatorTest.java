@@ -0,0 +1,74 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+
+class CodeAllocatorTest {
+
+    /**
+     * Dos réplicas que comparten la secuencia generan códigos y tokens sin
+     * repetir y solo tocan la "base de datos" una vez por bloque
+     */
+    @Test
+    void replicasSharingSequence_shouldNeverRepeatCodesOrTokens() {
+        SharedSequence sequence = new SharedSequence();
+        CodeAllocator first = new CodeAllocator(sequence, 100, "secreto");
+        CodeAllocator second = new CodeAllocator(sequence, 100, "secreto");
+
+        Set<String> codes = new HashSet<>();
+        Set<String> tokens = new HashSet<>();
+        for (int i = 0; i < 5_000; i++) {
+            CodeAllocator allocator = i % 3 == 0 ? second : first;
+            String code = allocator.nextJoinCode();
+            assertTrue(code.matches("[0-9A-HJKMNP-TV-Z]{8}"), "Formato inesperado: " + code);
+            assertTrue(codes.add(code), "Código repetido: " + code);
+
+            String token = allocator.nextInvitationToken();
+            assertTrue(token.matches("[0-9a-f]{44}"), "Formato inesperado: " + token);
+            assertTrue(tokens.add(token), "Token repetido: " + token);
+        }
+
+        // 5000 valores por secuencia en bloques de 100, repartidos entre dos réplicas
+        assertTrue(sequence.reservations.get() <= 2 * (5_000 / 100 + 2),
+                "Reservas de bloque: " + sequence.reservations.get());
+    }
+
+    @Test
+    void permute_shouldBeBijectiveAndHideTheSequenceOrder() {
+        CodeAllocator allocator = new CodeAllocator(new SharedSequence(), 100, "secreto");
+
+        Set<Long> outputs = new HashSet<>();
+        for (long value = 0; value < 1 << 16; value++) {
+            long permuted = allocator.permute(value, 16);
+            assertTrue(permuted >= 0 && permuted < 1 << 16);
+            assertTrue(outputs.add(permuted), "Colisión en la permutación para " + value);
+        }
+        assertNotEquals(allocator.permute(1, 40) + 1, allocator.permute(2, 40),
+                "Valores consecutivos no deben dar códigos consecutivos");
+    }
+
+    @Test
+    void missingSecret_shouldFailAtStartup() {
+        assertThrows(IllegalStateException.class, () -> new CodeAllocator(new SharedSequence(), 100, ""));
+        assertThrows(IllegalStateException.class, () -> new CodeAllocator(new SharedSequence(), 100, null));
+    }
+
+    private static final class SharedSequence implements CodeAllocator.SequenceSource {
+        private final Map<String, AtomicLong> next = new ConcurrentHashMap<>();
+        private final AtomicInteger reservations = new AtomicInteger();
+
+        @Override
+        public long reserve(String name, int size) {
+            reservations.incrementAndGet();
+            return next.computeIfAbsent(name, ignored -> new AtomicLong(1)).getAndAdd(size);
+        }
+    }
+}
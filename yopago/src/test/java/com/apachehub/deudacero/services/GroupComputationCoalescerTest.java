@@ -0,0 +1,159 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.security.access.AccessDeniedException;
+
+import com.apachehub.deudacero.dto.GroupVersion;
+import com.apachehub.deudacero.entities.Group;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.repositories.ExpenseRepository;
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.GroupShareRepository;
+import com.apachehub.deudacero.repositories.MemberRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GroupComputationCoalescerTest {
+
+    private static final long GROUP_ID = 3L;
+    private static final int VIEWERS = 8;
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final GroupComputationCoalescer coalescer = new GroupComputationCoalescer(registry);
+
+    @Test
+    void compute_shouldShareOneComputationPerGroupAndVersionAndPropagateFailures() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(VIEWERS);
+        try {
+            List<Future<Object>> results = new ArrayList<>();
+            for (int i = 0; i < VIEWERS; i++) {
+                results.add(executor.submit(() -> coalescer.compute("details", GROUP_ID, 5L, () -> {
+                    runs.incrementAndGet();
+                    await(release);
+                    return new Object();
+                })));
+            }
+            awaitFollowers("details", VIEWERS - 1);
+            release.countDown();
+
+            Object shared = results.get(0).get(5, TimeUnit.SECONDS);
+            for (Future<Object> result : results) {
+                assertSame(shared, result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, runs.get());
+        assertEquals((VIEWERS - 1) / (double) VIEWERS, coalescer.coalescingRatio(), 1e-9);
+
+        // Terminado el cálculo no queda nada guardado; otra versión es otro cálculo
+        coalescer.compute("details", GROUP_ID, 5L, runs::incrementAndGet);
+        coalescer.compute("details", GROUP_ID, 6L, runs::incrementAndGet);
+        assertEquals(3, runs.get());
+
+        assertThrows(IllegalStateException.class, () -> coalescer.compute("balance", GROUP_ID, 6L, () -> {
+            throw new IllegalStateException("fallo");
+        }));
+        assertEquals("ok", coalescer.compute("balance", GROUP_ID, 6L, () -> "ok"));
+        assertEquals(0.0, registry.get("yopago.group.coalescing.in-flight").gauge().value());
+    }
+
+    @Test
+    void groupDetails_shouldCheckEachViewerButBuildDetailsOnceForConcurrentMembers() throws Exception {
+        Group group = new Group();
+        group.setId(GROUP_ID);
+        group.setName("Viaje");
+        List<Member> members = new ArrayList<>();
+        for (long id = 1; id <= VIEWERS; id++) {
+            Member member = new Member();
+            member.setId(id);
+            member.setName("Miembro " + id);
+            members.add(member);
+        }
+        group.setMembers(members);
+        group.setCreatedBy(members.get(0));
+
+        GroupRepository groupRepository = mock(GroupRepository.class);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger loads = new AtomicInteger();
+        when(groupRepository.findById(GROUP_ID)).thenAnswer(invocation -> {
+            if (loads.incrementAndGet() == 1) {
+                await(release);
+            }
+            return Optional.of(group);
+        });
+        GroupVersionService versions = mock(GroupVersionService.class);
+        when(versions.current(GROUP_ID)).thenReturn(Optional.of(new GroupVersion(GROUP_ID, 9L, LocalDateTime.now())));
+        GroupMembershipIndex membershipIndex = mock(GroupMembershipIndex.class);
+        when(membershipIndex.canAccess(anyLong(), eq(GROUP_ID)))
+                .thenAnswer(invocation -> (Long) invocation.getArgument(0) <= VIEWERS);
+
+        GroupService service = new GroupService(groupRepository, mock(MemberRepository.class),
+                mock(ExpenseRepository.class), mock(ExpenseService.class), mock(GroupShareRepository.class),
+                mock(PaymentService.class), mock(RealTimeEventPublisher.class), membershipIndex,
+                mock(QrCodeService.class), mock(CodeAllocator.class), versions, coalescer);
+
+        ExecutorService executor = Executors.newFixedThreadPool(VIEWERS);
+        try {
+            List<Future<Optional<Map<String, Object>>>> results = new ArrayList<>();
+            for (long viewer = 1; viewer <= VIEWERS; viewer++) {
+                long viewerId = viewer;
+                results.add(executor.submit(() -> service.getGroupDetailsForViewer(GROUP_ID, viewerId, false)));
+            }
+            awaitFollowers("details", VIEWERS - 1);
+            release.countDown();
+
+            Map<String, Object> shared = results.get(0).get(5, TimeUnit.SECONDS).orElseThrow();
+            for (Future<Optional<Map<String, Object>>> result : results) {
+                assertSame(shared, result.get(5, TimeUnit.SECONDS).orElseThrow());
+            }
+            assertEquals("Viaje", shared.get("name"));
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, loads.get(), "Un solo cálculo de detalles para todos los miembros");
+
+        // Quien no es miembro recibe 403 aunque haya detalles calculados para esa versión
+        assertThrows(AccessDeniedException.class, () -> service.getGroupDetailsForViewer(GROUP_ID, 99L, false));
+        verify(membershipIndex, never()).isMember(anyLong(), anyLong());
+    }
+
+    private void awaitFollowers(String view, int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (followers(view) < expected) {
+            assertTrue(System.nanoTime() < deadline, "Las peticiones no llegaron a unirse al cálculo");
+            Thread.sleep(5);
+        }
+    }
+
+    private double followers(String view) {
+        var counter = registry.find("yopago.group.coalescing").tag("view", view).tag("role", "follower").counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.LongStream;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import com.apachehub.deudacero.dto.JoinGroupRequest;
+import com.apachehub.deudacero.entities.Group;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.repositories.ExpenseItemRepository;
+import com.apachehub.deudacero.repositories.ExpenseItemShareRepository;
+import com.apachehub.deudacero.repositories.ExpenseRepository;
+import com.apachehub.deudacero.repositories.ExpenseShareRepository;
+import com.apachehub.deudacero.repositories.GroupInvitationRepository;
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.GroupShareRepository;
+import com.apachehub.deudacero.repositories.MemberRepository;
+import com.apachehub.deudacero.repositories.PaymentRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GroupDeletionServiceTest {
+
+    private static final long GROUP_ID = 7L;
+    private static final long OWNER_ID = 1L;
+
+    private final GroupRepository groups = mock(GroupRepository.class);
+    private final ExpenseRepository expenses = mock(ExpenseRepository.class);
+    private final ExpenseShareRepository expenseShares = mock(ExpenseShareRepository.class);
+    private final ExpenseItemRepository items = mock(ExpenseItemRepository.class);
+    private final ExpenseItemShareRepository itemShares = mock(ExpenseItemShareRepository.class);
+    private final PaymentRepository payments = mock(PaymentRepository.class);
+    private final GroupShareRepository groupShares = mock(GroupShareRepository.class);
+    private final GroupInvitationRepository invitations = mock(GroupInvitationRepository.class);
+    private final GroupMembershipIndex membershipIndex = mock(GroupMembershipIndex.class);
+    private final RealTimeEventPublisher publisher = mock(RealTimeEventPublisher.class);
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+    private final AtomicInteger commits = new AtomicInteger();
+
+    @Test
+    void submit_shouldDeleteInDependencyOrderByChunksAndNotifyAfterCompletion() throws Exception {
+        List<Long> expenseIds = new ArrayList<>(LongStream.rangeClosed(1, 1_200).boxed().toList());
+        List<Long> paymentIds = new ArrayList<>(LongStream.rangeClosed(1, 20).boxed().toList());
+        stubTables(expenseIds, paymentIds);
+        when(groups.findMemberIds(GROUP_ID)).thenReturn(List.of(OWNER_ID, 2L, 3L));
+        when(groups.bulkDeleteById(GROUP_ID)).thenReturn(1);
+        GroupDeletionService service = service(500);
+
+        Map<String, Object> accepted = service.submit(GROUP_ID, OWNER_ID);
+        assertFalse(accepted.containsKey("error"));
+        GroupDeletionService.DeletionJob job = awaitFinished(service, (String) accepted.get("jobId"));
+
+        assertEquals(GroupDeletionService.Status.COMPLETED, job.getStatus());
+        Map<String, Object> progress = job.toMap();
+        Map<?, ?> deleted = (Map<?, ?>) progress.get("deleted");
+        assertEquals(1_200, deleted.get("expenses"));
+        assertEquals(20, deleted.get("payments"));
+        assertEquals(1, deleted.get("groups"));
+        assertEquals(4, progress.get("chunks"), "1200 gastos en lotes de 500 y un lote de pagos");
+        assertTrue(expenseIds.isEmpty() && paymentIds.isEmpty());
+        // desactivar + 3 lotes de gastos + comprobación vacía + 1 de pagos + comprobación vacía + grupo
+        assertEquals(8, commits.get());
+
+        InOrder order = inOrder(groups, itemShares, items, expenseShares, expenses, payments, groupShares,
+                invitations, membershipIndex, publisher);
+        order.verify(groups).deactivate(GROUP_ID);
+        order.verify(itemShares).bulkDeleteByExpenseIds(anyList());
+        order.verify(items).bulkDeleteByExpenseIds(anyList());
+        order.verify(expenseShares).bulkDeleteByExpenseIds(anyList());
+        order.verify(expenses).bulkDeleteByIds(anyList());
+        order.verify(payments).bulkDeleteByIds(anyList());
+        order.verify(groups).lockForDeletion(GROUP_ID);
+        order.verify(groupShares).bulkDeleteByGroupId(GROUP_ID);
+        order.verify(invitations).bulkDeleteByGroupId(GROUP_ID);
+        order.verify(groups).deleteMemberships(GROUP_ID);
+        order.verify(groups).bulkDeleteById(GROUP_ID);
+        order.verify(membershipIndex).groupDeleted(GROUP_ID);
+        order.verify(publisher).publishGroupEvent(eq(GROUP_ID), eq("group.deleted"), anyMap());
+        verify(publisher, times(3)).publishUserEvent(anyLong(), eq("user.group.deleted"), anyMap());
+        verify(groups, never()).delete(any());
+    }
+
+    @Test
+    void run_shouldSweepRowsInsertedDuringTheChunksBeforeDeletingTheGroup() throws Exception {
+        List<Long> expenseIds = new ArrayList<>(List.of(1L, 2L));
+        List<Long> paymentIds = new ArrayList<>(List.of(1L));
+        stubTables(expenseIds, paymentIds);
+        // Una petición que pasó la comprobación antes de desactivar el grupo
+        // inserta un gasto mientras se borran los pagos
+        when(payments.bulkDeleteByIds(anyList())).thenAnswer(invocation -> {
+            expenseIds.add(3L);
+            return remove(paymentIds, invocation.getArgument(0));
+        });
+        when(groups.findMemberIds(GROUP_ID)).thenReturn(List.of(OWNER_ID));
+        when(groups.bulkDeleteById(GROUP_ID)).thenReturn(1);
+        GroupDeletionService service = service(500);
+
+        Map<String, Object> accepted = service.submit(GROUP_ID, OWNER_ID);
+        GroupDeletionService.DeletionJob job = awaitFinished(service, (String) accepted.get("jobId"));
+
+        assertEquals(GroupDeletionService.Status.COMPLETED, job.getStatus());
+        assertTrue(expenseIds.isEmpty());
+        assertEquals(3, ((Map<?, ?>) job.toMap().get("deleted")).get("expenses"));
+        InOrder order = inOrder(groups, expenses);
+        order.verify(groups).lockForDeletion(GROUP_ID);
+        order.verify(expenses).bulkDeleteByIds(List.of(3L));
+        order.verify(groups).bulkDeleteById(GROUP_ID);
+    }
+
+    @Test
+    void resumePending_shouldRestartDeletionOfDeactivatedGroups() {
+        stubTables(new ArrayList<>(List.of(1L)), new ArrayList<>());
+        Group pending = groups.findById(GROUP_ID).orElseThrow();
+        pending.setIsActive(false);
+        when(groups.findByIsActiveFalse()).thenReturn(List.of(pending));
+        when(groups.findMemberIds(GROUP_ID)).thenReturn(List.of(OWNER_ID));
+        when(groups.bulkDeleteById(GROUP_ID)).thenReturn(1);
+        GroupDeletionService service = service(500);
+
+        service.resumePending();
+
+        verify(groups, timeout(5_000)).bulkDeleteById(GROUP_ID);
+        verify(membershipIndex, timeout(5_000)).groupDeleted(GROUP_ID);
+        verify(publisher, timeout(5_000)).publishUserEvent(eq(OWNER_ID), eq("user.group.deleted"), anyMap());
+        verify(expenses).bulkDeleteByIds(List.of(1L));
+    }
+
+    @Test
+    void pendingDeletion_shouldHideTheGroupFromLookupsAndRejectJoins() {
+        stubTables(new ArrayList<>(), new ArrayList<>());
+        Group pending = groups.findById(GROUP_ID).orElseThrow();
+        pending.setCode("VIAJE1");
+        pending.setIsActive(false);
+        when(groups.findByCodeIgnoreCase("VIAJE1")).thenReturn(pending);
+        when(groups.findAll()).thenReturn(List.of(pending));
+        GroupService groupService = new GroupService(groups, mock(MemberRepository.class),
+                mock(ExpenseRepository.class), mock(ExpenseService.class), groupShares, mock(PaymentService.class),
+                publisher, membershipIndex, mock(QrCodeService.class), mock(CodeAllocator.class),
+                mock(GroupVersionService.class), mock(GroupComputationCoalescer.class));
+
+        assertTrue(groupService.findById(GROUP_ID).isEmpty());
+        assertTrue(groupService.findByShareCode("viaje1").isEmpty());
+        assertTrue(groupService.findByCodeOrId(String.valueOf(GROUP_ID)).isEmpty());
+        assertTrue(groupService.getAllGroupsLight().isEmpty());
+
+        JoinGroupRequest join = new JoinGroupRequest();
+        join.setCode("VIAJE1");
+        join.setMemberId(2L);
+        Exception error = assertThrows(Exception.class, () -> groupService.joinGroup(join));
+        assertEquals("Grupo no encontrado", error.getMessage());
+        verify(groups, never()).save(any());
+    }
+
+    @Test
+    void findJob_shouldDeriveStatusFromTheGroupWhenTheJobIsNotInMemory() {
+        stubTables(new ArrayList<>(), new ArrayList<>());
+        GroupDeletionService otherReplica = service(500);
+        String jobId = GROUP_ID + "-" + UUID.randomUUID();
+
+        groups.findById(GROUP_ID).orElseThrow().setIsActive(false);
+        assertEquals(GroupDeletionService.Status.RUNNING, otherReplica.findJob(jobId, OWNER_ID).getStatus());
+        assertNull(otherReplica.findJob(jobId, 99L), "Solo el creador puede consultar el trabajo");
+
+        groups.findById(GROUP_ID).orElseThrow().setIsActive(true);
+        assertNull(otherReplica.findJob(jobId, OWNER_ID), "Un grupo activo no se está eliminando");
+
+        when(groups.findById(GROUP_ID)).thenReturn(Optional.empty());
+        GroupDeletionService.DeletionJob finished = otherReplica.findJob(jobId, OWNER_ID);
+        assertEquals(GroupDeletionService.Status.COMPLETED, finished.getStatus());
+        assertEquals(GROUP_ID, finished.toMap().get("groupId"));
+
+        assertNull(otherReplica.findJob("no-es-un-trabajo", OWNER_ID));
+        assertNull(otherReplica.findJob(UUID.randomUUID().toString(), OWNER_ID));
+        verifyNoInteractions(expenses, payments, publisher);
+    }
+
+    @Test
+    void submit_shouldRejectNonOwnerWithoutTouchingTheGroup() {
+        stubTables(new ArrayList<>(), new ArrayList<>());
+        GroupDeletionService service = service(500);
+
+        Map<String, Object> result = service.submit(GROUP_ID, 99L);
+
+        assertEquals("FORBIDDEN", result.get("reason"));
+        verify(groups, never()).deactivate(anyLong());
+        verifyNoInteractions(expenses, payments, publisher);
+    }
+
+    private GroupDeletionService service(int chunkSize) {
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        doAnswer(invocation -> commits.incrementAndGet()).when(transactionManager).commit(any());
+        return new GroupDeletionService(groups, expenses, expenseShares, items, itemShares, payments,
+                groupShares, invitations, membershipIndex, publisher, transactionManager,
+                new SimpleMeterRegistry(), chunkSize, 30);
+    }
+
+    private void stubTables(List<Long> expenseIds, List<Long> paymentIds) {
+        Member owner = new Member();
+        owner.setId(OWNER_ID);
+        Group group = new Group();
+        group.setId(GROUP_ID);
+        group.setName("Viaje");
+        group.setCreatedBy(owner);
+        when(groups.findById(GROUP_ID)).thenReturn(Optional.of(group));
+
+        // Cada consulta de ids devuelve la primera página de lo que queda; cada DELETE lo quita
+        when(expenses.findIdsByGroupId(eq(GROUP_ID), any(Pageable.class)))
+                .thenAnswer(invocation -> page(expenseIds, invocation.getArgument(1)));
+        when(expenses.bulkDeleteByIds(anyList()))
+                .thenAnswer(invocation -> remove(expenseIds, invocation.getArgument(0)));
+        when(payments.findIdsByGroupId(eq(GROUP_ID), any(Pageable.class)))
+                .thenAnswer(invocation -> page(paymentIds, invocation.getArgument(1)));
+        when(payments.bulkDeleteByIds(anyList()))
+                .thenAnswer(invocation -> remove(paymentIds, invocation.getArgument(0)));
+    }
+
+    private static List<Long> page(List<Long> ids, Pageable pageable) {
+        return List.copyOf(ids.subList(0, Math.min(ids.size(), pageable.getPageSize())));
+    }
+
+    private static int remove(List<Long> ids, List<Long> deleted) {
+        ids.removeAll(deleted);
+        return deleted.size();
+    }
+
+    private static GroupDeletionService.DeletionJob awaitFinished(GroupDeletionService service, String jobId)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            GroupDeletionService.DeletionJob job = service.findJob(jobId, OWNER_ID);
+            if (job.getStatus() == GroupDeletionService.Status.COMPLETED
+                    || job.getStatus() == GroupDeletionService.Status.FAILED) {
+                return job;
+            }
+            Thread.sleep(10);
+        }
+        fail("La eliminación no terminó a tiempo");
+        return null;
+    }
+}
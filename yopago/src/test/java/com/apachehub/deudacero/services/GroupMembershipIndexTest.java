@@ -0,0 +1,73 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.MemberRepository;
+
+class GroupMembershipIndexTest {
+
+    private final GroupRepository groupRepository = mock(GroupRepository.class);
+    private final GroupMembershipIndex index = new GroupMembershipIndex(groupRepository,
+            mock(MemberRepository.class), 2, 60);
+
+    @Test
+    void canAccess_shouldConfirmPositivesInDatabase() {
+        when(groupRepository.findGroupIdsForMember(7L)).thenReturn(List.of(3L));
+
+        // Otra réplica dio de baja al miembro: el índice local aún lo tiene
+        when(groupRepository.isMemberOrOwner(3L, 7L)).thenReturn(false);
+        assertTrue(index.isMember(7L, 3L));
+        assertFalse(index.canAccess(7L, 3L));
+        verify(groupRepository, times(1)).findGroupIdsForMember(7L);
+    }
+
+    @Test
+    void canAccess_shouldNotTrustCachedNegativesForMembersWhoJoinedElsewhere() {
+        when(groupRepository.findGroupIdsForMember(7L)).thenReturn(List.of(3L));
+        assertFalse(index.canAccess(7L, 4L));
+
+        // El alta en el grupo 4 se hizo en otra réplica: este índice no se invalidó
+        when(groupRepository.findGroupIdsForMember(7L)).thenReturn(List.of(3L, 4L));
+        assertTrue(index.canAccess(7L, 4L));
+        assertTrue(index.isMember(7L, 4L), "La recarga deja al miembro en el índice");
+        verify(groupRepository, never()).isMemberOrOwner(eq(4L), anyLong());
+        verify(groupRepository, times(2)).findGroupIdsForMember(7L);
+    }
+
+    @Test
+    void invalidationDuringLoad_shouldNotCacheThePreviousMembership() {
+        when(groupRepository.findGroupIdsForMember(7L)).thenAnswer(invocation -> {
+            // La baja confirma mientras se lee la membresía anterior
+            index.memberLeft(7L, 3L);
+            return List.of(3L);
+        }).thenReturn(List.of());
+
+        assertTrue(index.isMember(7L, 3L));
+        assertFalse(index.isMember(7L, 3L));
+        verify(groupRepository, times(2)).findGroupIdsForMember(7L);
+    }
+
+    @Test
+    void index_shouldKeepOnlyMaxMembersAndReloadAfterJoin() {
+        when(groupRepository.findGroupIdsForMember(anyLong())).thenReturn(List.of(1L));
+
+        index.isMember(1L, 1L);
+        index.isMember(2L, 1L);
+        index.isMember(3L, 1L);
+        // El miembro 1 fue el menos usado y salió del índice
+        index.isMember(1L, 1L);
+        verify(groupRepository, times(2)).findGroupIdsForMember(1L);
+
+        when(groupRepository.findGroupIdsForMember(3L)).thenReturn(List.of(1L, 5L));
+        assertFalse(index.isMember(3L, 5L));
+        index.memberJoined(3L, 5L);
+        assertTrue(index.isMember(3L, 5L));
+    }
+}
@@ -0,0 +1,238 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.apachehub.deudacero.dto.GroupDashboardRow;
+import com.apachehub.deudacero.dto.GroupVersion;
+import com.apachehub.deudacero.entities.Expense;
+import com.apachehub.deudacero.entities.ExpenseShare;
+import com.apachehub.deudacero.entities.Group;
+import com.apachehub.deudacero.entities.GroupShare;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.repositories.ExpenseRepository;
+import com.apachehub.deudacero.repositories.ExpenseShareRepository;
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.GroupShareRepository;
+import com.apachehub.deudacero.repositories.MemberRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GroupServiceOverviewTest {
+
+    private static final long MEMBER_ID = 5L;
+
+    private final GroupRepository groupRepository = mock(GroupRepository.class);
+
+    private GroupService service() {
+        return new GroupService(groupRepository, mock(MemberRepository.class), mock(ExpenseRepository.class),
+                mock(ExpenseService.class), mock(GroupShareRepository.class), mock(PaymentService.class),
+                mock(RealTimeEventPublisher.class), mock(GroupMembershipIndex.class), mock(QrCodeService.class),
+                mock(CodeAllocator.class), mock(GroupVersionService.class), mock(GroupComputationCoalescer.class));
+    }
+
+    @Test
+    void overview_shouldSplitMemberAndCreatedGroupsAndComputeBalanceFromAggregates() {
+        // Pagó 120, le toca 45.5, envió 10 y recibió 30 en pagos confirmados: 120 - 45.5 + 10 - 30
+        GroupDashboardRow owned = row(1L, MEMBER_ID, 1L, 120.0, 45.5, 10.0, 30.0);
+        GroupDashboardRow joined = row(2L, 9L, 1L, 0.0, 20.0, 0.0, 0.0);
+        GroupDashboardRow createdButLeft = row(3L, MEMBER_ID, 0L, 0.0, 0.0, 0.0, 0.0);
+        when(groupRepository.findDashboardForMember(MEMBER_ID)).thenReturn(List.of(owned, joined, createdButLeft));
+
+        Map<String, List<Map<String, Object>>> overview = service().getGroupsOverviewForMember(MEMBER_ID);
+
+        List<Map<String, Object>> groups = overview.get("groups");
+        assertEquals(List.of(1L, 2L), groups.stream().map(g -> g.get("id")).toList());
+        assertEquals(List.of(1L, 3L), overview.get("createdGroups").stream().map(g -> g.get("id")).toList());
+
+        Map<String, Object> first = groups.get(0);
+        assertEquals(54.5, first.get("myBalance"));
+        assertEquals(120.0, first.get("myTotalPaid"));
+        assertEquals(45.5, first.get("myTotalOwed"));
+        assertEquals(4, first.get("totalMembers"));
+        assertEquals(3, first.get("totalExpenses"));
+        assertEquals(true, first.get("currentUserIsOwner"));
+        assertEquals(-20.0, groups.get(1).get("myBalance"));
+        assertEquals(false, groups.get(1).get("currentUserIsOwner"));
+        assertEquals(false, overview.get("createdGroups").get(1).get("currentUserIsMember"));
+
+        verify(groupRepository, times(1)).findDashboardForMember(MEMBER_ID);
+        verify(groupRepository, never()).findByMemberId(anyLong());
+        verify(groupRepository, never()).findByCreatedById(anyLong());
+        verify(groupRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void overview_shouldServeAnyNumberOfGroupsWithOneRepositoryCall() {
+        List<GroupDashboardRow> rows = new ArrayList<>();
+        for (long id = 1; id <= 200; id++) {
+            rows.add(row(id, 9L, 1L, 10.0, 5.0, 0.0, 0.0));
+        }
+        when(groupRepository.findDashboardForMember(MEMBER_ID)).thenReturn(rows);
+
+        Map<String, List<Map<String, Object>>> overview = service().getGroupsOverviewForMember(MEMBER_ID);
+
+        assertEquals(200, overview.get("groups").size());
+        assertTrue(overview.get("createdGroups").isEmpty());
+        verify(groupRepository, times(1)).findDashboardForMember(MEMBER_ID);
+        verifyNoMoreInteractions(groupRepository);
+    }
+
+    @Test
+    void dashboardQuery_shouldReadOwedAmountFromSharesOfLiveExpenses() throws Exception {
+        String hql = GroupRepository.class.getMethod("findDashboardForMember", Long.class)
+                .getAnnotation(Query.class).value();
+
+        List<String> statements = PostgresSqlCapture.capture(0, session -> session
+                .createQuery(hql, GroupDashboardRow.class).setParameter("memberId", MEMBER_ID).list());
+
+        assertEquals(1, statements.size(), "Una sola consulta: " + statements);
+        String sql = statements.get(0);
+        assertTrue(sql.contains("coalesce((select sum(es1_0.amount) from expense_share es1_0 "
+                + "join expense e4_0 on e4_0.id=es1_0.expense_id "
+                + "where e4_0.group_id=g1_0.id and es1_0.member_id=?),0.0)"), sql);
+        assertFalse(sql.contains("group_share"), "Los totales agregados no se usan en el panel: " + sql);
+    }
+
+    /**
+     * Simula las tablas en memoria: la fila del panel se agrega como la consulta
+     * (pagado por el miembro y sus partes de los gastos que existen) y los
+     * detalles usan el cálculo real de liquidación y los GroupShare
+     */
+    @Test
+    void deleteExpense_shouldKeepDashboardBalanceEqualToDetailsBalance() {
+        Member viewer = member(MEMBER_ID);
+        Member other = member(9L);
+        Group group = new Group();
+        group.setId(1L);
+        group.setName("Viaje");
+        group.setCreatedBy(viewer);
+        group.setMembers(new ArrayList<>(List.of(viewer, other)));
+        List<Expense> expenseTable = group.getExpenses();
+        List<ExpenseShare> shareTable = new ArrayList<>();
+        expenseTable.add(expense(group, 11L, other, 100.0, Map.of(viewer, 60.0, other, 40.0), shareTable));
+        expenseTable.add(expense(group, 12L, viewer, 30.0, Map.of(viewer, 15.0, other, 15.0), shareTable));
+        Map<Long, GroupShare> groupShareTable = new HashMap<>();
+        groupShareTable.put(MEMBER_ID, groupShare(group, viewer, 75.0));
+        groupShareTable.put(9L, groupShare(group, other, 55.0));
+
+        ExpenseRepository expenseRepository = mock(ExpenseRepository.class);
+        when(expenseRepository.findById(anyLong())).thenAnswer(invocation -> expenseTable.stream()
+                .filter(expense -> expense.getId().equals(invocation.getArgument(0))).findFirst());
+        doAnswer(invocation -> expenseTable.removeIf(expense -> expense.getId().equals(invocation.getArgument(0))))
+                .when(expenseRepository).deleteById(anyLong());
+        when(expenseRepository.findByGroupId(1L)).thenAnswer(invocation -> List.copyOf(expenseTable));
+        ExpenseShareRepository expenseShareRepository = mock(ExpenseShareRepository.class);
+        when(expenseShareRepository.findAll()).thenAnswer(invocation -> List.copyOf(shareTable));
+        doAnswer(invocation -> shareTable.removeAll(invocation.getArgument(0)))
+                .when(expenseShareRepository).deleteAll(anyList());
+        GroupShareRepository groupShareRepository = mock(GroupShareRepository.class);
+        when(groupShareRepository.findByGroupIdAndMemberId(eq(1L), anyLong()))
+                .thenAnswer(invocation -> groupShareTable.get(invocation.getArgument(1)));
+        when(groupShareRepository.findByGroupId(1L)).thenAnswer(invocation -> List.copyOf(groupShareTable.values()));
+        MemberRepository memberRepository = mock(MemberRepository.class);
+        when(memberRepository.findByGroupId(1L)).thenReturn(List.of(viewer, other));
+
+        ExpenseService expenseService = new ExpenseService();
+        ReflectionTestUtils.setField(expenseService, "expenseRepository", expenseRepository);
+        ReflectionTestUtils.setField(expenseService, "expenseShareRepository", expenseShareRepository);
+        ReflectionTestUtils.setField(expenseService, "groupShareRepository", groupShareRepository);
+        ReflectionTestUtils.setField(expenseService, "realTimeEventPublisher", mock(RealTimeEventPublisher.class));
+        ReflectionTestUtils.setField(expenseService, "groupVersionService", mock(GroupVersionService.class));
+
+        SettlementService settlementService = new SettlementService(expenseRepository, memberRepository);
+        PaymentService paymentService = mock(PaymentService.class);
+        when(paymentService.getBalanceWithPayments(1L)).thenAnswer(invocation -> {
+            Object balances = settlementService.calculateSettlement(1L).get("balances");
+            return Map.of("originalBalances", balances, "adjustedBalances", balances);
+        });
+        when(groupRepository.findById(1L)).thenReturn(Optional.of(group));
+        when(groupRepository.findDashboardForMember(MEMBER_ID)).thenAnswer(invocation -> {
+            double paid = expenseTable.stream().filter(expense -> expense.getPayer() == viewer)
+                    .mapToDouble(Expense::getAmount).sum();
+            double owed = shareTable.stream()
+                    .filter(share -> expenseTable.contains(share.getExpense()) && share.getMember() == viewer)
+                    .mapToDouble(ExpenseShare::getAmount).sum();
+            return List.of(new GroupDashboardRow(1L, "Viaje", null, "CODE1", true, LocalDateTime.now(),
+                    MEMBER_ID, "Creador", null, 2L, (long) expenseTable.size(), 0.0, 1L, paid, owed, 0.0, 0.0));
+        });
+        GroupVersionService versions = mock(GroupVersionService.class);
+        AtomicLong version = new AtomicLong();
+        when(versions.current(1L)).thenAnswer(invocation ->
+                Optional.of(new GroupVersion(1L, version.incrementAndGet(), LocalDateTime.now())));
+        GroupMembershipIndex membershipIndex = mock(GroupMembershipIndex.class);
+        when(membershipIndex.canAccess(MEMBER_ID, 1L)).thenReturn(true);
+        GroupService groupService = new GroupService(groupRepository, memberRepository, expenseRepository,
+                expenseService, groupShareRepository, paymentService, mock(RealTimeEventPublisher.class),
+                membershipIndex, mock(QrCodeService.class), mock(CodeAllocator.class), versions,
+                new GroupComputationCoalescer(new SimpleMeterRegistry()));
+
+        assertTrue(expenseService.deleteExpense(11L));
+
+        Map<String, Object> dashboard = groupService.getGroupsOverviewForMember(MEMBER_ID).get("groups").get(0);
+        Map<String, Object> details = groupService.getGroupDetailsForViewer(1L, MEMBER_ID, false).orElseThrow();
+        @SuppressWarnings("unchecked")
+        Map<String, Object> viewerShare = ((List<Map<String, Object>>) details.get("aggregatedShares")).stream()
+                .filter(share -> MEMBER_ID == (Long) share.get("memberId")).findFirst().orElseThrow();
+
+        assertEquals(15.0, viewerShare.get("balance"));
+        assertEquals(viewerShare.get("balance"), dashboard.get("myBalance"));
+        assertEquals(viewerShare.get("totalOwed"), dashboard.get("myTotalOwed"));
+        assertEquals(15.0, groupShareTable.get(9L).getAmountTotal(), 1e-9);
+    }
+
+    private static Member member(Long id) {
+        Member member = new Member();
+        member.setId(id);
+        member.setName("Miembro " + id);
+        return member;
+    }
+
+    private static Expense expense(Group group, Long id, Member payer, double amount, Map<Member, Double> parts,
+            List<ExpenseShare> shareTable) {
+        Expense expense = new Expense();
+        expense.setId(id);
+        expense.setGroup(group);
+        expense.setPayer(payer);
+        expense.setAmount(amount);
+        List<ExpenseShare> shares = new ArrayList<>();
+        parts.forEach((member, part) -> {
+            ExpenseShare share = new ExpenseShare();
+            share.setExpense(expense);
+            share.setMember(member);
+            share.setAmount(part);
+            shares.add(share);
+        });
+        expense.setShares(shares);
+        shareTable.addAll(shares);
+        return expense;
+    }
+
+    private static GroupShare groupShare(Group group, Member member, double total) {
+        GroupShare share = new GroupShare();
+        share.setGroup(group);
+        share.setMember(member);
+        share.setAmountTotal(total);
+        return share;
+    }
+
+    private static GroupDashboardRow row(Long id, Long creatorId, Long membership, double paid, double owed,
+            double sent, double received) {
+        return new GroupDashboardRow(id, "Grupo " + id, null, "CODE" + id, true, LocalDateTime.now(),
+                creatorId, "Creador", "creador@example.com", 4L, 3L, 150.0, membership, paid, owed, sent,
+                received);
+    }
+}
@@ -0,0 +1,141 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import com.apachehub.deudacero.controllers.ExpenseController;
+import com.apachehub.deudacero.dto.ExpenseResponseDTO;
+import com.apachehub.deudacero.dto.GroupVersion;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.repositories.ExpenseRepository;
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.GroupShareRepository;
+import com.apachehub.deudacero.repositories.MemberRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class GroupVersionServiceTest {
+
+    private static final long GROUP_ID = 12L;
+
+    private final GroupRepository groupRepository = mock(GroupRepository.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final GroupVersionService service = new GroupVersionService(groupRepository, registry);
+
+    @Test
+    void isNotModified_shouldMatchCurrentVersionOnlyAndSetValidators() {
+        GroupVersion version = new GroupVersion(GROUP_ID, 3L, LocalDateTime.of(2025, 10, 1, 12, 0));
+        when(groupRepository.findVersion(GROUP_ID)).thenReturn(Optional.of(version));
+
+        MockHttpServletResponse fresh = new MockHttpServletResponse();
+        assertFalse(service.isNotModified(request(null, fresh), GROUP_ID, "details"));
+        String etag = fresh.getHeader(HttpHeaders.ETAG);
+        assertEquals("W/\"g12-v3-details\"", etag);
+        assertNotNull(fresh.getHeader(HttpHeaders.LAST_MODIFIED));
+
+        MockHttpServletResponse revalidated = new MockHttpServletResponse();
+        assertTrue(service.isNotModified(request(etag, revalidated), GROUP_ID, "details"));
+        assertEquals(304, revalidated.getStatus());
+
+        // Otro recurso del mismo grupo tiene su propio ETag
+        assertFalse(service.isNotModified(request(etag, new MockHttpServletResponse()), GROUP_ID, "balance"));
+
+        // Tras una escritura la versión cambia y el ETag guardado deja de valer
+        when(groupRepository.bumpVersion(eq(GROUP_ID), any())).thenReturn(1);
+        service.bump(GROUP_ID);
+        when(groupRepository.findVersion(GROUP_ID))
+                .thenReturn(Optional.of(new GroupVersion(GROUP_ID, 4L, LocalDateTime.of(2025, 10, 1, 12, 5))));
+        assertFalse(service.isNotModified(request(etag, new MockHttpServletResponse()), GROUP_ID, "details"));
+
+        assertEquals(1.0, registry.get("yopago.group.version.checks").tag("result", "not_modified").counter().count());
+        assertEquals(3.0, registry.get("yopago.group.version.checks").tag("result", "modified").counter().count());
+        assertEquals(1.0, registry.get("yopago.group.version.bumps").counter().count());
+    }
+
+    @Test
+    void expensesEndpoint_shouldAnswer304WithoutLoadingExpenses() {
+        when(groupRepository.findVersion(GROUP_ID))
+                .thenReturn(Optional.of(new GroupVersion(GROUP_ID, 7L, LocalDateTime.now())));
+        ExpenseService expenseService = mock(ExpenseService.class);
+        when(expenseService.getExpensesByGroupLight(GROUP_ID)).thenReturn(List.of(new ExpenseResponseDTO()));
+        ExpenseController controller = new ExpenseController(expenseService, mock(ReceiptJobService.class),
+                mock(ReceiptImportService.class), service);
+
+        MockHttpServletResponse first = new MockHttpServletResponse();
+        ResponseEntity<List<ExpenseResponseDTO>> full = controller.getExpensesByGroup(GROUP_ID, request(null, first));
+        assertEquals(HttpStatus.OK, full.getStatusCode());
+
+        int polls = 50;
+        for (int i = 0; i < polls; i++) {
+            ResponseEntity<List<ExpenseResponseDTO>> poll = controller.getExpensesByGroup(GROUP_ID,
+                    request(first.getHeader(HttpHeaders.ETAG), new MockHttpServletResponse()));
+            assertEquals(HttpStatus.NOT_MODIFIED, poll.getStatusCode());
+            assertNull(poll.getBody());
+        }
+
+        // Un solo cálculo para 51 peticiones; cada sondeo cuesta una consulta de versión
+        verify(expenseService, times(1)).getExpensesByGroupLight(GROUP_ID);
+        verify(groupRepository, times(polls + 1)).findVersion(GROUP_ID);
+        verify(groupRepository, never()).findById(anyLong());
+    }
+
+    @Test
+    void memberRename_shouldBumpEveryGroupOfTheMember() throws Exception {
+        Member ana = new Member();
+        ana.setId(5L);
+        ana.setName("Ana");
+        MemberRepository memberRepository = mock(MemberRepository.class);
+        when(memberRepository.findById(5L)).thenReturn(Optional.of(ana));
+        when(memberRepository.save(any(Member.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(groupRepository.findGroupIdsForMember(5L)).thenReturn(List.of(GROUP_ID, 13L));
+        when(groupRepository.bumpVersion(anyLong(), any())).thenReturn(1);
+        MemberService memberService = new MemberService(memberRepository, mock(GroupMembershipIndex.class), service);
+
+        Member renamed = new Member();
+        renamed.setName("Ana María");
+        memberService.updateMember(5L, renamed);
+
+        verify(groupRepository).bumpVersion(eq(GROUP_ID), any());
+        verify(groupRepository).bumpVersion(eq(13L), any());
+        assertEquals(2.0, registry.get("yopago.group.version.bumps").counter().count());
+    }
+
+    @Test
+    void versionForViewer_shouldRequireAccessConfirmedInTheDatabase() {
+        when(groupRepository.findVersion(GROUP_ID))
+                .thenReturn(Optional.of(new GroupVersion(GROUP_ID, 2L, LocalDateTime.now())));
+        GroupMembershipIndex membershipIndex = mock(GroupMembershipIndex.class);
+        // El índice local aún tiene al miembro, pero otra réplica lo dio de baja
+        when(membershipIndex.isMember(5L, GROUP_ID)).thenReturn(true);
+        when(membershipIndex.canAccess(5L, GROUP_ID)).thenReturn(false);
+        when(membershipIndex.canAccess(6L, GROUP_ID)).thenReturn(true);
+        GroupService groupService = new GroupService(groupRepository, mock(MemberRepository.class),
+                mock(ExpenseRepository.class), mock(ExpenseService.class), mock(GroupShareRepository.class),
+                mock(PaymentService.class), mock(RealTimeEventPublisher.class), membershipIndex,
+                mock(QrCodeService.class), mock(CodeAllocator.class), service, mock(GroupComputationCoalescer.class));
+
+        assertTrue(groupService.getGroupVersionForViewer(GROUP_ID, 5L).isEmpty());
+        assertEquals(2L, groupService.getGroupVersionForViewer(GROUP_ID, 6L).orElseThrow().version());
+    }
+
+    private static ServletWebRequest request(String ifNoneMatch, MockHttpServletResponse response) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/groups/" + GROUP_ID + "/details");
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        return new ServletWebRequest(request, response);
+    }
+}
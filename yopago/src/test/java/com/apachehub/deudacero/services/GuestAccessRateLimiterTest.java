@@ -0,0 +1,80 @@
+package com.apachehub.deudacero.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GuestAccessRateLimiterTest {
+
+    private final AtomicLong now = new AtomicLong(TimeUnit.HOURS.toNanos(1));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void burstFromOneIp_shouldBeRejectedUntilTheBucketRefills() {
+        GuestAccessRateLimiter limiter = limiter(1000);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.0.1", "CODE" + i));
+        }
+        long retryAfter = limiter.tryAcquire("10.0.0.1", "OTRO");
+        assertTrue(retryAfter >= 1 && retryAfter <= 6, "Retry-After: " + retryAfter);
+        assertEquals(0, limiter.tryAcquire("10.0.0.2", "OTRO"), "Otra IP tiene su propio bucket");
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(6));
+        assertEquals(0, limiter.tryAcquire("10.0.0.1", "OTRO"));
+
+        assertEquals(1.0, meterRegistry.get("yopago.guest.rate-limit")
+                .tag("result", "rejected").tag("limited_by", "ip").counter().count());
+    }
+
+    @Test
+    void sameCodeFromManyIps_shouldBeLimitedByCode() {
+        GuestAccessRateLimiter limiter = limiter(1000);
+
+        for (int i = 0; i < 8; i++) {
+            assertEquals(0, limiter.tryAcquire("10.0.1." + i, " abc123 "));
+        }
+        assertTrue(limiter.tryAcquire("10.0.2.1", "ABC123") > 0, "El código se normaliza y comparte bucket");
+    }
+
+    @Test
+    void keys_shouldStayBoundedAndIdleOnesEvicted() {
+        GuestAccessRateLimiter limiter = limiter(160);
+
+        for (int i = 0; i < 10_000; i++) {
+            limiter.tryAcquire("10.1." + (i / 256) + "." + (i % 256), "CODE" + i);
+        }
+        assertTrue(limiter.size() <= 160, "Claves: " + limiter.size());
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(11));
+        limiter.evictIdle();
+        assertEquals(0, limiter.size());
+    }
+
+    @Test
+    void fullStripes_shouldEvictOldestKeysButKeepActiveLimits() {
+        GuestAccessRateLimiter limiter = limiter(160);
+        for (int i = 0; i < 5; i++) {
+            limiter.tryAcquire("10.0.0.1", null);
+        }
+
+        // Una avalancha de IPs nuevas no debe reiniciar el bucket que está limitando
+        for (int i = 0; i < 10_000; i++) {
+            now.incrementAndGet();
+            limiter.tryAcquire("10.2." + (i / 256) + "." + (i % 256), null);
+            assertTrue(limiter.tryAcquire("10.0.0.1", null) > 0, "IP limitada liberada tras " + i + " claves");
+        }
+        assertTrue(limiter.size() <= 160, "Claves: " + limiter.size());
+    }
+
+    private GuestAccessRateLimiter limiter(int maxKeys) {
+        return new GuestAccessRateLimiter(meterRegistry, true,
+                new GuestAccessRateLimiter.Limit(5, 10),
+                new GuestAccessRateLimiter.Limit(8, 10),
+                maxKeys, 10, now::get);
+    }
+}
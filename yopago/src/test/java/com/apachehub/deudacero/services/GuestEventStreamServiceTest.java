@@ -0,0 +1,139 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+/**
+ * Los streams se abren a través de MockMvc para que el SseEmitter tenga un
+ * manejador real: los envíos llegan a la respuesta y los callbacks de
+ * finalización y timeout se disparan desde el contexto asíncrono.
+ */
+class GuestEventStreamServiceTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private GuestEventStreamService service;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        // Sin heartbeats durante el test: solo se entregan los eventos publicados
+        service = new GuestEventStreamService(registry, 60_000, 16, 3600);
+        mockMvc = MockMvcBuilders.standaloneSetup(new StreamController(service)).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void subscribe_shouldDeliverOpeningAndGroupEventsOnly() throws Exception {
+        MvcResult stream = open(3L, 7L);
+        assertEquals(1, service.openStreams());
+        assertEquals(1.0, registry.get("yopago.guest.sse.connections").gauge().value());
+        awaitContent(stream, "event:stream.opened");
+
+        service.publish(4L, Map.of("type", "expense.created", "groupId", 4L));
+        service.publish(3L, Map.of("type", "expense.created", "groupId", 3L));
+        String content = awaitContent(stream, "event:expense.created");
+
+        assertTrue(content.contains("\"groupId\":3"));
+        assertFalse(content.contains("\"groupId\":4"), "Un evento de otro grupo no llega al stream");
+    }
+
+    @Test
+    void timeout_shouldRemoveStreamAndStopDeliveries() throws Exception {
+        MvcResult stream = open(3L, 7L);
+        MvcResult other = open(3L, 8L);
+        awaitContent(stream, "event:stream.opened");
+        assertEquals(2, service.openStreams());
+
+        fire(stream, AsyncListener::onTimeout);
+        assertEquals(1, service.openStreams());
+
+        service.publish(3L, Map.of("type", "payment.created", "groupId", 3L));
+        awaitContent(other, "event:payment.created");
+        assertFalse(stream.getResponse().getContentAsString().contains("payment.created"));
+    }
+
+    @Test
+    void completion_shouldRemoveStreamAndEmptyGroup() throws Exception {
+        MvcResult stream = open(5L, 7L);
+        awaitContent(stream, "event:stream.opened");
+
+        fire(stream, AsyncListener::onComplete);
+
+        assertEquals(0, service.openStreams());
+        assertEquals(0.0, registry.get("yopago.guest.sse.connections").gauge().value());
+        // Publicar sobre un grupo sin streams no falla
+        service.publish(5L, Map.of("type", "expense.created"));
+    }
+
+    private MvcResult open(Long groupId, Long memberId) throws Exception {
+        return mockMvc.perform(get("/groups/" + groupId + "/members/" + memberId + "/events"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+    }
+
+    private static void fire(MvcResult result, ListenerCall call) throws Exception {
+        MockAsyncContext context = (MockAsyncContext) result.getRequest().getAsyncContext();
+        for (AsyncListener listener : context.getListeners()) {
+            call.invoke(listener, new AsyncEvent(context));
+        }
+    }
+
+    /**
+     * Espera a que el hilo del stream escriba el texto en la respuesta
+     */
+    private static String awaitContent(MvcResult result, String expected) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        String content = result.getResponse().getContentAsString();
+        while (!content.contains(expected)) {
+            assertTrue(System.nanoTime() < deadline, "No se recibió " + expected + " en: " + content);
+            Thread.sleep(5);
+            content = result.getResponse().getContentAsString();
+        }
+        return content;
+    }
+
+    @FunctionalInterface
+    private interface ListenerCall {
+        void invoke(AsyncListener listener, AsyncEvent event) throws Exception;
+    }
+
+    @RestController
+    static class StreamController {
+
+        private final GuestEventStreamService service;
+
+        StreamController(GuestEventStreamService service) {
+            this.service = service;
+        }
+
+        @GetMapping("/groups/{groupId}/members/{memberId}/events")
+        SseEmitter events(@PathVariable Long groupId, @PathVariable Long memberId) {
+            return service.subscribe(groupId, memberId);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.jpa.repository.Query;
+
+import com.apachehub.deudacero.entities.Group;
+import com.apachehub.deudacero.entities.GroupInvitation;
+import com.apachehub.deudacero.entities.GroupInvitationStatus;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.repositories.GroupInvitationRepository;
+import com.apachehub.deudacero.repositories.GroupRepository;
+import com.apachehub.deudacero.repositories.MemberRepository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InvitationExpirySweeperTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 18, 12, 0);
+
+    @Test
+    void sweep_shouldIssueOneBulkUpdatePerRunAndCountUpdatedRows() {
+        GroupInvitationRepository repository = mock(GroupInvitationRepository.class);
+        when(repository.expirePending(any())).thenReturn(1_234, 0);
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        InvitationExpirySweeper sweeper = new InvitationExpirySweeper(repository, registry, true,
+                Clock.fixed(NOW.toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+        sweeper.sweep();
+        sweeper.sweep();
+
+        verify(repository, times(2)).expirePending(NOW);
+        verifyNoMoreInteractions(repository);
+        assertEquals(1_234, registry.get("yopago.invitations.expired").counter().count(),
+                "El segundo barrido no encuentra nada que expirar");
+        assertEquals(2, registry.get("yopago.invitations.expiry-sweep").timer().count());
+    }
+
+    /**
+     * Se comprueba el SQL que llega a la base de datos: un único UPDATE
+     * filtrado por status y expires_at
+     */
+    @Test
+    void expirePending_shouldTranslateToSingleFilteredUpdate() throws Exception {
+        String hql = GroupInvitationRepository.class.getMethod("expirePending", LocalDateTime.class)
+                .getAnnotation(Query.class).value();
+
+        List<String> statements = PostgresSqlCapture.capture(7, session -> assertEquals(7,
+                session.createMutationQuery(hql).setParameter("now", NOW).executeUpdate()));
+
+        assertEquals(1, statements.size(), "Un solo UPDATE en bloque: " + statements);
+        assertEquals("update group_invitations gi1_0 set status='EXPIRED' "
+                + "where gi1_0.status='PENDING' and gi1_0.expires_at<?", statements.get(0));
+    }
+
+    @Test
+    void getInvitationsForGroup_shouldBeReadOnlyAndReportEffectiveStatus() {
+        Member owner = new Member();
+        owner.setId(1L);
+        Group group = new Group();
+        group.setId(10L);
+        group.setCreatedBy(owner);
+
+        GroupInvitation expired = new GroupInvitation();
+        expired.setStatus(GroupInvitationStatus.PENDING);
+        expired.setExpiresAt(LocalDateTime.now().minusHours(1));
+        GroupInvitation active = new GroupInvitation();
+        active.setStatus(GroupInvitationStatus.PENDING);
+        active.setExpiresAt(LocalDateTime.now().plusHours(1));
+
+        GroupInvitationRepository invitations = mock(GroupInvitationRepository.class);
+        GroupRepository groups = mock(GroupRepository.class);
+        when(groups.findById(10L)).thenReturn(Optional.of(group));
+        when(invitations.findByGroupIdOrderByCreatedAtDesc(10L)).thenReturn(List.of(expired, active));
+        GroupInvitationService service = new GroupInvitationService(invitations, groups,
+                mock(MemberRepository.class), mock(CodeAllocator.class));
+
+        List<GroupInvitation> listed = service.getInvitationsForGroup(10L, 1L);
+
+        assertEquals(List.of(GroupInvitationStatus.EXPIRED, GroupInvitationStatus.PENDING),
+                listed.stream().map(GroupInvitation::effectiveStatus).toList());
+        assertEquals(GroupInvitationStatus.PENDING, expired.getStatus(), "Listar no debe modificar la entidad");
+        verify(invitations, never()).save(any());
+        verify(invitations, never()).saveAll(any());
+    }
+}
@@ -0,0 +1,87 @@
+package com.apachehub.deudacero.services;
+
+import com.apachehub.deudacero.entities.OcrResultCacheEntry;
+import com.apachehub.deudacero.repositories.OcrResultCacheRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class OcrResultCacheTest {
+
+    private OcrResultCacheRepository repository;
+    private SimpleMeterRegistry meterRegistry;
+    private OcrResultCache cache;
+    private final AtomicInteger visionCalls = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(OcrResultCacheRepository.class);
+        when(repository.findByContentHash(any())).thenReturn(Optional.empty());
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new OcrResultCache(repository, new ObjectMapper(), meterRegistry, true, 2, 24);
+    }
+
+    @Test
+    void sameImage_shouldCallVisionOnlyOnce() throws Exception {
+        String hash = OcrResultCache.hash("recibo".getBytes(StandardCharsets.UTF_8));
+
+        OcrService.OcrResult first = cache.resolve(hash, this::callVision);
+        OcrService.OcrResult second = cache.resolve(hash, this::callVision);
+
+        assertEquals(1, visionCalls.get());
+        assertSame(first, second);
+        verify(repository).save(any(OcrResultCacheEntry.class));
+        assertEquals(1, meterRegistry.get("yopago.ocr.cache").tag("result", "hit").tag("level", "local")
+                .counter().count(), 0.001);
+        assertEquals(1, meterRegistry.get("yopago.ocr.cache").tag("result", "miss").counter().count(), 0.001);
+    }
+
+    @Test
+    void persistedEntry_shouldBeUsedAfterRestart() throws Exception {
+        OcrResultCacheEntry entry = new OcrResultCacheEntry();
+        entry.setContentHash("abc");
+        entry.setText("TOTAL 10");
+        entry.setStructuredJson("{\"amount\":10.0}");
+        entry.setCreatedAt(LocalDateTime.now().minusHours(1));
+        when(repository.findByContentHash("abc")).thenReturn(Optional.of(entry));
+
+        OcrService.OcrResult result = cache.resolve("abc", this::callVision);
+
+        assertEquals(0, visionCalls.get());
+        assertEquals("TOTAL 10", result.text);
+        assertEquals(Map.of("amount", 10.0), result.structured);
+    }
+
+    @Test
+    void expiredOrEmptyResults_shouldNotBeReused() throws Exception {
+        OcrResultCacheEntry expired = new OcrResultCacheEntry();
+        expired.setContentHash("old");
+        expired.setStructuredJson("{}");
+        expired.setCreatedAt(LocalDateTime.now().minusDays(2));
+        when(repository.findByContentHash("old")).thenReturn(Optional.of(expired));
+
+        cache.resolve("old", this::callVision);
+        cache.resolve("empty", () -> new OcrService.OcrResult("", null));
+        cache.resolve("empty", () -> new OcrService.OcrResult("", null));
+
+        assertEquals(1, visionCalls.get());
+        assertEquals(3, meterRegistry.get("yopago.ocr.cache").tag("result", "miss").counter().count(), 0.001);
+    }
+
+    private OcrService.OcrResult callVision() {
+        visionCalls.incrementAndGet();
+        return new OcrService.OcrResult("TOTAL 10", Map.of("amount", 10.0));
+    }
+}
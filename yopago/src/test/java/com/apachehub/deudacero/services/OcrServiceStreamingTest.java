@@ -0,0 +1,107 @@
+package com.apachehub.deudacero.services;
+
+import com.apachehub.deudacero.repositories.OcrResultCacheRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Envía varios recibos de 20 MB en paralelo contra un vision-ia simulado y
+ * verifica que viajan como bytes (sin inflar a base64).
+ */
+class OcrServiceStreamingTest {
+
+    private static final int IMAGE_SIZE = 20 * 1024 * 1024;
+    private static final int CONCURRENCY = 4;
+
+    private VisionIaStub visionIa;
+    private OcrService ocrService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        visionIa = new VisionIaStub(CONCURRENCY);
+        OcrResultCache disabledCache = new OcrResultCache(mock(OcrResultCacheRepository.class), new ObjectMapper(),
+                new SimpleMeterRegistry(), false, 1, 1);
+        VisionIaClient visionIaClient = new VisionIaClient(WebClient.builder(), visionIa.baseUrl(),
+                new ObjectMapper(), new SimpleMeterRegistry(), 2000, 60000, CONCURRENCY, 500, 0, 100, 60000, 5,
+                30000);
+        ocrService = new OcrService(visionIaClient, disabledCache,
+                new ReceiptImageNormalizer(new SimpleMeterRegistry(), false, 2000, 0.85f, true));
+    }
+
+    @AfterEach
+    void tearDown() {
+        visionIa.close();
+    }
+
+    @Test
+    void largeReceipts_shouldStreamRawBytes() throws Exception {
+        List<String> receipts = new ArrayList<>();
+        for (int i = 0; i < CONCURRENCY; i++) {
+            byte[] image = new byte[IMAGE_SIZE];
+            for (int j = 0; j < image.length; j++) {
+                image[j] = (byte) (j * 31 + i);
+            }
+            receipts.add(Base64.getEncoder().encodeToString(image));
+        }
+
+        ExecutorService callers = Executors.newFixedThreadPool(CONCURRENCY);
+        try {
+            List<Future<OcrService.OcrResult>> results = new ArrayList<>();
+            for (String receipt : receipts) {
+                results.add(callers.submit(() -> ocrService.analyzeImageBase64(receipt)));
+            }
+            for (Future<OcrService.OcrResult> result : results) {
+                OcrService.OcrResult ocr = result.get(60, TimeUnit.SECONDS);
+                assertEquals("TOTAL 42.61", ocr.text);
+                assertEquals(Map.of("amount", 42.61), ocr.structured);
+            }
+        } finally {
+            callers.shutdown();
+        }
+
+        // Solo las cabeceras del multipart se suman a los bytes de la imagen
+        assertTrue(visionIa.maxBodyBytes() < IMAGE_SIZE + 4096,
+                "El cuerpo enviado no debe inflarse a base64: " + visionIa.maxBodyBytes());
+        assertEquals(CONCURRENCY, visionIa.requests());
+    }
+
+    @Test
+    void decodeBase64_shouldAcceptUnpaddedDataUriAndMimeInput() {
+        for (int size = 0; size <= 7; size++) {
+            byte[] image = new byte[size];
+            for (int i = 0; i < size; i++) {
+                image[i] = (byte) (i * 67 + 5);
+            }
+            String padded = Base64.getEncoder().encodeToString(image);
+            String unpadded = Base64.getEncoder().withoutPadding().encodeToString(image);
+
+            assertArrayEquals(image, OcrService.decodeBase64(padded));
+            assertArrayEquals(image, OcrService.decodeBase64(unpadded), "Sin relleno, " + size + " bytes");
+            assertArrayEquals(image, OcrService.decodeBase64("data:image/png;base64," + unpadded));
+        }
+
+        byte[] large = new byte[1000];
+        Arrays.fill(large, (byte) 7);
+        String mime = Base64.getMimeEncoder().encodeToString(large);
+        assertTrue(mime.contains("\r\n"));
+        assertArrayEquals(large, OcrService.decodeBase64(mime));
+    }
+}
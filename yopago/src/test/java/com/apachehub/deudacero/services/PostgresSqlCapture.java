@@ -0,0 +1,79 @@
+package com.apachehub.deudacero.services;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.boot.MetadataSources;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.boot.registry.StandardServiceRegistry;
+import org.hibernate.boot.registry.StandardServiceRegistryBuilder;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.jdbc.connections.internal.UserSuppliedConnectionProviderImpl;
+
+import com.apachehub.deudacero.entities.Expense;
+import com.apachehub.deudacero.entities.ExpenseItem;
+import com.apachehub.deudacero.entities.ExpenseItemShare;
+import com.apachehub.deudacero.entities.ExpenseShare;
+import com.apachehub.deudacero.entities.Group;
+import com.apachehub.deudacero.entities.GroupInvitation;
+import com.apachehub.deudacero.entities.GroupShare;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.entities.Payment;
+
+/**
+ * No hay base de datos embebida en el build: las consultas de los
+ * repositorios se traducen con Hibernate y el dialecto de PostgreSQL sobre una
+ * conexión JDBC simulada, y se devuelve el SQL que llegaría a la base de datos.
+ * Los UPDATE/DELETE informan de {@code updatedRows} filas y las consultas no
+ * devuelven resultados.
+ */
+final class PostgresSqlCapture {
+
+    private PostgresSqlCapture() {
+    }
+
+    static List<String> capture(int updatedRows, Consumer<Session> work) throws Exception {
+        List<String> statements = new ArrayList<>();
+        ResultSet emptyResult = mock(ResultSet.class, RETURNS_MOCKS);
+        when(emptyResult.next()).thenReturn(false);
+        PreparedStatement statement = mock(PreparedStatement.class, RETURNS_MOCKS);
+        when(statement.executeUpdate()).thenReturn(updatedRows);
+        when(statement.executeQuery()).thenReturn(emptyResult);
+        Connection connection = mock(Connection.class, RETURNS_MOCKS);
+        when(connection.prepareStatement(anyString())).thenReturn(statement);
+
+        StandardServiceRegistry serviceRegistry = new StandardServiceRegistryBuilder()
+                .applySetting(AvailableSettings.DIALECT, PostgreSQLDialect.class.getName())
+                .applySetting("hibernate.boot.allow_jdbc_metadata_access", "false")
+                // La misma estrategia de nombres que aplica Spring Boot
+                .applySetting(AvailableSettings.PHYSICAL_NAMING_STRATEGY,
+                        CamelCaseToUnderscoresNamingStrategy.class.getName())
+                .applySetting(AvailableSettings.CONNECTION_PROVIDER, UserSuppliedConnectionProviderImpl.class.getName())
+                .build();
+        try (SessionFactory sessionFactory = new MetadataSources(serviceRegistry)
+                .addAnnotatedClasses(GroupInvitation.class, Group.class, Member.class, Expense.class,
+                        ExpenseShare.class, ExpenseItem.class, ExpenseItemShare.class, GroupShare.class, Payment.class)
+                .buildMetadata()
+                .getSessionFactoryBuilder()
+                .applyStatementInspector(sql -> {
+                    statements.add(sql);
+                    return sql;
+                })
+                .build();
+                Session session = sessionFactory.withOptions().connection(connection).openSession()) {
+            session.beginTransaction();
+            work.accept(session);
+        }
+        return statements;
+    }
+}
@@ -0,0 +1,47 @@
+package com.apachehub.deudacero.services;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class QrCodeServiceTest {
+
+    @Test
+    void image_shouldCacheRenderedPngWithStableEtagAndEvictLeastRecentlyUsed() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QrCodeService service = new QrCodeService(registry, 2, 200);
+
+        QrCodeService.QrImage first = service.image("ABCD1234");
+        assertSame(first, service.image("ABCD1234"));
+        assertTrue(first.etag().startsWith("\"") && first.etag().endsWith("\""), "El ETag debe ser fuerte");
+        assertEquals(first.etag(), service.render("ABCD1234").etag(), "El mismo código produce el mismo PNG");
+
+        service.image("EFGH5678");
+        service.image("ABCD1234");
+        service.image("IJKL9012"); // expulsa EFGH5678, el menos usado
+        assertEquals(2, service.cachedEntries());
+        assertSame(first, service.image("ABCD1234"));
+        assertEquals(3.0, registry.get("yopago.qr.cache").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void image_shouldServeRepeatedRequestsFromCacheAndBeSmallerThanBase64() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        QrCodeService service = new QrCodeService(registry, 100, 200);
+
+        byte[] png = service.image("ABCD1234").png();
+        for (int i = 0; i < 50; i++) {
+            service.image("ABCD1234");
+        }
+
+        assertEquals(1.0, registry.get("yopago.qr.cache").tag("result", "miss").counter().count(),
+                "El QR se renderiza una sola vez");
+        assertEquals(50.0, registry.get("yopago.qr.cache").tag("result", "hit").counter().count());
+        assertTrue(Base64.getEncoder().encodeToString(png).length() > png.length,
+                "El base64 ocupa más que el PNG binario");
+    }
+}
@@ -0,0 +1,187 @@
+package com.apachehub.deudacero.services;
+
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Normalización de recibos: comprueba la reducción del payload y compara el
+ * resultado con una imagen de referencia (golden) renderizada directamente al
+ * tamaño final, para comprobar que el texto sigue igual de legible.
+ */
+class ReceiptImageNormalizerTest {
+
+    private static final int MAX_DIMENSION = 2000;
+
+    private final ReceiptImageNormalizer normalizer = new ReceiptImageNormalizer(new SimpleMeterRegistry(), true,
+            MAX_DIMENSION, 0.85f, true);
+
+    @Test
+    void phonePhoto_shouldBeDownscaledToGrayscaleAndKeepTextLegible() throws Exception {
+        BufferedImage photo = renderReceipt(3000, 4000, true);
+        byte[] original = jpeg(photo, 0.95f);
+
+        ReceiptImageNormalizer.NormalizedImage normalized = normalizer.normalize(original);
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(normalized.content()));
+
+        assertEquals("receipt.jpg", normalized.filename());
+        assertEquals(MAX_DIMENSION, Math.max(result.getWidth(), result.getHeight()));
+        assertEquals(1, result.getRaster().getNumBands(), "Debe ser escala de grises");
+        assertTrue(normalized.content().length < original.length / 2, "El payload debe reducirse");
+
+        // Golden: el mismo recibo renderizado directamente al tamaño final
+        BufferedImage golden = renderReceipt(result.getWidth(), result.getHeight(), false);
+        int inkPixels = 0;
+        int inkPreserved = 0;
+        long totalDifference = 0;
+        for (int y = 0; y < golden.getHeight(); y++) {
+            for (int x = 0; x < golden.getWidth(); x++) {
+                int expected = luminance(golden.getRGB(x, y));
+                int actual = result.getRaster().getSample(x, y, 0);
+                totalDifference += Math.abs(expected - actual);
+                if (expected < 80) {
+                    inkPixels++;
+                    if (darkAround(result, x, y)) {
+                        inkPreserved++;
+                    }
+                }
+            }
+        }
+        double meanDifference = (double) totalDifference / (golden.getWidth() * golden.getHeight());
+        assertTrue(inkPixels > 1000, "La imagen de referencia debe contener texto");
+        assertTrue(inkPreserved >= inkPixels * 0.97,
+                "El texto debe seguir siendo oscuro: " + inkPreserved + "/" + inkPixels);
+        assertTrue(meanDifference < 20, "Diferencia media con la referencia demasiado alta: " + meanDifference);
+    }
+
+    @Test
+    void exifOrientation_shouldBeAppliedAndMetadataStripped() throws Exception {
+        byte[] original = withExifOrientation(jpeg(renderReceipt(300, 200, true), 1.0f), 6);
+        assertEquals(6, ReceiptImageNormalizer.exifOrientation(original));
+
+        ReceiptImageNormalizer.NormalizedImage normalized = normalizer.normalize(original);
+        BufferedImage result = ImageIO.read(new ByteArrayInputStream(normalized.content()));
+
+        assertEquals(200, result.getWidth());
+        assertEquals(300, result.getHeight());
+        assertFalse(new String(normalized.content(), StandardCharsets.ISO_8859_1).contains("Exif"),
+                "No deben quedar metadatos EXIF");
+    }
+
+    @Test
+    void pdfAndUnknownFormats_shouldPassThrough() {
+        byte[] pdf = "%PDF-1.7 recibo".getBytes(StandardCharsets.US_ASCII);
+        ReceiptImageNormalizer.NormalizedImage normalizedPdf = normalizer.normalize(pdf);
+        assertSame(pdf, normalizedPdf.content());
+        assertEquals("receipt.pdf", normalizedPdf.filename());
+
+        byte[] unknown = new byte[] { 1, 2, 3, 4, 5 };
+        assertSame(unknown, normalizer.normalize(unknown).content());
+    }
+
+    /**
+     * Recibo sintético: fondo claro (con ruido de sensor si es una "foto") y
+     * líneas de texto negro
+     */
+    private BufferedImage renderReceipt(int width, int height, boolean photoNoise) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        graphics.setColor(new Color(245, 240, 225));
+        graphics.fillRect(0, 0, width, height);
+        if (photoNoise) {
+            Random random = new Random(42);
+            for (int i = 0; i < width * height / 20; i++) {
+                int shade = 225 + random.nextInt(25);
+                image.setRGB(random.nextInt(width), random.nextInt(height), new Color(shade, shade - 5, shade - 20).getRGB());
+            }
+        }
+        graphics.setColor(Color.BLACK);
+        graphics.setFont(new Font(Font.MONOSPACED, Font.BOLD, Math.max(8, height / 40)));
+        String[] lines = { "RESTAURANTE EL CENTRO", "2 HUNTERS BARIL   13.10", "1 12 ALITAS       13.59",
+                "1 6 ALITAS        7.40", "SUBTOTAL          34.09", "IVA               5.11", "TOTAL             42.61" };
+        for (int i = 0; i < lines.length; i++) {
+            graphics.drawString(lines[i], width / 12, height * (i + 2) / 12);
+        }
+        graphics.dispose();
+        return image;
+    }
+
+    private byte[] jpeg(BufferedImage image, float quality) throws Exception {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Inserta un segmento APP1 Exif mínimo (big endian) con la etiqueta
+     * Orientation después del APP0 JFIF
+     */
+    private byte[] withExifOrientation(byte[] jpeg, int orientation) {
+        byte[] app1 = {
+                (byte) 0xFF, (byte) 0xE1, 0x00, 0x22,
+                'E', 'x', 'i', 'f', 0x00, 0x00,
+                'M', 'M', 0x00, 0x2A, 0x00, 0x00, 0x00, 0x08,
+                0x00, 0x01,
+                0x01, 0x12, 0x00, 0x03, 0x00, 0x00, 0x00, 0x01, 0x00, (byte) orientation, 0x00, 0x00,
+                0x00, 0x00, 0x00, 0x00 };
+        int app0Length = ((jpeg[4] & 0xFF) << 8) | (jpeg[5] & 0xFF);
+        int insertAt = 4 + app0Length;
+        byte[] result = new byte[jpeg.length + app1.length];
+        System.arraycopy(jpeg, 0, result, 0, insertAt);
+        System.arraycopy(app1, 0, result, insertAt, app1.length);
+        System.arraycopy(jpeg, insertAt, result, insertAt + app1.length, jpeg.length - insertAt);
+        return result;
+    }
+
+    /**
+     * Tolera el desplazamiento de subpíxel entre glifos renderizados a distinto
+     * tamaño: basta con que haya tinta en la vecindad 3x3
+     */
+    private static boolean darkAround(BufferedImage image, int x, int y) {
+        for (int dy = -1; dy <= 1; dy++) {
+            for (int dx = -1; dx <= 1; dx++) {
+                int nx = x + dx;
+                int ny = y + dy;
+                if (nx >= 0 && ny >= 0 && nx < image.getWidth() && ny < image.getHeight()
+                        && image.getRaster().getSample(nx, ny, 0) < 128) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static int luminance(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        return (int) Math.round(0.299 * r + 0.587 * g + 0.114 * b);
+    }
+}
@@ -0,0 +1,183 @@
+package com.apachehub.deudacero.services;
+
+import com.apachehub.deudacero.dto.ExpenseDTO;
+import com.apachehub.deudacero.dto.ExpenseResponseDTO;
+import com.apachehub.deudacero.dto.ReceiptImportRequest;
+import com.apachehub.deudacero.entities.Expense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReceiptImportServiceTest {
+
+    private OcrService ocrService;
+    private ExpenseService expenseService;
+    private CountingTransactionManager transactionManager;
+    private ReceiptImportService receiptImportService;
+    private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+    private final List<Map<String, Object>> payloads = Collections.synchronizedList(new ArrayList<>());
+
+    @BeforeEach
+    void setUp() {
+        ocrService = mock(OcrService.class);
+        expenseService = mock(ExpenseService.class);
+        transactionManager = new CountingTransactionManager();
+        receiptImportService = new ReceiptImportService(ocrService, expenseService, transactionManager,
+                new SimpleMeterRegistry(), 2, 2, 10, 64, 60000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        receiptImportService.shutdown();
+    }
+
+    @Test
+    void runImport_shouldLimitOcrConcurrencyAndPersistInBatches() throws Exception {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+        when(ocrService.analyzeImageBase64(anyString())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(50);
+            inFlight.decrementAndGet();
+            return new OcrService.OcrResult("TOTAL", Map.of("amount", 10.0));
+        });
+        when(expenseService.createExpenseDTOFromOcr(any(), eq(5L), eq(7L), any(), any(), any()))
+                .thenAnswer(invocation -> expense(10.0));
+        when(expenseService.createExpense(any())).thenReturn(new Expense());
+        when(expenseService.convertToResponseDTO(any())).thenReturn(new ExpenseResponseDTO());
+
+        receiptImportService.runImport(request(5), recordingSink());
+
+        assertTrue(maxInFlight.get() <= 2, "El OCR no debe superar la concurrencia configurada: " + maxInFlight.get());
+        verify(expenseService, times(5)).createExpense(any());
+        assertEquals(3, transactionManager.commits.get(), "5 recibos en lotes de 2 son 3 transacciones");
+        assertEquals(5, Collections.frequency(events, "receipt.saved"));
+        assertEquals("import.completed", events.get(events.size() - 1));
+        assertEquals(5, payloads.get(payloads.size() - 1).get("saved"));
+        assertEquals(0, payloads.get(payloads.size() - 1).get("failed"));
+    }
+
+    @Test
+    void runImport_shouldRetryFailedBatchPerReceipt() throws Exception {
+        when(ocrService.analyzeImageBase64(anyString()))
+                .thenReturn(new OcrService.OcrResult("TOTAL", Map.of("amount", 10.0)));
+        ExpenseDTO valid = expense(10.0);
+        ExpenseDTO invalid = expense(-1.0);
+        when(expenseService.createExpenseDTOFromOcr(any(), any(), any(), eq("bad"), any(), any())).thenReturn(invalid);
+        when(expenseService.createExpenseDTOFromOcr(any(), any(), any(), isNull(), any(), any())).thenReturn(valid);
+        when(expenseService.createExpense(valid)).thenReturn(new Expense());
+        when(expenseService.createExpense(invalid)).thenThrow(new IllegalArgumentException("Monto inválido"));
+        when(expenseService.convertToResponseDTO(any())).thenReturn(new ExpenseResponseDTO());
+
+        ReceiptImportRequest request = request(2);
+        request.getReceipts().get(1).setNote("bad");
+        receiptImportService.runImport(request, recordingSink());
+
+        assertEquals(1, Collections.frequency(events, "receipt.saved"));
+        assertEquals(1, Collections.frequency(events, "receipt.failed"));
+        assertTrue(transactionManager.rollbacks.get() >= 2, "El lote y el recibo inválido deben deshacerse");
+        Map<String, Object> summary = payloads.get(payloads.size() - 1);
+        assertEquals(1, summary.get("saved"));
+        assertEquals(1, summary.get("failed"));
+    }
+
+    @Test
+    void runImport_shouldReportNullReceiptAsFailedAndComplete() throws Exception {
+        when(ocrService.analyzeImageBase64(anyString()))
+                .thenReturn(new OcrService.OcrResult("TOTAL", Map.of("amount", 10.0)));
+        when(expenseService.createExpenseDTOFromOcr(any(), any(), any(), any(), any(), any()))
+                .thenAnswer(invocation -> expense(10.0));
+        when(expenseService.createExpense(any())).thenReturn(new Expense());
+        when(expenseService.convertToResponseDTO(any())).thenReturn(new ExpenseResponseDTO());
+
+        ReceiptImportRequest request = request(2);
+        request.getReceipts().add(1, null);
+        receiptImportService.runImport(request, recordingSink());
+
+        assertEquals(2, Collections.frequency(events, "receipt.saved"));
+        assertEquals(1, Collections.frequency(events, "receipt.failed"));
+        assertEquals("import.completed", events.get(events.size() - 1));
+        Map<String, Object> summary = payloads.get(payloads.size() - 1);
+        assertEquals(2, summary.get("saved"));
+        assertEquals(1, summary.get("failed"));
+    }
+
+    @Test
+    void exceedsMaxTotalBytes_shouldSumAllReceipts() {
+        ReceiptImportRequest request = request(3);
+        request.getReceipts().forEach(receipt -> receipt.setFileBase64("x".repeat(21)));
+        assertFalse(receiptImportService.exceedsMaxTotalBytes(request), "63 de 64 bytes");
+
+        request.getReceipts().get(2).setFileBase64("x".repeat(23));
+        assertTrue(receiptImportService.exceedsMaxTotalBytes(request), "65 de 64 bytes");
+    }
+
+    private ReceiptImportService.ProgressSink recordingSink() {
+        return new ReceiptImportService.ProgressSink(null) {
+            @Override
+            void send(String eventName, Map<String, Object> data) {
+                events.add(eventName);
+                payloads.add(data);
+            }
+        };
+    }
+
+    private ReceiptImportRequest request(int receipts) {
+        ReceiptImportRequest request = new ReceiptImportRequest();
+        request.setGroupId(7L);
+        request.setPayerId(5L);
+        request.setReceipts(new ArrayList<>());
+        for (int i = 0; i < receipts; i++) {
+            ReceiptImportRequest.Receipt receipt = new ReceiptImportRequest.Receipt();
+            receipt.setFileBase64("recibo-" + i);
+            receipt.setFileName("recibo-" + i + ".jpg");
+            request.getReceipts().add(receipt);
+        }
+        return request;
+    }
+
+    private ExpenseDTO expense(double amount) {
+        ExpenseDTO dto = new ExpenseDTO();
+        dto.setAmount(amount);
+        return dto;
+    }
+
+    private static class CountingTransactionManager extends AbstractPlatformTransactionManager {
+        private final AtomicInteger commits = new AtomicInteger();
+        private final AtomicInteger rollbacks = new AtomicInteger();
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            commits.incrementAndGet();
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+            rollbacks.incrementAndGet();
+        }
+    }
+}
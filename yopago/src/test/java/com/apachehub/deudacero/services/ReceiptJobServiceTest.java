@@ -0,0 +1,108 @@
+package com.apachehub.deudacero.services;
+
+import com.apachehub.deudacero.dto.ExpenseDTO;
+import com.apachehub.deudacero.dto.ExpenseResponseDTO;
+import com.apachehub.deudacero.dto.OcrExpenseRequest;
+import com.apachehub.deudacero.entities.Expense;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ReceiptJobServiceTest {
+
+    private OcrService ocrService;
+    private ExpenseService expenseService;
+    private RealTimeEventPublisher publisher;
+    private ReceiptJobService receiptJobService;
+
+    @BeforeEach
+    void setUp() {
+        ocrService = mock(OcrService.class);
+        expenseService = mock(ExpenseService.class);
+        publisher = mock(RealTimeEventPublisher.class);
+        receiptJobService = new ReceiptJobService(ocrService, expenseService, publisher,
+                new SimpleMeterRegistry(), 1, 1, 30);
+    }
+
+    @AfterEach
+    void tearDown() {
+        receiptJobService.shutdown();
+    }
+
+    @Test
+    void submit_shouldCreateExpenseAndPublishCompletionEvent() throws Exception {
+        ExpenseDTO dto = new ExpenseDTO();
+        Expense saved = new Expense();
+        ExpenseResponseDTO response = new ExpenseResponseDTO();
+        when(ocrService.analyzeImageBase64("abc"))
+                .thenReturn(new OcrService.OcrResult("TOTAL 10", Map.of("amount", 10.0)));
+        when(expenseService.createExpenseDTOFromOcr(any(), eq(5L), eq(7L), any(), any(), any())).thenReturn(dto);
+        when(expenseService.createExpense(dto)).thenReturn(saved);
+        when(expenseService.convertToResponseDTO(saved)).thenReturn(response);
+
+        ReceiptJobService.ReceiptJob job = receiptJobService.submit(request(), "user-1");
+        ReceiptJobService.ReceiptJob finished = job.completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(ReceiptJobService.Status.COMPLETED, finished.getStatus());
+        assertSame(response, finished.getExpense());
+        assertEquals("TOTAL 10", finished.getOcrText());
+        verify(publisher).publishGroupEvent(eq(7L), eq("group.receipt.completed"), anyMap());
+
+        assertSame(job, receiptJobService.findJob(job.getId(), "user-1"));
+        assertNull(receiptJobService.findJob(job.getId(), "otro-usuario"), "Solo el dueño puede consultar el trabajo");
+    }
+
+    @Test
+    void submit_shouldFailJobWhenOcrHasNoData() throws Exception {
+        when(ocrService.analyzeImageBase64("abc")).thenReturn(new OcrService.OcrResult("", null));
+
+        ReceiptJobService.ReceiptJob finished = receiptJobService.submit(request(), "user-1")
+                .completion().get(5, TimeUnit.SECONDS);
+
+        assertEquals(ReceiptJobService.Status.FAILED, finished.getStatus());
+        assertNotNull(finished.getError());
+        // Recibo sin datos: los controladores responden 400, no 500
+        assertTrue(finished.isUnusable());
+        assertFalse(finished.isRetryable());
+        verify(expenseService, never()).createExpense(any());
+        verify(publisher).publishGroupEvent(eq(7L), eq("group.receipt.failed"), anyMap());
+    }
+
+    @Test
+    void submit_shouldRejectWhenPoolAndQueueAreFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(ocrService.analyzeImageBase64("abc")).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new OcrService.OcrResult("", null);
+        });
+
+        ReceiptJobService.ReceiptJob running = receiptJobService.submit(request(), "user-1");
+        // Esperar a que el único hilo tome el primer trabajo
+        while (running.getStatus() == ReceiptJobService.Status.QUEUED) {
+            Thread.onSpinWait();
+        }
+        receiptJobService.submit(request(), "user-1");
+
+        assertThrows(RejectedExecutionException.class, () -> receiptJobService.submit(request(), "user-1"));
+        release.countDown();
+    }
+
+    private OcrExpenseRequest request() {
+        OcrExpenseRequest request = new OcrExpenseRequest();
+        request.setFileBase64("abc");
+        request.setGroupId(7L);
+        request.setPayerId(5L);
+        return request;
+    }
+}
@@ -0,0 +1,374 @@
+package com.apachehub.deudacero.services;
+
+import com.apachehub.deudacero.dto.UserRegistrationDTO;
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.entities.RegistrationRequest;
+import com.apachehub.deudacero.entities.RegistrationStatus;
+import com.apachehub.deudacero.repositories.MemberRepository;
+import com.apachehub.deudacero.repositories.RegistrationRequestRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Registro por outbox contra un Keycloak simulado: el cliente recibe la
+ * respuesta sin esperar a Keycloak, los reintentos no duplican usuarios y ante
+ * un 409 solo se adopta el usuario que creó el propio registro.
+ */
+class RegistrationOutboxServiceTest {
+
+    private static final int REGISTRATIONS = 16;
+
+    private HttpServer keycloak;
+    // Las altas en Keycloak esperan a este latch: mientras no se abre, ningún
+    // registro puede haberse completado
+    private final CountDownLatch keycloakRelease = new CountDownLatch(1);
+    private final AtomicInteger createdUsers = new AtomicInteger();
+    private final AtomicInteger passwordResets = new AtomicInteger();
+    private final AtomicInteger deletedUsers = new AtomicInteger();
+    private final Map<String, Map<String, Object>> keycloakUsers = new ConcurrentHashMap<>();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Map<String, RegistrationRequest> outbox = new ConcurrentHashMap<>();
+    private final AtomicLong memberIds = new AtomicLong();
+    private RegistrationRequestRepository registrationRepository;
+    private MemberRepository memberRepository;
+    private UserSyncService userSyncService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        keycloak = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        keycloak.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        keycloak.createContext("/", this::handle);
+        keycloak.start();
+
+        registrationRepository = inMemoryOutbox();
+        memberRepository = mock(MemberRepository.class);
+        when(memberRepository.findByKeycloakUserId(anyString())).thenReturn(Optional.empty());
+        userSyncService = mock(UserSyncService.class);
+        when(userSyncService.createRegisteredMember(anyString(), anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> {
+                    Member member = new Member(invocation.getArgument(0), invocation.getArgument(1),
+                            invocation.getArgument(2), invocation.getArgument(3));
+                    member.setId(memberIds.incrementAndGet());
+                    return member;
+                });
+    }
+
+    @AfterEach
+    void tearDown() {
+        keycloakRelease.countDown();
+        keycloak.stop(0);
+    }
+
+    @Test
+    void submit_shouldAcceptImmediatelyAndCompleteInBackground() throws Exception {
+        RegistrationOutboxService service = outboxService(keycloakClient(), 8);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < REGISTRATIONS; i++) {
+            RegistrationRequest accepted = service.submit(registration("user" + i, "secreta1"));
+            // Keycloak está bloqueado: la respuesta no ha esperado al alta
+            assertNotEquals(RegistrationStatus.COMPLETED, accepted.getStatus());
+            ids.add(accepted.getId());
+        }
+        assertEquals(0, createdUsers.get());
+
+        keycloakRelease.countDown();
+        awaitStatus(service, ids, RegistrationStatus.COMPLETED);
+
+        assertEquals(REGISTRATIONS, createdUsers.get());
+        for (String id : ids) {
+            RegistrationRequest done = outbox.get(id);
+            assertNotNull(done.getMemberId());
+            assertNull(done.getPasswordCiphertext(), "La contraseña se borra al terminar");
+            assertEquals(List.of(id), keycloakUsers.get(done.getUsername()).get("registrationIds"));
+        }
+        service.shutdown();
+    }
+
+    @Test
+    void conflict_shouldAdoptOnlyUsersCreatedByTheSameRegistration() throws Exception {
+        keycloakRelease.countDown();
+        RegistrationOutboxService service = outboxService(keycloakClient(), 1);
+        service.shutdown();
+
+        // Un intento anterior de este registro creó el usuario antes de caerse
+        RegistrationRequest own = service.submit(registration("propio", "secreta1"));
+        keycloakUsers.put("propio", keycloakUser("propio", "kc-propio", List.of(own.getId())));
+        service.process(own.getId());
+
+        assertEquals(RegistrationStatus.COMPLETED, own.getStatus());
+        assertEquals("kc-propio", own.getKeycloakUserId());
+        assertEquals(1, passwordResets.get(), "Al adoptar se fija la contraseña del registro");
+
+        // Cuenta que ya existía fuera de la outbox: 409 y no se toca
+        RegistrationRequest foreign = service.submit(registration("ajeno", "secreta1"));
+        keycloakUsers.put("ajeno", keycloakUser("ajeno", "kc-ajeno", List.of()));
+        service.process(foreign.getId());
+
+        assertEquals(RegistrationStatus.FAILED, foreign.getStatus());
+        assertTrue(foreign.getLastError().contains("ya existe"), foreign.getLastError());
+        assertNull(foreign.getKeycloakUserId());
+        assertEquals(1, passwordResets.get());
+        assertEquals(0, deletedUsers.get());
+        assertEquals(0, createdUsers.get());
+    }
+
+    @Test
+    void adoptedUser_shouldNotBeDeletedWhenRegistrationFails() throws Exception {
+        AuthService authService = mock(AuthService.class);
+        when(authService.provisionKeycloakUser(any(), anyString()))
+                .thenReturn(new AuthService.ProvisionedUser("kc-1", true));
+        when(userSyncService.createRegisteredMember(anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("BD caída"));
+        RegistrationOutboxService service = outboxService(authService, 1);
+        service.shutdown();
+
+        RegistrationRequest registration = service.submit(registration("ana", "secreta1"));
+        for (int attempt = 0; attempt < 5; attempt++) {
+            registration.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+            service.process(registration.getId());
+        }
+
+        assertEquals(RegistrationStatus.FAILED, registration.getStatus());
+        verify(authService, never()).deleteKeycloakUser(any());
+
+        // Al reenviarlo se vuelve a pasar por el alta para fijar la contraseña nueva
+        RegistrationRequest resubmitted = service.submit(registration("ana", "otra-clave"));
+        assertEquals(RegistrationStatus.PENDING, resubmitted.getStatus());
+        assertNull(resubmitted.getKeycloakUserId());
+    }
+
+    @Test
+    void missingSecret_shouldFailAtStartup() {
+        assertThrows(IllegalStateException.class, () -> new RegistrationOutboxService(registrationRepository,
+                memberRepository, mock(AuthService.class), userSyncService, new SimpleMeterRegistry(), " ",
+                1, 50, 5, 1, 1000, 60));
+    }
+
+    @Test
+    void retries_shouldBeIdempotent() throws Exception {
+        AuthService authService = mock(AuthService.class);
+        when(authService.provisionKeycloakUser(any(), anyString()))
+                .thenThrow(new AuthService.KeycloakProvisioningException("Keycloak no disponible", true))
+                .thenReturn(new AuthService.ProvisionedUser("kc-1", false));
+        when(userSyncService.createRegisteredMember(anyString(), anyString(), anyString(), anyString()))
+                .thenThrow(new IllegalStateException("BD caída"))
+                .thenAnswer(invocation -> {
+                    Member member = new Member("kc-1", "ana", "ana@mail.com", "Ana Pérez");
+                    member.setId(10L);
+                    return member;
+                });
+        RegistrationOutboxService service = outboxService(authService, 1);
+        service.shutdown();
+
+        RegistrationRequest registration = service.submit(registration("Ana", "secreta1"));
+        assertSame(registration, service.submit(registration("ana", "secreta1")), "El reenvío devuelve el mismo registro");
+        assertThrows(RegistrationOutboxService.RegistrationConflictException.class,
+                () -> service.submit(new UserRegistrationDTO("ana", "otra@mail.com", "secreta1", "Ana", "Pérez")));
+
+        for (int attempt = 0; attempt < 3; attempt++) {
+            registration.setNextAttemptAt(LocalDateTime.now().minusSeconds(1));
+            service.process(registration.getId());
+        }
+
+        assertEquals(RegistrationStatus.COMPLETED, registration.getStatus());
+        assertEquals(3, registration.getAttempts());
+        assertEquals(10L, registration.getMemberId());
+        verify(authService, times(2)).provisionKeycloakUser(any(), eq(registration.getId()));
+        verify(authService, never()).deleteKeycloakUser(any());
+        verify(userSyncService, times(2)).createRegisteredMember(eq("kc-1"), eq("ana"), eq("ana@mail.com"), eq("Ana Pérez"));
+    }
+
+    private RegistrationOutboxService outboxService(AuthService authService, int concurrency) {
+        return new RegistrationOutboxService(registrationRepository, memberRepository, authService, userSyncService,
+                new SimpleMeterRegistry(), "secreto-de-pruebas", concurrency, 50, 5, 1, 1000, 60);
+    }
+
+    private void awaitStatus(RegistrationOutboxService service, List<String> ids, RegistrationStatus expected)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 15_000;
+        while (ids.stream().anyMatch(id -> outbox.get(id).getStatus() != expected)) {
+            assertTrue(System.currentTimeMillis() < deadline, "Los registros no terminaron a tiempo");
+            Thread.sleep(20);
+            // Lo que hace el @Scheduled: recoger los que no cupieron en los workers
+            service.pollDue();
+        }
+    }
+
+    private static UserRegistrationDTO registration(String username, String password) {
+        UserRegistrationDTO registration = new UserRegistrationDTO(username, username.toLowerCase() + "@mail.com",
+                password, "Ana", "Pérez");
+        registration.setConfirmPassword(password);
+        return registration;
+    }
+
+    private AuthService keycloakClient() {
+        AuthService authService = new AuthService(userSyncService);
+        ReflectionTestUtils.setField(authService, "keycloakAuthServerUrl",
+                "http://127.0.0.1:" + keycloak.getAddress().getPort() + "/");
+        ReflectionTestUtils.setField(authService, "realm", "yopago");
+        ReflectionTestUtils.setField(authService, "adminRealm", "master");
+        ReflectionTestUtils.setField(authService, "clientId", "yopago-api");
+        ReflectionTestUtils.setField(authService, "clientSecret", "secret");
+        ReflectionTestUtils.setField(authService, "adminUsername", "admin");
+        ReflectionTestUtils.setField(authService, "adminPassword", "admin");
+        ReflectionTestUtils.setField(authService, "connectTimeoutMillis", 2000L);
+        ReflectionTestUtils.setField(authService, "readTimeoutMillis", 5000L);
+        ReflectionTestUtils.invokeMethod(authService, "init");
+        return authService;
+    }
+
+    /**
+     * Repositorio en memoria con la misma semántica de reclamación que la consulta JPQL
+     */
+    private RegistrationRequestRepository inMemoryOutbox() {
+        RegistrationRequestRepository repository = mock(RegistrationRequestRepository.class);
+        when(repository.save(any(RegistrationRequest.class))).thenAnswer(invocation -> {
+            RegistrationRequest registration = invocation.getArgument(0);
+            if (registration.getNextAttemptAt() == null) {
+                registration.setNextAttemptAt(LocalDateTime.now());
+            }
+            outbox.put(registration.getId(), registration);
+            return registration;
+        });
+        when(repository.findById(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(outbox.get(invocation.<String>getArgument(0))));
+        when(repository.findByUsername(anyString())).thenAnswer(invocation -> outbox.values().stream()
+                .filter(registration -> registration.getUsername().equals(invocation.getArgument(0)))
+                .findFirst());
+        when(repository.findDueIds(any(), any())).thenAnswer(invocation -> outbox.values().stream()
+                .filter(registration -> registration.getStatus() == RegistrationStatus.PENDING
+                        && !registration.getNextAttemptAt().isAfter(invocation.getArgument(0)))
+                .map(RegistrationRequest::getId)
+                .limit(invocation.<Pageable>getArgument(1).getPageSize())
+                .toList());
+        when(repository.claim(anyString(), any(), any())).thenAnswer(invocation -> {
+            RegistrationRequest registration = outbox.get(invocation.<String>getArgument(0));
+            LocalDateTime now = invocation.getArgument(1);
+            synchronized (registration) {
+                boolean due = (registration.getStatus() == RegistrationStatus.PENDING
+                        && !registration.getNextAttemptAt().isAfter(now))
+                        || (registration.getStatus() == RegistrationStatus.PROCESSING
+                                && registration.getLockedUntil().isBefore(now));
+                if (!due) {
+                    return 0;
+                }
+                registration.setStatus(RegistrationStatus.PROCESSING);
+                registration.setLockedUntil(invocation.getArgument(2));
+                registration.setAttempts(registration.getAttempts() + 1);
+                return 1;
+            }
+        });
+        return repository;
+    }
+
+    private static Map<String, Object> keycloakUser(String username, String id, List<String> registrationIds) {
+        Map<String, Object> user = new ConcurrentHashMap<>();
+        user.put("id", id);
+        user.put("username", username);
+        user.put("email", username + "@mail.com");
+        user.put("registrationIds", registrationIds);
+        return user;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] requestBody;
+        try (InputStream body = exchange.getRequestBody()) {
+            requestBody = body.readAllBytes();
+        }
+        String path = exchange.getRequestURI().getPath();
+        String method = exchange.getRequestMethod();
+
+        if (path.equals("/realms/master/protocol/openid-connect/token")) {
+            json(exchange, 200, "{\"access_token\":\"admin\",\"expires_in\":60}");
+        } else if (path.equals("/admin/realms/yopago/users") && method.equals("POST")) {
+            Map<String, Object> user = objectMapper.readValue(requestBody, Map.class);
+            String username = (String) user.get("username");
+            if (keycloakUsers.containsKey(username)) {
+                exchange.sendResponseHeaders(409, -1);
+                exchange.close();
+                return;
+            }
+            await(keycloakRelease);
+            String id = UUID.randomUUID().toString();
+            Map<String, Object> attributes = (Map<String, Object>) user.getOrDefault("attributes", Map.of());
+            keycloakUsers.put(username, keycloakUser(username, id,
+                    (List<String>) attributes.getOrDefault(AuthService.REGISTRATION_ATTRIBUTE, List.of())));
+            createdUsers.incrementAndGet();
+            exchange.getResponseHeaders().add("Location", "http://keycloak/admin/realms/yopago/users/" + id);
+            exchange.sendResponseHeaders(201, -1);
+            exchange.close();
+        } else if (path.equals("/admin/realms/yopago/users") && method.equals("GET")) {
+            String query = exchange.getRequestURI().getQuery();
+            String username = query.substring(query.indexOf("username=") + "username=".length());
+            Map<String, Object> user = keycloakUsers.get(username);
+            List<Map<String, Object>> found = user == null ? List.of()
+                    : List.of(Map.of("id", user.get("id"), "username", username, "email", user.get("email"),
+                            "attributes", Map.of(AuthService.REGISTRATION_ATTRIBUTE, user.get("registrationIds"))));
+            json(exchange, 200, objectMapper.writeValueAsString(found));
+        } else if (path.endsWith("/reset-password") && method.equals("PUT")) {
+            passwordResets.incrementAndGet();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        } else if (path.startsWith("/admin/realms/yopago/users/") && method.equals("DELETE")) {
+            deletedUsers.incrementAndGet();
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        } else if (path.equals("/admin/realms/yopago/roles/user")) {
+            json(exchange, 200, "{\"id\":\"role-user\",\"name\":\"user\"}");
+        } else if (path.endsWith("/role-mappings/realm")) {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(15, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void json(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
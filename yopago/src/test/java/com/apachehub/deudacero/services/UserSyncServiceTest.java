@@ -0,0 +1,127 @@
+package com.apachehub.deudacero.services;
+
+import com.apachehub.deudacero.entities.Member;
+import com.apachehub.deudacero.repositories.MemberRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class UserSyncServiceTest {
+
+    private MemberRepository memberRepository;
+    private LastLoginFlusher lastLoginFlusher;
+    private GroupVersionService groupVersionService;
+    private UserSyncService userSyncService;
+    private Member member;
+
+    @BeforeEach
+    void setUp() {
+        memberRepository = mock(MemberRepository.class);
+        lastLoginFlusher = new LastLoginFlusher(memberRepository, new SimpleMeterRegistry());
+        groupVersionService = mock(GroupVersionService.class);
+        userSyncService = new UserSyncService(memberRepository, lastLoginFlusher,
+                groupVersionService, mock(PlatformTransactionManager.class), 100);
+
+        member = new Member("kc-1", "ana", "ana@mail.com", "Ana Pérez");
+        member.setId(10L);
+        when(memberRepository.findByKeycloakUserId("kc-1")).thenReturn(Optional.of(member));
+        when(memberRepository.findById(10L)).thenReturn(Optional.of(member));
+        when(memberRepository.save(any(Member.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void repeatedRequests_shouldNotWriteTheMemberRow() {
+        for (int i = 0; i < 5; i++) {
+            assertEquals(10L, userSyncService.syncAuthenticatedUser(jwt("Ana Pérez")).getId());
+        }
+
+        verify(memberRepository, never()).save(any());
+        verify(memberRepository, times(1)).findByKeycloakUserId("kc-1");
+        verify(memberRepository, times(4)).findById(10L);
+        verify(memberRepository, never()).updateLastLogin(anyCollection(), any());
+    }
+
+    @Test
+    void changedClaims_shouldUpdateTheProfileOnce() {
+        userSyncService.syncAuthenticatedUser(jwt("Ana Pérez"));
+        userSyncService.syncAuthenticatedUser(jwt("Ana María Pérez"));
+        userSyncService.syncAuthenticatedUser(jwt("Ana María Pérez"));
+
+        verify(memberRepository, times(1)).save(member);
+        assertEquals("Ana María Pérez", member.getName());
+        // El nombre nuevo invalida las respuestas cacheadas de sus grupos
+        verify(groupVersionService, times(1)).bumpGroupsOf(10L);
+    }
+
+    @Test
+    void guestConversion_shouldBumpTheGroupsOfTheMember() {
+        Member guest = new Member();
+        guest.setId(20L);
+        guest.setName("Ana (invitada)");
+        guest.setEmail("ana@mail.com");
+        guest.setIsRegistered(false);
+        when(memberRepository.findByKeycloakUserId("kc-1")).thenReturn(Optional.empty());
+        when(memberRepository.findByEmailAndIsRegisteredFalse("ana@mail.com")).thenReturn(Optional.of(guest));
+
+        Member converted = userSyncService.syncAuthenticatedUser(jwt("Ana Pérez"));
+
+        assertEquals(20L, converted.getId());
+        assertEquals("Ana Pérez", converted.getName());
+        verify(groupVersionService, times(1)).bumpGroupsOf(20L);
+    }
+
+    @Test
+    void repeatedRequests_shouldNotBumpGroupVersions() {
+        for (int i = 0; i < 3; i++) {
+            userSyncService.syncAuthenticatedUser(jwt("Ana Pérez"));
+        }
+
+        verifyNoInteractions(groupVersionService);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void flush_shouldWriteCoalescedLastLoginsInOneUpdate() {
+        when(memberRepository.updateLastLogin(anyCollection(), any())).thenReturn(3);
+        for (int i = 0; i < 10; i++) {
+            lastLoginFlusher.record(10L);
+            lastLoginFlusher.record(11L);
+            lastLoginFlusher.record(12L);
+        }
+
+        lastLoginFlusher.flush();
+        lastLoginFlusher.flush();
+
+        // Los tres miembros del mismo minuto van en un único UPDATE (o dos si el minuto cambió)
+        ArgumentCaptor<Collection> ids = ArgumentCaptor.forClass(Collection.class);
+        verify(memberRepository, atMost(2)).updateLastLogin(ids.capture(), any(LocalDateTime.class));
+        assertEquals(3, ids.getAllValues().stream().mapToInt(Collection::size).sum());
+        assertTrue(ids.getAllValues().stream().flatMap(Collection::stream).toList().containsAll(List.of(10L, 11L, 12L)));
+    }
+
+    private Jwt jwt(String name) {
+        return Jwt.withTokenValue("token")
+                .header("alg", "none")
+                .subject("kc-1")
+                .claim("preferred_username", "ana")
+                .claim("email", "ana@mail.com")
+                .claim("name", name)
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(60))
+                .build();
+    }
+}
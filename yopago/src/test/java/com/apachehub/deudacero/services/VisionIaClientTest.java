@@ -0,0 +1,153 @@
+package com.apachehub.deudacero.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Aislamiento de fallos del cliente de vision-ia contra el stub local con
+ * latencia y errores inyectados.
+ */
+class VisionIaClientTest {
+
+    private static final byte[] IMAGE = new byte[] { 1, 2, 3 };
+
+    private VisionIaStub visionIa;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        visionIa = new VisionIaStub(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        visionIa.close();
+    }
+
+    @Test
+    void transientErrors_shouldBeRetriedWithBackoff() throws Exception {
+        VisionIaClient client = client(4, 0, 2, 5, 30000, 2000);
+        visionIa.failNext(2, 503);
+
+        OcrService.OcrResult result = client.analyze(IMAGE, "receipt.jpg");
+
+        assertEquals("TOTAL 42.61", result.text);
+        assertEquals(Map.of("amount", 42.61), result.structured);
+        assertEquals(3, visionIa.requests(), "Dos reintentos tras los 503");
+        assertEquals(VisionIaClient.CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    @Test
+    void clientErrors_shouldNotBeRetriedNorOpenTheCircuit() {
+        VisionIaClient client = client(4, 0, 2, 1, 30000, 2000);
+        visionIa.failNext(1, 400);
+
+        assertThrows(WebClientResponseException.BadRequest.class, () -> client.analyze(IMAGE, "receipt.jpg"));
+        assertEquals(1, visionIa.requests());
+        assertEquals(VisionIaClient.CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    @Test
+    void clientErrors_shouldNotResetConsecutiveFailures() {
+        VisionIaClient client = client(4, 0, 0, 2, 30000, 2000);
+        visionIa.failNext(1, 503);
+        assertThrows(VisionIaClient.VisionIaUnavailableException.class,
+                () -> client.analyze(IMAGE, "receipt.jpg"));
+
+        // El 400 entre los dos 503 no cuenta como éxito del servicio
+        visionIa.failNext(1, 400);
+        assertThrows(WebClientResponseException.BadRequest.class, () -> client.analyze(IMAGE, "receipt.jpg"));
+        assertEquals(VisionIaClient.CircuitBreaker.State.CLOSED, client.circuitState());
+
+        visionIa.failNext(1, 503);
+        assertThrows(VisionIaClient.VisionIaUnavailableException.class,
+                () -> client.analyze(IMAGE, "receipt.jpg"));
+        assertEquals(VisionIaClient.CircuitBreaker.State.OPEN, client.circuitState());
+        assertEquals(3, visionIa.requests());
+    }
+
+    @Test
+    void slowService_shouldTimeOutOpenCircuitAndRecoverAfterProbe() throws Exception {
+        VisionIaClient client = client(4, 0, 0, 2, 300, 150);
+        visionIa.latency(1000);
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(VisionIaClient.VisionIaUnavailableException.class, () -> client.analyze(IMAGE, "receipt.jpg"));
+        }
+        assertEquals(VisionIaClient.CircuitBreaker.State.OPEN, client.circuitState());
+
+        // Con el circuito abierto se responde sin llamar al servicio
+        assertThrows(VisionIaClient.VisionIaUnavailableException.class, () -> client.analyze(IMAGE, "receipt.jpg"));
+        assertEquals(2, visionIa.requests());
+
+        visionIa.latency(0);
+        awaitState(client, VisionIaClient.CircuitBreaker.State.HALF_OPEN);
+        assertEquals("TOTAL 42.61", client.analyze(IMAGE, "receipt.jpg").text);
+        assertEquals(VisionIaClient.CircuitBreaker.State.CLOSED, client.circuitState());
+    }
+
+    @Test
+    void retryBudget_shouldStopRetriesBeforeMaxAttempts() {
+        // Cinco reintentos de 150 ms no caben en un presupuesto de 400 ms
+        VisionIaClient client = client(4, 0, 5, 10, 30000, 150, 400);
+        visionIa.latency(1000);
+
+        assertThrows(VisionIaClient.VisionIaUnavailableException.class, () -> client.analyze(IMAGE, "receipt.jpg"));
+        assertTrue(visionIa.requests() < 6, "Intentos: " + visionIa.requests());
+    }
+
+    @Test
+    void bulkhead_shouldRejectCallsBeyondTheConcurrencyLimit() throws Exception {
+        VisionIaClient client = client(1, 0, 0, 5, 30000, 2000);
+        visionIa.latency(400);
+
+        CompletableFuture<OcrService.OcrResult> first = CompletableFuture.supplyAsync(() -> {
+            try {
+                return client.analyze(IMAGE, "receipt.jpg");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        while (visionIa.requests() == 0) {
+            Thread.sleep(5);
+        }
+
+        assertThrows(VisionIaClient.VisionIaUnavailableException.class, () -> client.analyze(IMAGE, "receipt.jpg"));
+        assertEquals("TOTAL 42.61", first.get(5, TimeUnit.SECONDS).text);
+        assertEquals(1, visionIa.maxInFlight());
+        assertEquals(VisionIaClient.CircuitBreaker.State.CLOSED, client.circuitState(),
+                "El rechazo del bulkhead no cuenta como fallo del servicio");
+    }
+
+    private VisionIaClient client(int maxConcurrent, long bulkheadWaitMs, int maxRetries, int failureThreshold,
+            long openMs, long readTimeoutMs) {
+        return client(maxConcurrent, bulkheadWaitMs, maxRetries, failureThreshold, openMs, readTimeoutMs, 60000);
+    }
+
+    private VisionIaClient client(int maxConcurrent, long bulkheadWaitMs, int maxRetries, int failureThreshold,
+            long openMs, long readTimeoutMs, long retryBudgetMs) {
+        return new VisionIaClient(WebClient.builder(), visionIa.baseUrl(), new ObjectMapper(),
+                new SimpleMeterRegistry(), 1000, readTimeoutMs, maxConcurrent, bulkheadWaitMs, maxRetries, 20,
+                retryBudgetMs, failureThreshold, openMs);
+    }
+
+    private static void awaitState(VisionIaClient client, VisionIaClient.CircuitBreaker.State expected)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.circuitState() != expected) {
+            assertTrue(System.nanoTime() < deadline, "El circuito no pasó a " + expected);
+            Thread.sleep(5);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.apachehub.deudacero.services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * vision-ia simulado para pruebas: responde /vision-ia con un resultado fijo y
+ * permite inyectar latencia y fallos (códigos de error o conexiones cortadas).
+ */
+class VisionIaStub implements AutoCloseable {
+
+    static final String RESPONSE = "{\"text\":\"TOTAL 42.61\",\"structured\":{\"amount\":42.61}}";
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+    private final AtomicLong maxBodyBytes = new AtomicLong();
+    private final AtomicInteger pendingFaults = new AtomicInteger();
+    private volatile long latencyMillis;
+    private volatile int faultStatus = 503;
+    private volatile boolean dropConnection;
+
+    VisionIaStub(int threads) throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(threads));
+        server.createContext("/vision-ia", this::handle);
+        server.start();
+    }
+
+    String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Retraso antes de responder a cada petición
+     */
+    VisionIaStub latency(long millis) {
+        this.latencyMillis = millis;
+        return this;
+    }
+
+    /**
+     * Las próximas {@code count} peticiones responden con {@code status}
+     */
+    VisionIaStub failNext(int count, int status) {
+        this.faultStatus = status;
+        this.dropConnection = false;
+        this.pendingFaults.set(count);
+        return this;
+    }
+
+    /**
+     * Las próximas {@code count} peticiones cierran la conexión sin responder
+     */
+    VisionIaStub dropNext(int count) {
+        this.dropConnection = true;
+        this.pendingFaults.set(count);
+        return this;
+    }
+
+    int requests() {
+        return requests.get();
+    }
+
+    int maxInFlight() {
+        return maxInFlight.get();
+    }
+
+    long maxBodyBytes() {
+        return maxBodyBytes.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            long received = 0;
+            byte[] buffer = new byte[64 * 1024];
+            try (InputStream body = exchange.getRequestBody()) {
+                int read;
+                while ((read = body.read(buffer)) != -1) {
+                    received += read;
+                }
+            }
+            maxBodyBytes.accumulateAndGet(received, Math::max);
+
+            if (latencyMillis > 0) {
+                try {
+                    Thread.sleep(latencyMillis);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            if (pendingFaults.getAndUpdate(remaining -> Math.max(0, remaining - 1)) > 0) {
+                if (dropConnection) {
+                    exchange.close();
+                    return;
+                }
+                exchange.sendResponseHeaders(faultStatus, -1);
+                exchange.close();
+                return;
+            }
+
+            byte[] response = RESPONSE.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,134 @@
+package com.apachehub.deudacero.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.simp.SimpMessageType;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.util.MimeTypeUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compara el tamaño de JSON y CBOR para un evento de grupo típico y verifica
+ * la negociación por suscripción.
+ */
+class CompactEventEncodingTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SimpleMeterRegistry meterRegistry;
+    private RealTimeEventCodec codec;
+    private CompactEncodingInterceptor interceptor;
+    private final MessageChannel channel = mock(MessageChannel.class);
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        codec = new RealTimeEventCodec(objectMapper, meterRegistry);
+        interceptor = new CompactEncodingInterceptor();
+    }
+
+    @Test
+    void cbor_shouldBeSmallerThanJsonAndRoundTrip() throws Exception {
+        Map<String, Object> event = sampleEvent();
+
+        byte[] json = codec.toJson(event);
+        byte[] cbor = codec.toCbor(event);
+
+        assertTrue(cbor.length < json.length, "CBOR (" + cbor.length + ") debe ocupar menos que JSON (" + json.length + ")");
+        Object decoded = objectMapper.copyWith(new CBORFactory()).readValue(cbor, Map.class);
+        assertEquals(objectMapper.readValue(json, Map.class), decoded);
+
+        // Cada formato se serializa una vez por evento
+        assertEquals(1, meterRegistry.get("yopago.realtime.encode").tag("format", "json").timer().count());
+        assertEquals(1, meterRegistry.get("yopago.realtime.encode").tag("format", "cbor").timer().count());
+    }
+
+    @Test
+    void onlyCompactSubscriptions_shouldReceiveCborFrames() {
+        assertFalse(interceptor.hasCompactSubscribers());
+        interceptor.preSend(subscribe("s1", "sub-cbor", "application/cbor"), channel);
+        interceptor.preSend(subscribe("s2", "sub-json", null), channel);
+        assertTrue(interceptor.hasCompactSubscribers());
+
+        byte[] json = codec.toJson(sampleEvent());
+        byte[] cbor = codec.toCbor(sampleEvent());
+
+        Message<?> compact = interceptor.preSend(brokerMessage("s1", "sub-cbor", json, cbor), channel);
+        assertSame(cbor, compact.getPayload());
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.wrap(compact);
+        assertEquals(MimeTypeUtils.APPLICATION_OCTET_STREAM, accessor.getContentType());
+        assertEquals("cbor", accessor.getFirstNativeHeader("encoding"));
+        assertNull(compact.getHeaders().get(CompactEncodingInterceptor.CBOR_PAYLOAD_HEADER));
+
+        Message<?> plain = interceptor.preSend(brokerMessage("s2", "sub-json", json, cbor), channel);
+        assertSame(json, plain.getPayload());
+
+        interceptor.preSend(disconnect("s1"), channel);
+        assertFalse(interceptor.hasCompactSubscribers());
+    }
+
+    private Map<String, Object> sampleEvent() {
+        List<Map<String, Object>> participants = new ArrayList<>();
+        for (long i = 1; i <= 4; i++) {
+            participants.add(Map.of("memberId", i, "name", "Miembro " + i, "amount", 12.5));
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("id", 1234L);
+        payload.put("description", "Cena en el centro");
+        payload.put("amount", 50.0);
+        payload.put("currency", "USD");
+        payload.put("paidBy", 1L);
+        payload.put("participants", participants);
+
+        Map<String, Object> event = new HashMap<>();
+        event.put("type", "expense.created");
+        event.put("payload", payload);
+        event.put("groupId", 42L);
+        event.put("timestamp", Instant.parse("2025-01-01T12:00:00Z").toString());
+        return event;
+    }
+
+    private Message<byte[]> subscribe(String sessionId, String subscriptionId, String contentType) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/topic/groups/42");
+        if (contentType != null) {
+            accessor.setNativeHeader("content-type", contentType);
+        }
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Message<byte[]> disconnect(String sessionId) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.DISCONNECT);
+        accessor.setSessionId(sessionId);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Message<byte[]> brokerMessage(String sessionId, String subscriptionId, byte[] json, byte[] cbor) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create(SimpMessageType.MESSAGE);
+        accessor.setSessionId(sessionId);
+        accessor.setSubscriptionId(subscriptionId);
+        accessor.setDestination("/topic/groups/42");
+        accessor.setContentType(MimeTypeUtils.APPLICATION_JSON);
+        accessor.setHeader(CompactEncodingInterceptor.CBOR_PAYLOAD_HEADER, cbor);
+        return MessageBuilder.createMessage(json, accessor.getMessageHeaders());
+    }
+}
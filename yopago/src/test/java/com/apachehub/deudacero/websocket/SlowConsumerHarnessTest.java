@@ -0,0 +1,154 @@
+package com.apachehub.deudacero.websocket;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
+import org.springframework.messaging.support.ExecutorSubscribableChannel;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Simula un suscriptor lento y otros rápidos sobre un canal saliente
+ * configurado como en WebSocketConfig, y verifica que los rápidos reciben todo
+ * mientras el lento sigue bloqueado y acaba expulsado por llenar su búfer.
+ */
+class SlowConsumerHarnessTest {
+
+    // Límite de tiempo holgado: la expulsión la decide el tamaño del búfer
+    private static final int SEND_TIME_LIMIT_MS = 60_000;
+    private static final int SEND_BUFFER_SIZE = 64 * 1024;
+    private static final int MESSAGES = 300;
+    // 300 eventos de 1 KB superan el búfer; los de los rápidos nunca llegan a llenarlo
+    private static final String LARGE_PAYLOAD = "x".repeat(1024);
+    private static final String SMALL_PAYLOAD = "ok";
+
+    private ThreadPoolTaskExecutor executor;
+    private SimpleMeterRegistry meterRegistry;
+    private OutboundQueueMetrics metrics;
+    private ExecutorSubscribableChannel outboundChannel;
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+    private final Set<String> evicted = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch slowRelease = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(4);
+        executor.setMaxPoolSize(4);
+        executor.setQueueCapacity(10_000);
+        executor.initialize();
+
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new OutboundQueueMetrics(meterRegistry);
+
+        outboundChannel = new ExecutorSubscribableChannel(executor);
+        outboundChannel.addInterceptor(metrics);
+        outboundChannel.subscribe(message -> {
+            String sessionId = SimpMessageHeaderAccessor.getSessionId(message.getHeaders());
+            WebSocketSession session = sessions.get(sessionId);
+            if (session == null) {
+                return;
+            }
+            try {
+                session.sendMessage(new TextMessage((String) message.getPayload()));
+            } catch (SessionLimitExceededException e) {
+                // Igual que SubProtocolWebSocketHandler: se cierra la sesión no fiable
+                sessions.remove(sessionId);
+                evicted.add(sessionId);
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        slowRelease.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void slowSubscriber_shouldBeEvictedWithoutDelayingFastOnes() throws Exception {
+        CountDownLatch fastDelivered = new CountDownLatch(MESSAGES * 2);
+        CountDownLatch slowEntered = new CountDownLatch(1);
+        sessions.put("slow", decorate(session("slow", slowEntered, slowRelease)));
+        sessions.put("fast-1", decorate(session("fast-1", fastDelivered, null)));
+        sessions.put("fast-2", decorate(session("fast-2", fastDelivered, null)));
+
+        outboundChannel.send(message("slow", LARGE_PAYLOAD));
+        assertTrue(slowEntered.await(5, TimeUnit.SECONDS), "El primer envío al lento debe quedar bloqueado");
+
+        for (int i = 0; i < MESSAGES; i++) {
+            outboundChannel.send(message("slow", LARGE_PAYLOAD));
+            outboundChannel.send(message("fast-1", SMALL_PAYLOAD));
+            outboundChannel.send(message("fast-2", SMALL_PAYLOAD));
+        }
+
+        // El lento sigue bloqueado en su primer envío: los rápidos terminan igual
+        assertTrue(fastDelivered.await(10, TimeUnit.SECONDS), "Los suscriptores rápidos deben recibir todo");
+        assertEquals(1, slowRelease.getCount());
+        assertEquals(Set.of("slow"), evicted, "Solo el suscriptor lento debe ser expulsado");
+    }
+
+    @Test
+    void closedSession_shouldReleaseQueuedCounter() throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("closed");
+        metrics.preSend(message("closed", SMALL_PAYLOAD), outboundChannel);
+        assertEquals(1, metrics.queuedFor("closed"));
+
+        metrics.decorate(mock(org.springframework.web.socket.WebSocketHandler.class))
+                .afterConnectionClosed(session, CloseStatus.SESSION_NOT_RELIABLE);
+
+        assertEquals(0, metrics.queuedFor("closed"));
+        assertEquals(1, meterRegistry.get("yopago.websocket.sessions.evicted").counter().count(), 0.001);
+    }
+
+    private WebSocketSession decorate(WebSocketSession session) {
+        return new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_SIZE);
+    }
+
+    /**
+     * Sesión simulada: con {@code release} cada envío se bloquea hasta que el
+     * test lo libera, como un cliente que dejó de leer del socket
+     */
+    private WebSocketSession session(String id, CountDownLatch entered, CountDownLatch release) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            entered.countDown();
+            if (release != null) {
+                release.await();
+            }
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private Message<String> message(String sessionId, String payload) {
+        SimpMessageHeaderAccessor accessor = SimpMessageHeaderAccessor.create();
+        accessor.setSessionId(sessionId);
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(payload, accessor.getMessageHeaders());
+    }
+}
@@ -0,0 +1,132 @@
+package com.apachehub.deudacero.websocket;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.access.AccessDeniedException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+
+import com.apachehub.deudacero.services.GroupMembershipIndex;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WebSocketAuthChannelInterceptorTest {
+
+    private static final int RECONNECT_STORM = 10_000;
+
+    private final AtomicInteger decodeCalls = new AtomicInteger();
+    private SimpleMeterRegistry meterRegistry;
+    private GroupMembershipIndex membershipIndex;
+    private WebSocketAuthChannelInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        JwtDecoder decoder = token -> {
+            decodeCalls.incrementAndGet();
+            Instant now = Instant.now();
+            return Jwt.withTokenValue(token)
+                    .header("alg", "none")
+                    .subject("user-" + token)
+                    .issuedAt(now.minusSeconds(600))
+                    .expiresAt(token.startsWith("expired") ? now.minusSeconds(1) : now.plusSeconds(600))
+                    .build();
+        };
+        JwtAuthenticationCache cache = new JwtAuthenticationCache(meterRegistry, 100, 300);
+        membershipIndex = mock(GroupMembershipIndex.class);
+        interceptor = new WebSocketAuthChannelInterceptor(decoder, new JwtAuthenticationConverter(), cache,
+                new WebSocketSubscriptionAuthorizer(membershipIndex));
+    }
+
+    @Test
+    void reconnectStorm_shouldDecodeEachTokenOnlyOnce() {
+        for (int i = 0; i < RECONNECT_STORM; i++) {
+            Message<?> result = interceptor.preSend(connect("token-" + (i % 10)), null);
+            assertNotNull(StompHeaderAccessor.wrap(result).getUser());
+        }
+
+        assertEquals(10, decodeCalls.get());
+        assertEquals(RECONNECT_STORM - 10,
+                meterRegistry.get("yopago.websocket.auth.cache").tag("result", "hit").counter().count(), 0.001);
+        assertEquals(10, meterRegistry.get("yopago.websocket.auth.decode").timer().count());
+    }
+
+    @Test
+    void expiredToken_shouldNotBeCached() {
+        interceptor.preSend(connect("expired-token"), null);
+        interceptor.preSend(connect("expired-token"), null);
+
+        assertEquals(2, decodeCalls.get());
+    }
+
+    @Test
+    void cache_shouldStayBounded() {
+        for (int i = 0; i < 1_000; i++) {
+            interceptor.preSend(connect("token-" + i), null);
+        }
+
+        double size = meterRegistry.get("yopago.websocket.auth.cache.size").gauge().value();
+        assertTrue(size <= 100, "La caché no debe superar el máximo configurado");
+    }
+
+    @Test
+    void connectWithoutBearer_shouldBeRejected() {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+
+        assertThrows(IllegalArgumentException.class, () -> interceptor.preSend(message, null));
+    }
+
+    @Test
+    void subscribeToGroupTopic_shouldRequireMembership() {
+        Message<?> connected = interceptor.preSend(connect("token-1"), null);
+        StompHeaderAccessor session = StompHeaderAccessor.wrap(connected);
+        when(membershipIndex.resolveMemberId("user-token-1")).thenReturn(7L);
+        when(membershipIndex.canAccess(7L, 3L)).thenReturn(true);
+
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe(session, "/topic/groups/3"), null));
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(subscribe(session, "/topic/groups/4"), null));
+    }
+
+    @Test
+    void subscribeToUserTopic_shouldOnlyAllowOwnMember() {
+        Message<?> connected = interceptor.preSend(connect("token-1"), null);
+        StompHeaderAccessor session = StompHeaderAccessor.wrap(connected);
+        when(membershipIndex.resolveMemberId("user-token-1")).thenReturn(7L);
+
+        assertDoesNotThrow(() -> interceptor.preSend(subscribe(session, "/topic/users/7/events"), null));
+        assertThrows(AccessDeniedException.class,
+                () -> interceptor.preSend(subscribe(session, "/topic/users/8/events"), null));
+    }
+
+    private Message<byte[]> subscribe(StompHeaderAccessor session, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.SUBSCRIBE);
+        accessor.setDestination(destination);
+        accessor.setUser(session.getUser());
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+
+    private Message<byte[]> connect(String token) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(StompCommand.CONNECT);
+        accessor.setNativeHeader("Authorization", "Bearer " + token);
+        accessor.setLeaveMutable(true);
+        Message<byte[]> message = MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+        assertNotNull(MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class));
+        return message;
+    }
+}